@@ -6,70 +6,86 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class AccountDao {
-    private final String url = "jdbc:mysql://localhost:3306/banking_simulator";
-    private final String user = "root";   // change if needed
-    private final String pass = "system"; // change to your MySQL password
+    private final DbConfig db;
+    private volatile AccountFilter existing; // null = every lookup goes to the database
 
     public AccountDao() {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("MySQL driver not found", e);
-        }
+        this(DbConfig.defaults()); // local MySQL (see DbConfig)
+    }
+
+    //  Point the DAO at a specific database (e.g. one shard)
+    public AccountDao(DbConfig db) {
+        this.db = db;
     }
 
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url, user, pass);
+        return db.getConnection();
+    }
+
+    //  Database holding an account (overridden when sharded)
+    DbConfig dbFor(String accNum) {
+        return db;
+    }
+
+    //  Every database this DAO covers
+    List<DbConfig> databases() {
+        return List.of(db);
+    }
+
+    //  Answer lookups of numbers the filter rules out with "not found", without a query
+    void setExistenceFilter(AccountFilter filter) {
+        this.existing = filter;
     }
 
     // ------------------- CREATE -------------------
-    public void createAccount(Account a) {
+    //  Validate and insert; false (with the reason printed) if nothing was inserted
+    public boolean createAccount(Account a) {
         //  Basic null check
         if (a == null) {
             System.out.println(" Account details cannot be null.");
-            return;
+            return false;
         }
 
         //  Validate Account Number (exactly 11 digits)
         String accNum = a.getAccountNumber();
         if (accNum == null || !accNum.matches("\\d{11}")) {
             System.out.println(" Account number must be exactly 11 digits.");
-            return;
+            return false;
         }
 
         //  Prevent duplicate account numbers
         if (findByAccountNumber(accNum) != null) {
             System.out.println("Account already exists: " + accNum);
-            return;
+            return false;
         }
 
         // Validate Holder Name (alphabets + spaces)
         String name = a.getHolderName();
         if (name == null || name.trim().isEmpty()) {
             System.out.println("Holder name cannot be empty.");
-            return;
+            return false;
         }
         if (!name.matches("^[A-Za-z ]+$")) {
             System.out.println("Holder name must contain only alphabets and spaces.");
-            return;
+            return false;
         }
 
         //  Validate Email (simple regex)
         String email = a.getEmail();
         if (email == null || email.trim().isEmpty()) {
             System.out.println("❌ Email cannot be empty.");
-            return;
+            return false;
         }
         if (!email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$")) {
             System.out.println(" Invalid email format. Example: user@gmail.com");
-            return;
+            return false;
         }
 
         // Validate PIN (exactly 4 digits)
         String pin = a.getPin();
         if (pin == null || !pin.matches("\\d{4}")) {
             System.out.println(" PIN must be exactly 4 digits.");
-            return;
+            return false;
         }
 
         //  Validate Account Type
@@ -97,15 +113,43 @@ public class AccountDao {
 
             ps.executeUpdate();
             System.out.println(" Account created successfully: " + accNum);
+            return true;
         } catch (SQLException e) {
             System.out.println(" Database error while creating account.");
             e.printStackTrace();
+            return false;
         }
     }
 
 
     // ------------------- READ -------------------
+
+    //  One account's hot state, as streamed by forEachAccountState
+    interface StateSink {
+        void accept(String accNum, BigDecimal balance, String status, boolean locked,
+                    int failedAttempts, Timestamp lastActivity);
+    }
+
+    //  Stream every account's balance and status fields from every database; nothing is held in memory.
+    //  Throws if any database can't be read completely, so callers never take a partial scan for all accounts.
+    void forEachAccountState(StateSink sink) throws SQLException {
+        String sql = "SELECT account_number, balance, status, is_locked, failed_attempts, last_activity FROM accounts";
+        for (DbConfig d : databases()) {
+            try (Connection conn = d.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(d.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        sink.accept(rs.getString(1), rs.getBigDecimal(2), rs.getString(3), rs.getBoolean(4),
+                                rs.getInt(5), rs.getTimestamp(6));
+                    }
+                }
+            }
+        }
+    }
     public Account findByAccountNumber(String accNum) {
+        AccountFilter filter = existing;
+        if (filter != null && !filter.mightContain(accNum)) return null;
         String sql = "SELECT * FROM accounts WHERE account_number = ?";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -181,7 +225,7 @@ public class AccountDao {
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setString(1, "CLOSED");
+            ps.setString(1, account.getStatus() != null ? account.getStatus() : "CLOSED");
             ps.setString(2, account.getAccountNumber());
             ps.executeUpdate();
         } catch (SQLException e) {
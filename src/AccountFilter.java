@@ -0,0 +1,254 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Cuckoo filter of existing account numbers: answers "definitely not an account" from
+ * memory, so lookups for typos, probes and closed accounts never reach the database.
+ *
+ * Each account is a 32-bit fingerprint stored in one of two buckets of 4 slots (the
+ * second bucket is derived from the first and the fingerprint, so entries can be moved
+ * and deleted without the account number). False positives ~1 in 500 million; no false
+ * negatives for accounts added and not removed. Unlike a Bloom filter, remove() works,
+ * which deleteAccount needs.
+ *
+ * Lookups don't lock: they read optimistically and retry only if a writer ran meanwhile.
+ * Writers (account creation and deletion, rare by comparison) take the write lock. When a
+ * table can't place an entry it stops taking new ones and a table twice its size is
+ * added, so the filter grows without rescanning the accounts.
+ */
+public final class AccountFilter {
+
+    private static final int SLOTS = 4;          // fingerprints per bucket
+    private static final int MAX_KICKS = 500;    // relocations before a table counts as full
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table[] tables;
+    private volatile boolean open;               // false while the initial scan runs: everything might exist
+    private long size;
+
+    //  Sized for expectedAccounts at ~90% load; grows beyond that
+    public AccountFilter(long expectedAccounts) {
+        long buckets = Math.max(16, expectedAccounts * 10 / 9 / SLOTS + 1);
+        this.tables = new Table[]{new Table((int) Math.min(MAX_BUCKETS, Long.highestOneBit(buckets - 1) << 1))};
+    }
+
+    //  Start answering lookups (call once the initial scan is done; adds before that count)
+    public void open() {
+        open = true;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    // ------------------- READ -------------------
+
+    //  False only if accNo was never added (or has been removed)
+    public boolean mightContain(String accNo) {
+        if (!open || accNo == null) return true;
+        long h = hash(accNo);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = contains(h);
+            if (lock.validate(stamp)) return found;
+        }
+        stamp = lock.readLock();
+        try {
+            return contains(h);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean contains(long h) {
+        for (Table t : tables) {
+            if (t.contains(h)) return true;
+        }
+        return false;
+    }
+
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //  Heap bytes held by the fingerprint tables
+    public long footprintBytes() {
+        long bytes = 0;
+        for (Table t : tables) bytes += (long) t.slots.length * Integer.BYTES;
+        return bytes;
+    }
+
+    // ------------------- WRITE -------------------
+
+    public void add(String accNo) {
+        long h = hash(accNo);
+        long stamp = lock.writeLock();
+        try {
+            Table[] current = tables;
+            Table last = current[current.length - 1];
+            if (last.full) last = grow(current);
+            last.insert(h);
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forget an account. Only for accounts that were added: removing a number that never
+     * was can delete another account's matching fingerprint. Ignored before open(), when
+     * the scan may not have added it yet.
+     */
+    public boolean remove(String accNo) {
+        if (!open) return false;
+        long h = hash(accNo);
+        long stamp = lock.writeLock();
+        try {
+            Table[] current = tables;
+            for (int i = current.length - 1; i >= 0; i--) {
+                if (current[i].remove(h)) {
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private Table grow(Table[] current) {
+        Table last = current[current.length - 1];
+        Table next = new Table(Math.min(MAX_BUCKETS, (last.mask + 1) * 2));
+        Table[] grown = new Table[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = next;
+        tables = grown;
+        return next;
+    }
+
+    // ------------------- HASHING -------------------
+
+    //  64-bit hash: FNV-1a over the characters, then a final avalanche
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    // ------------------- ONE TABLE -------------------
+
+    private static final class Table {
+        final int[] slots; // SLOTS per bucket; 0 = empty
+        final int mask;    // buckets - 1
+        int victimBucket;  // entry the last failed insert couldn't place (victimFp 0 = none)
+        int victimFp;
+        boolean full;      // takes no new entries
+
+        Table(int buckets) {
+            this.slots = new int[buckets * SLOTS];
+            this.mask = buckets - 1;
+        }
+
+        private static int fingerprint(long h) {
+            int fp = (int) (h >>> 32);
+            return fp == 0 ? 1 : fp;
+        }
+
+        //  The other bucket for fp; applying it twice gives the first back
+        private int alt(int bucket, int fp) {
+            return (bucket ^ (int) mix(fp)) & mask;
+        }
+
+        boolean contains(long h) {
+            int fp = fingerprint(h);
+            int b1 = (int) h & mask;
+            int b2 = alt(b1, fp);
+            return inBucket(b1, fp) || inBucket(b2, fp)
+                    || (victimFp == fp && (victimBucket == b1 || victimBucket == b2));
+        }
+
+        private boolean inBucket(int bucket, int fp) {
+            int base = bucket * SLOTS;
+            return slots[base] == fp || slots[base + 1] == fp || slots[base + 2] == fp || slots[base + 3] == fp;
+        }
+
+        private boolean put(int bucket, int fp) {
+            int base = bucket * SLOTS;
+            for (int i = base; i < base + SLOTS; i++) {
+                if (slots[i] == 0) {
+                    slots[i] = fp;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //  Always stores the entry; if it takes too many relocations the displaced one becomes the victim
+        void insert(long h) {
+            int fp = fingerprint(h);
+            int bucket = (int) h & mask;
+            if (put(bucket, fp)) return;
+            bucket = alt(bucket, fp);
+            if (put(bucket, fp)) return;
+
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int i = bucket * SLOTS + rnd.nextInt(SLOTS);
+                int evicted = slots[i];
+                slots[i] = fp;
+                fp = evicted;
+                bucket = alt(bucket, fp);
+                if (put(bucket, fp)) return;
+            }
+            victimBucket = bucket;
+            victimFp = fp;
+            full = true;
+        }
+
+        boolean remove(long h) {
+            int fp = fingerprint(h);
+            int b1 = (int) h & mask;
+            int b2 = alt(b1, fp);
+            if (victimFp == fp && (victimBucket == b1 || victimBucket == b2)) {
+                victimFp = 0;
+                full = false;
+                return true;
+            }
+            if (clear(b1, fp) || clear(b2, fp)) {
+                if (victimFp != 0 && (put(victimBucket, victimFp) || put(alt(victimBucket, victimFp), victimFp))) {
+                    victimFp = 0; // room again: the victim moves in and the table takes entries again
+                    full = false;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private boolean clear(int bucket, int fp) {
+            int base = bucket * SLOTS;
+            for (int i = base; i < base + SLOTS; i++) {
+                if (slots[i] == fp) {
+                    slots[i] = 0;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Checks AccountFilter: no false negatives (also across growth and deletes), the false
+ * positive rate, and lookups racing with writers. No database needed.
+ * Usage: java AccountFilterTest [accounts]
+ */
+public class AccountFilterTest {
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        long base = 10_000_000_000L;
+
+        //  Sized for a quarter of the accounts: has to grow twice
+        AccountFilter filter = new AccountFilter(accounts / 4);
+        System.out.println("Before open(), unknown number: " + filter.mightContain("99999999999") + " (Expected true)");
+        for (int i = 0; i < accounts; i++) filter.add(Long.toString(base + i));
+        filter.open();
+
+        int missing = 0;
+        for (int i = 0; i < accounts; i++) if (!filter.mightContain(Long.toString(base + i))) missing++;
+        System.out.println("Added: " + filter.size() + " (Expected " + accounts + ")");
+        System.out.println("False negatives: " + missing + " (Expected 0)");
+
+        int falsePositives = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < accounts; i++) if (filter.mightContain(Long.toString(base + accounts + i))) falsePositives++;
+        long t1 = System.nanoTime();
+        System.out.println("False positives: " + falsePositives + " of " + accounts + " (Expected 0, maybe 1)");
+        System.out.printf("Negative lookup: %d ns, footprint: %d MB%n", (t1 - t0) / accounts, filter.footprintBytes() >> 20);
+
+        //  Delete every other account
+        for (int i = 0; i < accounts; i += 2) filter.remove(Long.toString(base + i));
+        int stillThere = 0, lost = 0;
+        for (int i = 0; i < accounts; i++) {
+            boolean present = filter.mightContain(Long.toString(base + i));
+            if (i % 2 == 0 && present) stillThere++;
+            if (i % 2 == 1 && !present) lost++;
+        }
+        System.out.println("Deleted still reported: " + stillThere + " (Expected 0, maybe 1)");
+        System.out.println("Kept but lost: " + lost + " (Expected 0)");
+
+        //  Readers must never miss a kept account while a writer adds and removes others
+        AccountFilter shared = new AccountFilter(100_000);
+        for (int i = 0; i < 50_000; i++) shared.add(Long.toString(base + i));
+        shared.open();
+        int[] misses = new int[4];
+        Thread[] readers = new Thread[misses.length];
+        for (int r = 0; r < readers.length; r++) {
+            int id = r;
+            readers[r] = new Thread(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int i = 0; i < 50_000; i++) if (!shared.mightContain(Long.toString(base + i))) misses[id]++;
+                }
+            });
+            readers[r].start();
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100_000; i++) shared.add(Long.toString(base + 1_000_000 + i));
+            for (int i = 0; i < 100_000; i++) shared.remove(Long.toString(base + 1_000_000 + i));
+        }
+        int totalMisses = 0;
+        for (int r = 0; r < readers.length; r++) {
+            readers[r].join();
+            totalMisses += misses[r];
+        }
+        System.out.println("Misses under concurrent writes: " + totalMisses + " (Expected 0)");
+        System.out.println("Size after churn: " + shared.size() + " (Expected 50000)");
+    }
+}
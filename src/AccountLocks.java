@@ -0,0 +1,57 @@
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped per-account locks so concurrent operations on the same account (async callers,
+ * batch workers) don't interleave their read-modify-write of the balance inside this JVM.
+ * Two-account operations lock stripes in index order, so they cannot deadlock.
+ */
+public class AccountLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public AccountLocks(int stripeCount) {
+        int n = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1; // round up to a power of two
+        stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    private int stripeOf(String accNo) {
+        int h = accNo == null ? 0 : accNo.hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    //  Run an action while holding one account's lock
+    public <T> T withLock(String accNo, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeOf(accNo)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //  Run an action while holding both accounts' locks (taken in stripe order)
+    public <T> T withLocks(String a, String b, Supplier<T> action) {
+        int sa = stripeOf(a), sb = stripeOf(b);
+        if (sa == sb) return withLock(a, action);
+
+        ReentrantLock first = stripes[Math.min(sa, sb)];
+        ReentrantLock second = stripes[Math.max(sa, sb)];
+        first.lock();
+        try {
+            second.lock();
+            try {
+                return action.get();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+}
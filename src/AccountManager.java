@@ -1,23 +1,395 @@
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.temporal.ChronoUnit;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class AccountManager {
 
+    private static final long MIN_BALANCE_MINOR = 10_000; // ₹100 in paise
+    private static final int MINI_STATEMENT_SIZE = 5;
+    private static final int RECENT_PER_ACCOUNT = 10;     // ring size per cached account
+    private static final int RECENT_ACCOUNTS = 100_000;   // LRU bound of the recent-transactions cache
+
+    //  Threads for hedged reads (idle ones exit after a minute)
+    private static final ExecutorService HEDGE_POOL = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "hedged-read");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final AccountDao accountDao;
     private final TransactionDao txDao;
+    private final AccountLocks locks = new AccountLocks(1024);
+    private VelocityLimiter velocityLimiter; // null = no velocity limits
+    private final Map<String, Integer> hotAccounts = new ConcurrentHashMap<>(); // account -> balance slots
+    private volatile BalanceEventBus eventBus; // null = no events published
+    private volatile BalanceIndex balanceIndex; // null = balances always read from the database
+    private volatile AccountFilter accountFilter; // null = existence always checked in the database
+    private volatile Duration operationTimeout =   // deadline of single-account operations; null = none
+            Duration.ofMillis(Long.getLong("banking.op.timeout.ms", 10_000L));
+    private volatile Duration hedgeDelay;        // null = reads are not hedged
+    private final RecentTransactionsCache recentTx;
+    private volatile boolean holdsEnabled; // true = debits are checked against balance - active holds
+    private volatile boolean lazyInterest; // true = interest accrues per account (InterestAccrual), not in a monthly pass
 
     //  Constructor initializes DAOs
     public AccountManager() {
-        this.accountDao = new AccountDao();
-        this.txDao = new TransactionDao();
+        this(new AccountDao(), new TransactionDao());
+    }
+
+    //  Constructor with explicit DAOs (sharded or test databases)
+    public AccountManager(AccountDao accountDao, TransactionDao txDao) {
+        this.accountDao = accountDao;
+        this.txDao = txDao;
+        this.recentTx = new RecentTransactionsCache(RECENT_PER_ACCOUNT, RECENT_ACCOUNTS, this::loadRecent);
+        this.velocityLimiter = VelocityLimiter.rebuildFrom(txDao); // warm from the last day of the ledger
+
+        //  Statements read archived months back when an archive directory is configured
+        if (System.getProperty("banking.archive.dir") != null && txDao.getArchive() == null)
+            txDao.setArchive(LedgerArchive.fromSystemProperties());
+
+        hotAccounts.putAll(loadHotAccounts(accountDao));
+
+        //  Finish any cross-shard transfer a previous run left half-done
+        if (accountDao instanceof ShardedAccountDao sharded) {
+            int resolved = sharded.recoverInDoubtTransfers();
+            if (resolved > 0) System.out.println(" Recovered " + resolved + " in-doubt transfer(s).");
+        }
+    }
+
+    //  Replace (or disable with null) the per-account velocity limiter
+    public void setVelocityLimiter(VelocityLimiter velocityLimiter) {
+        VelocityLimiter old = this.velocityLimiter;
+        this.velocityLimiter = velocityLimiter;
+        if (old != null && old != velocityLimiter) old.close();
+    }
+
+    //  Publish balance changes, status changes and lockouts here (null stops publishing)
+    public void setEventBus(BalanceEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    public BalanceEventBus getEventBus() {
+        return eventBus;
+    }
+
+    // ------------------- DEADLINES -------------------
+
+    /**
+     * Time budget of each single-account operation (deposit, transfer, getBalance, ...). Its
+     * statements get the remaining time as their query timeout and the operation fails with
+     * DeadlineExceededException instead of blocking on a stalled database. Null turns it off.
+     */
+    public void setOperationTimeout(Duration timeout) {
+        this.operationTimeout = timeout;
+    }
+
+    /**
+     * Hedge read-only lookups (getBalance, getAccount, verifyPin): if the first attempt has
+     * not answered after `delay`, the same read is sent again on a second connection and
+     * whichever answers first wins. Pick a delay around the lookups' p95. Null turns it off.
+     */
+    public void setHedgeDelay(Duration delay) {
+        this.hedgeDelay = delay;
+    }
+
+    // ------------------- BALANCE INDEX -------------------
+
+    /**
+     * Load every account's balance and status into an off-heap BalanceIndex and keep it
+     * current from then on. getBalance is then answered from memory and debits that
+     * can't pass the minimum-balance check are refused without touching the database.
+     * Only valid while this manager is the only writer to the accounts. If any database
+     * can't be scanned completely the index is not installed and IllegalStateException is thrown.
+     */
+    public BalanceIndex enableBalanceIndex(long expectedAccounts) {
+        BalanceIndex index = new BalanceIndex(expectedAccounts);
+        try {
+            accountDao.forEachAccountState((acc, balance, status, locked, attempts, last) ->
+                    index.put(BalanceIndex.key(acc), BalanceIndex.toMinor(balance), flags(status, locked), attempts,
+                            last == null ? 0 : last.getTime() / 1000));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Balance index not enabled: account scan failed", e);
+        }
+        for (String acc : hotAccounts.keySet()) { // accounts.balance is only their base
+            BigDecimal total = splitBalances(acc).totalBalance(acc);
+            long key = BalanceIndex.key(acc);
+            if (total != null) index.put(key, BalanceIndex.toMinor(total), index.getFlags(key),
+                    index.getFailedAttempts(key), index.getLastActivity(key));
+        }
+        balanceIndex = index;
+        return index;
+    }
+
+    public void disableBalanceIndex() {
+        balanceIndex = null;
+    }
+
+    // ------------------- EXISTENCE FILTER -------------------
+
+    /**
+     * Build a cuckoo filter of every account number (one streaming scan) and keep it current
+     * on create and delete. Lookups of numbers it rules out (typos, probes, deleted accounts)
+     * are then answered "not found" without a query, including createAccount's duplicate
+     * check. Only valid while this manager is the only one creating and deleting accounts.
+     * The filter is only opened and installed after a complete scan of every database;
+     * otherwise lookups keep going to the database and IllegalStateException is thrown.
+     */
+    public AccountFilter enableAccountFilter(long expectedAccounts) {
+        AccountFilter filter = new AccountFilter(expectedAccounts);
+        accountFilter = filter; // accounts created during the scan are added too
+        try {
+            accountDao.forEachAccountState((acc, balance, status, locked, attempts, last) -> filter.add(acc));
+        } catch (SQLException e) {
+            accountFilter = null;
+            e.printStackTrace();
+            throw new IllegalStateException("Account filter not enabled: account scan failed", e);
+        }
+        filter.open();
+        accountDao.setExistenceFilter(filter);
+        return filter;
+    }
+
+    public void disableAccountFilter() {
+        accountDao.setExistenceFilter(null);
+        accountFilter = null;
+    }
+
+    private static int flags(String status, boolean locked) {
+        int flags = locked ? BalanceIndex.FLAG_LOCKED : 0;
+        if ("INACTIVE".equals(status)) flags |= BalanceIndex.FLAG_INACTIVE;
+        if ("CLOSED".equals(status)) flags |= BalanceIndex.FLAG_CLOSED;
+        return flags;
+    }
+
+    //  Refuse a debit the indexed balance already rules out (the locked database check still decides the rest)
+    private void precheckDebit(String accNo, BigDecimal amount) {
+        BalanceIndex index = balanceIndex;
+        if (index == null) return;
+        long balance = index.getBalance(BalanceIndex.key(accNo));
+        if (balance != BalanceIndex.MISSING && balance - BalanceIndex.toMinor(amount) < MIN_BALANCE_MINOR)
+            throw new IllegalArgumentException("You must maintain a minimum balance of ₹100");
+    }
+
+    //  Apply a committed balance change to the index
+    private void indexFlag(String accNo, int flag) {
+        BalanceIndex index = balanceIndex;
+        if (index != null) afterCommit(() -> index.setFlag(BalanceIndex.key(accNo), flag, true));
+    }
+
+    private void indexDelta(String accNo, BigDecimal delta) {
+        BalanceIndex index = balanceIndex;
+        if (index == null) return;
+        long now = System.currentTimeMillis() / 1000;
+        afterCommit(() -> index.addBalance(BalanceIndex.key(accNo), BalanceIndex.toMinor(delta), now));
+    }
+
+    //  Database holding an account (its shard when sharded)
+    DbConfig dbFor(String accNo) {
+        return accountDao.dbFor(accNo);
+    }
+
+    //  Every database this manager writes to
+    List<DbConfig> databases() {
+        return accountDao.databases();
+    }
+
+    //  Manager over N hash-sharded databases (see ShardRouter for configuration)
+    public static AccountManager sharded(ShardRouter router) {
+        return new AccountManager(new ShardedAccountDao(router), new ShardedTransactionDao(router));
+    }
+
+    // ------------------- HOT ACCOUNTS -------------------
+
+    /**
+     * Spread an account's balance over `slots` rows so concurrent credits don't queue on
+     * one accounts row (see SplitBalanceDao). For merchant / pool accounts.
+     */
+    public void enableHotAccount(String accNo, int slots) {
+        try {
+            splitBalances(accNo).enable(accNo, slots);
+            hotAccounts.put(accNo, Math.max(slots, hotAccounts.getOrDefault(accNo, 0)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Fold the slots back into the account row
+    public void disableHotAccount(String accNo) {
+        locks.withLock(accNo, () -> {
+            try {
+                splitBalances(accNo).disable(accNo);
+                hotAccounts.remove(accNo);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return null;
+        });
+    }
+
+    public boolean isHotAccount(String accNo) {
+        return hotAccounts.containsKey(accNo);
+    }
+
+    //  Re-read which accounts are hot (another instance may have enabled some)
+    public void refreshHotAccounts() {
+        Map<String, Integer> loaded = loadHotAccounts(accountDao);
+        hotAccounts.keySet().retainAll(loaded.keySet());
+        hotAccounts.putAll(loaded);
+    }
+
+    private static Map<String, Integer> loadHotAccounts(AccountDao accountDao) {
+        Map<String, Integer> loaded = new HashMap<>();
+        for (DbConfig db : accountDao.databases()) {
+            loaded.putAll(new SplitBalanceDao(db).loadHotAccounts());
+        }
+        return loaded;
+    }
+
+    private SplitBalanceDao splitBalances(String accNo) {
+        return new SplitBalanceDao(accountDao.dbFor(accNo));
+    }
+
+    //  Account with its full balance (base + slots for hot accounts)
+    private Account load(String accNo) {
+        Account a = accountDao.findByAccountNumber(accNo);
+        if (a != null && hotAccounts.containsKey(accNo)) {
+            BigDecimal total = splitBalances(accNo).totalBalance(accNo);
+            if (total != null) a.setBalance(total);
+        }
+        return a;
+    }
+
+    // ------------------- AUTHORIZATION HOLDS -------------------
+
+    /**
+     * Honour authorization holds (see AuthorizationHolds): withdrawals and transfers may then
+     * only use the available balance, balance - active holds. Creates the hold tables if
+     * missing. Every manager writing to accounts that can have holds must enable this.
+     */
+    public void enableHolds() {
+        for (DbConfig db : databases()) new HoldDao(db).ensureSchema();
+        holdsEnabled = true;
+    }
+
+    //  Balance minus active holds
+    public BigDecimal getAvailableBalance(String accNo) {
+        return getBalance(accNo).subtract(held(accNo));
+    }
+
+    private BigDecimal held(String accNo) {
+        return holdsEnabled ? holds(accNo).heldAmount(accNo) : BigDecimal.ZERO;
+    }
+
+    private HoldDao holds(String accNo) {
+        return new HoldDao(accountDao.dbFor(accNo));
+    }
+
+    //  Reserve amount against the available balance (same checks as a withdrawal)
+    Hold placeHold(String accNo, BigDecimal amount, String reference, Duration ttl) {
+        if (!holdsEnabled) throw new IllegalStateException("Authorization holds are not enabled");
+        return traced("placeHold", accNo, () -> {
+            if (!ValidationUtils.isPositiveAmount(amount))
+                throw new IllegalArgumentException("Invalid hold amount");
+            precheckDebit(accNo, amount);
+
+            return locks.withLock(accNo, () -> {
+                Account a = load(accNo);
+                if (a == null)
+                    throw new IllegalArgumentException("Account not found: " + accNo);
+
+                BigDecimal held = held(accNo);
+                if (a.getBalance().subtract(held).subtract(amount).compareTo(new BigDecimal("100")) < 0)
+                    throw new IllegalArgumentException("Insufficient available balance (₹" + held + " on hold, ₹100 minimum)");
+
+                //  The spend is authorized now, so this is when it counts against the limits
+                if (velocityLimiter != null)
+                    velocityLimiter.check(accNo, a.getAccountType(), amount);
+
+                LocalDateTime now = LocalDateTime.now();
+                Hold h = new Hold(accNo, amount, reference, now, now.plus(ttl));
+                try {
+                    holds(accNo).create(h);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    throw new IllegalStateException("Could not place hold", e);
+                }
+                recordVelocity(accNo, amount);
+                return h;
+            });
+        });
+    }
+
+    //  Debit a hold (all of it when amount is null); closing the hold and the debit commit together
+    TransactionRecord captureHold(String accNo, long holdId, BigDecimal amount) {
+        return traced("captureHold", accNo, () -> locks.withLock(accNo, () -> {
+            HoldDao dao = holds(accNo);
+            Hold h = dao.find(holdId);
+            if (h == null || !h.getAccountNumber().equals(accNo))
+                throw new IllegalArgumentException("Hold not found: " + holdId);
+            if (!h.isActive())
+                throw new IllegalArgumentException("Hold #" + holdId + " is already " + h.getStatus());
+            BigDecimal charge = amount == null ? h.getAmount() : amount;
+            if (!ValidationUtils.isPositiveAmount(charge) || charge.compareTo(h.getAmount()) > 0)
+                throw new IllegalArgumentException("Capture amount must be positive and at most the held ₹" + h.getAmount());
+
+            Account a = load(accNo);
+            if (a == null)
+                throw new IllegalArgumentException("Account not found: " + accNo);
+            accrue(a);
+            TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.WITHDRAW, accNo, null, charge, "Card");
+            inTransaction(() -> {
+                try {
+                    if (!dao.close(h, "CAPTURED")) // expired or released meanwhile
+                        throw new IllegalArgumentException("Hold #" + holdId + " is no longer active");
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not capture hold", e);
+                }
+                debit(a, charge, BigDecimal.ZERO); // already reserved: the minimum was checked when it was placed
+                save(tx);
+                indexDelta(accNo, charge.negate());
+                publish(BalanceEvent.Type.WITHDRAW, accNo, null, charge, null, tx.getId());
+            });
+            return tx;
+        }));
+    }
+
+    //  Give a hold back; false if it was not active (already captured, released or expired)
+    boolean releaseHold(String accNo, long holdId) {
+        HoldDao dao = holds(accNo);
+        Hold h = dao.find(holdId);
+        if (h == null || !h.getAccountNumber().equals(accNo)) return false;
+        try {
+            return dao.close(h, "RELEASED");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
     }
 
     //  Create account (used in BankingApp)
     public void createAccount(Account a) {
-        accountDao.createAccount(a);
+        traced("createAccount", a.getAccountNumber(), () -> {
+            if (accountDao.createAccount(a)) accountCreated(a);
+        });
     }
 
     //  Overloaded version (optional, used for other setups)
@@ -25,133 +397,601 @@ public class AccountManager {
         Account acc = new Account(accNo, name, email, balance);
         acc.setPassword(password);
         acc.setStatus(status);
-        accountDao.createAccount(acc);
+        if (accountDao.createAccount(acc)) accountCreated(acc);
+    }
+
+    //  The opening balance goes into the ledger too, so balance = sum of the account's transactions
+    private void accountCreated(Account a) {
+        AccountFilter filter = accountFilter;
+        if (filter != null) filter.add(a.getAccountNumber()); // now, not at commit: a rollback only leaves a false positive
+        BalanceIndex index = balanceIndex;
+        if (index != null) {
+            long balance = a.getBalance() == null ? 0 : BalanceIndex.toMinor(a.getBalance());
+            afterCommit(() -> index.put(BalanceIndex.key(a.getAccountNumber()), balance, 0, 0,
+                    System.currentTimeMillis() / 1000));
+        }
+        if (lazyInterest) {
+            try {
+                accruals(a.getAccountNumber()).save(a.getAccountNumber(), new InterestAccrual(BigDecimal.ZERO, LocalDateTime.now()));
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        logOpeningBalance(a);
+    }
+
+    private void logOpeningBalance(Account a) {
+        if (a.getBalance() == null || a.getBalance().signum() <= 0) return;
+        TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.DEPOSIT, null, a.getAccountNumber(),
+                a.getBalance(), TransactionRecord.OPENING_BALANCE);
+        save(tx);
+        publish(BalanceEvent.Type.DEPOSIT, a.getAccountNumber(), null, a.getBalance(), null, tx.getId());
     }
 
     //  Deposit logic
     public void deposit(String accNo, BigDecimal amount) {
-        if (!ValidationUtils.isPositiveAmount(amount))
-            throw new IllegalArgumentException("Invalid deposit amount");
+        traced("deposit", accNo, () -> {
+            if (!ValidationUtils.isPositiveAmount(amount))
+                throw new IllegalArgumentException("Invalid deposit amount");
 
-        Account a = accountDao.findByAccountNumber(accNo);
-        if (a == null)
-            throw new IllegalArgumentException("Account not found: " + accNo);
+            //  Hot account: atomic add to a random slot, no read-modify-write and no account lock
+            Integer slots = hotAccounts.get(accNo);
+            if (slots != null) {
+                splitBalances(accNo).credit(accNo, slots, amount);
+                TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.DEPOSIT, null, accNo, amount);
+                save(tx);
+                indexDelta(accNo, amount);
+                publish(BalanceEvent.Type.DEPOSIT, accNo, null, amount, null, tx.getId());
+                return;
+            }
 
-        a.setBalance(a.getBalance().add(amount));
-        accountDao.updateBalanceAndActivity(a);
+            locks.withLock(accNo, () -> {
+                Account a = accountDao.findByAccountNumber(accNo);
+                if (a == null)
+                    throw new IllegalArgumentException("Account not found: " + accNo);
+                accrue(a);
+
+                a.setBalance(a.getBalance().add(amount));
+                accountDao.updateBalanceAndActivity(a);
 
-        // Log deposit
-        TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.DEPOSIT, null, accNo, amount);
-        txDao.saveTransaction(tx);
+                // Log deposit
+                TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.DEPOSIT, null, accNo, amount);
+                save(tx);
+                indexDelta(accNo, amount);
+                publish(BalanceEvent.Type.DEPOSIT, accNo, null, amount, null, tx.getId());
+                return null;
+            });
+        });
     }
 
     //  Withdraw logic (with ₹100 minimum balance validation)
     public void withdraw(String accNo, BigDecimal amount) {
-        if (!ValidationUtils.isPositiveAmount(amount))
-            throw new IllegalArgumentException("Invalid withdrawal amount");
+        traced("withdraw", accNo, () -> {
+            if (!ValidationUtils.isPositiveAmount(amount))
+                throw new IllegalArgumentException("Invalid withdrawal amount");
+            precheckDebit(accNo, amount);
 
-        Account a = accountDao.findByAccountNumber(accNo);
-        if (a == null)
-            throw new IllegalArgumentException("Account not found: " + accNo);
+            locks.withLock(accNo, () -> {
+                Account a = load(accNo);
+                if (a == null)
+                    throw new IllegalArgumentException("Account not found: " + accNo);
+                accrue(a);
 
-        //  Minimum balance check: ₹100 must remain
-        BigDecimal minBalance = new BigDecimal("100");
-        if (a.getBalance().subtract(amount).compareTo(minBalance) < 0)
-            throw new IllegalArgumentException("You must maintain a minimum balance of ₹100");
+                //  Minimum balance check: ₹100 must remain, on top of any authorization holds
+                BigDecimal held = held(accNo);
+                BigDecimal minBalance = new BigDecimal("100").add(held);
+                if (a.getBalance().subtract(amount).compareTo(minBalance) < 0)
+                    throw new IllegalArgumentException(held.signum() > 0
+                            ? "Insufficient available balance (₹" + held + " on hold, ₹100 minimum)"
+                            : "You must maintain a minimum balance of ₹100");
 
-        if (a.getBalance().compareTo(amount) < 0)
-            throw new IllegalArgumentException("Insufficient balance");
+                if (a.getBalance().compareTo(amount) < 0)
+                    throw new IllegalArgumentException("Insufficient balance");
 
-        a.setBalance(a.getBalance().subtract(amount));
-        accountDao.updateBalanceAndActivity(a);
+                //  Velocity limits (per minute/hour/day) are checked before anything is written
+                if (velocityLimiter != null)
+                    velocityLimiter.check(accNo, a.getAccountType(), amount);
+
+                debit(a, amount, minBalance);
 
-        // Log withdrawal
-        TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.WITHDRAW, accNo, null, amount);
-        txDao.saveTransaction(tx);
+                // Log withdrawal
+                TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.WITHDRAW, accNo, null, amount);
+                save(tx);
+                recordVelocity(accNo, amount);
+                indexDelta(accNo, amount.negate());
+                publish(BalanceEvent.Type.WITHDRAW, accNo, null, amount, null, tx.getId());
+                return null;
+            });
+        });
     }
 
     //  Transfer logic
     public void transfer(String fromAccNo, String toAccNo, BigDecimal amount) {
+        traced("transfer", fromAccNo, () -> {
+            if (!ValidationUtils.isPositiveAmount(amount))
+                throw new IllegalArgumentException("Invalid transfer amount");
+            precheckDebit(fromAccNo, amount);
+
+            Supplier<Void> work = () -> {
+                applyTransfer(load(fromAccNo), load(toAccNo), amount);
+                return null;
+            };
+            //  Crediting a hot account needs no lock on it
+            if (hotAccounts.containsKey(toAccNo)) locks.withLock(fromAccNo, work);
+            else locks.withLocks(fromAccNo, toAccNo, work);
+        });
+    }
+
+    //  Run an action holding both accounts' locks (AsyncAccountManager loads the pair concurrently inside it)
+    <T> T withAccountsLocked(String a, String b, Supplier<T> action) {
+        return locks.withLocks(a, b, action);
+    }
+
+    //  True if the two accounts live on different shards (such transfers commit in phases)
+    boolean isCrossShard(String a, String b) {
+        return accountDao instanceof ShardedAccountDao sharded && !sharded.isSameShard(a, b);
+    }
+
+    //  Shard holding the account (0 when not sharded)
+    int shardOf(String accNo) {
+        return accountDao instanceof ShardedAccountDao sharded ? sharded.getRouter().shardOf(accNo) : 0;
+    }
+
+    //  Transfer between two freshly loaded accounts; caller holds both account locks
+    void applyTransfer(Account from, Account to, BigDecimal amount) {
         if (!ValidationUtils.isPositiveAmount(amount))
             throw new IllegalArgumentException("Invalid transfer amount");
 
-        Account from = accountDao.findByAccountNumber(fromAccNo);
-        Account to = accountDao.findByAccountNumber(toAccNo);
-
         if (from == null || to == null)
             throw new IllegalArgumentException("One or both accounts not found");
 
-        //  Minimum balance validation
-        BigDecimal minBalance = new BigDecimal("100");
+        String fromAccNo = from.getAccountNumber();
+        String toAccNo = to.getAccountNumber();
+        accrue(from);
+        accrue(to);
+
+        //  Minimum balance validation (held amounts are not available either)
+        BigDecimal held = held(fromAccNo);
+        BigDecimal minBalance = new BigDecimal("100").add(held);
         if (from.getBalance().subtract(amount).compareTo(minBalance) < 0)
-            throw new IllegalArgumentException("You must maintain a minimum balance of ₹100 after transfer");
+            throw new IllegalArgumentException(held.signum() > 0
+                    ? "Insufficient available balance (₹" + held + " on hold, ₹100 minimum)"
+                    : "You must maintain a minimum balance of ₹100 after transfer");
 
         if (from.getBalance().compareTo(amount) < 0)
             throw new IllegalArgumentException("Insufficient funds in source account");
 
-        from.setBalance(from.getBalance().subtract(amount));
-        to.setBalance(to.getBalance().add(amount));
+        if (velocityLimiter != null)
+            velocityLimiter.check(fromAccNo, from.getAccountType(), amount);
+
+        //  Accounts on different shards: durable two-phase debit/credit instead of two plain updates
+        if (accountDao instanceof ShardedAccountDao sharded && !sharded.isSameShard(fromAccNo, toAccNo)) {
+            if (hotAccounts.containsKey(fromAccNo)) splitBalances(fromAccNo).gather(fromAccNo); // phase 1 debits the row
+            TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.TRANSFER, fromAccNo, toAccNo, amount);
+            sharded.transferAcrossShards(tx, minBalance);
+            remember(tx);
+            recordVelocity(fromAccNo, amount);
+            indexDelta(fromAccNo, amount.negate());
+            indexDelta(toAccNo, amount);
+            publish(BalanceEvent.Type.TRANSFER, fromAccNo, toAccNo, amount, null, tx.getId());
+            return;
+        }
 
-        accountDao.updateBalanceAndActivity(from);
-        accountDao.updateBalanceAndActivity(to);
+        debit(from, amount, minBalance);
+        credit(to, amount);
 
         // Log transfer
         TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.TRANSFER, fromAccNo, toAccNo, amount);
-        txDao.saveTransaction(tx);
+        save(tx);
+        recordVelocity(fromAccNo, amount);
+        indexDelta(fromAccNo, amount.negate());
+        indexDelta(toAccNo, amount);
+        publish(BalanceEvent.Type.TRANSFER, fromAccNo, toAccNo, amount, null, tx.getId());
+    }
+
+    //  Debit a freshly loaded account; hot accounts draw from their slots
+    private void debit(Account a, BigDecimal amount, BigDecimal minBalance) {
+        if (hotAccounts.containsKey(a.getAccountNumber())) {
+            if (splitBalances(a.getAccountNumber()).debit(a.getAccountNumber(), amount, minBalance) == null)
+                throw new IllegalArgumentException("You must maintain a minimum balance of ₹100");
+            return;
+        }
+        a.setBalance(a.getBalance().subtract(amount));
+        accountDao.updateBalanceAndActivity(a);
+    }
+
+    private void credit(Account a, BigDecimal amount) {
+        Integer slots = hotAccounts.get(a.getAccountNumber());
+        if (slots != null) {
+            splitBalances(a.getAccountNumber()).credit(a.getAccountNumber(), slots, amount);
+            return;
+        }
+        a.setBalance(a.getBalance().add(amount));
+        accountDao.updateBalanceAndActivity(a);
     }
 
     //  Fetch account by account number
     public Account getAccount(String accNo) {
-        return accountDao.findByAccountNumber(accNo);
+        return traced("getAccount", accNo, () -> hedged(() -> load(accNo)));
     }
 
     //  Log transaction (used by BankingApp)
     public void logTransaction(TransactionRecord tx) {
-        txDao.saveTransaction(tx);
+        save(tx);
     }
 
-    //  Apply monthly interest (optional feature)
+    //  Apply monthly interest for the month that just ended (optional feature)
     public void applyMonthlyInterest() {
-        List<Account> accounts = accountDao.listAllAccounts();
-        BigDecimal monthlyRate = new BigDecimal("0.005"); // 0.5% per month
+        applyMonthlyInterest(YearMonth.now().minusMonths(1));
+    }
+
+    //  0.5% on the month's average daily balance (read from daily summaries, not the raw ledger)
+    public void applyMonthlyInterest(YearMonth month) {
+        traced("applyMonthlyInterest", null, () -> Workload.runBatch(() -> {
+            //  Lazy accrual: only accounts nobody has touched since the month ended still need posting
+            if (lazyInterest) postUntouchedInterest(month.plusMonths(1).atDay(1).atStartOfDay());
+            List<Account> accounts = lazyInterest ? loadHotAccounts() : listAllAccounts(); // full balances for hot accounts
+
+            for (Account a : accounts) creditMonthlyInterest(a.getAccountNumber(), month);
+        }));
+    }
+
+    //  Under the account lock, re-read: creditMonthlyInterest writes an absolute balance
+    private void creditMonthlyInterest(String accNo, YearMonth month) {
+        locks.withLock(accNo, () -> {
+            Account a = load(accNo);
+            if (a != null) creditMonthlyInterest(a, month);
+            return null;
+        });
+    }
+
+    private void creditMonthlyInterest(Account a, YearMonth month) {
+        BigDecimal base = txDao.averageDailyBalance(a.getAccountNumber(), month);
+        if (base == null) base = a.getBalance(); // no activity history: balance never moved
+        BigDecimal interest = base.multiply(InterestAccrual.MONTHLY_RATE) // 0.5% per month
+                .setScale(2, RoundingMode.HALF_EVEN); // what the balance and ledger columns can hold
+        credit(a, interest);
+
+        TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.DEPOSIT, null, a.getAccountNumber(), interest);
+        save(tx);
+        indexDelta(a.getAccountNumber(), interest);
+        publish(BalanceEvent.Type.DEPOSIT, a.getAccountNumber(), null, interest, null, tx.getId());
+    }
+
+    //  One account's share of applyMonthlyInterest(month) (ClusterJobs runs it exactly once per account)
+    void applyMonthlyInterest(String accNo, YearMonth month) {
+        if (lazyInterest && !hotAccounts.containsKey(accNo)) {
+            InterestAccrual state = accruals(accNo).find(accNo);
+            if (state != null && !state.getAsOf().isBefore(month.plusMonths(1).atDay(1).atStartOfDay())) return; // touched since
+            locks.withLock(accNo, () -> {
+                Account a = load(accNo);
+                if (a != null) accrue(a);
+                return null;
+            });
+            return;
+        }
+        creditMonthlyInterest(accNo, month);
+    }
+
+    /**
+     * Accrue interest lazily instead of crediting every account once a month: each balance
+     * change first folds in the interest earned since the previous one (InterestAccrual), and
+     * a month's interest is posted when the account is next touched, so applyMonthlyInterest
+     * only has the accounts nobody touched left to post. Accounts start accruing now. Hot
+     * accounts, whose credits skip the account lock, keep the month-end average-balance credit.
+     */
+    public void enableLazyInterest() {
+        LocalDateTime now = LocalDateTime.now();
+        for (DbConfig db : databases()) {
+            AccrualDao dao = new AccrualDao(db);
+            dao.ensureSchema();
+            dao.initialize(now);
+        }
+        lazyInterest = true;
+    }
+
+    private AccrualDao accruals(String accNo) {
+        return new AccrualDao(accountDao.dbFor(accNo));
+    }
 
-        for (Account a : accounts) {
-            BigDecimal interest = a.getBalance().multiply(monthlyRate);
-            a.setBalance(a.getBalance().add(interest));
-            accountDao.updateBalanceAndActivity(a);
+    //  Bring a freshly loaded account's interest up to now before its balance changes; caller holds its lock
+    private void accrue(Account a) {
+        String accNo = a.getAccountNumber();
+        if (!lazyInterest || hotAccounts.containsKey(accNo)) return;
+        AccrualDao dao = accruals(accNo);
+        LocalDateTime now = LocalDateTime.now();
+        InterestAccrual state = dao.find(accNo);
+        if (state == null) state = new InterestAccrual(BigDecimal.ZERO, now); // created by someone else: starts now
+        InterestAccrual folded = state;
+        BigDecimal interest = folded.fold(a.getBalance(), now);
+        inTransaction(() -> {
+            if (interest.signum() > 0) {
+                credit(a, interest);
+                TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.DEPOSIT, null, accNo, interest, "Interest");
+                save(tx);
+                indexDelta(accNo, interest);
+                publish(BalanceEvent.Type.DEPOSIT, accNo, null, interest, null, tx.getId());
+            }
+            try {
+                dao.save(accNo, folded);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not save interest accrual for " + accNo, e);
+            }
+        });
+    }
 
-            TransactionRecord tx = new TransactionRecord(TransactionRecord.TxType.DEPOSIT, null, a.getAccountNumber(), interest);
-            txDao.saveTransaction(tx);
+    //  Interest from ended months not posted yet (getBalance includes it without writing anything)
+    private BigDecimal interestOwed(String accNo, BigDecimal balance) {
+        if (!lazyInterest || hotAccounts.containsKey(accNo)) return BigDecimal.ZERO;
+        InterestAccrual state = accruals(accNo).find(accNo);
+        return state == null ? BigDecimal.ZERO : state.owed(balance, LocalDateTime.now());
+    }
+
+    //  Post for every account whose accrual stopped before monthEnd (i.e. untouched since)
+    private void postUntouchedInterest(LocalDateTime monthEnd) {
+        for (DbConfig db : databases()) {
+            new AccrualDao(db).forEachStaleSince(monthEnd, accNo -> {
+                try {
+                    locks.withLock(accNo, () -> {
+                        Account a = load(accNo);
+                        if (a != null) accrue(a);
+                        return null;
+                    });
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // one bad account doesn't stop the sweep
+                }
+            });
+        }
+    }
+
+    private List<Account> loadHotAccounts() {
+        List<Account> accounts = new ArrayList<>();
+        for (String accNo : hotAccounts.keySet()) {
+            Account a = load(accNo);
+            if (a != null) accounts.add(a);
         }
+        return accounts;
     }
 
     //  Flag inactive accounts (optional)
     public void flagInactiveAccounts() {
-        List<Account> accounts = accountDao.listAllAccounts();
-        LocalDate today = LocalDate.now();
+        Workload.runBatch(() -> {
+            List<Account> accounts = accountDao.listAllAccounts();
+            LocalDate today = LocalDate.now();
 
-        for (Account a : accounts) {
-            LocalDateTime last = accountDao.getLastActivity(a.getAccountNumber());
-            if (last != null && ChronoUnit.DAYS.between(last.toLocalDate(), today) > 365) {
-                a.setStatus("INACTIVE");
-                accountDao.updateAccountStatus(a);
-            }
+            for (Account a : accounts) flagIfInactive(a, today);
+        });
+    }
+
+    //  One account's share of flagInactiveAccounts (ClusterJobs)
+    void flagIfInactive(String accNo, LocalDate today) {
+        Account a = accountDao.findByAccountNumber(accNo);
+        if (a != null) flagIfInactive(a, today);
+    }
+
+    private void flagIfInactive(Account a, LocalDate today) {
+        if (hotAccounts.containsKey(a.getAccountNumber())) return; // credits to slots don't touch last_activity
+        LocalDateTime last = accountDao.getLastActivity(a.getAccountNumber());
+        if (last != null && ChronoUnit.DAYS.between(last.toLocalDate(), today) > 365) {
+            a.setStatus("INACTIVE");
+            accountDao.updateAccountStatus(a);
+            indexFlag(a.getAccountNumber(), BalanceIndex.FLAG_INACTIVE);
+            publish(BalanceEvent.Type.STATUS_CHANGE, a.getAccountNumber(), null, null, "INACTIVE", null);
         }
     }
 
     //  List all accounts (used in console and tests)
     public List<Account> listAllAccounts() {
-        return accountDao.listAllAccounts();
+        List<Account> accounts = accountDao.listAllAccounts();
+        if (!hotAccounts.isEmpty()) {
+            for (Account a : accounts) {
+                if (!hotAccounts.containsKey(a.getAccountNumber())) continue;
+                BigDecimal total = splitBalances(a.getAccountNumber()).totalBalance(a.getAccountNumber());
+                if (total != null) a.setBalance(total);
+            }
+        }
+        return accounts;
     }
 
     //  Delete account by account number
     public void deleteAccount(String accNo) {
-        accountDao.deleteAccount(accNo);
+        traced("deleteAccount", accNo, () -> {
+            if (hotAccounts.containsKey(accNo)) disableHotAccount(accNo); // don't leave orphaned slots
+            boolean deleted = accountDao.deleteAccount(accNo);
+            AccountFilter filter = accountFilter;
+            if (deleted && filter != null) afterCommit(() -> filter.remove(accNo));
+            if (lazyInterest) accruals(accNo).delete(accNo);
+            afterCommit(() -> recentTx.invalidate(accNo));
+            BalanceIndex index = balanceIndex;
+            if (index != null) afterCommit(() -> index.remove(BalanceIndex.key(accNo)));
+            publish(BalanceEvent.Type.STATUS_CHANGE, accNo, null, null, "CLOSED", null);
+        });
+    }
+
+    //  Lock the account (e.g. after repeated wrong PINs) and announce the lockout
+    public void lockAccount(String accNo) {
+        accountDao.lockAccount(accNo);
+        indexFlag(accNo, BalanceIndex.FLAG_LOCKED);
+        publish(BalanceEvent.Type.LOCKOUT, accNo, null, null, null, null);
+    }
+
+    //  Run an operation inside a JFR banking.Operation event (no-op unless a recording enables it);
+    //  interactive single-account operations also run under the operation deadline
+    private void traced(String operation, String accNo, Runnable body) {
+        traced(operation, accNo, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    private <T> T traced(String operation, String accNo, Supplier<T> body) {
+        DbTracing.OperationEvent event = DbTracing.begin(operation, accNo);
+        boolean interactive = Workload.current() == Workload.Kind.INTERACTIVE;
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            //  Batch work is paced by Workload instead: a deadline would count its throttling as slowness
+            T result = accNo == null || !interactive ? body.get() : Deadline.within(operation, operationTimeout, body);
+            ok = true;
+            return result;
+        } finally {
+            DbTracing.end(event, ok);
+            if (accNo != null && interactive) Workload.recordInteractive(System.nanoTime() - start); // drives the batch limit
+        }
     }
 
-    //  Show mini statement (list of recent transactions)
+    //  Read-only lookup, hedged on a second connection if it is slow (see setHedgeDelay)
+    private <T> T hedged(Supplier<T> read) {
+        Duration delay = hedgeDelay;
+        if (delay == null || GroupCommit.current() != null) return read.get(); // a group's reads must use its connection
+        if (Workload.current() == Workload.Kind.BATCH) return read.get(); // batch work doesn't buy latency with extra load
+        Deadline deadline = Deadline.current();
+        HedgedRead<T> hedge = new HedgedRead<>(read, deadline);
+        hedge.launch();
+        try {
+            try {
+                return hedge.result.get(delay.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                hedge.launch(); // slow: ask again on another connection
+            }
+            if (deadline == null) return hedge.result.get();
+            return hedge.result.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw deadline.expired(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted while waiting for the database", e);
+        }
+    }
+
+    //  Up to two attempts at one read; the first answer wins, an error only once both failed
+    private static final class HedgedRead<T> implements Runnable {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Supplier<T> read;
+        private final Deadline deadline;
+        private final AtomicInteger launched = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        HedgedRead(Supplier<T> read, Deadline deadline) {
+            this.read = read;
+            this.deadline = deadline;
+        }
+
+        void launch() {
+            if (launched.getAndIncrement() < 2) HEDGE_POOL.execute(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(Deadline.bind(deadline, read));
+            } catch (RuntimeException e) {
+                if (failed.incrementAndGet() >= 2) result.completeExceptionally(e);
+                else launch(); // first attempt failed: don't wait for the hedge delay
+            }
+        }
+    }
+
+    //  Events are only published for committed work: inside a batch group they wait for the group commit
+    private void publish(BalanceEvent.Type type, String accNo, String counterparty,
+                         BigDecimal amount, String status, TxId txId) {
+        BalanceEventBus bus = eventBus;
+        if (bus != null) publishCommitted(bus, type, accNo, counterparty, amount, status, txId);
+    }
+
+    //  Outside a group nothing is deferred, so no capturing lambda is allocated (BalanceEventBusTest)
+    static void publishCommitted(BalanceEventBus bus, BalanceEvent.Type type, String accNo, String counterparty,
+                                 BigDecimal amount, String status, TxId txId) {
+        GroupCommit group = GroupCommit.current();
+        if (group == null) bus.publish(type, accNo, counterparty, amount, status, txId);
+        else group.afterCommit(() -> bus.publish(type, accNo, counterparty, amount, status, txId));
+    }
+
+    //  A spend counts against the velocity limits only once it has committed
+    private void recordVelocity(String accNo, BigDecimal amount) {
+        VelocityLimiter limiter = velocityLimiter;
+        if (limiter != null) afterCommit(() -> limiter.record(accNo, amount));
+    }
+
+    //  Ledger write; the recent-transactions cache sees it once it has committed
+    private void save(TransactionRecord tx) {
+        if (txDao.saveTransaction(tx)) remember(tx);
+    }
+
+    private void remember(TransactionRecord tx) {
+        afterCommit(() -> recentTx.record(tx));
+    }
+
+    //  Run writes as one database transaction: inside the caller's batch group, else a group of their own
+    private static void inTransaction(Runnable work) {
+        if (GroupCommit.current() != null) {
+            work.run();
+            return;
+        }
+        try (GroupCommit group = GroupCommit.begin()) {
+            group.mark();
+            work.run();
+            if (group.rollbackRequested()) throw new IllegalStateException("Operation rolled back");
+            group.commit();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Commit failed", e);
+        }
+    }
+
+    //  Run now, or when the calling thread's batch group commits
+    private static void afterCommit(Runnable action) {
+        GroupCommit group = GroupCommit.current();
+        if (group != null) group.afterCommit(action);
+        else action.run();
+    }
+
+    //  Balance as it stood at a past moment (audits, disputes), from checkpoints + the ledger tail after them
+    public BigDecimal balanceAsOf(String accNo, LocalDateTime at) {
+        return traced("balanceAsOf", accNo, () -> txDao.balanceAsOf(accNo, at));
+    }
+
+    //  Full statement (all transactions for the account, newest first)
+    public List<TransactionRecord> getStatement(String accNo) {
+        return txDao.getTransactionsByAccount(accNo);
+    }
+
+    //  Statement for a period (from inclusive, to exclusive), spanning archived months if needed
+    public List<TransactionRecord> getStatement(String accNo, LocalDateTime from, LocalDateTime to) {
+        return txDao.getTransactionsByAccount(accNo, from, to);
+    }
+
+    //  Statement from the account's postings: each line with the running balance after it, newest first
+    public List<Posting> getPostingStatement(String accNo, LocalDateTime from, LocalDateTime to) {
+        return traced("getPostingStatement", accNo, () -> txDao.getPostings(accNo, from, to));
+    }
+
+    //  Balance of the account right after one of its transactions (disputes); null if unknown
+    public BigDecimal balanceAfter(String accNo, TxId txId) {
+        return traced("balanceAfter", accNo, () -> txDao.balanceAfter(accNo, txId));
+    }
+
+    //  Newest n transactions (n <= 10), from memory for recently used accounts
+    public List<TransactionRecord> getRecentTransactions(String accNo, int n) {
+        return recentTx.recent(accNo, n);
+    }
+
+    //  Cache loader: newest n from the hot table, falling back to the archive-aware query for quiet accounts
+    private List<TransactionRecord> loadRecent(String accNo, int n) {
+        List<TransactionRecord> list = txDao.fetchLastNForAccount(accNo, n);
+        if (list.size() < n && txDao.getArchive() != null) {
+            List<TransactionRecord> all = txDao.getTransactionsByAccount(accNo);
+            list = all.size() <= n ? all : new ArrayList<>(all.subList(0, n));
+        }
+        return list;
+    }
+
+    //  Show mini statement (last 5 transactions)
     public void showMiniStatement(String accNo) {
-        List<TransactionRecord> transactions = txDao.getTransactionsByAccount(accNo);
+        List<TransactionRecord> transactions = getRecentTransactions(accNo, MINI_STATEMENT_SIZE);
         System.out.println("\nMini Statement for Account: " + accNo);
         if (transactions.isEmpty()) {
             System.out.println("No recent transactions found.");
@@ -162,18 +1002,53 @@ public class AccountManager {
         }
     }
 
+    //  Month summary (opening, closing, totals, counts) from at most ~31 summary rows
+    public DailySummary getMonthlySummary(String accNo, YearMonth month) {
+        List<DailySummary> days = txDao.getDailySummaries(accNo, month.atDay(1), month.atEndOfMonth());
+        if (days.isEmpty()) return null;
+        DailySummary total = days.get(0);
+        for (int i = 1; i < days.size(); i++) {
+            total.merge(days.get(i));
+        }
+        return total;
+    }
+
+    //  Month-end statement: one summary line per active day plus the month total
+    public void showMonthlyStatement(String accNo, YearMonth month) {
+        List<DailySummary> days = txDao.getDailySummaries(accNo, month.atDay(1), month.atEndOfMonth());
+        System.out.println("\nStatement for Account: " + accNo + " (" + month + ")");
+        if (days.isEmpty()) {
+            System.out.println("No transactions this month.");
+            return;
+        }
+        for (DailySummary d : days) {
+            System.out.println(d);
+        }
+        System.out.println("Month total: " + getMonthlySummary(accNo, month));
+    }
+
     //  NEW — Get current balance
     public BigDecimal getBalance(String accNo) {
-        Account a = accountDao.findByAccountNumber(accNo);
-        if (a == null) {
-            throw new IllegalArgumentException("Account not found: " + accNo);
-        }
-        return a.getBalance();
+        return traced("getBalance", accNo, () -> {
+            BalanceIndex index = balanceIndex;
+            if (index != null) {
+                long minor = index.getBalance(BalanceIndex.key(accNo));
+                if (minor != BalanceIndex.MISSING) {
+                    BigDecimal balance = BalanceIndex.fromMinor(minor);
+                    return balance.add(interestOwed(accNo, balance));
+                }
+            }
+            Account a = hedged(() -> load(accNo));
+            if (a == null) {
+                throw new IllegalArgumentException("Account not found: " + accNo);
+            }
+            return a.getBalance().add(interestOwed(accNo, a.getBalance()));
+        });
     }
 
     //  NEW — Verify PIN (for secure access)
     public boolean verifyPin(String accNo, String enteredPin) {
-        Account a = accountDao.findByAccountNumber(accNo);
+        Account a = traced("verifyPin", accNo, () -> hedged(() -> accountDao.findByAccountNumber(accNo)));
         if (a == null) {
             System.out.println(" Account not found: " + accNo);
             return false;
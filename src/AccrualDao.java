@@ -0,0 +1,106 @@
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Per-account interest accrual state (see InterestAccrual) in one database.
+ * as_of is indexed so the month-end sweep reads only the accounts nobody has touched since.
+ */
+public class AccrualDao {
+
+    static final String ACCRUAL_DDL =
+            "CREATE TABLE IF NOT EXISTS interest_accrual (" +
+            " account_number VARCHAR(20) PRIMARY KEY," +
+            " accrued DECIMAL(19,8) NOT NULL DEFAULT 0," + // earned, not yet posted
+            " as_of DATETIME NOT NULL," +                  // last balance change / computation
+            " INDEX idx_accrual_as_of (as_of))";
+
+    private final DbConfig db;
+
+    public AccrualDao(DbConfig db) {
+        this.db = db;
+    }
+
+    public void ensureSchema() {
+        try {
+            Schema.execute(db, ACCRUAL_DDL);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Start accruing at `from` for every account that has no state yet (one statement); returns how many
+    public int initialize(LocalDateTime from) {
+        String sql = "INSERT INTO interest_accrual (account_number, accrued, as_of) " +
+                "SELECT a.account_number, 0, ? FROM accounts a " +
+                "WHERE NOT EXISTS (SELECT 1 FROM interest_accrual i WHERE i.account_number = a.account_number)";
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(from));
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    public InterestAccrual find(String accNum) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT accrued, as_of FROM interest_accrual WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new InterestAccrual(rs.getBigDecimal(1), rs.getTimestamp(2).toLocalDateTime()) : null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    //  Insert or overwrite an account's state
+    public void save(String accNum, InterestAccrual state) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE interest_accrual SET accrued = ?, as_of = ? WHERE account_number = ?")) {
+                ps.setBigDecimal(1, state.getAccrued());
+                ps.setTimestamp(2, Timestamp.valueOf(state.getAsOf()));
+                ps.setString(3, accNum);
+                if (ps.executeUpdate() > 0) return;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO interest_accrual (account_number, accrued, as_of) VALUES (?, ?, ?)")) {
+                ps.setString(1, accNum);
+                ps.setBigDecimal(2, state.getAccrued());
+                ps.setTimestamp(3, Timestamp.valueOf(state.getAsOf()));
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    //  Stream the accounts whose state was last brought up to date before `before`
+    public void forEachStaleSince(LocalDateTime before, Consumer<String> action) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT account_number FROM interest_accrual WHERE as_of < ?",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+            ps.setTimestamp(1, Timestamp.valueOf(before));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) action.accept(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void delete(String accNum) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM interest_accrual WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
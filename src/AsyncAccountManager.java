@@ -0,0 +1,163 @@
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * CompletableFuture facade over {@link AccountManager}.
+ *
+ * Operations run on an executor (a virtual thread per operation by default) with at
+ * most maxInFlight of them talking to the database at once; callers can pipeline many
+ * operations instead of paying JDBC latency serially. A transfer loads both accounts
+ * concurrently: one on its own thread, the other on a lookup thread that never waits for
+ * the executor, so any executor size is safe.
+ *
+ * Every method has an overload taking a timeout. Timing out or cancelling the returned
+ * future stops an operation that has not started yet; one that already started its
+ * writes is left to finish so no half-applied transfer is abandoned.
+ */
+public class AsyncAccountManager implements AutoCloseable {
+
+    private static final int PENDING = 0, RUNNING = 1, CANCELLED = 2;
+
+    private final AccountManager manager;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Semaphore inFlight;
+
+    //  Second account lookup of a transfer (at most one per transfer in flight; idle threads exit after a minute)
+    private final ExecutorService lookups = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "async-lookup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //  Virtual thread per task, at most 64 operations in flight
+    public AsyncAccountManager(AccountManager manager) {
+        this(manager, Executors.newVirtualThreadPerTaskExecutor(), 64, true);
+    }
+
+    public AsyncAccountManager(AccountManager manager, ExecutorService executor, int maxInFlight) {
+        this(manager, executor, maxInFlight, false);
+    }
+
+    private AsyncAccountManager(AccountManager manager, ExecutorService executor, int maxInFlight, boolean ownsExecutor) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1");
+        this.manager = manager;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    // ------------------- OPERATIONS -------------------
+    public CompletableFuture<Void> depositAsync(String accNo, BigDecimal amount) {
+        return submit(() -> { manager.deposit(accNo, amount); return null; });
+    }
+
+    public CompletableFuture<Void> depositAsync(String accNo, BigDecimal amount, Duration timeout) {
+        return withTimeout(depositAsync(accNo, amount), timeout);
+    }
+
+    public CompletableFuture<Void> withdrawAsync(String accNo, BigDecimal amount) {
+        return submit(() -> { manager.withdraw(accNo, amount); return null; });
+    }
+
+    public CompletableFuture<Void> withdrawAsync(String accNo, BigDecimal amount, Duration timeout) {
+        return withTimeout(withdrawAsync(accNo, amount), timeout);
+    }
+
+    //  Both accounts are locked, then looked up in parallel (not on the executor: its threads may all be
+    //  transfers holding locks), then the transfer is applied
+    public CompletableFuture<Void> transferAsync(String fromAccNo, String toAccNo, BigDecimal amount) {
+        return submit(() -> manager.withAccountsLocked(fromAccNo, toAccNo, () -> {
+            CompletableFuture<Account> to = CompletableFuture.supplyAsync(() -> manager.getAccount(toAccNo), lookups);
+            Account from = manager.getAccount(fromAccNo);
+            manager.applyTransfer(from, join(to), amount);
+            return null;
+        }));
+    }
+
+    public CompletableFuture<Void> transferAsync(String fromAccNo, String toAccNo, BigDecimal amount, Duration timeout) {
+        return withTimeout(transferAsync(fromAccNo, toAccNo, amount), timeout);
+    }
+
+    public CompletableFuture<BigDecimal> getBalanceAsync(String accNo) {
+        return submit(() -> manager.getBalance(accNo));
+    }
+
+    public CompletableFuture<BigDecimal> getBalanceAsync(String accNo, Duration timeout) {
+        return withTimeout(getBalanceAsync(accNo), timeout);
+    }
+
+    public CompletableFuture<List<TransactionRecord>> getStatementAsync(String accNo) {
+        return submit(() -> manager.getStatement(accNo));
+    }
+
+    public CompletableFuture<List<TransactionRecord>> getStatementAsync(String accNo, Duration timeout) {
+        return withTimeout(getStatementAsync(accNo), timeout);
+    }
+
+    // ------------------- PLUMBING -------------------
+
+    //  Run on the executor under the in-flight limit, honouring cancellation until the work starts
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger state = new AtomicInteger(PENDING);
+
+        Future<?> task = executor.submit(() -> {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                result.completeExceptionally(new CancellationException("Cancelled while queued"));
+                return;
+            }
+            try {
+                if (!state.compareAndSet(PENDING, RUNNING)) return; // cancelled or timed out while queued
+                result.complete(work.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                inFlight.release();
+            }
+        });
+
+        result.whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if ((cause instanceof CancellationException || cause instanceof TimeoutException)
+                    && state.compareAndSet(PENDING, CANCELLED)) {
+                task.cancel(true); // only interrupts a task still waiting for a permit
+            }
+        });
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, Duration timeout) {
+        return future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    //  join() that rethrows the operation's own exception (e.g. IllegalArgumentException)
+    private static <T> T join(CompletableFuture<T> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) executor.shutdown();
+        lookups.shutdown();
+    }
+}
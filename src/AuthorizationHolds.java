@@ -0,0 +1,175 @@
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Card-style pre-authorizations: reserve an amount now, capture (debit) or release it
+ * later; holds nobody captures or releases expire on their own.
+ *
+ * A hold lowers the account's available balance (balance - active holds), which is what
+ * withdrawals and transfers are checked against from then on; the balance itself only
+ * changes on capture. Placing and capturing run under the account's lock like any other
+ * debit, and each is one hold row plus one held-total row (see HoldDao).
+ *
+ * Expiry: every active hold sits in a {@link TimingWheel} at its expiry time, so a tick
+ * only touches holds that are actually due, and those are expired in batches of one
+ * transaction per database. Holds placed by another process are picked up at start().
+ */
+public class AuthorizationHolds implements AutoCloseable {
+
+    private final AccountManager manager;
+    private final List<DbConfig> databases;
+    private final List<HoldDao> daos = new ArrayList<>();
+    private final TimingWheel<Due> wheel;
+    private final int batchSize;
+    private ScheduledExecutorService timer;
+
+    //  Wheel entry; the Hold carries everything closing it needs
+    private static final class Due {
+        final int db;
+        final Hold hold;
+
+        Due(int db, Hold hold) {
+            this.db = db;
+            this.hold = hold;
+        }
+    }
+
+    public AuthorizationHolds(AccountManager manager) {
+        this(manager, 1_000, 500);
+    }
+
+    public AuthorizationHolds(AccountManager manager, long tickMillis, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.manager = manager;
+        this.databases = manager.databases();
+        this.batchSize = batchSize;
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+        manager.enableHolds();
+        for (DbConfig db : databases) daos.add(new HoldDao(db));
+    }
+
+    //  Load every active hold and start expiring on a background thread
+    public synchronized void start() {
+        if (timer != null) return;
+        int loaded = 0;
+        for (int d = 0; d < daos.size(); d++) {
+            int db = d;
+            int[] n = new int[1];
+            daos.get(d).forEachActive(h -> {
+                schedule(db, h);
+                n[0]++;
+            });
+            loaded += n[0];
+        }
+        System.out.println(" Active holds scheduled for expiry: " + loaded);
+
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hold-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = wheel.getTickMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // keep expiring
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.shutdown();
+            timer = null;
+        }
+    }
+
+    // ------------------- HOLDS -------------------
+
+    //  Reserve amount on the account until captured, released or ttl has passed
+    public Hold place(String accNo, BigDecimal amount, String reference, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) throw new IllegalArgumentException("Hold lifetime must be positive");
+        Hold h = manager.placeHold(accNo, amount, reference, ttl);
+        synchronized (this) {
+            if (timer != null) schedule(databases.indexOf(manager.dbFor(accNo)), h); // otherwise start() loads it
+        }
+        return h;
+    }
+
+    //  Debit the held amount, or less (null = all of it); the rest of the hold is released
+    public TransactionRecord capture(String accNo, long holdId, BigDecimal amount) {
+        return manager.captureHold(accNo, holdId, amount);
+    }
+
+    //  Give the held amount back to the available balance; false if the hold is no longer active
+    public boolean release(String accNo, long holdId) {
+        return manager.releaseHold(accNo, holdId);
+    }
+
+    public List<Hold> activeHolds(String accNo) {
+        return dao(accNo).findActiveByAccount(accNo);
+    }
+
+    public BigDecimal availableBalance(String accNo) {
+        return manager.getAvailableBalance(accNo);
+    }
+
+    private HoldDao dao(String accNo) {
+        return daos.get(databases.indexOf(manager.dbFor(accNo)));
+    }
+
+    private void schedule(int db, Hold h) {
+        long due = h.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        synchronized (wheel) {
+            wheel.schedule(new Due(db, h), due);
+        }
+    }
+
+    // ------------------- EXPIRY -------------------
+
+    //  Expire every hold due up to nowMillis; returns how many were still active
+    int tick(long nowMillis) {
+        List<List<Hold>> due = new ArrayList<>();
+        for (int d = 0; d < databases.size(); d++) due.add(new ArrayList<>());
+        synchronized (wheel) {
+            wheel.advance(nowMillis, e -> due.get(e.db).add(e.hold));
+        }
+
+        int expired = 0;
+        for (int d = 0; d < due.size(); d++) {
+            List<Hold> holds = due.get(d);
+            for (int from = 0; from < holds.size(); from += batchSize) {
+                List<Hold> batch = holds.subList(from, Math.min(from + batchSize, holds.size()));
+                try {
+                    expired += daos.get(d).closeAll(batch, "EXPIRED"); // captured/released ones are skipped
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    long retry = nowMillis + wheel.getTickMillis();
+                    synchronized (wheel) {
+                        for (Hold h : batch) wheel.schedule(new Due(d, h), retry);
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+
+    //  Run hold expiry as a service: java AuthorizationHolds
+    public static void main(String[] args) throws InterruptedException {
+        AccountManager manager = ShardRouter.isConfigured()
+                ? AccountManager.sharded(ShardRouter.fromSystemProperties())
+                : new AccountManager();
+        AuthorizationHolds holds = new AuthorizationHolds(manager);
+        holds.start();
+        Thread.currentThread().join();
+    }
+}
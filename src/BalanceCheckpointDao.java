@@ -0,0 +1,162 @@
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Intraday balance checkpoints (balance_checkpoints), for point-in-time balance queries.
+ *
+ * Every EVERY-th ledger row of an account on a day records the account's balance right
+ * after that row. Together with the daily summaries (one closing balance per active day)
+ * a balance at time T starts from the nearest checkpoint or day start at or before T and
+ * adds fewer than EVERY ledger rows, however long the account's history is.
+ *
+ * Like the summaries, checkpoints are maintained inside the transaction that inserts the
+ * ledger row (DailySummaryDao.apply), and a row inserted or removed out of order moves
+ * every later checkpoint by its amount. Ledger order is tx_id order (TxIds are time-ordered).
+ */
+public class BalanceCheckpointDao {
+
+    //  Ledger rows per account and day between two checkpoints
+    static final int EVERY = Integer.getInteger("banking.checkpoint.every", 100);
+
+    static final String CHECKPOINTS_DDL =
+            "CREATE TABLE IF NOT EXISTS balance_checkpoints (" +
+            " account_number VARCHAR(20) NOT NULL," +
+            " tx_id BINARY(16) NOT NULL," +           // ledger row the balance includes, and every row before it
+            " as_of TIMESTAMP NOT NULL," +            // that row's created_at
+            " balance DECIMAL(15,2) NOT NULL," +
+            " PRIMARY KEY (account_number, tx_id)," +
+            " INDEX idx_cp_as_of (account_number, as_of))";
+
+    private BalanceCheckpointDao() {} // Prevent instantiation
+
+    // ------------------- MAINTENANCE -------------------
+
+    //  One side of a ledger row was just folded into the account's day row (sign -1: removed)
+    static void apply(Connection conn, String accNum, LocalDate day, TransactionRecord tx,
+                      BigDecimal signedDelta, int sign) throws SQLException {
+        byte[] id = tx.getId().toBytes();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE balance_checkpoints SET balance = balance + ? WHERE account_number = ? AND tx_id > ?")) {
+            ps.setBigDecimal(1, signedDelta);
+            ps.setString(2, accNum);
+            ps.setBytes(3, id);
+            ps.executeUpdate();
+        }
+
+        if (sign < 0) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "DELETE FROM balance_checkpoints WHERE account_number = ? AND tx_id = ?")) {
+                ps.setString(1, accNum);
+                ps.setBytes(2, id);
+                ps.executeUpdate();
+            }
+            return;
+        }
+
+        int dayCount;
+        BigDecimal closing;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT deposit_count + withdraw_count + transfer_count + closed_count, closing_balance " +
+                "FROM account_daily_summary WHERE account_number = ? AND summary_date = ?")) {
+            ps.setString(1, accNum);
+            ps.setDate(2, Date.valueOf(day));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return;
+                dayCount = rs.getInt(1);
+                closing = rs.getBigDecimal(2);
+            }
+        }
+        if (dayCount % EVERY != 0) return;
+
+        //  closing includes any same-day row that sorts after this one (back-dated insert)
+        Timestamp at = Timestamp.valueOf(tx.getCreatedAt());
+        Timestamp dayEnd = Timestamp.valueOf(day.atTime(LocalTime.MAX));
+        BigDecimal balance = closing.subtract(sumAfter(conn, accNum, new Timestamp(at.getTime() - 1000), dayEnd, id));
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO balance_checkpoints (account_number, tx_id, as_of, balance) VALUES (?, ?, ?, ?)")) {
+            ps.setString(1, accNum);
+            ps.setBytes(2, id);
+            ps.setTimestamp(3, at);
+            ps.setBigDecimal(4, balance);
+            ps.executeUpdate();
+        }
+    }
+
+    //  Drop an account's checkpoints (summary rebuild)
+    static void deleteFor(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM balance_checkpoints WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            ps.executeUpdate();
+        }
+    }
+
+    // ------------------- POINT-IN-TIME -------------------
+
+    //  Where a balance-at-T computation starts: a known balance, then ledger rows from `from` (after afterId)
+    static final class Start {
+        final BigDecimal balance;
+        final Timestamp from;    // null = from the beginning
+        final byte[] afterId;    // null = every row from `from` on
+
+        Start(BigDecimal balance, Timestamp from, byte[] afterId) {
+            this.balance = balance;
+            this.from = from;
+            this.afterId = afterId;
+        }
+    }
+
+    //  Latest checkpoint at or before `at`, else the closing balance of the last active day before it
+    static Start startingPoint(Connection conn, String accNum, LocalDateTime at) throws SQLException {
+        LocalDate day = at.toLocalDate();
+        Timestamp dayStart = Timestamp.valueOf(day.atStartOfDay());
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT tx_id, as_of, balance FROM balance_checkpoints WHERE account_number = ? AND as_of <= ? " +
+                "ORDER BY as_of DESC, tx_id DESC LIMIT 1")) {
+            ps.setString(1, accNum);
+            ps.setTimestamp(2, Timestamp.valueOf(at));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && !rs.getTimestamp(2).before(dayStart)) {
+                    //  Rows in the checkpoint's second may sort either side of it: tx_id decides
+                    return new Start(rs.getBigDecimal(3), new Timestamp(rs.getTimestamp(2).getTime() - 1000), rs.getBytes(1));
+                }
+            }
+        }
+
+        BigDecimal closing = DailySummaryDao.closingBefore(conn, accNum, day);
+        if (closing != null) return new Start(closing, dayStart, null);
+
+        //  No history before that day: the first summarised day says what the balance was then
+        DailySummary first = DailySummaryDao.firstOnOrAfter(conn, accNum, day);
+        if (first != null) {
+            Timestamp firstStart = Timestamp.valueOf(first.getFromDate().atStartOfDay());
+            return new Start(first.getOpeningBalance(), firstStart.after(dayStart) ? firstStart : dayStart, null);
+        }
+        return new Start(BigDecimal.ZERO, null, null); // no summaries at all: add up the whole ledger
+    }
+
+    //  Net amount of the account's ledger rows from `from` up to `to` (both inclusive, null = open), after afterId
+    static BigDecimal sumAfter(Connection conn, String accNum, Timestamp from, Timestamp to, byte[] afterId) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(CASE WHEN to_account = ? THEN amount ELSE -amount END), 0) FROM transactions " +
+                "WHERE (to_account = ? OR (from_account = ? AND (to_account IS NULL OR to_account <> from_account)))" +
+                (from != null ? " AND created_at >= ?" : "") +
+                (to != null ? " AND created_at <= ?" : "") +
+                (afterId != null ? " AND tx_id > ?" : "");
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setString(i++, accNum);
+            ps.setString(i++, accNum);
+            ps.setString(i++, accNum);
+            if (from != null) ps.setTimestamp(i++, from);
+            if (to != null) ps.setTimestamp(i++, to);
+            if (afterId != null) ps.setBytes(i, afterId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+}
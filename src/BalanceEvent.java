@@ -0,0 +1,51 @@
+import java.math.BigDecimal;
+
+/**
+ * One balance change published on the {@link BalanceEventBus}.
+ *
+ * Instances are preallocated ring slots and are overwritten once every consumer has
+ * moved past them: a handler must copy any field it wants to keep after onEvent returns.
+ */
+public final class BalanceEvent {
+
+    public enum Type {
+        DEPOSIT, WITHDRAW, TRANSFER, STATUS_CHANGE, LOCKOUT
+    }
+
+    private Type type;
+    private String accountNumber;   // account the event is about (source for transfers)
+    private String counterparty;    // transfer target, else null
+    private BigDecimal amount;      // null for status changes / lockouts
+    private String status;          // new status for STATUS_CHANGE, else null
+    private TxId txId;              // ledger row, null for status changes / lockouts
+    private long timestampMillis;
+
+    BalanceEvent() {}
+
+    void set(Type type, String accountNumber, String counterparty, BigDecimal amount,
+             String status, TxId txId, long timestampMillis) {
+        this.type = type;
+        this.accountNumber = accountNumber;
+        this.counterparty = counterparty;
+        this.amount = amount;
+        this.status = status;
+        this.txId = txId;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public Type getType() { return type; }
+    public String getAccountNumber() { return accountNumber; }
+    public String getCounterparty() { return counterparty; }
+    public BigDecimal getAmount() { return amount; }
+    public String getStatus() { return status; }
+    public TxId getTxId() { return txId; }
+    public long getTimestampMillis() { return timestampMillis; }
+
+    @Override
+    public String toString() {
+        return type + " " + accountNumber +
+                (counterparty != null ? " -> " + counterparty : "") +
+                (amount != null ? " ₹" + amount : "") +
+                (status != null ? " status=" + status : "");
+    }
+}
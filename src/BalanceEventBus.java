@@ -0,0 +1,216 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process balance-change events on a preallocated ring buffer.
+ *
+ * Publishing claims a sequence with one atomic increment, fills the preallocated
+ * {@link BalanceEvent} in that slot and marks the slot published -- no allocation and
+ * no lock, so each slot has exactly one writer. Every subscriber runs on its own daemon
+ * thread with its own sequence, sees every event in sequence order and gets them in
+ * batches (endOfBatch is set on the last one available). A publisher only waits when it
+ * would overwrite a slot the slowest subscriber has not processed yet.
+ */
+public class BalanceEventBus implements AutoCloseable {
+
+    //  How an idle subscriber waits for the next event
+    public enum WaitStrategy {
+        BUSY_SPIN,   // lowest latency, burns a core
+        YIELDING,    // spin briefly, then Thread.yield()
+        SLEEPING,    // spin, yield, then park ~100us (good default for background consumers)
+        BLOCKING     // park until a publisher wakes it (lowest CPU; publisher pays an unpark)
+    }
+
+    //  Receives events in sequence order on the subscriber's thread
+    public interface Handler {
+        void onEvent(BalanceEvent event, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    private final BalanceEvent[] ring;
+    private final int mask;
+    private final AtomicLongArray published;             // slot -> sequence last published into it
+    private final AtomicLong cursor = new AtomicLong(-1); // last claimed sequence
+    private volatile long cachedGating = -1;              // min subscriber sequence seen by publishers
+    private volatile Subscriber[] subscribers = new Subscriber[0];
+    private final AtomicInteger blockedSubscribers = new AtomicInteger();
+
+    public BalanceEventBus(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        this.ring = new BalanceEvent[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new BalanceEvent();
+            published.set(i, -1);
+        }
+    }
+
+    // ------------------- PUBLISH -------------------
+
+    public void publish(BalanceEvent.Type type, String accountNumber, String counterparty,
+                        BigDecimal amount, String status, TxId txId) {
+        long seq = cursor.incrementAndGet();
+        long wrapPoint = seq - ring.length;
+        if (wrapPoint > cachedGating) {
+            long min;
+            while (wrapPoint > (min = minimumSequence(seq))) {
+                LockSupport.parkNanos(1_000); // ring full: slowest subscriber is a whole lap behind
+            }
+            cachedGating = min;
+        }
+
+        int slot = (int) seq & mask;
+        ring[slot].set(type, accountNumber, counterparty, amount, status, txId, System.currentTimeMillis());
+        published.set(slot, seq);
+
+        if (blockedSubscribers.get() > 0) wakeBlocked();
+    }
+
+    //  Sequence of the most recently claimed event (-1 before the first)
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    private long minimumSequence(long fallback) {
+        long min = fallback;
+        for (Subscriber s : subscribers) {
+            min = Math.min(min, s.sequence.get());
+        }
+        return min;
+    }
+
+    private void wakeBlocked() {
+        for (Subscriber s : subscribers) {
+            if (s.parked) LockSupport.unpark(s.thread);
+        }
+    }
+
+    // ------------------- SUBSCRIBE -------------------
+
+    /**
+     * Start a subscriber that sees every event published from now on, at most maxBatch
+     * per batch. The handler runs on a dedicated daemon thread named after the subscriber.
+     */
+    public synchronized Subscriber subscribe(String name, Handler handler, WaitStrategy wait, int maxBatch) {
+        Subscriber s = new Subscriber(name, handler, wait, Math.max(1, maxBatch), cursor.get());
+        Subscriber[] next = new Subscriber[subscribers.length + 1];
+        System.arraycopy(subscribers, 0, next, 0, subscribers.length);
+        next[subscribers.length] = s;
+        subscribers = next;
+        s.thread.start();
+        return s;
+    }
+
+    public Subscriber subscribe(String name, Handler handler) {
+        return subscribe(name, handler, WaitStrategy.SLEEPING, 256);
+    }
+
+    //  Stop one subscriber; it no longer holds publishers back
+    public synchronized void unsubscribe(Subscriber s) {
+        s.halt();
+        List<Subscriber> keep = new ArrayList<>();
+        for (Subscriber x : subscribers) {
+            if (x != s) keep.add(x);
+        }
+        subscribers = keep.toArray(new Subscriber[0]);
+    }
+
+    //  Stop all subscribers (events not yet handled are dropped)
+    @Override
+    public synchronized void close() {
+        for (Subscriber s : subscribers) s.halt();
+        subscribers = new Subscriber[0];
+    }
+
+    public final class Subscriber {
+        private final String name;
+        private final Handler handler;
+        private final WaitStrategy wait;
+        private final int maxBatch;
+        private final AtomicLong sequence; // last sequence fully handled
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile boolean parked;
+
+        private Subscriber(String name, Handler handler, WaitStrategy wait, int maxBatch, long start) {
+            this.name = name;
+            this.handler = handler;
+            this.wait = wait;
+            this.maxBatch = maxBatch;
+            this.sequence = new AtomicLong(start);
+            this.thread = new Thread(this::run, "event-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        public String getName() { return name; }
+
+        //  Last sequence this subscriber has finished with
+        public long getSequence() { return sequence.get(); }
+
+        private void run() {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            while (running) {
+                if (published.get((int) next & mask) != next) {
+                    idle(idle);
+                    if (idle < 1_000) idle++;
+                    continue;
+                }
+                idle = 0;
+
+                long end = next;
+                while (end - next + 1 < maxBatch && published.get((int) (end + 1) & mask) == end + 1) {
+                    end++;
+                }
+                for (long s = next; s <= end; s++) {
+                    try {
+                        handler.onEvent(ring[(int) s & mask], s, s == end);
+                    } catch (Exception e) {
+                        e.printStackTrace(); // one bad event must not stop the subscriber
+                    }
+                }
+                sequence.set(end); // releases the slots to publishers
+                next = end + 1;
+            }
+        }
+
+        private void idle(int attempt) {
+            switch (wait) {
+                case BUSY_SPIN:
+                    Thread.onSpinWait();
+                    break;
+                case YIELDING:
+                    if (attempt < 100) Thread.onSpinWait();
+                    else Thread.yield();
+                    break;
+                case SLEEPING:
+                    if (attempt < 100) Thread.onSpinWait();
+                    else if (attempt < 200) Thread.yield();
+                    else LockSupport.parkNanos(100_000);
+                    break;
+                case BLOCKING:
+                    if (attempt < 100) {
+                        Thread.onSpinWait();
+                        break;
+                    }
+                    parked = true;
+                    blockedSubscribers.incrementAndGet();
+                    LockSupport.parkNanos(1_000_000); // timed, so a wake-up racing with parking is never lost for long
+                    blockedSubscribers.decrementAndGet();
+                    parked = false;
+                    break;
+            }
+        }
+
+        private void halt() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that every BalanceEventBus subscriber sees every event in order with several
+ * publishers, and measures publish cost as AccountManager pays it. No database needed.
+ * Usage: java BalanceEventBusTest [eventsPerPublisher]
+ */
+public class BalanceEventBusTest {
+    public static void main(String[] args) throws Exception {
+        int perPublisher = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int publishers = 4;
+        long total = (long) perPublisher * publishers;
+        BigDecimal amount = new BigDecimal("10.00");
+        TxIdGenerator ids = new TxIdGenerator(1);
+        TxId txId = ids.next();
+
+        try (BalanceEventBus bus = new BalanceEventBus(1 << 14)) {
+            AtomicLong fastCount = new AtomicLong();
+            AtomicLong slowCount = new AtomicLong();
+            AtomicBoolean inOrder = new AtomicBoolean(true);
+            AtomicLong batches = new AtomicLong();
+
+            bus.subscribe("fast", new BalanceEventBus.Handler() {
+                long last = -1;
+                public void onEvent(BalanceEvent e, long seq, boolean endOfBatch) {
+                    if (seq != last + 1) inOrder.set(false);
+                    last = seq;
+                    fastCount.incrementAndGet();
+                    if (endOfBatch) batches.incrementAndGet();
+                }
+            }, BalanceEventBus.WaitStrategy.YIELDING, 256);
+            bus.subscribe("slow", (e, seq, end) -> {
+                if (e.getType() != BalanceEvent.Type.DEPOSIT) inOrder.set(false);
+                slowCount.incrementAndGet();
+            }, BalanceEventBus.WaitStrategy.BLOCKING, 64);
+
+            //  Warm up, then measure
+            for (int i = 0; i < 100_000; i++) bus.publish(BalanceEvent.Type.DEPOSIT, "ACC1", null, amount, null, txId);
+            long warm = bus.getCursor() + 1;
+            waitFor(fastCount, warm);
+            waitFor(slowCount, warm);
+
+            long[] allocated = new long[publishers];
+            Thread[] threads = new Thread[publishers];
+            long t0 = System.nanoTime();
+            for (int p = 0; p < publishers; p++) {
+                int idx = p;
+                String acc = "ACC" + (p + 2);
+                threads[p] = new Thread(() -> {
+                    long before = allocatedBytes();
+                    for (int i = 0; i < perPublisher; i++) {
+                        //  The path AccountManager takes after an operation, outside a batch group
+                        AccountManager.publishCommitted(bus, BalanceEvent.Type.DEPOSIT, acc, null, amount, null, txId);
+                    }
+                    allocated[idx] = allocatedBytes() - before;
+                });
+                threads[p].start();
+            }
+            for (Thread t : threads) t.join();
+            long t1 = System.nanoTime();
+            waitFor(fastCount, warm + total);
+            waitFor(slowCount, warm + total);
+            long t2 = System.nanoTime();
+
+            long alloc = 0;
+            for (long a : allocated) alloc += a;
+            System.out.println("Fast subscriber saw: " + (fastCount.get() - warm) + " (Expected " + total + ")");
+            System.out.println("Slow subscriber saw: " + (slowCount.get() - warm) + " (Expected " + total + ")");
+            System.out.println("Sequences in order: " + inOrder.get() + " (Expected true)");
+            System.out.printf("Published %d events on %d threads: %d ns/event, drained after %d ms%n",
+                    total, publishers, (t1 - t0) / total, (t2 - t0) / 1_000_000);
+            System.out.printf("Average batch (fast subscriber): %.1f events%n", (double) fastCount.get() / Math.max(1, batches.get()));
+            System.out.println("Publisher allocation: " + alloc / total + " bytes/event (Expected 0)");
+        }
+    }
+
+    private static void waitFor(AtomicLong counter, long target) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (counter.get() < target && System.currentTimeMillis() < deadline) Thread.sleep(1);
+    }
+
+    //  Bytes allocated by the current thread, or 0 if the JVM can't tell
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean mx)
+            return mx.getCurrentThreadAllocatedBytes();
+        return 0;
+    }
+}
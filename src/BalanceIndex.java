@@ -0,0 +1,252 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-heap hash index of every account's hot state, keyed by the account number as a long.
+ *
+ * One 32-byte record per account, in direct buffers outside the GC-managed heap:
+ *   key        account number + 1 (0 = empty slot)
+ *   balance    in paise (minor units)
+ *   state      status flags (bits 0-7) | failed PIN attempts (bits 8-15)
+ *   activity   last activity, epoch seconds
+ * Open addressing with linear probing; records are never moved, so every field is updated
+ * in place with a CAS and readers never lock. 100M accounts at the 0.75 load factor take
+ * ~4.3 GB. Removed accounts keep their slot (flag REMOVED) so probe chains stay intact.
+ * Plain direct ByteBuffers (1 GB each, within int indexing) with a VarHandle view rather
+ * than an Arena-allocated MemorySegment: they are freed once the index is unreachable,
+ * which is all disableBalanceIndex() does, with no arena to close under live readers.
+ *
+ * The database stays the source of truth: AccountManager writes here only after its own
+ * writes commit, so the index is exact only while that manager is the only writer.
+ */
+public final class BalanceIndex {
+
+    public static final int FLAG_INACTIVE = 1;
+    public static final int FLAG_CLOSED = 2;
+    public static final int FLAG_LOCKED = 4;
+    public static final int FLAG_REMOVED = 8;
+
+    //  Returned by balance lookups for an account that isn't indexed
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private static final int RECORD_BYTES = 32;
+    private static final int KEY = 0, BALANCE = 8, STATE = 16, ACTIVITY = 24;
+    private static final int SEGMENT_BITS = 25; // 2^25 records = 1 GB per direct buffer
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer[] segments;
+    private final long capacity;   // power of two
+    private final long mask;
+    private final long maxEntries;
+    private final AtomicLong size = new AtomicLong();
+
+    //  Sized for expectedAccounts at a 0.75 load factor (fixed; no resizing)
+    public BalanceIndex(long expectedAccounts) {
+        long slots = Long.highestOneBit(Math.max(16, expectedAccounts * 4 / 3) - 1) << 1;
+        this.capacity = slots;
+        this.mask = slots - 1;
+        this.maxEntries = slots * 3 / 4;
+
+        int count = (int) ((slots + SEGMENT_MASK) >>> SEGMENT_BITS);
+        this.segments = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long records = Math.min(1L << SEGMENT_BITS, slots - ((long) i << SEGMENT_BITS));
+            segments[i] = ByteBuffer.allocateDirect((int) (records * RECORD_BYTES)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    // ------------------- KEYS -------------------
+
+    //  11-digit account number as a long (leading zeros are fine); -1 if it isn't one
+    public static long key(String accNo) {
+        if (accNo == null || accNo.length() != 11) return -1;
+        long k = 0;
+        for (int i = 0; i < 11; i++) {
+            char c = accNo.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            k = k * 10 + (c - '0');
+        }
+        return k;
+    }
+
+    //  Paise, rounded half-even like the DECIMAL(15,2) column stores it
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_EVEN).movePointRight(2).longValueExact();
+    }
+
+    public static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    // ------------------- READ -------------------
+
+    //  Balance in paise, or MISSING
+    public long getBalance(long account) {
+        long slot = find(account);
+        return slot < 0 ? MISSING : get(slot, BALANCE);
+    }
+
+    public int getFlags(long account) {
+        long slot = find(account);
+        return slot < 0 ? 0 : (int) (get(slot, STATE) & 0xFF);
+    }
+
+    public int getFailedAttempts(long account) {
+        long slot = find(account);
+        return slot < 0 ? 0 : (int) ((get(slot, STATE) >>> 8) & 0xFF);
+    }
+
+    public long getLastActivity(long account) {
+        long slot = find(account);
+        return slot < 0 ? 0 : get(slot, ACTIVITY);
+    }
+
+    public boolean contains(long account) {
+        return find(account) >= 0;
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    //  Off-heap bytes reserved
+    public long footprintBytes() {
+        return capacity * RECORD_BYTES;
+    }
+
+    // ------------------- WRITE -------------------
+
+    //  Insert or overwrite an account's whole record (loading, new accounts)
+    public void put(long account, long balance, int flags, int failedAttempts, long lastActivity) {
+        long slot = claim(account);
+        set(slot, BALANCE, balance);
+        set(slot, STATE, (flags & 0xFF) | ((long) Math.min(failedAttempts, 0xFF) << 8));
+        set(slot, ACTIVITY, lastActivity);
+    }
+
+    //  Atomically add delta (negative for debits); returns the new balance or MISSING
+    public long addBalance(long account, long delta, long activity) {
+        long slot = find(account);
+        if (slot < 0) return MISSING;
+        long updated = getAndAdd(slot, BALANCE, delta) + delta;
+        set(slot, ACTIVITY, activity);
+        return updated;
+    }
+
+    //  Debit only if at least minBalance would remain; false if too low or not indexed
+    public boolean tryDebit(long account, long amount, long minBalance, long activity) {
+        long slot = find(account);
+        if (slot < 0) return false;
+        while (true) {
+            long current = get(slot, BALANCE);
+            if (current - amount < minBalance) return false;
+            if (cas(slot, BALANCE, current, current - amount)) {
+                set(slot, ACTIVITY, activity);
+                return true;
+            }
+        }
+    }
+
+    public void setFlag(long account, int flag, boolean on) {
+        long slot = find(account);
+        if (slot < 0) return;
+        while (true) {
+            long state = get(slot, STATE);
+            long next = on ? state | flag : state & ~(long) flag;
+            if (state == next || cas(slot, STATE, state, next)) return;
+        }
+    }
+
+    //  Returns the new count (saturates at 255)
+    public int incrementFailedAttempts(long account) {
+        long slot = find(account);
+        if (slot < 0) return 0;
+        while (true) {
+            long state = get(slot, STATE);
+            int attempts = (int) ((state >>> 8) & 0xFF);
+            if (attempts == 0xFF) return attempts;
+            if (cas(slot, STATE, state, state + (1 << 8))) return attempts + 1;
+        }
+    }
+
+    public void resetFailedAttempts(long account) {
+        long slot = find(account);
+        if (slot < 0) return;
+        while (true) {
+            long state = get(slot, STATE);
+            if (cas(slot, STATE, state, state & 0xFF)) return;
+        }
+    }
+
+    //  Account deleted: lookups miss from now on, the slot stays as a tombstone
+    public void remove(long account) {
+        setFlag(account, FLAG_REMOVED, true);
+    }
+
+    // ------------------- PROBING -------------------
+
+    private long find(long account) {
+        if (account < 0) return -1;
+        long stored = account + 1;
+        for (long i = spread(account) & mask, n = 0; n < capacity; i = (i + 1) & mask, n++) {
+            long k = get(i, KEY);
+            if (k == stored) return (get(i, STATE) & FLAG_REMOVED) != 0 ? -1 : i;
+            if (k == 0) return -1;
+        }
+        return -1;
+    }
+
+    //  Slot for account, inserting the key if absent
+    private long claim(long account) {
+        if (account < 0) throw new IllegalArgumentException("Not an account number key: " + account);
+        long stored = account + 1;
+        for (long i = spread(account) & mask, n = 0; n < capacity; i = (i + 1) & mask, n++) {
+            long k = get(i, KEY);
+            if (k == stored) return i;
+            if (k == 0) {
+                if (size.get() >= maxEntries) throw new IllegalStateException("Balance index is full (" + maxEntries + " accounts)");
+                if (cas(i, KEY, 0, stored)) {
+                    size.incrementAndGet();
+                    return i;
+                }
+                if (get(i, KEY) == stored) return i; // lost the race to the same key
+            }
+        }
+        throw new IllegalStateException("Balance index is full");
+    }
+
+    //  Account numbers are often sequential: mix the bits so they don't form long probe runs
+    private static long spread(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private long get(long slot, int field) {
+        return (long) LONGS.getVolatile(segments[(int) (slot >>> SEGMENT_BITS)], offset(slot, field));
+    }
+
+    private void set(long slot, int field, long value) {
+        LONGS.setVolatile(segments[(int) (slot >>> SEGMENT_BITS)], offset(slot, field), value);
+    }
+
+    private boolean cas(long slot, int field, long expected, long value) {
+        return LONGS.compareAndSet(segments[(int) (slot >>> SEGMENT_BITS)], offset(slot, field), expected, value);
+    }
+
+    private long getAndAdd(long slot, int field, long delta) {
+        return (long) LONGS.getAndAdd(segments[(int) (slot >>> SEGMENT_BITS)], offset(slot, field), delta);
+    }
+
+    private static int offset(long slot, int field) {
+        return (int) (slot & SEGMENT_MASK) * RECORD_BYTES + field;
+    }
+}
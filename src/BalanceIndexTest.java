@@ -0,0 +1,67 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks BalanceIndex lookups and concurrent CAS updates, and shows heap vs off-heap use.
+ * No database needed. Usage: java BalanceIndexTest [accounts]
+ */
+public class BalanceIndexTest {
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = rt.totalMemory() - rt.freeMemory();
+
+        BalanceIndex index = new BalanceIndex(accounts);
+        long base = 10_000_000_000L; // 11-digit numbers, sequential like real account numbers
+        long t0 = System.nanoTime();
+        for (int i = 0; i < accounts; i++) {
+            index.put(base + i, 50_000, 0, 0, 0); // ₹500.00
+        }
+        long t1 = System.nanoTime();
+        System.gc();
+        long heapAfter = rt.totalMemory() - rt.freeMemory();
+
+        System.out.println("Indexed: " + index.size() + " (Expected " + accounts + ")");
+        System.out.println("Key of \"00000000042\": " + BalanceIndex.key("00000000042") + " (Expected 42)");
+        System.out.println("Missing account: " + (index.getBalance(base - 1) == BalanceIndex.MISSING) + " (Expected true)");
+        System.out.printf("Off-heap: %d MB, heap growth: %d MB, put: %d ns/account%n",
+                index.footprintBytes() >> 20, Math.max(0, heapAfter - heapBefore) >> 20, (t1 - t0) / accounts);
+
+        //  8 threads hammer 1000 accounts: credits of 1.00 and guarded debits of 3.00 (min balance ₹100)
+        int threads = 8, ops = 500_000;
+        AtomicLong debited = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        long t2 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                long local = 0;
+                for (int i = 0; i < ops; i++) {
+                    long acc = base + (i * 31L + seed) % 1000;
+                    if ((i & 1) == 0) index.addBalance(acc, 100, 0);
+                    else if (index.tryDebit(acc, 300, 10_000, 0)) local++;
+                }
+                debited.addAndGet(local);
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        long t3 = System.nanoTime();
+
+        long total = 0, belowMin = 0;
+        for (int i = 0; i < 1000; i++) {
+            long b = index.getBalance(base + i);
+            total += b;
+            if (b < 10_000) belowMin++;
+        }
+        long expected = 1000L * 50_000 + (long) threads * (ops / 2) * 100 - debited.get() * 300;
+        System.out.println("Total after updates: " + total + " (Expected " + expected + ")");
+        System.out.println("Accounts below minimum: " + belowMin + " (Expected 0)");
+        System.out.printf("Concurrent updates: %d ns/op%n", (t3 - t2) / ((long) threads * ops));
+
+        index.remove(base + 5);
+        System.out.println("Removed account found: " + index.contains(base + 5) + " (Expected false)");
+        index.put(base + 5, 1, 0, 0, 0);
+        System.out.println("Re-added balance: " + index.getBalance(base + 5) + " (Expected 1)");
+    }
+}
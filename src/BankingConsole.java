@@ -1,4 +1,9 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.Scanner;
 import java.util.List;
@@ -6,8 +11,17 @@ import java.util.List;
 
 public class BankingConsole {
     public static void main(String[] args) {
+        AccountManager manager = ShardRouter.isConfigured()
+                ? AccountManager.sharded(ShardRouter.fromSystemProperties())
+                : new AccountManager();
+
+        //  Scripted mode: BankingConsole --batch <file|-> [--parallel N] [--group N]
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args, manager);
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
-        AccountManager manager = new AccountManager();
 
         System.out.println("====================================");
         System.out.println("  Welcome to  Banking CLI  ");
@@ -22,25 +36,69 @@ public class BankingConsole {
             System.out.print("Enter choice (1-3): ");
             String mainChoice = sc.nextLine().trim();
 
-            switch (mainChoice) {
-                case "1":
-                    manageAccountsMenu(sc, manager);
-                    break;
-                case "2":
-                    transactionsMenu(sc, manager);
-                    break;
-                case "3":
-                    System.out.println("\nThank you for using Banking CLI! ");
-                    exit = true;
-                    break;
-                default:
-                    System.out.println("️ Invalid choice. Please enter 1, 2, or 3.");
+            try {
+                switch (mainChoice) {
+                    case "1":
+                        manageAccountsMenu(sc, manager);
+                        break;
+                    case "2":
+                        transactionsMenu(sc, manager);
+                        break;
+                    case "3":
+                        System.out.println("\nThank you for using Banking CLI! ");
+                        exit = true;
+                        break;
+                    default:
+                        System.out.println("️ Invalid choice. Please enter 1, 2, or 3.");
+                }
+            } catch (DatabaseException e) {
+                reportDatabaseError(e);
             }
         }
 
         sc.close();
     }
 
+    private static void runBatch(String[] args, AccountManager manager) {
+        String source = "-";
+        int parallel = 4;
+        int group = 100;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--parallel" -> parallel = Integer.parseInt(args[++i]);
+                    case "--group" -> group = Integer.parseInt(args[++i]);
+                    default -> source = args[i];
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println(" Usage: BankingConsole --batch <file|-> [--parallel N] [--group N]");
+            return;
+        }
+
+        try (BufferedReader in = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(Paths.get(source))) {
+            new BatchRunner(manager, parallel, group).run(in).print();
+        } catch (IOException e) {
+            System.out.println(" Cannot read batch input: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(" Error: " + e.getMessage());
+        } catch (DatabaseException e) {
+            reportDatabaseError(e);
+        }
+    }
+
+    //  Timeouts and outages: the operation did not complete (or its outcome is unknown), try again later
+    private static void reportDatabaseError(DatabaseException e) {
+        if (e instanceof DeadlineExceededException) {
+            System.out.println(" The bank is responding slowly and the request timed out (" + e.getMessage()
+                    + "). Check your balance before retrying.");
+        } else {
+            System.out.println(" The bank is temporarily unavailable. Please try again later.");
+        }
+    }
+
     private static void manageAccountsMenu(Scanner sc, AccountManager manager) {
         boolean back = false;
         while (!back) {
@@ -186,6 +244,8 @@ public class BankingConsole {
 
             } catch (IllegalArgumentException e) {
                 System.out.println(" Error: " + e.getMessage());
+            } catch (DatabaseException e) {
+                reportDatabaseError(e);
             }
         }
     }
@@ -0,0 +1,351 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Non-interactive command runner behind BankingConsole --batch.
+ *
+ * One command per line (blank lines and # comments are skipped):
+ *   deposit  <acc> <amount>
+ *   withdraw <acc> <amount>
+ *   transfer <from> <to> <amount>
+ *   create   <acc> <SAVINGS|CURRENT> <pin> <balance> <email> <holder name...>
+ *   close    <acc>
+ *
+ * Commands are spread over `parallelism` lanes by account number, so each account is
+ * only ever touched by one lane and its commands run in file order. Each lane commits
+ * every `groupSize` commands of one shard as one database transaction (GroupCommit); a
+ * failing command is rolled back alone. A transfer whose accounts fall in different lanes (or
+ * different shards) is a barrier: the lanes finish and commit, then it runs on its own.
+ * Everything runs as batch work (see Workload), throttled while interactive latency suffers.
+ */
+public class BatchRunner {
+
+    private final AccountManager manager;
+    private final int parallelism;
+    private final int groupSize;
+
+    public BatchRunner(AccountManager manager, int parallelism, int groupSize) {
+        if (parallelism < 1 || groupSize < 1)
+            throw new IllegalArgumentException("Parallelism and group size must be at least 1");
+        this.manager = manager;
+        this.parallelism = parallelism;
+        this.groupSize = groupSize;
+    }
+
+    //  Run every command from the reader; the reader is consumed in rounds to bound memory
+    public Summary run(BufferedReader in) throws IOException {
+        Summary summary = new Summary();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Command> round = new ArrayList<>();
+            int lineNo = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                String text = line.trim();
+                if (text.isEmpty() || text.startsWith("#")) continue;
+                try {
+                    round.add(Command.parse(lineNo, text));
+                } catch (IllegalArgumentException e) {
+                    summary.fail(lineNo, text, e.getMessage());
+                }
+                if (round.size() >= groupSize * parallelism) {
+                    runRound(round, pool, summary);
+                    round.clear();
+                }
+            }
+            runRound(round, pool, summary);
+        } finally {
+            pool.shutdown();
+        }
+        summary.finish();
+        return summary;
+    }
+
+    //  Split the round at barrier commands; run the pieces between barriers across the lanes
+    private void runRound(List<Command> round, ExecutorService pool, Summary summary) {
+        List<List<Command>> lanes = newLanes();
+        for (Command c : round) {
+            if (isBarrier(c)) {
+                runLanes(lanes, pool, summary);
+                lanes = newLanes();
+                runSolo(c, summary);
+            } else {
+                lanes.get(laneOf(c.account())).add(c);
+            }
+        }
+        runLanes(lanes, pool, summary);
+    }
+
+    private List<List<Command>> newLanes() {
+        List<List<Command>> lanes = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) lanes.add(new ArrayList<>());
+        return lanes;
+    }
+
+    private int laneOf(String accNo) {
+        int h = accNo.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), parallelism);
+    }
+
+    private boolean isBarrier(Command c) {
+        return c.op.equals("transfer")
+                && (laneOf(c.args[0]) != laneOf(c.args[1]) || manager.isCrossShard(c.args[0], c.args[1]));
+    }
+
+    private void runLanes(List<List<Command>> lanes, ExecutorService pool, Summary summary) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Command> lane : lanes) {
+            if (!lane.isEmpty()) futures.add(pool.submit(() -> Workload.runBatch(() -> runLane(lane, summary))));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Batch interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Batch lane failed", e.getCause());
+            }
+        }
+    }
+
+    //  One lane: commit every groupSize commands, roll back failing commands individually
+    private void runLane(List<Command> lane, Summary summary) {
+        //  A group must stay on one database; an account never changes shard, so its commands keep their order
+        Map<Integer, List<Command>> byShard = new LinkedHashMap<>();
+        for (Command c : lane) byShard.computeIfAbsent(manager.shardOf(c.account()), k -> new ArrayList<>()).add(c);
+        for (List<Command> commands : byShard.values()) runGroups(commands, summary);
+    }
+
+    private void runGroups(List<Command> lane, Summary summary) {
+        for (int from = 0; from < lane.size(); from += groupSize) {
+            List<Command> group = lane.subList(from, Math.min(from + groupSize, lane.size()));
+            List<Command> applied = new ArrayList<>(group.size());
+            int next = 0; // first command of the group not yet counted
+
+            try (GroupCommit tx = GroupCommit.begin()) {
+                for (; next < group.size(); next++) {
+                    Command c = group.get(next);
+                    tx.mark();
+                    try {
+                        execute(c);
+                        if (tx.rollbackRequested()) {
+                            tx.undoCommand();
+                            summary.fail(c.line, c.text, "database error (see log)");
+                        } else {
+                            applied.add(c);
+                        }
+                    } catch (RuntimeException e) {
+                        tx.undoCommand();
+                        summary.fail(c.line, c.text, e.getMessage());
+                    }
+                }
+                tx.commit();
+                summary.succeeded(applied.size());
+            } catch (GroupCommit.PartialCommitException e) {
+                //  Some databases kept the group, others didn't: each command's outcome must be checked
+                e.printStackTrace();
+                for (Command c : applied) summary.partial(c.line, c.text, e.getMessage());
+            } catch (SQLException e) {
+                //  Whole group rolled back: nothing in it took effect
+                for (Command c : applied) summary.fail(c.line, c.text, "group rolled back: " + e.getMessage());
+                for (Command c : group.subList(next, group.size())) summary.fail(c.line, c.text, "group rolled back: " + e.getMessage());
+            }
+        }
+    }
+
+    //  Barrier command: normal per-operation commits (cross-shard transfers need their phases)
+    private void runSolo(Command c, Summary summary) {
+        try {
+            Workload.runBatch(() -> execute(c));
+            summary.succeeded(1);
+        } catch (RuntimeException e) {
+            summary.fail(c.line, c.text, e.getMessage());
+        }
+    }
+
+    private void execute(Command c) {
+        String[] a = c.args;
+        switch (c.op) {
+            case "deposit":
+                manager.deposit(a[0], amount(a[1]));
+                break;
+            case "withdraw":
+                manager.withdraw(a[0], amount(a[1]));
+                break;
+            case "transfer":
+                manager.transfer(a[0], a[1], amount(a[2]));
+                break;
+            case "create": {
+                if (manager.getAccount(a[0]) != null)
+                    throw new IllegalArgumentException("Account already exists: " + a[0]);
+                Account account = new Account(a[0], a[5], a[4], amount(a[3]), a[1], a[2]);
+                account.setCreatedAt(LocalDateTime.now());
+                manager.createAccount(account);
+                if (manager.getAccount(a[0]) == null) // AccountDao reports validation errors by printing
+                    throw new IllegalArgumentException("Account was not created");
+                break;
+            }
+            case "close":
+                if (manager.getAccount(a[0]) == null)
+                    throw new IllegalArgumentException("Account not found: " + a[0]);
+                manager.deleteAccount(a[0]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + c.op);
+        }
+    }
+
+    private static BigDecimal amount(String s) {
+        return new BigDecimal(s);
+    }
+
+    // ------------------- COMMANDS -------------------
+
+    static final class Command {
+        final int line;
+        final String text;
+        final String op;
+        final String[] args;
+
+        private Command(int line, String text, String op, String[] args) {
+            this.line = line;
+            this.text = text;
+            this.op = op;
+            this.args = args;
+        }
+
+        //  Account that decides the lane (the source for transfers)
+        String account() {
+            return args[0];
+        }
+
+        //  Syntax and field checks only; balances and existence are checked when it runs
+        static Command parse(int line, String text) {
+            String[] parts = text.split("\\s+");
+            String op = parts[0].toLowerCase();
+            String[] args;
+            switch (op) {
+                case "deposit", "withdraw":
+                    args = exactly(parts, 2, op + " <acc> <amount>");
+                    checkAccount(args[0]);
+                    checkAmount(args[1]);
+                    break;
+                case "transfer":
+                    args = exactly(parts, 3, "transfer <from> <to> <amount>");
+                    checkAccount(args[0]);
+                    checkAccount(args[1]);
+                    checkAmount(args[2]);
+                    break;
+                case "close":
+                    args = exactly(parts, 1, "close <acc>");
+                    checkAccount(args[0]);
+                    break;
+                case "create": {
+                    if (parts.length < 7)
+                        throw new IllegalArgumentException("Usage: create <acc> <SAVINGS|CURRENT> <pin> <balance> <email> <holder name>");
+                    String name = String.join(" ", Arrays.copyOfRange(parts, 6, parts.length));
+                    args = new String[]{parts[1], parts[2].toUpperCase(), parts[3], parts[4], parts[5], name};
+                    checkAccount(args[0]);
+                    if (!args[1].equals("SAVINGS") && !args[1].equals("CURRENT"))
+                        throw new IllegalArgumentException("Account type must be SAVINGS or CURRENT");
+                    if (!ValidationUtils.isValidPin(args[2]))
+                        throw new IllegalArgumentException("PIN must be exactly 4 digits");
+                    checkAmount(args[3]);
+                    if (!ValidationUtils.isValidEmail(args[4]))
+                        throw new IllegalArgumentException("Invalid email: " + args[4]);
+                    if (!ValidationUtils.isValidHolderName(args[5]))
+                        throw new IllegalArgumentException("Holder name must contain only alphabets and spaces");
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + parts[0]);
+            }
+            return new Command(line, text, op, args);
+        }
+
+        private static String[] exactly(String[] parts, int n, String usage) {
+            if (parts.length != n + 1) throw new IllegalArgumentException("Usage: " + usage);
+            return Arrays.copyOfRange(parts, 1, parts.length);
+        }
+
+        private static void checkAccount(String acc) {
+            if (!ValidationUtils.isValidAccountNumber(acc))
+                throw new IllegalArgumentException("Invalid account number: " + acc);
+        }
+
+        private static void checkAmount(String s) {
+            try {
+                if (!ValidationUtils.isPositiveAmount(new BigDecimal(s)))
+                    throw new IllegalArgumentException("Amount must be greater than 0: " + s);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid amount: " + s);
+            }
+        }
+    }
+
+    // ------------------- RESULT -------------------
+
+    public static final class Summary {
+        private static final int MAX_LISTED = 50;
+
+        private final long startNanos = System.nanoTime();
+        private long elapsedNanos;
+        private int succeeded;
+        private int failed;
+        private int partial;
+        private final List<String> failures = new ArrayList<>();
+
+        synchronized void succeeded(int n) {
+            succeeded += n;
+        }
+
+        synchronized void fail(int line, String text, String reason) {
+            failed++;
+            if (failures.size() < MAX_LISTED) failures.add("line " + line + ": " + text + " -> " + reason);
+        }
+
+        //  Outcome unknown: its group committed on only some databases
+        synchronized void partial(int line, String text, String reason) {
+            partial++;
+            if (failures.size() < MAX_LISTED) failures.add("line " + line + ": " + text + " -> PARTIAL: " + reason);
+        }
+
+        void finish() {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        public int getSucceeded() { return succeeded; }
+        public int getFailed() { return failed; }
+        public int getPartial() { return partial; }
+
+        public void print() {
+            double seconds = elapsedNanos / 1e9;
+            System.out.println("\n==== Batch Summary ====");
+            System.out.println("Succeeded: " + succeeded);
+            System.out.println("Failed:    " + failed);
+            if (partial > 0) System.out.println("Partial:   " + partial + " (committed on some databases only, check them)");
+            System.out.printf("Elapsed:   %.2f s (%.1f commands/s)%n", seconds,
+                    seconds > 0 ? (succeeded + failed + partial) / seconds : 0.0);
+            if (!failures.isEmpty()) {
+                System.out.println("\nFailures:");
+                for (String f : failures) System.out.println("  " + f);
+                if (failed + partial > failures.size())
+                    System.out.println("  ... and " + (failed + partial - failures.size()) + " more");
+            }
+        }
+    }
+}
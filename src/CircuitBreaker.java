@@ -0,0 +1,83 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-database circuit breaker. After `banking.breaker.failures` consecutive connection
+ * failures or timeouts the circuit opens and every call to that database fails at once
+ * with DatabaseUnavailableException, instead of each caller waiting out its own timeout.
+ * After `banking.breaker.open.ms` one trial call is let through (half-open): success
+ * closes the circuit, failure opens it again. Shards have a breaker each, so one sick
+ * shard doesn't stop the others.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("banking.breaker.failures", 5);
+    private static final long OPEN_MILLIS = Long.getLong("banking.breaker.open.ms", 5_000L);
+
+    private static final Map<DbConfig, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private final DbConfig db;
+    private volatile State state = State.CLOSED;
+    private volatile int failures; // consecutive
+    private long openedAt;    // or when the current trial started
+    private boolean trialRunning;
+
+    private CircuitBreaker(DbConfig db) {
+        this.db = db;
+    }
+
+    static CircuitBreaker forDb(DbConfig db) {
+        return BREAKERS.computeIfAbsent(db, CircuitBreaker::new);
+    }
+
+    State getState() {
+        return state;
+    }
+
+    //  Before a connection attempt or statement: throws while the circuit is open
+    void beforeCall() {
+        if (state == State.CLOSED) return; // no lock on the healthy path
+        admit();
+    }
+
+    private synchronized void admit() {
+        if (state == State.CLOSED) return;
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN && now - openedAt >= OPEN_MILLIS) {
+            state = State.HALF_OPEN;
+            trialRunning = false;
+        }
+        if (state == State.HALF_OPEN && (!trialRunning || now - openedAt >= OPEN_MILLIS)) {
+            trialRunning = true; // this caller is the trial (again, if the last one never reported back)
+            openedAt = now;
+            return;
+        }
+        throw new DatabaseUnavailableException("Database " + db.getUrl() + " is unavailable (circuit open)", null);
+    }
+
+    void onSuccess() {
+        if (state == State.CLOSED && failures == 0) return;
+        reset();
+    }
+
+    private synchronized void reset() {
+        failures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            trialRunning = false;
+            System.err.println("[breaker] " + db.getUrl() + " closed again");
+        }
+    }
+
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= FAILURE_THRESHOLD) {
+            if (state != State.OPEN) System.err.println("[breaker] " + db.getUrl() + " open after " + failures + " failures");
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialRunning = false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * The periodic account jobs, run through a JobCoordinator so that any number of nodes
+ * can run them at once: each node takes a share of the partitions and every account is
+ * processed exactly once per run (e.g. interest for 2025-06 is credited once, however
+ * many nodes run it, and re-running a finished month does nothing).
+ *
+ * Usage: java ClusterJobs interest [yyyy-MM] [workers]
+ *        java ClusterJobs inactive [yyyy-MM-dd] [workers]
+ *
+ * To try it locally, start several JVMs against one embedded H2 file; AUTO_SERVER lets
+ * them share it, and killing one mid-run leaves its partitions to the others once its
+ * leases expire (-Dbanking.jobs.lease, seconds):
+ *   java -cp .:h2.jar -Dbanking.shards="jdbc:h2:file:/tmp/bank;MODE=MySQL;AUTO_SERVER=TRUE" \
+ *        -Dbanking.db.user=sa -Dbanking.db.password= ClusterJobs interest 2025-06
+ * ClusterJobsTest does exactly that with three JVMs and checks the outcome.
+ */
+public class ClusterJobs {
+
+    private static final int LEASE_SECONDS = Integer.getInteger("banking.jobs.lease", 30);
+    private static final int PARTITIONS_PER_DB = Integer.getInteger("banking.jobs.partitions", 16);
+    private static final int CHUNK_SIZE = Integer.getInteger("banking.jobs.chunk", 500);
+
+    private final AccountManager manager;
+    private final JobCoordinator coordinator;
+
+    public ClusterJobs(AccountManager manager, JobCoordinator coordinator) {
+        this.manager = manager;
+        this.coordinator = coordinator;
+    }
+
+    //  Cluster-wide applyMonthlyInterest(month)
+    public JobCoordinator.Result monthlyInterest(YearMonth month, int workers) {
+        return coordinator.run("interest", month.toString(), workers,
+                accNo -> manager.applyMonthlyInterest(accNo, month));
+    }
+
+    //  Cluster-wide flagInactiveAccounts, once per day
+    public JobCoordinator.Result flagInactive(LocalDate today, int workers) {
+        return coordinator.run("inactive", today.toString(), workers,
+                accNo -> manager.flagIfInactive(accNo, today));
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java ClusterJobs interest [yyyy-MM] [workers] | inactive [yyyy-MM-dd] [workers]");
+            System.exit(2);
+        }
+        AccountManager manager = ShardRouter.isConfigured()
+                ? AccountManager.sharded(ShardRouter.fromSystemProperties())
+                : new AccountManager();
+        if (Boolean.getBoolean("banking.interest.lazy")) manager.enableLazyInterest();
+
+        JobCoordinator coordinator = new JobCoordinator(manager.databases(), LEASE_SECONDS, PARTITIONS_PER_DB, CHUNK_SIZE);
+        coordinator.ensureSchema();
+        ClusterJobs jobs = new ClusterJobs(manager, coordinator);
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        JobCoordinator.Result result;
+        switch (args[0]) {
+            case "interest" -> result = jobs.monthlyInterest(
+                    args.length > 1 ? YearMonth.parse(args[1]) : YearMonth.now().minusMonths(1), workers);
+            case "inactive" -> result = jobs.flagInactive(
+                    args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.now(), workers);
+            default -> throw new IllegalArgumentException("Unknown job: " + args[0]);
+        }
+        System.out.println(args[0] + " done on " + coordinator.getOwner() + ": " + result);
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs ClusterJobs interest in three JVMs sharing one embedded H2 file and kills the first
+ * one mid-run: every account must still be credited exactly once, and the partitions the
+ * killed node held must have been taken over (attempts > 1).
+ * Needs the H2 jar on the classpath (no MySQL required), e.g.
+ *   java -cp out:h2.jar ClusterJobsTest [accounts]
+ */
+public class ClusterJobsTest {
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        Path dir = Files.createTempDirectory("clusterjobs");
+        String url = "jdbc:h2:file:" + dir.resolve("bank") + ";MODE=MySQL;AUTO_SERVER=TRUE";
+        DbConfig db = new DbConfig(url, "sa", "");
+        Schema.createCoreTables(db);
+        new JobCoordinator(List.of(db), 3, 8, 20).ensureSchema();
+
+        //  Held open for the whole test, so this JVM serves the file and killing a node can't take it away
+        try (Connection keep = db.getConnection()) {
+            AccountManager manager = AccountManager.sharded(new ShardRouter(List.of(db)));
+            List<String> accNos = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                String accNo = AccountNumberGenerator.generate11Digit();
+                manager.createAccount(new Account(accNo, "Job Tester", "jobs@example.com",
+                        new BigDecimal("1000.00"), "SAVINGS", "1234"));
+                accNos.add(accNo);
+            }
+            String month = YearMonth.now().minusMonths(1).toString();
+
+            //  First node: kill it once it has committed a chunk and still holds partitions
+            Process first = node(url, month);
+            Set<Integer> held = new HashSet<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (held.isEmpty() && first.isAlive() && System.nanoTime() < deadline) {
+                try (PreparedStatement ps = keep.prepareStatement(
+                        "SELECT partition_no FROM job_partitions WHERE job = 'interest' AND run_key = ? " +
+                        "AND status = 'RUNNING' AND owner LIKE ? AND processed > 0")) {
+                    ps.setString(1, month);
+                    ps.setString(2, first.pid() + "@%");
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) held.add(rs.getInt(1));
+                    }
+                }
+                if (held.isEmpty()) Thread.sleep(20);
+            }
+            first.destroyForcibly().waitFor();
+            System.out.println("Killed node " + first.pid() + " holding partitions " + held + " (Expected at least one)");
+
+            //  Two more nodes finish the run, taking over the dead node's partitions once its leases expire
+            Process second = node(url, month), third = node(url, month);
+            System.out.println("Surviving nodes exit codes: " + second.waitFor() + ", " + third.waitFor() + " (Expected 0, 0)");
+
+            int notDone = 0, takenOver = 0;
+            try (Statement st = keep.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT partition_no, status, attempts FROM job_partitions " +
+                         "WHERE job = 'interest' AND run_key = '" + month + "'")) {
+                while (rs.next()) {
+                    if (!rs.getString(2).equals("DONE")) notDone++;
+                    if (held.contains(rs.getInt(1)) && rs.getInt(3) > 1) takenOver++;
+                }
+            }
+            System.out.println("Partitions not DONE: " + notDone + " (Expected 0)");
+            System.out.println("Killed node's partitions with attempts > 1: " + takenOver + " (Expected " + held.size() + ")");
+
+            //  Exactly one interest credit per account, and the balance moved by exactly that credit
+            int wrongCount = 0, wrongBalance = 0;
+            try (PreparedStatement ps = keep.prepareStatement(
+                    "SELECT COUNT(*), COALESCE(SUM(amount), 0) FROM transactions WHERE to_account = ? " +
+                    "AND from_account IS NULL AND tx_type = 'DEPOSIT' AND category <> ?")) {
+                for (String accNo : accNos) {
+                    ps.setString(1, accNo);
+                    ps.setString(2, TransactionRecord.OPENING_BALANCE);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        if (rs.getInt(1) != 1) wrongCount++;
+                        BigDecimal expected = new BigDecimal("1000.00").add(rs.getBigDecimal(2));
+                        if (manager.getBalance(accNo).compareTo(expected) != 0) wrongBalance++;
+                    }
+                }
+            }
+            System.out.println("Accounts not credited exactly once: " + wrongCount + " of " + accounts + " (Expected 0)");
+            System.out.println("Balances off by more than the credit: " + wrongBalance + " (Expected 0)");
+        }
+    }
+
+    //  One ClusterJobs JVM on the shared file, with short leases so a takeover happens quickly
+    private static Process node(String url, String month) throws Exception {
+        String java = ProcessHandle.current().info().command()
+                .orElse(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-Dbanking.shards=" + url, "-Dbanking.db.user=sa", "-Dbanking.db.password=",
+                "-Dbanking.jobs.lease=3", "-Dbanking.jobs.partitions=8", "-Dbanking.jobs.chunk=20",
+                "ClusterJobs", "interest", month, "2")
+                .inheritIO()
+                .start();
+    }
+}
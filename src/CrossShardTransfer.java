@@ -0,0 +1,293 @@
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable two-phase transfer between accounts that live on different shards.
+ *
+ * Phase 1 (source shard, one local transaction): lock + debit the source, write the
+ *   ledger row and a PREPARED row in transfer_intents.
+ * Phase 2 (target shard, one local transaction): record the tx id in transfer_applied
+ *   (primary key makes the credit idempotent), credit the target, write the ledger row (as a mirror, see TransactionDao.insert).
+ * Phase 3 (source shard): mark the intent COMMITTED, only if it is still PREPARED.
+ *
+ * A crash anywhere after phase 1 leaves a PREPARED intent; recover() replays phase 2
+ * (a no-op if it already happened) and phase 3. If the target account is gone the
+ * source is credited back and the intent is marked ABORTED. The transfer_applied marker
+ * is never deleted: another node's recover() may still hold the intent as PREPARED and
+ * replay phase 2 after this node committed it, and the marker is what makes that a no-op.
+ */
+public class CrossShardTransfer {
+
+    static final String INTENTS_DDL =
+            "CREATE TABLE IF NOT EXISTS transfer_intents (" +
+            " tx_id BINARY(16) PRIMARY KEY," +
+            " from_account VARCHAR(20) NOT NULL," +
+            " to_account VARCHAR(20) NOT NULL," +
+            " amount DECIMAL(15,2) NOT NULL," +
+            " category VARCHAR(50)," +
+            " created_at TIMESTAMP NOT NULL," +
+            " state VARCHAR(10) NOT NULL," +
+            " updated_at TIMESTAMP NOT NULL," +
+            " INDEX idx_intent_state (state))";
+
+    static final String APPLIED_DDL =
+            "CREATE TABLE IF NOT EXISTS transfer_applied (" +
+            " tx_id BINARY(16) PRIMARY KEY," +
+            " applied_at TIMESTAMP NOT NULL)";
+
+    private static final String PREPARED = "PREPARED";
+    private static final String COMMITTED = "COMMITTED";
+    private static final String ABORTED = "ABORTED";
+
+    private final ShardRouter router;
+
+    public CrossShardTransfer(ShardRouter router) {
+        this.router = router;
+    }
+
+    //  Create the protocol tables on every shard (safe to call repeatedly)
+    public void ensureSchema() {
+        for (int i = 0; i < router.shardCount(); i++) {
+            try {
+                Schema.execute(router.shard(i), INTENTS_DDL, APPLIED_DDL,
+                        DailySummaryDao.SUMMARY_DDL, DailySummaryDao.CATEGORY_DDL, BalanceCheckpointDao.CHECKPOINTS_DDL,
+                        PostingDao.POSTINGS_DDL, PostingDao.QUEUE_DDL, SplitBalanceDao.SLOTS_DDL, LedgerArchiver.TOTALS_DDL);
+                Schema.addMirrorColumn(router.shard(i));
+            } catch (SQLException | DatabaseException e) {
+                e.printStackTrace(); // shard down: recover() skips it and the next run creates them
+            }
+        }
+    }
+
+    //  Run all three phases; throws IllegalArgumentException if phase 1 rejects the debit
+    public void transfer(TransactionRecord tx, BigDecimal minBalance) {
+        prepare(tx, minBalance);
+        resolve(tx);
+    }
+
+    //  Resolve every PREPARED intent on every shard; returns how many were resolved
+    public int recover() {
+        ensureSchema();
+        int resolved = 0;
+        for (int i = 0; i < router.shardCount(); i++) {
+            for (TransactionRecord tx : loadPrepared(router.shard(i))) {
+                if (resolve(tx)) resolved++;
+            }
+        }
+        return resolved;
+    }
+
+    // ------------------- PHASE 1 -------------------
+    private void prepare(TransactionRecord tx, BigDecimal minBalance) {
+        DbConfig source = router.shard(router.shardOf(tx.getFromAccount()));
+        try (Connection conn = source.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                BigDecimal balance = lockBalance(conn, tx.getFromAccount());
+                if (balance == null)
+                    throw new IllegalArgumentException("Account not found: " + tx.getFromAccount());
+                if (balance.subtract(tx.getAmount()).compareTo(minBalance) < 0)
+                    throw new IllegalArgumentException("You must maintain a minimum balance of ₹" + minBalance + " after transfer");
+
+                adjustBalance(conn, tx.getFromAccount(), tx.getAmount().negate());
+                insertIntent(conn, tx);
+                TransactionDao.insert(conn, tx);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Transfer could not be prepared on source shard", e);
+        }
+    }
+
+    // ------------------- PHASE 2 + 3 -------------------
+    private boolean resolve(TransactionRecord tx) {
+        boolean credited;
+        try {
+            credited = credit(tx);
+        } catch (SQLException | DatabaseException e) {
+            // Target shard unreachable or too slow (DbGuard): intent stays PREPARED and recover() finishes it later
+            System.out.println(" Transfer " + tx.getTxId() + " is pending; it will complete on recovery.");
+            e.printStackTrace();
+            return false;
+        }
+
+        try {
+            if (credited) {
+                commitIntent(tx); // false: another node resolved it first, and the marker kept its credit single
+            } else {
+                abort(tx);
+            }
+            return true;
+        } catch (SQLException | DatabaseException e) {
+            e.printStackTrace(); // still PREPARED; the marker keeps a retried credit single
+            return false;
+        }
+    }
+
+    //  Idempotent credit on the target shard; false if the target account no longer exists
+    private boolean credit(TransactionRecord tx) throws SQLException {
+        DbConfig target = router.shard(router.shardOf(tx.getToAccount()));
+        try (Connection conn = target.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO transfer_applied (tx_id, applied_at) VALUES (?, ?)")) {
+                    ps.setBytes(1, tx.getId().toBytes());
+                    ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                    ps.executeUpdate();
+                } catch (SQLException dup) {
+                    if (isDuplicateKey(dup)) {
+                        conn.rollback();
+                        return true; // phase 2 already ran before a crash
+                    }
+                    throw dup;
+                }
+
+                if (adjustBalance(conn, tx.getToAccount(), tx.getAmount()) == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                TransactionDao.insert(conn, tx, true);
+                conn.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    //  Target vanished: give the money back and drop the source-side ledger row
+    private void abort(TransactionRecord tx) throws SQLException {
+        DbConfig source = router.shard(router.shardOf(tx.getFromAccount()));
+        try (Connection conn = source.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!PREPARED.equals(lockState(conn, tx.getId()))) {
+                    conn.rollback();
+                    return;
+                }
+                adjustBalance(conn, tx.getFromAccount(), tx.getAmount());
+                DailySummaryDao.unapply(conn, tx);
+                PostingDao.reverse(conn, tx);
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM transactions WHERE tx_id = ?")) {
+                    ps.setBytes(1, tx.getId().toBytes());
+                    ps.executeUpdate();
+                }
+                updateState(conn, tx.getId(), ABORTED);
+                conn.commit();
+                System.out.println(" Transfer " + tx.getTxId() + " aborted: target account " + tx.getToAccount() + " not found.");
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // ------------------- HELPERS -------------------
+    private BigDecimal lockBalance(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT balance FROM accounts WHERE account_number = ? FOR UPDATE")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal("balance") : null;
+            }
+        }
+    }
+
+    private int adjustBalance(Connection conn, String accNum, BigDecimal delta) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE accounts SET balance = balance + ?, last_activity = ? WHERE account_number = ?")) {
+            ps.setBigDecimal(1, delta);
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setString(3, accNum);
+            return ps.executeUpdate();
+        }
+    }
+
+    private void insertIntent(Connection conn, TransactionRecord tx) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO transfer_intents (tx_id, from_account, to_account, amount, category, created_at, state, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setBytes(1, tx.getId().toBytes());
+            ps.setString(2, tx.getFromAccount());
+            ps.setString(3, tx.getToAccount());
+            ps.setBigDecimal(4, tx.getAmount());
+            ps.setString(5, tx.getCategory());
+            ps.setTimestamp(6, Timestamp.valueOf(tx.getCreatedAt()));
+            ps.setString(7, PREPARED);
+            ps.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
+            ps.executeUpdate();
+        }
+    }
+
+    private String lockState(Connection conn, TxId txId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT state FROM transfer_intents WHERE tx_id = ? FOR UPDATE")) {
+            ps.setBytes(1, txId.toBytes());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("state") : null;
+            }
+        }
+    }
+
+    private void updateState(Connection conn, TxId txId, String state) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE transfer_intents SET state = ?, updated_at = ? WHERE tx_id = ?")) {
+            ps.setString(1, state);
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setBytes(3, txId.toBytes());
+            ps.executeUpdate();
+        }
+    }
+
+    //  PREPARED -> COMMITTED as one conditional update; false if the intent had already left PREPARED
+    private boolean commitIntent(TransactionRecord tx) throws SQLException {
+        DbConfig source = router.shard(router.shardOf(tx.getFromAccount()));
+        try (Connection conn = source.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE transfer_intents SET state = ?, updated_at = ? WHERE tx_id = ? AND state = ?")) {
+            ps.setString(1, COMMITTED);
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setBytes(3, tx.getId().toBytes());
+            ps.setString(4, PREPARED);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    private List<TransactionRecord> loadPrepared(DbConfig shard) {
+        List<TransactionRecord> list = new ArrayList<>();
+        String sql = "SELECT * FROM transfer_intents WHERE state = ? ORDER BY created_at";
+        try (Connection conn = shard.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, PREPARED);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(new TransactionRecord(
+                            TxId.fromBytes(rs.getBytes("tx_id")),
+                            TransactionRecord.TxType.TRANSFER,
+                            rs.getString("from_account"),
+                            rs.getString("to_account"),
+                            rs.getBigDecimal("amount"),
+                            rs.getString("category"),
+                            rs.getTimestamp("created_at").toLocalDateTime()));
+                }
+            }
+        } catch (SQLException | DatabaseException e) {
+            e.printStackTrace(); // shard down: its intents are resolved on a later recover()
+        }
+        return list;
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+}
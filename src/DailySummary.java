@@ -0,0 +1,72 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One account's activity for one day (or a run of days when merged):
+ * opening/closing balance, credit/debit totals, counts per TxType and per category.
+ */
+public class DailySummary {
+
+    private final String accountNumber;
+    private final LocalDate fromDate;
+    private LocalDate toDate;
+    private BigDecimal openingBalance;
+    private BigDecimal closingBalance;
+    private BigDecimal totalCredits = BigDecimal.ZERO;
+    private BigDecimal totalDebits = BigDecimal.ZERO;
+    private final Map<TransactionRecord.TxType, Integer> typeCounts = new LinkedHashMap<>();
+    private final Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+
+    public DailySummary(String accountNumber, LocalDate date, BigDecimal openingBalance, BigDecimal closingBalance) {
+        this.accountNumber = accountNumber;
+        this.fromDate = date;
+        this.toDate = date;
+        this.openingBalance = openingBalance;
+        this.closingBalance = closingBalance;
+    }
+
+    //  Getters
+    public String getAccountNumber() { return accountNumber; }
+    public LocalDate getFromDate() { return fromDate; }
+    public LocalDate getToDate() { return toDate; }
+    public BigDecimal getOpeningBalance() { return openingBalance; }
+    public BigDecimal getClosingBalance() { return closingBalance; }
+    public BigDecimal getTotalCredits() { return totalCredits; }
+    public BigDecimal getTotalDebits() { return totalDebits; }
+    public Map<TransactionRecord.TxType, Integer> getTypeCounts() { return typeCounts; }
+    public Map<String, Integer> getCategoryCounts() { return categoryCounts; }
+
+    public int getCount(TransactionRecord.TxType type) {
+        return typeCounts.getOrDefault(type, 0);
+    }
+
+    //  Setters used while loading / rebuilding
+    void setOpeningBalance(BigDecimal openingBalance) { this.openingBalance = openingBalance; }
+    void setClosingBalance(BigDecimal closingBalance) { this.closingBalance = closingBalance; }
+
+    void addCredits(BigDecimal amount) { totalCredits = totalCredits.add(amount); }
+    void addDebits(BigDecimal amount) { totalDebits = totalDebits.add(amount); }
+    void addTypeCount(TransactionRecord.TxType type, int n) { typeCounts.merge(type, n, Integer::sum); }
+    void addCategoryCount(String category, int n) { categoryCounts.merge(category, n, Integer::sum); }
+
+    //  Fold a later day into this one (month-end statements over several daily rows)
+    void merge(DailySummary later) {
+        this.toDate = later.toDate;
+        this.closingBalance = later.closingBalance;
+        addCredits(later.totalCredits);
+        addDebits(later.totalDebits);
+        later.typeCounts.forEach(this::addTypeCount);
+        later.categoryCounts.forEach(this::addCategoryCount);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s | %s..%s | Opening ₹%s | Credits ₹%s | Debits ₹%s | Closing ₹%s | %s | %s",
+                accountNumber, fromDate, toDate,
+                openingBalance, totalCredits, totalDebits, closingBalance,
+                typeCounts, categoryCounts);
+    }
+}
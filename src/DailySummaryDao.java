@@ -0,0 +1,469 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-account daily summaries (account_daily_summary + account_daily_category).
+ *
+ * Rows are maintained incrementally inside the same JDBC transaction that inserts
+ * the ledger row (see TransactionDao.insert), and can be rebuilt from the raw
+ * ledger for backfill. Statements, average-balance interest and dashboards read
+ * these few rows instead of an account's full transaction history.
+ */
+public class DailySummaryDao {
+
+    static final String SUMMARY_DDL =
+            "CREATE TABLE IF NOT EXISTS account_daily_summary (" +
+            " account_number VARCHAR(20) NOT NULL," +
+            " summary_date DATE NOT NULL," +
+            " opening_balance DECIMAL(15,2) NOT NULL," +
+            " closing_balance DECIMAL(15,2) NOT NULL," +
+            " total_credits DECIMAL(15,2) NOT NULL DEFAULT 0," +
+            " total_debits DECIMAL(15,2) NOT NULL DEFAULT 0," +
+            " deposit_count INT NOT NULL DEFAULT 0," +
+            " withdraw_count INT NOT NULL DEFAULT 0," +
+            " transfer_count INT NOT NULL DEFAULT 0," +
+            " closed_count INT NOT NULL DEFAULT 0," +
+            " PRIMARY KEY (account_number, summary_date))";
+
+    static final String CATEGORY_DDL =
+            "CREATE TABLE IF NOT EXISTS account_daily_category (" +
+            " account_number VARCHAR(20) NOT NULL," +
+            " summary_date DATE NOT NULL," +
+            " category VARCHAR(50) NOT NULL," +
+            " tx_count INT NOT NULL DEFAULT 0," +
+            " PRIMARY KEY (account_number, summary_date, category))";
+
+    private final DbConfig db;
+
+    public DailySummaryDao(DbConfig db) {
+        this.db = db;
+    }
+
+    private Connection getConnection() throws SQLException {
+        return db.getConnection();
+    }
+
+    //  Create both summary tables (and the checkpoint and posting tables kept alongside) if missing
+    public void ensureSchema() {
+        try {
+            Schema.execute(db, SUMMARY_DDL, CATEGORY_DDL, BalanceCheckpointDao.CHECKPOINTS_DDL,
+                    PostingDao.POSTINGS_DDL, PostingDao.QUEUE_DDL, SplitBalanceDao.SLOTS_DDL, LedgerArchiver.TOTALS_DDL);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ------------------- INCREMENTAL MAINTENANCE -------------------
+
+    //  Fold a just-inserted ledger row into the summaries (caller owns the transaction)
+    static void apply(Connection conn, TransactionRecord tx) throws SQLException {
+        applySigned(conn, tx, 1);
+    }
+
+    //  Undo apply() for a ledger row that is being deleted (aborted transfer)
+    static void unapply(Connection conn, TransactionRecord tx) throws SQLException {
+        applySigned(conn, tx, -1);
+    }
+
+    private static void applySigned(Connection conn, TransactionRecord tx, int sign) throws SQLException {
+        LocalDate day = tx.getCreatedAt().toLocalDate();
+        String to = tx.getToAccount();
+        String from = tx.getFromAccount();
+        if (to != null) {
+            applySide(conn, to, day, tx, tx.getAmount(), sign);
+        }
+        if (from != null && !from.equals(to)) {
+            applySide(conn, from, day, tx, tx.getAmount().negate(), sign);
+        }
+    }
+
+    private static void applySide(Connection conn, String accNum, LocalDate day,
+                                  TransactionRecord tx, BigDecimal delta, int sign) throws SQLException {
+        BigDecimal signedDelta = sign > 0 ? delta : delta.negate();
+        BigDecimal credit = delta.signum() > 0 ? delta : BigDecimal.ZERO;
+        BigDecimal debit = delta.signum() < 0 ? delta.negate() : BigDecimal.ZERO;
+        if (sign < 0) {
+            credit = credit.negate();
+            debit = debit.negate();
+        }
+
+        if (updateDay(conn, accNum, day, tx.getTxType(), signedDelta, credit, debit, sign) == 0) {
+            if (sign < 0) return; // nothing recorded for that day, nothing to undo
+
+            BigDecimal opening = closingBefore(conn, accNum, day);
+            if (opening == null) {
+                // First summary row for the account: derive from the balance the caller just wrote
+                BigDecimal current = currentBalance(conn, accNum);
+                if (current == null) return; // account does not live in this database (other shard)
+                opening = current.subtract(signedDelta);
+            }
+            insertDay(conn, accNum, day, opening); // false = lost a race with a concurrent insert; row exists either way
+            updateDay(conn, accNum, day, tx.getTxType(), signedDelta, credit, debit, sign);
+        }
+
+        //  Back-dated rows: every later day moves by the same delta
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE account_daily_summary SET opening_balance = opening_balance + ?, closing_balance = closing_balance + ? " +
+                "WHERE account_number = ? AND summary_date > ?")) {
+            ps.setBigDecimal(1, signedDelta);
+            ps.setBigDecimal(2, signedDelta);
+            ps.setString(3, accNum);
+            ps.setDate(4, Date.valueOf(day));
+            ps.executeUpdate();
+        }
+
+        bumpCategory(conn, accNum, day, tx.getCategory(), sign);
+        BalanceCheckpointDao.apply(conn, accNum, day, tx, signedDelta, sign);
+    }
+
+    private static int updateDay(Connection conn, String accNum, LocalDate day, TransactionRecord.TxType type,
+                                 BigDecimal delta, BigDecimal credit, BigDecimal debit, int sign) throws SQLException {
+        String col = countColumn(type);
+        String sql = "UPDATE account_daily_summary SET closing_balance = closing_balance + ?, " +
+                "total_credits = total_credits + ?, total_debits = total_debits + ?, " +
+                col + " = " + col + " + ? WHERE account_number = ? AND summary_date = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setBigDecimal(1, delta);
+            ps.setBigDecimal(2, credit);
+            ps.setBigDecimal(3, debit);
+            ps.setInt(4, sign);
+            ps.setString(5, accNum);
+            ps.setDate(6, Date.valueOf(day));
+            return ps.executeUpdate();
+        }
+    }
+
+    //  Empty row for the day (counters zero, closing = opening); false if it already existed
+    private static boolean insertDay(Connection conn, String accNum, LocalDate day, BigDecimal opening) throws SQLException {
+        String sql = "INSERT INTO account_daily_summary (account_number, summary_date, opening_balance, closing_balance) " +
+                "VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, accNum);
+            ps.setDate(2, Date.valueOf(day));
+            ps.setBigDecimal(3, opening);
+            ps.setBigDecimal(4, opening);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) return false;
+            throw e;
+        }
+    }
+
+    private static void bumpCategory(Connection conn, String accNum, LocalDate day, String category, int sign) throws SQLException {
+        String update = "UPDATE account_daily_category SET tx_count = tx_count + ? " +
+                "WHERE account_number = ? AND summary_date = ? AND category = ?";
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try (PreparedStatement ps = conn.prepareStatement(update)) {
+                ps.setInt(1, sign);
+                ps.setString(2, accNum);
+                ps.setDate(3, Date.valueOf(day));
+                ps.setString(4, category);
+                if (ps.executeUpdate() > 0 || sign < 0) return;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO account_daily_category (account_number, summary_date, category, tx_count) VALUES (?, ?, ?, 1)")) {
+                ps.setString(1, accNum);
+                ps.setDate(2, Date.valueOf(day));
+                ps.setString(3, category);
+                ps.executeUpdate();
+                return;
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) throw e; // concurrent insert: retry the update once
+            }
+        }
+    }
+
+    static BigDecimal closingBefore(Connection conn, String accNum, LocalDate day) throws SQLException {
+        String sql = "SELECT closing_balance FROM account_daily_summary " +
+                "WHERE account_number = ? AND summary_date < ? ORDER BY summary_date DESC LIMIT 1";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, accNum);
+            ps.setDate(2, Date.valueOf(day));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal(1) : null;
+            }
+        }
+    }
+
+    //  The account's first summarised day on or after `day` (null if none)
+    static DailySummary firstOnOrAfter(Connection conn, String accNum, LocalDate day) throws SQLException {
+        String sql = "SELECT * FROM account_daily_summary " +
+                "WHERE account_number = ? AND summary_date >= ? ORDER BY summary_date LIMIT 1";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, accNum);
+            ps.setDate(2, Date.valueOf(day));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? readRow(rs) : null;
+            }
+        }
+    }
+
+    private static BigDecimal currentBalance(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT balance FROM accounts WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal(1) : null;
+            }
+        }
+    }
+
+    private static String countColumn(TransactionRecord.TxType type) {
+        switch (type) {
+            case DEPOSIT:  return "deposit_count";
+            case WITHDRAW: return "withdraw_count";
+            case TRANSFER: return "transfer_count";
+            default:       return "closed_count";
+        }
+    }
+
+    // ------------------- READ -------------------
+
+    //  Daily rows for an account between two dates (inclusive), oldest first
+    public List<DailySummary> getDailySummaries(String accNum, LocalDate from, LocalDate to) {
+        Map<LocalDate, DailySummary> days = new TreeMap<>();
+        String sql = "SELECT * FROM account_daily_summary WHERE account_number = ? AND summary_date BETWEEN ? AND ? " +
+                "ORDER BY summary_date";
+        String catSql = "SELECT summary_date, category, tx_count FROM account_daily_category " +
+                "WHERE account_number = ? AND summary_date BETWEEN ? AND ?";
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, accNum);
+                ps.setDate(2, Date.valueOf(from));
+                ps.setDate(3, Date.valueOf(to));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        DailySummary d = readRow(rs);
+                        days.put(d.getFromDate(), d);
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(catSql)) {
+                ps.setString(1, accNum);
+                ps.setDate(2, Date.valueOf(from));
+                ps.setDate(3, Date.valueOf(to));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        DailySummary d = days.get(rs.getDate("summary_date").toLocalDate());
+                        if (d != null) d.addCategoryCount(rs.getString("category"), rs.getInt("tx_count"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>(days.values());
+    }
+
+    //  Closing balance at the end of the last summarised day before the given date (null if none)
+    public BigDecimal getClosingBefore(String accNum, LocalDate day) {
+        try (Connection conn = getConnection()) {
+            return closingBefore(conn, accNum, day);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Average end-of-day balance over a month, from at most one summary row per day.
+     * Returns null when the account has no summary history up to the end of the month.
+     */
+    public BigDecimal averageDailyBalance(String accNum, YearMonth month) {
+        LocalDate start = month.atDay(1);
+        LocalDate end = month.atEndOfMonth();
+        List<DailySummary> rows = getDailySummaries(accNum, start, end);
+
+        BigDecimal carry = getClosingBefore(accNum, start);
+        if (carry == null) {
+            if (rows.isEmpty()) return null;
+            carry = rows.get(0).getOpeningBalance();
+        }
+
+        BigDecimal sum = BigDecimal.ZERO;
+        int next = 0;
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            if (next < rows.size() && rows.get(next).getFromDate().equals(d)) {
+                carry = rows.get(next++).getClosingBalance();
+            }
+            sum = sum.add(carry);
+        }
+        return sum.divide(BigDecimal.valueOf(month.lengthOfMonth()), 2, RoundingMode.HALF_EVEN);
+    }
+
+    //  Bank-wide totals for one day (dashboard), aggregated in the database
+    public DailySummary getDayTotals(LocalDate day) {
+        DailySummary total = new DailySummary("*", day, BigDecimal.ZERO, BigDecimal.ZERO);
+        String sql = "SELECT SUM(opening_balance) o, SUM(closing_balance) c, SUM(total_credits) cr, SUM(total_debits) dr, " +
+                "SUM(deposit_count) dep, SUM(withdraw_count) wd, SUM(transfer_count) tr, SUM(closed_count) cl " +
+                "FROM account_daily_summary WHERE summary_date = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setDate(1, Date.valueOf(day));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getBigDecimal("o") != null) {
+                    total.setOpeningBalance(rs.getBigDecimal("o"));
+                    total.setClosingBalance(rs.getBigDecimal("c"));
+                    total.addCredits(rs.getBigDecimal("cr"));
+                    total.addDebits(rs.getBigDecimal("dr"));
+                    total.addTypeCount(TransactionRecord.TxType.DEPOSIT, rs.getInt("dep"));
+                    total.addTypeCount(TransactionRecord.TxType.WITHDRAW, rs.getInt("wd"));
+                    total.addTypeCount(TransactionRecord.TxType.TRANSFER, rs.getInt("tr"));
+                    total.addTypeCount(TransactionRecord.TxType.ACCOUNT_CLOSED, rs.getInt("cl"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return total;
+    }
+
+    private static DailySummary readRow(ResultSet rs) throws SQLException {
+        DailySummary d = new DailySummary(
+                rs.getString("account_number"),
+                rs.getDate("summary_date").toLocalDate(),
+                rs.getBigDecimal("opening_balance"),
+                rs.getBigDecimal("closing_balance"));
+        d.addCredits(rs.getBigDecimal("total_credits"));
+        d.addDebits(rs.getBigDecimal("total_debits"));
+        d.addTypeCount(TransactionRecord.TxType.DEPOSIT, rs.getInt("deposit_count"));
+        d.addTypeCount(TransactionRecord.TxType.WITHDRAW, rs.getInt("withdraw_count"));
+        d.addTypeCount(TransactionRecord.TxType.TRANSFER, rs.getInt("transfer_count"));
+        d.addTypeCount(TransactionRecord.TxType.ACCOUNT_CLOSED, rs.getInt("closed_count"));
+        return d;
+    }
+
+    // ------------------- REBUILD (BACKFILL) -------------------
+
+    /**
+     * Recompute one account's summaries from the raw ledger.
+     * Balances are anchored on the current accounts.balance and walked backwards,
+     * so opening balances that were never logged as transactions still come out right.
+     */
+    public void rebuild(String accNum) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                BigDecimal current = currentBalance(conn, accNum);
+                if (current == null) {
+                    conn.rollback();
+                    return;
+                }
+
+                TreeMap<LocalDate, DailySummary> days = new TreeMap<>();
+                loadSide(conn, accNum, "to_account", true, days);
+                loadSide(conn, accNum, "from_account", false, days);
+
+                BigDecimal running = current;
+                for (DailySummary d : days.descendingMap().values()) {
+                    d.setClosingBalance(running);
+                    running = running.subtract(d.getTotalCredits()).add(d.getTotalDebits());
+                    d.setOpeningBalance(running);
+                }
+
+                deleteFor(conn, accNum);
+                insertAll(conn, days.values());
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Rebuild every account in this database; returns the number of accounts processed
+    public int rebuildAll() {
+        List<String> accNos = new ArrayList<>();
+        try (Connection conn = getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT account_number FROM accounts ORDER BY account_number")) {
+            while (rs.next()) accNos.add(rs.getString(1));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        for (String accNo : accNos) {
+            rebuild(accNo);
+        }
+        return accNos.size();
+    }
+
+    private static void loadSide(Connection conn, String accNum, String column, boolean credit,
+                                 Map<LocalDate, DailySummary> days) throws SQLException {
+        String sql = "SELECT DATE(created_at) d, tx_type, category, COUNT(*) n, SUM(amount) amt FROM transactions " +
+                "WHERE " + column + " = ?" + (credit ? "" : " AND (to_account IS NULL OR to_account <> from_account)") +
+                " GROUP BY DATE(created_at), tx_type, category";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    LocalDate day = rs.getDate("d").toLocalDate();
+                    DailySummary d = days.computeIfAbsent(day, k -> new DailySummary(accNum, k, null, null));
+                    BigDecimal amt = rs.getBigDecimal("amt");
+                    if (credit) d.addCredits(amt); else d.addDebits(amt);
+                    d.addTypeCount(TransactionRecord.TxType.valueOf(rs.getString("tx_type")), rs.getInt("n"));
+                    d.addCategoryCount(rs.getString("category"), rs.getInt("n"));
+                }
+            }
+        }
+    }
+
+    private static void deleteFor(Connection conn, String accNum) throws SQLException {
+        for (String table : new String[]{"account_daily_summary", "account_daily_category"}) {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE account_number = ?")) {
+                ps.setString(1, accNum);
+                ps.executeUpdate();
+            }
+        }
+        BalanceCheckpointDao.deleteFor(conn, accNum); // checkpoints start again from the rebuilt days
+    }
+
+    private static void insertAll(Connection conn, Iterable<DailySummary> days) throws SQLException {
+        String sql = "INSERT INTO account_daily_summary (account_number, summary_date, opening_balance, closing_balance, " +
+                "total_credits, total_debits, deposit_count, withdraw_count, transfer_count, closed_count) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String catSql = "INSERT INTO account_daily_category (account_number, summary_date, category, tx_count) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             PreparedStatement cat = conn.prepareStatement(catSql)) {
+            for (DailySummary d : days) {
+                Date day = Date.valueOf(d.getFromDate());
+                ps.setString(1, d.getAccountNumber());
+                ps.setDate(2, day);
+                ps.setBigDecimal(3, d.getOpeningBalance());
+                ps.setBigDecimal(4, d.getClosingBalance());
+                ps.setBigDecimal(5, d.getTotalCredits());
+                ps.setBigDecimal(6, d.getTotalDebits());
+                ps.setInt(7, d.getCount(TransactionRecord.TxType.DEPOSIT));
+                ps.setInt(8, d.getCount(TransactionRecord.TxType.WITHDRAW));
+                ps.setInt(9, d.getCount(TransactionRecord.TxType.TRANSFER));
+                ps.setInt(10, d.getCount(TransactionRecord.TxType.ACCOUNT_CLOSED));
+                ps.addBatch();
+
+                for (Map.Entry<String, Integer> e : d.getCategoryCounts().entrySet()) {
+                    cat.setString(1, d.getAccountNumber());
+                    cat.setDate(2, day);
+                    cat.setString(3, e.getKey());
+                    cat.setInt(4, e.getValue());
+                    cat.addBatch();
+                }
+            }
+            ps.executeBatch();
+            cat.executeBatch();
+        }
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+}
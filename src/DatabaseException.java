@@ -0,0 +1,14 @@
+/**
+ * The database could not answer: it is unreachable, too slow for the caller's deadline,
+ * or its circuit breaker is open. Unlike ordinary SQLExceptions (constraint violations
+ * etc.), which the DAOs report and absorb, these propagate to the caller unchecked, so an
+ * outage surfaces as an error instead of a "not found" or a silent false.
+ */
+public class DatabaseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * No connection to the database, or its circuit breaker is open after repeated failures
+ * (calls fail fast until a trial call succeeds again; see CircuitBreaker).
+ */
+public class DatabaseUnavailableException extends DatabaseException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
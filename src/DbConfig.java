@@ -0,0 +1,70 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * JDBC connection settings for one database: the default MySQL instance,
+ * or one shard when accounts are spread across several databases.
+ */
+public class DbConfig {
+    public static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/banking_simulator";
+    public static final String DEFAULT_USER = "root";     // change if needed
+    public static final String DEFAULT_PASS = "system";   // change to your MySQL password
+
+    private final String url;
+    private final String user;
+    private final String pass;
+
+    public DbConfig(String url, String user, String pass) {
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        loadDriver(url);
+    }
+
+    //  Local MySQL database used by the console and the test harnesses
+    public static DbConfig defaults() {
+        return new DbConfig(DEFAULT_URL, DEFAULT_USER, DEFAULT_PASS);
+    }
+
+    public String getUrl() { return url; }
+    public String getUser() { return user; }
+
+    //  Inside a GroupCommit the thread's shared connection is returned instead of a new one
+    //  (opened, guarded and traced by this method). New connections are guarded (timeouts,
+    //  circuit breaker: DbGuard), count against the thread's workload budget (Workload), and
+    //  statements are traced only while DbTracing has a use for it
+    public Connection getConnection() throws SQLException {
+        Connection grouped = GroupCommit.connectionFor(this);
+        if (grouped != null) return grouped;
+        return DbTracing.trace(DbGuard.connect(this, () -> Workload.open(this,
+                () -> DbTracing.acquire(this, () -> DriverManager.getConnection(url, user, pass)))));
+    }
+
+    //  Only MySQL needs an explicit driver load; embedded drivers (H2 etc.) self-register
+    private static void loadDriver(String url) {
+        if (url == null || !url.startsWith("jdbc:mysql:")) return;
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("MySQL driver not found", e);
+        }
+    }
+
+    //  Same database and login = same config (GroupCommit shares one connection per database)
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DbConfig d && Objects.equals(d.url, url) && Objects.equals(d.user, user);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(url, user);
+    }
+
+    @Override
+    public String toString() {
+        return "DbConfig[" + url + "]";
+    }
+}
@@ -0,0 +1,107 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+
+/**
+ * Bounds how long a statement may block and turns infrastructure failures into unchecked
+ * DatabaseExceptions, for every connection DbConfig hands out.
+ *
+ * Each execute gets a JDBC query timeout: the calling operation's remaining Deadline, or
+ * `banking.db.timeout.ms` (default 30 s) outside one. A statement that times out throws
+ * DeadlineExceededException and a lost connection throws DatabaseUnavailableException;
+ * both count against the database's CircuitBreaker and get past the DAOs' SQLException
+ * handlers. Other SQLExceptions (constraint violations, bad SQL) are passed on unchanged.
+ */
+final class DbGuard {
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("banking.db.timeout.ms", 30_000L);
+
+    private DbGuard() {}
+
+    //  Open a connection through opener unless the breaker is open; failures count against it
+    static Connection connect(DbConfig db, DbTracing.ConnectionOpener opener) {
+        CircuitBreaker breaker = CircuitBreaker.forDb(db);
+        breaker.beforeCall();
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.remainingNanos() <= 0) throw deadline.expired(null);
+        try {
+            return guard(db, opener.open());
+        } catch (SQLException e) {
+            breaker.onFailure();
+            throw new DatabaseUnavailableException("Cannot connect to " + db.getUrl() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Connection guard(DbConfig db, Connection conn) {
+        CircuitBreaker breaker = CircuitBreaker.forDb(db);
+        InvocationHandler handler = (p, method, args) -> {
+            Object result = invoke(conn, method, args); // commit/rollback/close keep their SQLExceptions
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return guardStatement((Statement) result, breaker, PreparedStatement.class);
+                case "createStatement":
+                    return guardStatement((Statement) result, breaker, Statement.class);
+                default:
+                    return result;
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    private static <S extends Statement> S guardStatement(Statement stmt, CircuitBreaker breaker, Class<S> type) {
+        InvocationHandler handler = (p, method, args) -> {
+            if (!method.getName().startsWith("execute")) return invoke(stmt, method, args);
+            Deadline deadline = Deadline.current();
+            stmt.setQueryTimeout(deadline != null
+                    ? deadline.queryTimeoutSeconds()
+                    : (int) Math.max(1, (DEFAULT_TIMEOUT_MILLIS + 999) / 1000));
+            try {
+                Object result = method.invoke(stmt, args);
+                breaker.onSuccess();
+                return result;
+            } catch (InvocationTargetException e) {
+                throw classify(e.getCause(), breaker);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    //  Timeouts and lost connections become DatabaseExceptions; anything else is rethrown as is
+    private static Throwable classify(Throwable t, CircuitBreaker breaker) {
+        if (t instanceof SQLTimeoutException) {
+            breaker.onFailure();
+            Deadline deadline = Deadline.current();
+            return deadline != null ? deadline.expired(t)
+                    : new DeadlineExceededException("Statement timed out: " + t.getMessage(), t);
+        }
+        if (t instanceof SQLException e && isConnectionFailure(e)) {
+            breaker.onFailure();
+            return new DatabaseUnavailableException("Database connection failed: " + e.getMessage(), e);
+        }
+        return t;
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLNonTransientConnectionException || e instanceof SQLTransientConnectionException
+                || e instanceof SQLRecoverableException || (state != null && state.startsWith("08"));
+    }
+}
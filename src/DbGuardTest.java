@@ -0,0 +1,139 @@
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks DbGuard, CircuitBreaker and Deadline against a stub JDBC connection (a Proxy that
+ * records query timeouts and fails on demand): the deadline-derived query timeout, breaker
+ * opening after N failures, failing fast while open, and half-open recovery. No database needed.
+ * Usage: java DbGuardTest
+ */
+public class DbGuardTest {
+
+    //  What the stub's next execute does
+    private static volatile Throwable failWith;
+    private static volatile int lastTimeout = -1;
+    private static final AtomicInteger opened = new AtomicInteger();
+    private static final AtomicInteger executed = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        //  Read once, when CircuitBreaker is first used below
+        System.setProperty("banking.breaker.failures", "3");
+        System.setProperty("banking.breaker.open.ms", "300");
+        DbConfig db = new DbConfig("jdbc:stub:dbguardtest", "sa", "");
+
+        //  Query timeout: 30 s default outside a deadline, the remaining time rounded up inside one
+        execute(db);
+        System.out.println("Timeout without deadline: " + lastTimeout + " s (Expected 30)");
+        Deadline.within("test", Duration.ofMillis(2_500), () -> {
+            execute(db);
+            return null;
+        });
+        System.out.println("Timeout with 2.5 s left: " + lastTimeout + " s (Expected 3)");
+        String expired = Deadline.within("test", Duration.ofMillis(1), () -> {
+            sleep(20);
+            int before = executed.get();
+            try {
+                execute(db);
+                return "executed";
+            } catch (DeadlineExceededException e) {
+                return executed.get() == before ? "DeadlineExceededException, not sent" : "sent anyway";
+            }
+        });
+        System.out.println("Statement after the deadline: " + expired + " (Expected DeadlineExceededException, not sent)");
+
+        //  Ordinary SQL errors pass through and don't count against the breaker
+        failWith = new SQLIntegrityConstraintViolationException("duplicate", "23000");
+        for (int i = 0; i < 5; i++) System.out.println("Constraint violation: " + outcome(db) + " (Expected SQLIntegrityConstraintViolationException)");
+        System.out.println("Breaker after constraint violations: " + CircuitBreaker.forDb(db).getState() + " (Expected CLOSED)");
+
+        //  Three timeouts in a row open the circuit
+        failWith = new SQLTimeoutException("query timed out");
+        for (int i = 0; i < 3; i++) System.out.println("Timed out statement: " + outcome(db) + " (Expected DeadlineExceededException)");
+        System.out.println("Breaker after 3 timeouts: " + CircuitBreaker.forDb(db).getState() + " (Expected OPEN)");
+
+        //  While open, callers fail at once without a connection attempt
+        failWith = null;
+        int opensBefore = opened.get();
+        long t0 = System.nanoTime();
+        String fast = outcome(db);
+        long micros = (System.nanoTime() - t0) / 1_000;
+        System.out.println("While open: " + fast + ", connections attempted " + (opened.get() - opensBefore)
+                + ", " + micros + " us (Expected DatabaseUnavailableException, 0)");
+
+        //  After open.ms one trial goes through; it fails, so the circuit opens again
+        sleep(350);
+        failWith = new SQLNonTransientConnectionException("connection reset", "08S01");
+        System.out.println("Failed trial: " + outcome(db) + " (Expected DatabaseUnavailableException)");
+        System.out.println("Breaker after failed trial: " + CircuitBreaker.forDb(db).getState() + " (Expected OPEN)");
+        System.out.println("Right after: " + outcome(db) + " (Expected DatabaseUnavailableException)");
+
+        //  Next trial succeeds and closes it
+        sleep(350);
+        failWith = null;
+        System.out.println("Successful trial: " + outcome(db) + " (Expected ok)");
+        System.out.println("Breaker after successful trial: " + CircuitBreaker.forDb(db).getState() + " (Expected CLOSED)");
+        System.out.println("Next call: " + outcome(db) + " (Expected ok)");
+    }
+
+    private static void execute(DbConfig db) {
+        try (Connection conn = DbGuard.connect(db, DbGuardTest::stubConnection);
+             PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+            ps.executeQuery();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String outcome(DbConfig db) {
+        try {
+            execute(db);
+            return "ok";
+        } catch (IllegalStateException e) {
+            return e.getCause().getClass().getSimpleName();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+
+    private static Connection stubConnection() {
+        opened.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (p, method, args) ->
+                        method.getName().equals("prepareStatement") ? stubStatement() : defaultValue(method.getReturnType()));
+    }
+
+    private static PreparedStatement stubStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (p, method, args) -> {
+                    if (method.getName().equals("setQueryTimeout")) lastTimeout = (Integer) args[0];
+                    if (method.getName().startsWith("execute")) {
+                        executed.incrementAndGet();
+                        Throwable failure = failWith;
+                        if (failure != null) throw failure;
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
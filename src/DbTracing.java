@@ -0,0 +1,269 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Where the time goes inside a banking operation: Java Flight Recorder events for
+ * connection acquisition, every statement execution and every AccountManager operation,
+ * plus an optional slow-query log.
+ *
+ * Statements are only traced through a proxy while a recording has banking.Statement
+ * enabled or the slow-query log is on; otherwise DbConfig hands out the plain connection
+ * and the cost is one flag check per getConnection(). Operation and connection events
+ * are ordinary JFR events (free when not recorded).
+ *
+ * Record with:    java -XX:StartFlightRecording:filename=banking.jfr ...
+ * Slow-query log: -Dbanking.slowquery.ms=50 [-Dbanking.slowquery.sample=0.1]
+ *                 (statements at or over the threshold, this fraction of them, to stderr)
+ */
+final class DbTracing {
+
+    // ------------------- EVENTS -------------------
+
+    @Name("banking.ConnectionAcquire")
+    @Label("Connection Acquire")
+    @Category({"Banking", "Database"})
+    @StackTrace(false)
+    static final class ConnectionEvent extends Event {
+        @Label("Database URL")
+        String url;
+    }
+
+    @Name("banking.Statement")
+    @Label("SQL Statement")
+    @Category({"Banking", "Database"})
+    @Description("One statement execution; for queries the duration excludes fetching the rows")
+    @StackTrace(false)
+    static final class StatementEvent extends Event {
+        @Label("SQL")
+        String sql;
+        @Label("Account Hash")
+        String accountHash;
+        @Label("Rows")
+        @Description("Rows updated, or rows read by the time the result set was closed")
+        long rows;
+    }
+
+    @Name("banking.Operation")
+    @Label("Banking Operation")
+    @Category({"Banking"})
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Account Hash")
+        String accountHash;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    private static final EventType STATEMENT_TYPE = EventType.getEventType(StatementEvent.class);
+
+    private static volatile long slowMillis = Long.getLong("banking.slowquery.ms", -1L); // < 0 = off
+    private static volatile double slowSample = Double.parseDouble(System.getProperty("banking.slowquery.sample", "1"));
+
+    private DbTracing() {}
+
+    //  Change the slow-query log at runtime (thresholdMillis < 0 turns it off)
+    static void setSlowQueryLog(long thresholdMillis, double sampleRate) {
+        slowSample = Math.max(0, Math.min(1, sampleRate));
+        slowMillis = thresholdMillis;
+    }
+
+    //  Short stable tag for an account number, so recordings don't carry the number itself
+    static String accountHash(String accNo) {
+        if (accNo == null) return null;
+        return Integer.toHexString(accNo.hashCode() * 0x9E3779B9);
+    }
+
+    //  Start timing a business operation; pass the result to end()
+    static OperationEvent begin(String operation, String accNo) {
+        OperationEvent ev = new OperationEvent();
+        if (ev.isEnabled()) {
+            ev.operation = operation;
+            ev.accountHash = accountHash(accNo);
+            ev.begin();
+        }
+        return ev;
+    }
+
+    static void end(OperationEvent ev, boolean succeeded) {
+        if (!ev.isEnabled()) return;
+        ev.succeeded = succeeded;
+        ev.commit();
+    }
+
+    // ------------------- CONNECTIONS -------------------
+
+    //  Open a connection through opener, recording how long it took
+    static Connection acquire(DbConfig db, ConnectionOpener opener) throws java.sql.SQLException {
+        ConnectionEvent ev = new ConnectionEvent();
+        ev.begin();
+        Connection conn = opener.open();
+        if (ev.shouldCommit()) {
+            ev.url = db.getUrl();
+            ev.commit();
+        }
+        return conn;
+    }
+
+    interface ConnectionOpener {
+        Connection open() throws java.sql.SQLException;
+    }
+
+    //  Statement tracing proxy, or conn itself when nothing would use the measurements
+    static Connection trace(Connection conn) {
+        if (slowMillis < 0 && !STATEMENT_TYPE.isEnabled()) return conn;
+        InvocationHandler handler = (p, method, args) -> {
+            Object result = invoke(conn, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return traceStatement((PreparedStatement) result, (String) args[0], PreparedStatement.class);
+                case "createStatement":
+                    return traceStatement((Statement) result, null, Statement.class);
+                default:
+                    return result;
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    // ------------------- STATEMENTS -------------------
+
+    private static <S extends Statement> S traceStatement(S stmt, String template, Class<S> type) {
+        StatementTrace trace = new StatementTrace(template);
+        InvocationHandler handler = (p, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : template;
+                trace.start(sql);
+                Object result = invoke(stmt, method, args);
+                if (result instanceof ResultSet rs) {
+                    trace.stopQuery();
+                    return traceResultSet(rs, trace);
+                }
+                trace.finish(rowsOf(result));
+                return result;
+            }
+            if (name.equals("setString") && trace.accountHash == null
+                    && args[1] instanceof String v && v.length() == 11 && BalanceIndex.key(v) >= 0) {
+                trace.accountHash = accountHash(v); // first account-number parameter
+            }
+            if (name.equals("close")) trace.closePending();
+            return invoke(stmt, method, args);
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static ResultSet traceResultSet(ResultSet rs, StatementTrace trace) {
+        InvocationHandler handler = (p, method, args) -> {
+            Object result = invoke(rs, method, args);
+            switch (method.getName()) {
+                case "next":
+                    if (Boolean.TRUE.equals(result)) trace.rowsRead++;
+                    break;
+                case "close":
+                    trace.closePending();
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, handler);
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Integer n) return n;
+        if (result instanceof Long n) return n;
+        if (result instanceof int[] batch) {
+            long sum = 0;
+            for (int n : batch) sum += Math.max(0, n);
+            return sum;
+        }
+        return -1; // execute(): row count not known
+    }
+
+    //  One statement's current execution; queries are reported when their result set closes
+    private static final class StatementTrace {
+        private final String template;
+        private StatementEvent event;
+        private String sql;
+        private long startNanos;
+        private long elapsedNanos;
+        String accountHash;
+        long rowsRead;
+        private boolean queryPending;
+
+        StatementTrace(String template) {
+            this.template = template;
+        }
+
+        void start(String sql) {
+            closePending();
+            this.sql = sql;
+            event = new StatementEvent();
+            event.begin();
+            startNanos = System.nanoTime();
+        }
+
+        void stopQuery() {
+            elapsedNanos = System.nanoTime() - startNanos;
+            event.end();
+            rowsRead = 0;
+            queryPending = true;
+        }
+
+        void finish(long rows) {
+            elapsedNanos = System.nanoTime() - startNanos;
+            event.end();
+            report(rows);
+        }
+
+        void closePending() {
+            if (!queryPending) return;
+            queryPending = false;
+            report(rowsRead);
+        }
+
+        private void report(long rows) {
+            if (event.shouldCommit()) {
+                event.sql = sql != null ? sql : template;
+                event.accountHash = accountHash;
+                event.rows = rows;
+                event.commit();
+            }
+            logIfSlow(sql != null ? sql : template, accountHash, rows, elapsedNanos);
+        }
+    }
+
+    private static void logIfSlow(String sql, String accountHash, long rows, long elapsedNanos) {
+        long threshold = slowMillis;
+        if (threshold < 0 || elapsedNanos < threshold * 1_000_000) return;
+        if (slowSample < 1 && ThreadLocalRandom.current().nextDouble() >= slowSample) return;
+        System.err.printf("[slow-query] %s %d ms rows=%d acct=%s %s%n",
+                LocalDateTime.now(), elapsedNanos / 1_000_000, rows, accountHash == null ? "-" : accountHash, sql);
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
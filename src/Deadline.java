@@ -0,0 +1,84 @@
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound time budget of one operation. AccountManager opens one per single-account
+ * operation; every statement the operation runs gets the time that is left as its JDBC
+ * query timeout (see DbGuard), and a statement that would start after the deadline fails
+ * at once with DeadlineExceededException. Nested operations keep the earlier deadline.
+ */
+final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final String operation;
+    private final long expiresAtNanos;
+
+    private Deadline(String operation, long expiresAtNanos) {
+        this.operation = operation;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    //  Deadline of the calling thread's operation, or null
+    static Deadline current() {
+        return CURRENT.get();
+    }
+
+    //  Run body with at most budget to spend (null or non-positive: no deadline of its own)
+    static <T> T within(String operation, Duration budget, Supplier<T> body) {
+        Deadline outer = CURRENT.get();
+        if (budget == null || budget.isZero() || budget.isNegative()) return body.get();
+        long expires = System.nanoTime() + budget.toNanos();
+        if (outer != null && outer.expiresAtNanos - expires <= 0) return body.get(); // outer is stricter
+        CURRENT.set(new Deadline(operation, expires));
+        try {
+            return body.get();
+        } finally {
+            if (outer != null) CURRENT.set(outer);
+            else CURRENT.remove();
+        }
+    }
+
+    //  within() for tools whose work throws checked exceptions (long scans, index builds)
+    interface Task<E extends Exception> {
+        void run() throws E;
+    }
+
+    static <E extends Exception> void runWithin(String operation, Duration budget, Task<E> task) throws E {
+        Deadline outer = CURRENT.get();
+        CURRENT.set(new Deadline(operation, System.nanoTime() + budget.toNanos()));
+        try {
+            task.run();
+        } finally {
+            if (outer != null) CURRENT.set(outer);
+            else CURRENT.remove();
+        }
+    }
+
+    //  Run body on this thread under another thread's deadline (hedged reads)
+    static <T> T bind(Deadline deadline, Supplier<T> body) {
+        Deadline previous = CURRENT.get();
+        if (deadline != null) CURRENT.set(deadline);
+        try {
+            return body.get();
+        } finally {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+        }
+    }
+
+    long remainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    //  Query timeout for a statement starting now: the remaining time rounded up to whole seconds
+    int queryTimeoutSeconds() {
+        long remaining = remainingNanos();
+        if (remaining <= 0) throw expired(null);
+        return (int) Math.min(Integer.MAX_VALUE, (remaining + 999_999_999L) / 1_000_000_000L);
+    }
+
+    DeadlineExceededException expired(Throwable cause) {
+        return new DeadlineExceededException(operation + " timed out", cause);
+    }
+}
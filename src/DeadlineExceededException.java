@@ -0,0 +1,12 @@
+/**
+ * The operation's deadline (see Deadline) passed before the database answered, or a
+ * statement ran into its query timeout.
+ */
+public class DeadlineExceededException extends DatabaseException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
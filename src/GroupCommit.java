@@ -0,0 +1,185 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread-bound group commit: while a GroupCommit is open on a thread, every
+ * DbConfig.getConnection() on that thread returns one shared connection per database,
+ * and the DAOs' own commit()/close() calls become no-ops. Many operations then share
+ * one database transaction, committed by {@link #commit()}.
+ *
+ * Each operation is bracketed by {@link #mark()}; if it throws, or a DAO asked for a
+ * rollback, {@link #undoCommand()} rolls back to the savepoint so only that operation is
+ * lost. Not for cross-shard transfers, whose phases must really commit in order.
+ *
+ * Commits are not atomic across databases, so callers keep each group to one database
+ * (BatchRunner splits its lanes by shard, JobCoordinator and StandingOrderScheduler work
+ * per database). Should a group span several anyway and a later commit fail, commit()
+ * throws PartialCommitException rather than pretend the group rolled back.
+ */
+final class GroupCommit implements AutoCloseable {
+
+    private static final ThreadLocal<GroupCommit> CURRENT = new ThreadLocal<>();
+
+    private final Map<DbConfig, Connection> real = new LinkedHashMap<>();
+    private final Map<DbConfig, Connection> shared = new LinkedHashMap<>();
+    private final Map<Connection, Savepoint> savepoints = new LinkedHashMap<>();
+    private boolean rollbackRequested;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private int afterCommitMark;
+
+    private GroupCommit() {}
+
+    //  Open a group on the calling thread
+    static GroupCommit begin() {
+        if (CURRENT.get() != null) throw new IllegalStateException("Group commit already open on this thread");
+        GroupCommit group = new GroupCommit();
+        CURRENT.set(group);
+        return group;
+    }
+
+    //  Group open on the calling thread, or null
+    static GroupCommit current() {
+        return CURRENT.get();
+    }
+
+    //  Run once the group commits (dropped if the operation is undone or the group rolls back)
+    void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    //  Shared connection for db if the calling thread is inside a group, else null
+    static Connection connectionFor(DbConfig db) throws SQLException {
+        GroupCommit group = CURRENT.get();
+        return group == null ? null : group.connection(db);
+    }
+
+    private Connection connection(DbConfig db) throws SQLException {
+        Connection proxy = shared.get(db);
+        if (proxy != null) return proxy;
+
+        CURRENT.remove(); // open the real connection outside the group
+        Connection conn;
+        try {
+            conn = db.getConnection();
+        } finally {
+            CURRENT.set(this);
+        }
+        conn.setAutoCommit(false);
+        real.put(db, conn);
+        savepoints.put(conn, conn.setSavepoint()); // joins the operation in progress
+        proxy = wrap(conn);
+        shared.put(db, proxy);
+        return proxy;
+    }
+
+    //  Start of one operation: remember where to roll back to
+    void mark() throws SQLException {
+        rollbackRequested = false;
+        afterCommitMark = afterCommit.size();
+        for (Connection conn : real.values()) {
+            Savepoint old = savepoints.put(conn, conn.setSavepoint());
+            if (old != null) conn.releaseSavepoint(old);
+        }
+    }
+
+    //  True if a DAO called rollback() during the current operation (it may have swallowed the error)
+    boolean rollbackRequested() {
+        return rollbackRequested;
+    }
+
+    //  Undo everything since mark(); earlier operations in the group are kept
+    void undoCommand() throws SQLException {
+        for (Connection conn : real.values()) {
+            Savepoint sp = savepoints.get(conn);
+            if (sp != null) conn.rollback(sp);
+        }
+        afterCommit.subList(afterCommitMark, afterCommit.size()).clear();
+        rollbackRequested = false;
+    }
+
+    //  Commit every database touched by the group, in the order they were first used
+    void commit() throws SQLException {
+        int committed = 0;
+        for (Connection conn : real.values()) {
+            try {
+                conn.commit();
+            } catch (SQLException e) {
+                if (committed > 0) throw new PartialCommitException(committed, real.size(), e);
+                throw e;
+            }
+            committed++;
+        }
+        savepoints.clear();
+        for (Runnable action : afterCommit) {
+            action.run();
+        }
+        afterCommit.clear();
+        afterCommitMark = 0;
+    }
+
+    //  Roll back anything uncommitted, close the connections and unbind the thread
+    @Override
+    public void close() {
+        CURRENT.remove();
+        List<Connection> conns = new ArrayList<>(real.values());
+        real.clear();
+        shared.clear();
+        for (Connection conn : conns) {
+            try {
+                conn.rollback();
+            } catch (SQLException ignored) {
+                // connection already broken
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    //  Connection view handed to the DAOs: transaction control is owned by the group
+    private Connection wrap(Connection conn) {
+        InvocationHandler handler = (p, method, args) -> {
+            switch (method.getName()) {
+                case "close", "commit", "setAutoCommit", "setReadOnly", "setTransactionIsolation":
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        rollbackRequested = true; // applied by undoCommand()
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    //  Some of the group's databases committed before another failed: neither applied nor rolled back
+    static final class PartialCommitException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        PartialCommitException(int committed, int databases, SQLException cause) {
+            super("Group committed on " + committed + " of " + databases + " databases, then failed: "
+                    + cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An authorization hold: an amount reserved against an account's available balance until
+ * it is captured (debited), released, or expires. The ledger balance only changes on capture.
+ */
+public class Hold {
+
+    private long holdId;
+    private final String accountNumber;
+    private final BigDecimal amount;
+    private final String reference;        // merchant / authorization reference, may be null
+    private final LocalDateTime createdAt;
+    private final LocalDateTime expiresAt;
+    private String status = "ACTIVE";      // ACTIVE, CAPTURED, RELEASED, EXPIRED
+
+    public Hold(String accountNumber, BigDecimal amount, String reference,
+                LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this.accountNumber = accountNumber;
+        this.amount = amount;
+        this.reference = reference;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    //  Getters
+    public long getHoldId() { return holdId; }
+    public String getAccountNumber() { return accountNumber; }
+    public BigDecimal getAmount() { return amount; }
+    public String getReference() { return reference; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public String getStatus() { return status; }
+
+    public boolean isActive() { return "ACTIVE".equals(status); }
+
+    //  Setters
+    public void setHoldId(long holdId) { this.holdId = holdId; }
+    public void setStatus(String status) { this.status = status; }
+
+    @Override
+    public String toString() {
+        return "Hold #" + holdId + " | " + accountNumber + " | ₹" + amount + " | " + status +
+                " | expires " + expiresAt + (reference == null ? "" : " | " + reference);
+    }
+}
@@ -0,0 +1,209 @@
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Authorization holds in one database (the account's).
+ *
+ * account_held keeps each account's total of ACTIVE holds, so the available balance
+ * (balance - held) is one primary-key read, and placing, capturing or releasing a hold
+ * touches one hold row and one total row whatever the number of holds. A hold leaves
+ * ACTIVE through a conditional UPDATE: of a capture, a release and an expiry racing on
+ * the same hold exactly one changes the row and adjusts the total.
+ */
+public class HoldDao {
+
+    static final String HOLDS_DDL =
+            "CREATE TABLE IF NOT EXISTS account_holds (" +
+            " hold_id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+            " account_number VARCHAR(20) NOT NULL," +
+            " amount DECIMAL(15,2) NOT NULL," +
+            " reference VARCHAR(64) NULL," +
+            " status VARCHAR(10) NOT NULL DEFAULT 'ACTIVE'," + // ACTIVE, CAPTURED, RELEASED, EXPIRED
+            " created_at DATETIME NOT NULL," +
+            " expires_at DATETIME NOT NULL," +
+            " closed_at DATETIME NULL," +
+            " INDEX idx_holds_account (account_number, status)," +
+            " INDEX idx_holds_expiry (status, expires_at))";
+
+    static final String HELD_DDL =
+            "CREATE TABLE IF NOT EXISTS account_held (" +
+            " account_number VARCHAR(20) PRIMARY KEY," +
+            " held DECIMAL(15,2) NOT NULL DEFAULT 0)";
+
+    private final DbConfig db;
+
+    public HoldDao(DbConfig db) {
+        this.db = db;
+    }
+
+    public void ensureSchema() {
+        try {
+            Schema.execute(db, HOLDS_DDL, HELD_DDL);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Insert the hold and add it to the account's held total; returns the new hold id
+    public long create(Hold h) throws SQLException {
+        String sql = "INSERT INTO account_holds (account_number, amount, reference, status, created_at, expires_at) " +
+                "VALUES (?, ?, ?, 'ACTIVE', ?, ?)";
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, h.getAccountNumber());
+                    ps.setBigDecimal(2, h.getAmount());
+                    ps.setString(3, h.getReference());
+                    ps.setTimestamp(4, Timestamp.valueOf(h.getCreatedAt()));
+                    ps.setTimestamp(5, Timestamp.valueOf(h.getExpiresAt()));
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        keys.next();
+                        h.setHoldId(keys.getLong(1));
+                    }
+                }
+                addHeld(conn, h.getAccountNumber(), h.getAmount());
+                conn.commit();
+                return h.getHoldId();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    //  Total of the account's ACTIVE holds (zero if it never had one)
+    public BigDecimal heldAmount(String accNum) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT held FROM account_held WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal(1) : BigDecimal.ZERO;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return BigDecimal.ZERO;
+        }
+    }
+
+    public Hold find(long holdId) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT * FROM account_holds WHERE hold_id = ?")) {
+            ps.setLong(1, holdId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? readRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public List<Hold> findActiveByAccount(String accNum) {
+        List<Hold> list = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT * FROM account_holds WHERE account_number = ? AND status = 'ACTIVE' ORDER BY hold_id")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(readRow(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    //  Stream every ACTIVE hold (startup load of the expiry wheel)
+    public void forEachActive(Consumer<Hold> action) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT * FROM account_holds WHERE status = 'ACTIVE'",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) action.accept(readRow(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Move one hold out of ACTIVE and take it off the held total; false if it had already left ACTIVE
+    public boolean close(Hold h, String status) throws SQLException {
+        return closeAll(List.of(h), status) == 1;
+    }
+
+    //  Close a batch of holds in one transaction (two round trips); returns how many were still ACTIVE
+    public int closeAll(List<Hold> holds, String status) throws SQLException {
+        if (holds.isEmpty()) return 0;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int[] changed;
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE account_holds SET status = ?, closed_at = ? WHERE hold_id = ? AND status = 'ACTIVE'")) {
+                    for (Hold h : holds) {
+                        ps.setString(1, status);
+                        ps.setTimestamp(2, now);
+                        ps.setLong(3, h.getHoldId());
+                        ps.addBatch();
+                    }
+                    changed = ps.executeBatch();
+                }
+                int closed = 0;
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE account_held SET held = held - ? WHERE account_number = ?")) {
+                    for (int i = 0; i < holds.size(); i++) {
+                        if (changed[i] != 1) continue; // already captured, released or expired
+                        Hold h = holds.get(i);
+                        h.setStatus(status);
+                        ps.setBigDecimal(1, h.getAmount());
+                        ps.setString(2, h.getAccountNumber());
+                        ps.addBatch();
+                        closed++;
+                    }
+                    if (closed > 0) ps.executeBatch();
+                }
+                conn.commit();
+                return closed;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    //  First hold on an account creates its total row (callers hold the account's lock)
+    private static void addHeld(Connection conn, String accNum, BigDecimal amount) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE account_held SET held = held + ? WHERE account_number = ?")) {
+            ps.setBigDecimal(1, amount);
+            ps.setString(2, accNum);
+            if (ps.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO account_held (account_number, held) VALUES (?, ?)")) {
+            ps.setString(1, accNum);
+            ps.setBigDecimal(2, amount);
+            ps.executeUpdate();
+        }
+    }
+
+    private static Hold readRow(ResultSet rs) throws SQLException {
+        Hold h = new Hold(
+                rs.getString("account_number"),
+                rs.getBigDecimal("amount"),
+                rs.getString("reference"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rs.getTimestamp("expires_at").toLocalDateTime());
+        h.setHoldId(rs.getLong("hold_id"));
+        h.setStatus(rs.getString("status"));
+        return h;
+    }
+}
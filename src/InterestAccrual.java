@@ -0,0 +1,78 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Interest accrued lazily between balance changes.
+ *
+ * An account's accrual state is the interest earned but not yet posted plus the time it
+ * was computed up to (its last balance change). Since the balance was constant from then
+ * on, the interest up to any later moment follows from the current balance alone, so
+ * nothing has to run while the account sits still. The rate matches the monthly job this
+ * replaces: 0.5% of the month's average balance, i.e. per second held the balance earns
+ * 0.5% / (seconds in that month). Interest for a month is posted the first time the account
+ * is touched after it ends (or by the month-end sweep, for accounts nobody touched).
+ */
+final class InterestAccrual {
+
+    static final BigDecimal MONTHLY_RATE = new BigDecimal("0.005");
+    private static final int SCALE = 8; // accrued interest is kept to 1e-8 rupee; postings are whole paise
+
+    private BigDecimal accrued;
+    private LocalDateTime asOf;
+
+    InterestAccrual(BigDecimal accrued, LocalDateTime asOf) {
+        this.accrued = accrued;
+        this.asOf = asOf;
+    }
+
+    BigDecimal getAccrued() { return accrued; }
+    LocalDateTime getAsOf() { return asOf; }
+
+    /**
+     * Bring the state up to `now` for an account whose balance has been `balance` since
+     * asOf. Returns the interest to post now: everything earned in months that have ended,
+     * in whole paise (the fraction of a paisa carries over). Each month's interest earns
+     * interest itself from the boundary it was due on.
+     */
+    BigDecimal fold(BigDecimal balance, LocalDateTime now) {
+        if (!now.isAfter(asOf)) return BigDecimal.ZERO;
+        LocalDateTime monthStart = YearMonth.from(now).atDay(1).atStartOfDay();
+        BigDecimal post = BigDecimal.ZERO;
+        while (asOf.isBefore(monthStart)) { // one posting per ended month, each compounding from its boundary
+            LocalDateTime boundary = YearMonth.from(asOf).plusMonths(1).atDay(1).atStartOfDay();
+            accrued = accrued.add(earned(balance.add(post), asOf, boundary));
+            BigDecimal paid = accrued.setScale(2, RoundingMode.DOWN);
+            accrued = accrued.subtract(paid);
+            post = post.add(paid);
+            asOf = boundary;
+        }
+        accrued = accrued.add(earned(balance.add(post), asOf, now));
+        asOf = now;
+        return post;
+    }
+
+    //  Interest owed for ended months, without changing the state (balance reads)
+    BigDecimal owed(BigDecimal balance, LocalDateTime now) {
+        return new InterestAccrual(accrued, asOf).fold(balance, now);
+    }
+
+    //  Interest on a constant balance held from `from` to `to`, pro rata per month
+    static BigDecimal earned(BigDecimal balance, LocalDateTime from, LocalDateTime to) {
+        BigDecimal total = BigDecimal.ZERO;
+        if (balance.signum() <= 0) return total;
+        while (from.isBefore(to)) {
+            YearMonth month = YearMonth.from(from);
+            LocalDateTime monthEnd = month.plusMonths(1).atDay(1).atStartOfDay();
+            LocalDateTime end = to.isBefore(monthEnd) ? to : monthEnd;
+            long held = Duration.between(from, end).getSeconds();
+            long monthSeconds = month.lengthOfMonth() * 86_400L;
+            total = total.add(balance.multiply(MONTHLY_RATE).multiply(BigDecimal.valueOf(held))
+                    .divide(BigDecimal.valueOf(monthSeconds), SCALE, RoundingMode.HALF_EVEN));
+            from = end;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,39 @@
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Checks that lazily folded interest matches the month-end average-balance interest.
+ * No database needed. Usage: java InterestAccrualTest
+ */
+public class InterestAccrualTest {
+    public static void main(String[] args) {
+        LocalDateTime june = LocalDateTime.of(2025, 6, 1, 0, 0);
+
+        //  Untouched for a whole month: 0.5% of the balance
+        InterestAccrual idle = new InterestAccrual(BigDecimal.ZERO, june);
+        System.out.println("Whole month on ₹10000: " + idle.fold(new BigDecimal("10000.00"), june.plusMonths(1))
+                + " (Expected 50.00)");
+
+        //  ₹10000 for 10 days, then ₹20000 for 20: average ₹16666.67, interest 83.33
+        InterestAccrual moved = new InterestAccrual(BigDecimal.ZERO, june);
+        BigDecimal midMonth = moved.fold(new BigDecimal("10000.00"), june.plusDays(10));
+        BigDecimal monthEnd = moved.fold(new BigDecimal("20000.00"), june.plusMonths(1).plusHours(5));
+        System.out.println("Posted mid-month: " + midMonth + " (Expected 0)");
+        System.out.println("Posted after month end: " + monthEnd + " (Expected 83.33)");
+
+        //  Three untouched months, each month's interest compounding: 50.00 + 50.25 + 50.50
+        InterestAccrual dormant = new InterestAccrual(BigDecimal.ZERO, june);
+        BigDecimal owed = dormant.owed(new BigDecimal("10000.00"), june.plusMonths(3));
+        System.out.println("Owed after three months: " + owed + " (Expected 150.75)");
+        System.out.println("State unchanged by owed(): " + dormant.getAsOf().equals(june) + " (Expected true)");
+        System.out.println("Posted after three months: " + dormant.fold(new BigDecimal("10000.00"), june.plusMonths(3))
+                + " (Expected 150.75)");
+
+        //  Paise fractions carry over instead of being lost each month
+        InterestAccrual small = new InterestAccrual(BigDecimal.ZERO, june);
+        BigDecimal balance = new BigDecimal("101.00");
+        for (int m = 1; m <= 12; m++) balance = balance.add(small.fold(balance, june.plusMonths(m)));
+        System.out.println("Year on ₹101: " + balance + " + " + small.getAccrued().stripTrailingZeros().toPlainString()
+                + " carried (Expected 107.22 + under 0.01; 101 x 1.005^12 = 107.23)");
+    }
+}
@@ -0,0 +1,419 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs a per-account batch job across several nodes (JVMs) sharing the same databases.
+ *
+ * One run of a job (job name + run key, e.g. "interest" / "2025-06") is split into
+ * account-number ranges, recorded once per database in job_partitions by whichever node
+ * gets there first. Nodes claim PENDING partitions with an expiring lease and heartbeat
+ * while they work; a partition whose lease ran out (its node died or stalled) is claimed
+ * again by another node, which resumes after the partition's last committed account.
+ * All lease times come from the database clock, so node clocks don't matter.
+ *
+ * A partition is processed in chunks. Each chunk's account work and the partition's new
+ * progress are one database transaction (GroupCommit), and the progress update only
+ * succeeds while this node still owns the partition: a node that lost its lease rolls the
+ * chunk back instead of committing it next to the new owner's. So every account's work
+ * takes effect exactly once, however often partitions change hands. Workers run as batch
+ * work (Workload); the heartbeat doesn't, so throttling never costs a node its leases.
+ */
+public class JobCoordinator {
+
+    static final String PARTITIONS_DDL =
+            "CREATE TABLE IF NOT EXISTS job_partitions (" +
+            " job VARCHAR(40) NOT NULL," +
+            " run_key VARCHAR(40) NOT NULL," +
+            " partition_no INT NOT NULL," +
+            " range_start VARCHAR(20) NOT NULL," +       // first account number (inclusive)
+            " range_end VARCHAR(20)," +                  // exclusive; null = no upper bound
+            " status VARCHAR(10) NOT NULL DEFAULT 'PENDING'," + // PENDING, RUNNING, DONE
+            " owner VARCHAR(100)," +
+            " lease_until TIMESTAMP NULL," +
+            " progress VARCHAR(20)," +                   // last account committed; null = none yet
+            " processed INT NOT NULL DEFAULT 0," +
+            " attempts INT NOT NULL DEFAULT 0," +        // claims, > 1 after a takeover
+            " PRIMARY KEY (job, run_key, partition_no))";
+
+    private static final String CLAIMABLE =
+            "(status = 'PENDING' OR (status = 'RUNNING' AND lease_until < CURRENT_TIMESTAMP))";
+
+    private final List<DbConfig> databases;
+    private final String owner;
+    private final int leaseSeconds;
+    private final int partitionsPerDb;
+    private final int chunkSize;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet(); // held by this node, kept alive by the heartbeat
+
+    public JobCoordinator(List<DbConfig> databases, int leaseSeconds, int partitionsPerDb, int chunkSize) {
+        if (leaseSeconds < 3 || partitionsPerDb < 1 || chunkSize < 1)
+            throw new IllegalArgumentException("Lease must be at least 3 s, partitions and chunk size at least 1");
+        this.databases = List.copyOf(databases);
+        this.leaseSeconds = leaseSeconds;
+        this.partitionsPerDb = partitionsPerDb;
+        this.chunkSize = chunkSize;
+        this.owner = ProcessHandle.current().pid() + "@" + hostName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public void ensureSchema() {
+        for (DbConfig db : databases) {
+            try {
+                Schema.execute(db, PARTITIONS_DDL);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    // ------------------- RUN -------------------
+
+    /**
+     * Take part in a job run: plan it if no node has yet, then claim and process partitions
+     * with `workers` threads until every partition in every database is DONE (including
+     * ones left behind by crashed nodes). `work` is called once per account with the
+     * calling thread inside a GroupCommit; it must do its writes through the DAOs.
+     */
+    public Result run(String job, String runKey, int workers, Consumer<String> work) {
+        for (DbConfig db : databases) {
+            try {
+                plan(db, job, runKey);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not plan " + job + " " + runKey, e);
+            }
+        }
+
+        Result result = new Result();
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, leaseSeconds * 1000L / 3);
+        heartbeat.scheduleAtFixedRate(this::renewLeases, period, period, TimeUnit.MILLISECONDS);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, workers); i++) {
+                futures.add(pool.submit(() -> Workload.runBatch(() -> workLoop(job, runKey, work, result))));
+            }
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(job + " interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(job + " failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            heartbeat.shutdownNow();
+        }
+        return result;
+    }
+
+    //  Claim and process until nothing is left; waits out other nodes' leases in case they die
+    private void workLoop(String job, String runKey, Consumer<String> work, Result result) {
+        long idleMillis = Math.max(200, leaseSeconds * 1000L / 4);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Lease lease = claimNext(job, runKey);
+                if (lease != null) {
+                    leases.add(lease);
+                    try {
+                        process(lease, work, result);
+                    } finally {
+                        leases.remove(lease);
+                    }
+                    continue;
+                }
+                if (remaining(job, runKey) == 0) return;
+                Thread.sleep(idleMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (SQLException | DatabaseException e) {
+                e.printStackTrace(); // lease expires and the partition is claimed again (by us or another node)
+                try {
+                    Thread.sleep(idleMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    // ------------------- PLANNING -------------------
+
+    //  Record the run's partitions in one transaction; a duplicate key means another node planned it first
+    private void plan(DbConfig db, String job, String runKey) throws SQLException {
+        if (partitionCount(db, job, runKey) > 0) return;
+
+        List<String> starts = LedgerReconciler.rangeStarts(db, partitionsPerDb);
+        if (starts.isEmpty()) starts.add("");
+        starts.set(0, ""); // accounts created after planning, below the first start, still belong somewhere
+
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO job_partitions (job, run_key, partition_no, range_start, range_end) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < starts.size(); i++) {
+                    ps.setString(1, job);
+                    ps.setString(2, runKey);
+                    ps.setInt(3, i);
+                    ps.setString(4, starts.get(i));
+                    ps.setString(5, i + 1 < starts.size() ? starts.get(i + 1) : null);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                if (partitionCount(db, job, runKey) == 0) throw e; // not a lost race
+            }
+        }
+    }
+
+    private int partitionCount(DbConfig db, String job, String runKey) throws SQLException {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM job_partitions WHERE job = ? AND run_key = ?")) {
+            ps.setString(1, job);
+            ps.setString(2, runKey);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    //  Partitions not DONE yet, across all databases
+    private int remaining(String job, String runKey) throws SQLException {
+        int left = 0;
+        for (DbConfig db : databases) {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT COUNT(*) FROM job_partitions WHERE job = ? AND run_key = ? AND status <> 'DONE'")) {
+                ps.setString(1, job);
+                ps.setString(2, runKey);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    left += rs.getInt(1);
+                }
+            }
+        }
+        return left;
+    }
+
+    // ------------------- LEASES -------------------
+
+    //  A partition this node has claimed, and where its work stands
+    private static final class Lease {
+        final DbConfig db;
+        final String job;
+        final String runKey;
+        final int partitionNo;
+        String rangeStart;
+        String rangeEnd;
+        String progress;
+        volatile boolean lost; // the heartbeat found another owner: stop after the current chunk
+
+        Lease(DbConfig db, String job, String runKey, int partitionNo) {
+            this.db = db;
+            this.job = job;
+            this.runKey = runKey;
+            this.partitionNo = partitionNo;
+        }
+    }
+
+    //  First claimable partition in any database; the conditional UPDATE decides between competing nodes
+    private Lease claimNext(String job, String runKey) throws SQLException {
+        for (DbConfig db : databases) {
+            try (Connection conn = db.getConnection()) {
+                List<Integer> candidates = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT partition_no FROM job_partitions WHERE job = ? AND run_key = ? AND " + CLAIMABLE +
+                        " ORDER BY partition_no")) {
+                    ps.setString(1, job);
+                    ps.setString(2, runKey);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) candidates.add(rs.getInt(1));
+                    }
+                }
+                for (int partitionNo : candidates) {
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "UPDATE job_partitions SET status = 'RUNNING', owner = ?, attempts = attempts + 1," +
+                            " lease_until = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)" +
+                            " WHERE job = ? AND run_key = ? AND partition_no = ? AND " + CLAIMABLE)) {
+                        ps.setString(1, owner);
+                        ps.setInt(2, leaseSeconds);
+                        ps.setString(3, job);
+                        ps.setString(4, runKey);
+                        ps.setInt(5, partitionNo);
+                        if (ps.executeUpdate() == 0) continue; // another node was faster
+                    }
+                    Lease lease = new Lease(db, job, runKey, partitionNo);
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "SELECT range_start, range_end, progress FROM job_partitions" +
+                            " WHERE job = ? AND run_key = ? AND partition_no = ?")) {
+                        ps.setString(1, job);
+                        ps.setString(2, runKey);
+                        ps.setInt(3, partitionNo);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                            lease.rangeStart = rs.getString(1);
+                            lease.rangeEnd = rs.getString(2);
+                            lease.progress = rs.getString(3);
+                        }
+                    }
+                    return lease;
+                }
+            }
+        }
+        return null;
+    }
+
+    //  Heartbeat: push every held lease forward; a lease someone else now owns is marked lost
+    private void renewLeases() {
+        for (Lease lease : leases) {
+            try (Connection conn = lease.db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "UPDATE job_partitions SET lease_until = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)" +
+                         " WHERE job = ? AND run_key = ? AND partition_no = ? AND owner = ? AND status = 'RUNNING'")) {
+                ps.setInt(1, leaseSeconds);
+                ps.setString(2, lease.job);
+                ps.setString(3, lease.runKey);
+                ps.setInt(4, lease.partitionNo);
+                ps.setString(5, owner);
+                if (ps.executeUpdate() == 0) lease.lost = true;
+            } catch (SQLException | DatabaseException e) {
+                e.printStackTrace(); // try again next beat; the chunk commit checks ownership anyway
+            }
+        }
+    }
+
+    // ------------------- PROCESSING -------------------
+
+    //  Work through a claimed partition chunk by chunk, from its last committed account
+    private void process(Lease lease, Consumer<String> work, Result result) throws SQLException {
+        while (!lease.lost) {
+            List<String> chunk = nextAccounts(lease);
+            boolean last = chunk.size() < chunkSize;
+            int failed = 0;
+
+            try (GroupCommit group = GroupCommit.begin()) {
+                for (String accNo : chunk) {
+                    group.mark();
+                    try {
+                        work.accept(accNo);
+                        if (group.rollbackRequested()) {
+                            group.undoCommand();
+                            failed++;
+                            System.err.println(lease.job + ": " + accNo + " rolled back (see log)");
+                        }
+                    } catch (RuntimeException e) {
+                        group.undoCommand();
+                        failed++;
+                        System.err.println(lease.job + ": " + accNo + " failed: " + e.getMessage());
+                    }
+                }
+                group.mark();
+                String progress = chunk.isEmpty() ? lease.progress : chunk.get(chunk.size() - 1);
+                if (!recordProgress(lease, progress, chunk.size(), last)) {
+                    lease.lost = true;
+                    result.abandoned.incrementAndGet();
+                    return; // closing the group rolls the chunk back; the new owner redoes it
+                }
+                group.commit();
+                lease.progress = progress;
+            }
+            result.accounts.addAndGet(chunk.size() - failed);
+            result.failed.addAndGet(failed);
+            if (last) {
+                result.partitions.incrementAndGet();
+                return;
+            }
+        }
+        result.abandoned.incrementAndGet();
+    }
+
+    //  Next chunk of the partition's accounts after its progress mark
+    private List<String> nextAccounts(Lease lease) throws SQLException {
+        String sql = "SELECT account_number FROM accounts WHERE account_number >= ?" +
+                (lease.progress != null ? " AND account_number > ?" : "") +
+                (lease.rangeEnd != null ? " AND account_number < ?" : "") +
+                " ORDER BY account_number LIMIT ?";
+        List<String> accounts = new ArrayList<>(chunkSize);
+        try (Connection conn = lease.db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setString(i++, lease.rangeStart);
+            if (lease.progress != null) ps.setString(i++, lease.progress);
+            if (lease.rangeEnd != null) ps.setString(i++, lease.rangeEnd);
+            ps.setInt(i, chunkSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) accounts.add(rs.getString(1));
+            }
+        }
+        return accounts;
+    }
+
+    //  Part of the chunk's transaction: only succeeds while this node still owns the partition
+    private boolean recordProgress(Lease lease, String progress, int count, boolean done) throws SQLException {
+        try (Connection conn = lease.db.getConnection(); // the group's connection
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE job_partitions SET progress = ?, processed = processed + ?, status = ?," +
+                     " lease_until = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)" +
+                     " WHERE job = ? AND run_key = ? AND partition_no = ? AND owner = ? AND status = 'RUNNING'")) {
+            ps.setString(1, progress);
+            ps.setInt(2, count);
+            ps.setString(3, done ? "DONE" : "RUNNING");
+            ps.setInt(4, leaseSeconds);
+            ps.setString(5, lease.job);
+            ps.setString(6, lease.runKey);
+            ps.setInt(7, lease.partitionNo);
+            ps.setString(8, owner);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return java.net.InetAddress.getLocalHost().getHostName();
+        } catch (java.net.UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    // ------------------- RESULT -------------------
+
+    //  What this node did in a run (other nodes report their own share)
+    public static class Result {
+        private final AtomicLong partitions = new AtomicLong(); // completed by this node
+        private final AtomicLong accounts = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong abandoned = new AtomicLong();  // lease lost mid-partition
+
+        public long getPartitions() { return partitions.get(); }
+        public long getAccounts() { return accounts.get(); }
+        public long getFailed() { return failed.get(); }
+        public long getAbandoned() { return abandoned.get(); }
+
+        @Override
+        public String toString() {
+            return "partitions=" + partitions + ", accounts=" + accounts + ", failed=" + failed + ", abandoned=" + abandoned;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Fork/join aggregations over a {@link LedgerColumns} snapshot.
+ *
+ * Every query is a "group by + sum" over the rows: the row range is split recursively,
+ * each thread accumulates into its own long[] (no locks, no boxing), and the
+ * per-thread arrays are added together at the end. Amounts are returned in rupees.
+ */
+public class LedgerAnalytics {
+
+    private static final int LEAF_ROWS = 1 << 16;
+
+    private final LedgerColumns cols;
+    private final ForkJoinPool pool;
+
+    public LedgerAnalytics(LedgerColumns cols) {
+        this(cols, ForkJoinPool.commonPool());
+    }
+
+    public LedgerAnalytics(LedgerColumns cols, ForkJoinPool pool) {
+        this.cols = cols;
+        this.pool = pool;
+    }
+
+    //  Total amount per TxType
+    public Map<TransactionRecord.TxType, BigDecimal> volumeByType() {
+        long[] sums = groupSum(LedgerColumns.TYPES.length, cols::typeAt, cols::amountAt);
+        Map<TransactionRecord.TxType, BigDecimal> out = new LinkedHashMap<>();
+        for (TransactionRecord.TxType t : LedgerColumns.TYPES) {
+            out.put(t, rupees(sums[t.ordinal()]));
+        }
+        return out;
+    }
+
+    //  Number of transactions per TxType
+    public Map<TransactionRecord.TxType, Long> countByType() {
+        long[] counts = groupSum(LedgerColumns.TYPES.length, cols::typeAt, row -> 1L);
+        Map<TransactionRecord.TxType, Long> out = new LinkedHashMap<>();
+        for (TransactionRecord.TxType t : LedgerColumns.TYPES) {
+            out.put(t, counts[t.ordinal()]);
+        }
+        return out;
+    }
+
+    //  Total amount per TransactionRecord category
+    public Map<String, BigDecimal> volumeByCategory() {
+        long[] sums = groupSum(cols.categoryCount(), cols::categoryAt, cols::amountAt);
+        Map<String, BigDecimal> out = new TreeMap<>();
+        for (int i = 0; i < sums.length; i++) {
+            out.put(cols.category(i), rupees(sums[i]));
+        }
+        return out;
+    }
+
+    //  Total amount per calendar day (days without activity are left out)
+    public Map<LocalDate, BigDecimal> volumeByDay() {
+        Map<LocalDate, BigDecimal> out = new TreeMap<>();
+        if (cols.size() == 0) return out;
+        int base = cols.minDay();
+        long[] sums = groupSum(cols.maxDay() - base + 1, row -> cols.dayAt(row) - base, cols::amountAt);
+        for (int i = 0; i < sums.length; i++) {
+            if (sums[i] != 0) out.put(LocalDate.ofEpochDay(base + i), rupees(sums[i]));
+        }
+        return out;
+    }
+
+    //  Accounts with the largest outflow (withdrawals + outgoing transfers), largest first
+    public List<Map.Entry<String, BigDecimal>> topAccountsByOutflow(int n) {
+        long[] outflow = groupSum(cols.accountCount(), cols::fromAt, cols::amountAt);
+
+        //  Min-heap of the best n account ids seen so far
+        PriorityQueue<Integer> heap = new PriorityQueue<>(n + 1, (a, b) -> Long.compare(outflow[a], outflow[b]));
+        for (int id = 0; id < outflow.length; id++) {
+            if (outflow[id] == 0) continue;
+            if (heap.size() < n) {
+                heap.add(id);
+            } else if (n > 0 && outflow[id] > outflow[heap.peek()]) {
+                heap.poll();
+                heap.add(id);
+            }
+        }
+
+        List<Map.Entry<String, BigDecimal>> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            int id = heap.poll();
+            top.add(0, Map.entry(cols.account(id), rupees(outflow[id])));
+        }
+        return top;
+    }
+
+    /**
+     * Inflow and outflow per account type: {type -> [inflow, outflow]}.
+     * Accounts missing from the accounts table at snapshot time are reported as "UNKNOWN".
+     */
+    public Map<String, BigDecimal[]> flowByAccountType() {
+        int types = cols.accountTypeCount() + 1; // last slot = UNKNOWN
+        long[] in = groupSum(types, row -> typeSlot(cols.toAt(row), types), cols::amountAt);
+        long[] out = groupSum(types, row -> typeSlot(cols.fromAt(row), types), cols::amountAt);
+
+        Map<String, BigDecimal[]> result = new TreeMap<>();
+        for (int i = 0; i < types; i++) {
+            if (in[i] == 0 && out[i] == 0) continue;
+            String name = i == types - 1 ? "UNKNOWN" : cols.accountType(i);
+            result.put(name, new BigDecimal[]{rupees(in[i]), rupees(out[i])});
+        }
+        return result;
+    }
+
+    private int typeSlot(int accountId, int types) {
+        if (accountId < 0) return -1;
+        int t = cols.accountTypeOf(accountId);
+        return t < 0 ? types - 1 : t;
+    }
+
+    // ------------------- KERNEL -------------------
+
+    /**
+     * sum(value(row)) grouped by key(row) over all rows; rows with key < 0 are skipped.
+     * Each thread gets its own accumulator, so leaves never contend.
+     */
+    long[] groupSum(int groups, IntUnaryOperator key, IntToLongFunction value) {
+        Map<Thread, long[]> perThread = new ConcurrentHashMap<>();
+        pool.invoke(new GroupSumTask(0, cols.size(), groups, key, value, perThread));
+
+        long[] total = new long[groups];
+        for (long[] partial : perThread.values()) {
+            for (int g = 0; g < groups; g++) total[g] += partial[g];
+        }
+        return total;
+    }
+
+    private final class GroupSumTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo, hi, groups;
+        //  Tasks never leave the pool, so none of this is ever serialized
+        private final transient IntUnaryOperator key;
+        private final transient IntToLongFunction value;
+        private final transient Map<Thread, long[]> perThread;
+
+        GroupSumTask(int lo, int hi, int groups, IntUnaryOperator key, IntToLongFunction value, Map<Thread, long[]> perThread) {
+            this.lo = lo;
+            this.hi = hi;
+            this.groups = groups;
+            this.key = key;
+            this.value = value;
+            this.perThread = perThread;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > LEAF_ROWS) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new GroupSumTask(lo, mid, groups, key, value, perThread),
+                          new GroupSumTask(mid, hi, groups, key, value, perThread));
+                return;
+            }
+            long[] acc = perThread.computeIfAbsent(Thread.currentThread(), t -> new long[groups]);
+            for (int row = lo; row < hi; row++) {
+                int g = key.applyAsInt(row);
+                if (g >= 0) acc[g] += value.applyAsLong(row);
+            }
+        }
+    }
+
+    private static BigDecimal rupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+}
@@ -0,0 +1,62 @@
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Builds a synthetic in-memory ledger and times the analytics queries.
+ * No database needed. Usage: java LedgerAnalyticsTest [rows]
+ */
+public class LedgerAnalyticsTest {
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int accounts = 200_000;
+        String[] categories = {"General", "Salary", "Bills", "Rent", "Groceries", "Travel"};
+        String[] types = {"SAVINGS", "CURRENT", "STUDENT"};
+        Random rnd = new Random(42);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+
+        LedgerColumns cols = new LedgerColumns();
+        for (int i = 0; i < accounts; i++) {
+            cols.setAccountType(String.valueOf(10_000_000_000L + i), types[i % types.length]);
+        }
+
+        long expectedTotal = 0;
+        for (int i = 0; i < rows; i++) {
+            TransactionRecord.TxType type = LedgerColumns.TYPES[rnd.nextInt(3)];
+            String a = String.valueOf(10_000_000_000L + rnd.nextInt(accounts));
+            String b = String.valueOf(10_000_000_000L + rnd.nextInt(accounts));
+            long paise = 100 + rnd.nextInt(1_000_000);
+            expectedTotal += paise;
+            cols.append(type,
+                    type == TransactionRecord.TxType.DEPOSIT ? null : a,
+                    type == TransactionRecord.TxType.WITHDRAW ? null : b,
+                    paise, start.plusDays(rnd.nextInt(365)), categories[rnd.nextInt(categories.length)]);
+        }
+        cols.trim();
+        System.out.println("Rows loaded: " + cols.size());
+
+        LedgerAnalytics analytics = new LedgerAnalytics(cols);
+        analytics.volumeByType(); // warm-up
+
+        long t0 = System.nanoTime();
+        var byType = analytics.volumeByType();
+        long t1 = System.nanoTime();
+        var byCategory = analytics.volumeByCategory();
+        long t2 = System.nanoTime();
+        var byDay = analytics.volumeByDay();
+        long t3 = System.nanoTime();
+        var top = analytics.topAccountsByOutflow(5);
+        long t4 = System.nanoTime();
+        var byAccType = analytics.flowByAccountType();
+        long t5 = System.nanoTime();
+
+        System.out.println("By type: " + byType + " (" + (t1 - t0) / 1_000_000 + " ms)");
+        System.out.println("Sum matches generated total: "
+                + byType.values().stream().mapToLong(v -> v.movePointRight(2).longValueExact()).sum()
+                + " == " + expectedTotal);
+        System.out.println("By category: " + byCategory + " (" + (t2 - t1) / 1_000_000 + " ms)");
+        System.out.println("Days with activity: " + byDay.size() + " (" + (t3 - t2) / 1_000_000 + " ms)");
+        System.out.println("Top 5 by outflow: " + top + " (" + (t4 - t3) / 1_000_000 + " ms)");
+        byAccType.forEach((k, v) -> System.out.println("  " + k + " in=" + v[0] + " out=" + v[1]));
+        System.out.println("By account type: " + (t5 - t4) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,331 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable, compressed monthly archive of the ledger on local disk.
+ *
+ * For each archived month there are two files:
+ *   ledger-YYYY-MM.seg  one deflate-compressed block per account (its rows for the month, oldest first)
+ *   ledger-YYYY-MM.idx  account -> (offset, length, rows) for the blocks, plus a CRC32 of the .seg
+ * The .idx is written last and atomically renamed into place, so its presence marks a
+ * complete segment. Both files are made read-only once written. A transfer is stored in
+ * the block of each account it touches.
+ */
+public class LedgerArchive {
+
+    private static final int SEG_MAGIC = 0x424C4153;  // "BLAS"
+    private static final int IDX_MAGIC = 0x424C4149;  // "BLAI"
+    private static final int VERSION = 2;
+    private static final int CACHED_INDEXES = 12;
+
+    private final Path dir;
+
+    //  Small LRU of loaded month indexes
+    private final Map<YearMonth, SegmentIndex> indexCache =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<YearMonth, SegmentIndex> eldest) {
+                    return size() > CACHED_INDEXES;
+                }
+            });
+
+    public LedgerArchive(Path dir) {
+        this.dir = dir;
+    }
+
+    //  Directory from banking.archive.dir (default ./archive)
+    public static LedgerArchive fromSystemProperties() {
+        return new LedgerArchive(Paths.get(System.getProperty("banking.archive.dir", "archive")));
+    }
+
+    //  Separate directory for one shard's archive
+    public LedgerArchive subArchive(String name) {
+        return new LedgerArchive(dir.resolve(name));
+    }
+
+    public Path getDir() { return dir; }
+
+    public boolean isArchived(YearMonth month) {
+        return Files.exists(indexPath(month));
+    }
+
+    //  Months with a complete segment, oldest first
+    public List<YearMonth> archivedMonths() {
+        List<YearMonth> months = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return months;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "ledger-*.idx")) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                months.add(YearMonth.parse(name.substring(7, 14)));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Collections.sort(months);
+        return months;
+    }
+
+    //  Number of ledger rows (not per-account copies) in an archived month
+    public long txCount(YearMonth month) throws IOException {
+        return index(month).txCount;
+    }
+
+    // ------------------- READ -------------------
+
+    //  One account's archived rows for one month, oldest first (empty if none)
+    public List<TransactionRecord> read(String accNum, YearMonth month) throws IOException {
+        SegmentIndex idx = index(month);
+        long[] entry = idx.entries.get(accNum);
+        if (entry == null) return new ArrayList<>();
+
+        byte[] block = new byte[(int) entry[1]];
+        try (RandomAccessFile raf = new RandomAccessFile(segmentPath(month).toFile(), "r")) {
+            raf.seek(entry[0]);
+            raf.readFully(block);
+        }
+        List<TransactionRecord> list = new ArrayList<>((int) entry[2]);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(block)))) {
+            for (long i = 0; i < entry[2]; i++) {
+                list.add(readRecord(in));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Archived rows for an account with from <= created_at < to (either bound may be null),
+     * newest first. Only the months overlapping the range are opened.
+     */
+    public List<TransactionRecord> read(String accNum, LocalDateTime from, LocalDateTime to) {
+        List<TransactionRecord> out = new ArrayList<>();
+        List<YearMonth> months = archivedMonths();
+        Collections.reverse(months);
+        for (YearMonth m : months) {
+            if (from != null && m.atEndOfMonth().atTime(23, 59, 59, 999_999_999).isBefore(from)) continue;
+            if (to != null && !m.atDay(1).atStartOfDay().isBefore(to)) continue;
+            try {
+                List<TransactionRecord> rows = read(accNum, m);
+                for (int i = rows.size() - 1; i >= 0; i--) {
+                    LocalDateTime at = rows.get(i).getCreatedAt();
+                    if ((from == null || !at.isBefore(from)) && (to == null || at.isBefore(to))) out.add(rows.get(i));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return out;
+    }
+
+    private SegmentIndex index(YearMonth month) throws IOException {
+        SegmentIndex idx = indexCache.get(month);
+        if (idx != null) return idx;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath(month))))) {
+            if (in.readInt() != IDX_MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a ledger archive index: " + indexPath(month));
+            in.readInt(); // year
+            in.readInt(); // month
+            long txCount = in.readLong();
+            in.readLong(); // segment CRC32 (checked by verify())
+            int n = in.readInt();
+            Map<String, long[]> entries = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) {
+                String acc = in.readUTF();
+                entries.put(acc, new long[]{in.readLong(), in.readInt(), in.readInt()});
+            }
+            idx = new SegmentIndex(txCount, entries);
+        }
+        indexCache.put(month, idx);
+        return idx;
+    }
+
+    //  Recompute the segment checksum and compare with the one stored in the index
+    public boolean verify(YearMonth month) throws IOException {
+        long stored;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexPath(month)))) {
+            in.readInt(); in.readInt(); in.readInt(); in.readInt(); in.readLong();
+            stored = in.readLong();
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(segmentPath(month)))) {
+            byte[] buf = new byte[64 * 1024];
+            for (int r; (r = in.read(buf)) > 0; ) crc.update(buf, 0, r);
+        }
+        return crc.getValue() == stored;
+    }
+
+    // ------------------- WRITE -------------------
+
+    //  Writer for one month; rows must arrive grouped by account
+    public SegmentWriter openWriter(YearMonth month) throws IOException {
+        if (isArchived(month)) throw new IllegalStateException("Month already archived: " + month);
+        Files.createDirectories(dir);
+        return new SegmentWriter(month);
+    }
+
+    public final class SegmentWriter implements Closeable {
+        private final YearMonth month;
+        private final Path tmpSeg;
+        private final OutputStream seg;
+        private final CRC32 crc = new CRC32();
+        private final Map<String, long[]> entries = new LinkedHashMap<>();
+        private final ByteArrayOutputStream blockBuf = new ByteArrayOutputStream(64 * 1024);
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private DataOutputStream block;
+        private String currentAcc;
+        private int currentRows;
+        private long offset;
+        private long txCount;
+        private boolean finished;
+
+        private SegmentWriter(YearMonth month) throws IOException {
+            this.month = month;
+            this.tmpSeg = segmentPath(month).resolveSibling(segmentPath(month).getFileName() + ".tmp");
+            this.seg = new BufferedOutputStream(Files.newOutputStream(tmpSeg));
+            writeRaw(intBytes(SEG_MAGIC));
+            writeRaw(intBytes(VERSION));
+            writeRaw(intBytes(month.getYear()));
+            writeRaw(intBytes(month.getMonthValue()));
+        }
+
+        /**
+         * Append one row to an account's block. primary = this is the row's own copy
+         * (not the second copy of a transfer), used to count ledger rows.
+         */
+        public void append(String accNum, TransactionRecord tx, boolean primary) throws IOException {
+            if (!accNum.equals(currentAcc)) {
+                flushBlock();
+                if (entries.containsKey(accNum)) throw new IllegalStateException("Rows not grouped by account: " + accNum);
+                currentAcc = accNum;
+                currentRows = 0;
+                deflater.reset();
+                blockBuf.reset();
+                block = new DataOutputStream(new DeflaterOutputStream(blockBuf, deflater));
+            }
+            writeRecord(block, tx);
+            currentRows++;
+            if (primary) txCount++;
+        }
+
+        public long getTxCount() { return txCount; }
+
+        //  Flush, fsync, write the index and move both files into place (read-only)
+        public void finish() throws IOException {
+            flushBlock();
+            seg.flush();
+            seg.close();
+            try (FileChannel channel = FileChannel.open(tmpSeg, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            Path tmpIdx = indexPath(month).resolveSibling(indexPath(month).getFileName() + ".tmp");
+            try (DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpIdx)))) {
+                idx.writeInt(IDX_MAGIC);
+                idx.writeInt(VERSION);
+                idx.writeInt(month.getYear());
+                idx.writeInt(month.getMonthValue());
+                idx.writeLong(txCount);
+                idx.writeLong(crc.getValue());
+                idx.writeInt(entries.size());
+                for (Map.Entry<String, long[]> e : entries.entrySet()) {
+                    idx.writeUTF(e.getKey());
+                    idx.writeLong(e.getValue()[0]);
+                    idx.writeInt((int) e.getValue()[1]);
+                    idx.writeInt((int) e.getValue()[2]);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(tmpIdx, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            Files.move(tmpSeg, segmentPath(month), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmpIdx, indexPath(month), StandardCopyOption.ATOMIC_MOVE); // month is now visible
+            segmentPath(month).toFile().setReadOnly();
+            indexPath(month).toFile().setReadOnly();
+            finished = true;
+        }
+
+        private void flushBlock() throws IOException {
+            if (currentAcc == null) return;
+            block.close(); // finishes the deflate stream into blockBuf
+            byte[] bytes = blockBuf.toByteArray();
+            writeRaw(bytes);
+            entries.put(currentAcc, new long[]{offset - bytes.length, bytes.length, currentRows});
+            currentAcc = null;
+        }
+
+        private void writeRaw(byte[] bytes) throws IOException {
+            seg.write(bytes);
+            crc.update(bytes);
+            offset += bytes.length;
+        }
+
+        //  Abandons an unfinished segment (temp file removed, month stays unarchived)
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            if (!finished) {
+                seg.close();
+                Files.deleteIfExists(tmpSeg);
+            }
+        }
+    }
+
+    // ------------------- RECORD ENCODING -------------------
+
+    private static void writeRecord(DataOutputStream out, TransactionRecord tx) throws IOException {
+        out.writeLong(tx.getId().getMostSignificantBits());
+        out.writeLong(tx.getId().getLeastSignificantBits());
+        out.writeByte(tx.getTxType().ordinal());
+        out.writeUTF(tx.getFromAccount() == null ? "" : tx.getFromAccount());
+        out.writeUTF(tx.getToAccount() == null ? "" : tx.getToAccount());
+        out.writeLong(tx.getAmount().movePointRight(2).longValueExact());
+        out.writeUTF(tx.getCategory());
+        out.writeLong(tx.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(tx.getCreatedAt().getNano());
+    }
+
+    private static TransactionRecord readRecord(DataInputStream in) throws IOException {
+        TxId txId = new TxId(in.readLong(), in.readLong());
+        TransactionRecord.TxType type = TransactionRecord.TxType.values()[in.readByte()];
+        String from = in.readUTF();
+        String to = in.readUTF();
+        BigDecimal amount = BigDecimal.valueOf(in.readLong(), 2);
+        String category = in.readUTF();
+        LocalDateTime createdAt = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        return new TransactionRecord(txId, type, from.isEmpty() ? null : from, to.isEmpty() ? null : to,
+                amount, category, createdAt);
+    }
+
+    private Path segmentPath(YearMonth month) {
+        return dir.resolve("ledger-" + month + ".seg");
+    }
+
+    private Path indexPath(YearMonth month) {
+        return dir.resolve("ledger-" + month + ".idx");
+    }
+
+    private static byte[] intBytes(int v) {
+        return new byte[]{(byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v};
+    }
+
+    private static final class SegmentIndex {
+        final long txCount;
+        final Map<String, long[]> entries; // account -> {offset, length, rows}
+
+        SegmentIndex(long txCount, Map<String, long[]> entries) {
+            this.txCount = txCount;
+            this.entries = entries;
+        }
+    }
+}
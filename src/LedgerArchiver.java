@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves closed months of the ledger out of the transactions table into a {@link LedgerArchive}.
+ *
+ * A month is archived in three steps: stream its rows grouped by account into a segment,
+ * check the segment's row count against the table, then drop the month's partition (or
+ * delete its rows in batches when the table is not partitioned). The removal re-counts the
+ * month with the table write-locked, so a row back-dated into the month after the segment
+ * was written stops it instead of being dropped unarchived. A run interrupted after the
+ * segment was written just finishes the removal next time.
+ *
+ * Daily summaries are left untouched, so balances, interest and monthly statements keep
+ * working for archived months. Per-account credit/debit totals of each archived month go
+ * to ledger_archived_totals so LedgerReconciler can still account for the whole history.
+ */
+public class LedgerArchiver {
+
+    private static final int DELETE_BATCH = 10_000;
+
+    //  Each row once per account it touches, grouped by account, oldest first within an account
+    private static final String EXPORT_SQL =
+            "SELECT acc, tx_id, tx_type, from_account, to_account, amount, category, created_at FROM (" +
+            " SELECT from_account AS acc, tx_id, tx_type, from_account, to_account, amount, category, created_at" +
+            "  FROM transactions WHERE from_account IS NOT NULL AND created_at >= ? AND created_at < ?" +
+            " UNION ALL" +
+            " SELECT to_account AS acc, tx_id, tx_type, from_account, to_account, amount, category, created_at" +
+            "  FROM transactions WHERE to_account IS NOT NULL AND (from_account IS NULL OR from_account <> to_account)" +
+            "  AND created_at >= ? AND created_at < ?" +
+            ") x ORDER BY acc, created_at";
+
+    static final String TOTALS_DDL =
+            "CREATE TABLE IF NOT EXISTS ledger_archived_totals (" +
+            " account_number VARCHAR(20) NOT NULL," +
+            " month CHAR(7) NOT NULL," +
+            " credits DECIMAL(19,2) NOT NULL," +
+            " debits DECIMAL(19,2) NOT NULL," +
+            " PRIMARY KEY (account_number, month))";
+
+    //  A self-transfer counts as both a credit and a debit, i.e. nets to zero
+    private static final String TOTALS_SQL =
+            "INSERT INTO ledger_archived_totals (account_number, month, credits, debits) " +
+            "SELECT acc, ?, SUM(cr), SUM(dr) FROM (" +
+            " SELECT to_account AS acc, amount AS cr, 0 AS dr FROM transactions" +
+            "  WHERE to_account IS NOT NULL AND created_at >= ? AND created_at < ?" +
+            " UNION ALL" +
+            " SELECT from_account AS acc, 0 AS cr, amount AS dr FROM transactions" +
+            "  WHERE from_account IS NOT NULL AND created_at >= ? AND created_at < ?" +
+            ") x GROUP BY acc";
+
+    private final DbConfig db;
+    private final LedgerArchive archive;
+    private final LedgerPartitionManager partitions;
+
+    public LedgerArchiver(DbConfig db, LedgerArchive archive) {
+        this.db = db;
+        this.archive = archive;
+        this.partitions = new LedgerPartitionManager(db);
+    }
+
+    //  Archive every month older than the newest keepHotMonths (current month included); returns months archived
+    public List<YearMonth> archiveClosedMonths(int keepHotMonths) throws SQLException, IOException {
+        YearMonth cutoff = YearMonth.now().minusMonths(Math.max(1, keepHotMonths) - 1);
+        List<YearMonth> done = new ArrayList<>();
+
+        LocalDateTime oldest = null;
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(created_at) FROM transactions")) {
+            if (rs.next() && rs.getTimestamp(1) != null) oldest = rs.getTimestamp(1).toLocalDateTime();
+        }
+        if (oldest == null) return done;
+
+        for (YearMonth m = YearMonth.from(oldest); m.isBefore(cutoff); m = m.plusMonths(1)) {
+            if (archiveMonth(m) > 0) done.add(m);
+        }
+        return done;
+    }
+
+    /**
+     * Archive one closed month and remove it from the hot table; returns the number of
+     * ledger rows moved (0 if the month had none).
+     */
+    public long archiveMonth(YearMonth month) throws SQLException, IOException {
+        if (!month.isBefore(YearMonth.now()))
+            throw new IllegalArgumentException("Only closed months can be archived: " + month);
+
+        long hotRows = countRows(month);
+
+        if (!archive.isArchived(month)) {
+            if (hotRows == 0) return 0;
+            long written = writeSegment(month);
+            if (written != hotRows) {
+                throw new IllegalStateException("Archive of " + month + " wrote " + written +
+                        " rows but the table has " + hotRows + "; segment discarded");
+            }
+        } else if (hotRows > 0 && archive.txCount(month) != hotRows) {
+            //  Segment from an earlier run doesn't match what is still in the table: leave both alone
+            throw new IllegalStateException("Archived " + month + " holds " + archive.txCount(month) +
+                    " rows but the table still has " + hotRows);
+        }
+
+        if (hotRows > 0) {
+            recordTotals(month); // the whole month is still in the table (checked above)
+            removeMonth(month, hotRows);
+        }
+        return hotRows;
+    }
+
+    private long writeSegment(YearMonth month) throws SQLException, IOException {
+        Timestamp start = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp end = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+
+        try (Connection conn = db.getConnection();
+             LedgerArchive.SegmentWriter writer = archive.openWriter(month)) {
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false); // one consistent snapshot for the whole export
+
+            try (PreparedStatement ps = conn.prepareStatement(EXPORT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+                ps.setTimestamp(1, start);
+                ps.setTimestamp(2, end);
+                ps.setTimestamp(3, start);
+                ps.setTimestamp(4, end);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String acc = rs.getString("acc");
+                        TransactionRecord tx = TransactionDao.readRow(rs);
+                        boolean primary = tx.getFromAccount() == null || acc.equals(tx.getFromAccount());
+                        writer.append(acc, tx, primary);
+                    }
+                }
+            }
+            conn.commit();
+
+            long written = writer.getTxCount();
+            if (written == countRows(month)) writer.finish(); // otherwise close() discards the temp file
+            return written;
+        }
+    }
+
+    //  Replace the month's per-account totals (a rerun after a failed removal rewrites the same numbers)
+    private void recordTotals(YearMonth month) throws SQLException {
+        Schema.execute(db, TOTALS_DDL);
+        Timestamp start = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp end = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM ledger_archived_totals WHERE month = ?")) {
+                    ps.setString(1, month.toString());
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(TOTALS_SQL)) {
+                    ps.setString(1, month.toString());
+                    ps.setTimestamp(2, start);
+                    ps.setTimestamp(3, end);
+                    ps.setTimestamp(4, start);
+                    ps.setTimestamp(5, end);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private long countRows(YearMonth month) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return countRows(conn, month);
+        }
+    }
+
+    private static long countRows(Connection conn, YearMonth month) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM transactions WHERE created_at >= ? AND created_at < ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Remove the month's archived rows, re-counting them under LOCK TABLES first: nothing can
+     * be back-dated into the month between that count and the removal. A partition drop is a
+     * metadata operation, so the lock is brief; without partitions the batched DELETE runs
+     * under the same lock and writers wait for it.
+     */
+    private void removeMonth(YearMonth month, long archived) throws SQLException {
+        boolean partitioned = partitions.listPartitions().contains(LedgerPartitionManager.partitionName(month));
+
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("LOCK TABLES transactions WRITE");
+            try {
+                long rows = countRows(conn, month);
+                if (rows != archived) {
+                    throw new IllegalStateException(month + " now has " + rows + " rows in the table but " +
+                            archived + " were archived; not removed");
+                }
+                if (partitioned) {
+                    LedgerPartitionManager.dropPartition(st, month);
+                    return;
+                }
+                String sql = "DELETE FROM transactions WHERE created_at >= ? AND created_at < ? LIMIT " + DELETE_BATCH;
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setTimestamp(1, Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+                    ps.setTimestamp(2, Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()));
+                    while (ps.executeUpdate() > 0) {
+                        // next batch
+                    }
+                }
+            } finally {
+                st.execute("UNLOCK TABLES");
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact, read-only columnar copy of the ledger for analytics.
+ *
+ * One primitive array per column; account numbers, categories and account types are
+ * dictionary-encoded to ints, amounts are stored in paise (long) and dates as epoch days.
+ * About 29 bytes per transaction, so tens of millions of rows fit comfortably in the heap.
+ * Built once from a consistent (REPEATABLE READ, read-only) scan, then queried by
+ * {@link LedgerAnalytics} without going back to the OLTP database.
+ */
+public class LedgerColumns {
+
+    static final TransactionRecord.TxType[] TYPES = TransactionRecord.TxType.values();
+
+    //  Transaction columns (row i across all arrays)
+    private int size;
+    private byte[] type = new byte[1024];
+    private int[] from = new int[1024];       // account dictionary id, -1 = none
+    private int[] to = new int[1024];         // account dictionary id, -1 = none
+    private long[] amount = new long[1024];   // paise
+    private int[] day = new int[1024];        // LocalDate.toEpochDay()
+    private int[] category = new int[1024];   // category dictionary id
+
+    //  Dictionaries
+    private final Map<String, Integer> accountIds = new HashMap<>();
+    private String[] accounts = new String[1024];
+    private byte[] accountTypeOf = new byte[1024];  // account id -> account type id (-1 unknown)
+    private int accountCount;
+
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private String[] categories = new String[64];
+
+    private final Map<String, Integer> accountTypeIds = new HashMap<>();
+    private String[] accountTypes = new String[8];
+
+    private int minDay = Integer.MAX_VALUE;
+    private int maxDay = Integer.MIN_VALUE;
+
+    LedgerColumns() {
+        Arrays.fill(accountTypeOf, (byte) -1);
+    }
+
+    // ------------------- LOADING -------------------
+
+    //  Snapshot one database
+    public static LedgerColumns load(DbConfig db) throws SQLException {
+        LedgerColumns cols = new LedgerColumns();
+        cols.loadFrom(db);
+        cols.trim();
+        return cols;
+    }
+
+    /**
+     * Snapshot every shard. A cross-shard transfer is stored on both shards; the target
+     * shard's copy is tagged is_mirror and skipped.
+     */
+    public static LedgerColumns load(ShardRouter router) throws SQLException {
+        LedgerColumns cols = new LedgerColumns();
+        for (int i = 0; i < router.shardCount(); i++) {
+            cols.loadFrom(router.shard(i));
+        }
+        cols.trim();
+        return cols;
+    }
+
+    private void loadFrom(DbConfig db) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ); // both scans see one snapshot
+
+            try (Statement st = streamingStatement(conn, db);
+                 ResultSet rs = st.executeQuery("SELECT account_number, account_type FROM accounts")) {
+                while (rs.next()) {
+                    int id = accountId(rs.getString(1));
+                    accountTypeOf[id] = (byte) dictId(accountTypeIds, rs.getString(2), true);
+                }
+            }
+
+            try (Statement st = streamingStatement(conn, db);
+                 ResultSet rs = st.executeQuery(
+                         "SELECT tx_type, from_account, to_account, amount, category, created_at FROM transactions " +
+                         "WHERE is_mirror = FALSE")) {
+                while (rs.next()) {
+                    append(TransactionRecord.TxType.valueOf(rs.getString(1)),
+                            rs.getString(2), rs.getString(3),
+                            rs.getBigDecimal(4).movePointRight(2).longValueExact(),
+                            rs.getTimestamp(6).toLocalDateTime().toLocalDate(),
+                            rs.getString(5));
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    //  Forward-only cursor; MySQL only streams rows with fetch size Integer.MIN_VALUE
+    private static Statement streamingStatement(Connection conn, DbConfig db) throws SQLException {
+        Statement st = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        st.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+        return st;
+    }
+
+    //  Append one row (also used to build snapshots in memory for tests/benchmarks)
+    void append(TransactionRecord.TxType txType, String fromAcc, String toAcc,
+                long amountPaise, LocalDate date, String cat) {
+        if (size == type.length) grow();
+        int d = (int) date.toEpochDay();
+        type[size] = (byte) txType.ordinal();
+        from[size] = fromAcc == null ? -1 : accountId(fromAcc);
+        to[size] = toAcc == null ? -1 : accountId(toAcc);
+        amount[size] = amountPaise;
+        day[size] = d;
+        category[size] = dictId(categoryIds, cat == null ? "General" : cat, false);
+        if (d < minDay) minDay = d;
+        if (d > maxDay) maxDay = d;
+        size++;
+    }
+
+    //  Register an account's type (in-memory builds)
+    void setAccountType(String accNum, String accType) {
+        int id = accountId(accNum); // may reallocate accountTypeOf, so resolve it first
+        accountTypeOf[id] = (byte) dictId(accountTypeIds, accType, true);
+    }
+
+    private int accountId(String accNum) {
+        Integer id = accountIds.get(accNum);
+        if (id != null) return id;
+        if (accountCount == accounts.length) {
+            accounts = Arrays.copyOf(accounts, accountCount * 2);
+            int old = accountTypeOf.length;
+            accountTypeOf = Arrays.copyOf(accountTypeOf, accountCount * 2);
+            Arrays.fill(accountTypeOf, old, accountTypeOf.length, (byte) -1);
+        }
+        accounts[accountCount] = accNum;
+        accountIds.put(accNum, accountCount);
+        return accountCount++;
+    }
+
+    private int dictId(Map<String, Integer> dict, String value, boolean isAccountType) {
+        Integer id = dict.get(value);
+        if (id != null) return id;
+        int next = dict.size();
+        if (isAccountType) {
+            if (next == accountTypes.length) accountTypes = Arrays.copyOf(accountTypes, next * 2);
+            accountTypes[next] = value;
+        } else {
+            if (next == categories.length) categories = Arrays.copyOf(categories, next * 2);
+            categories[next] = value;
+        }
+        dict.put(value, next);
+        return next;
+    }
+
+    private void grow() {
+        int n = Math.max(1024, type.length * 2);
+        type = Arrays.copyOf(type, n);
+        from = Arrays.copyOf(from, n);
+        to = Arrays.copyOf(to, n);
+        amount = Arrays.copyOf(amount, n);
+        day = Arrays.copyOf(day, n);
+        category = Arrays.copyOf(category, n);
+    }
+
+    //  Drop the growth slack once loading is done
+    void trim() {
+        type = Arrays.copyOf(type, size);
+        from = Arrays.copyOf(from, size);
+        to = Arrays.copyOf(to, size);
+        amount = Arrays.copyOf(amount, size);
+        day = Arrays.copyOf(day, size);
+        category = Arrays.copyOf(category, size);
+    }
+
+    // ------------------- COLUMN ACCESS (package-private, used by LedgerAnalytics) -------------------
+    int size() { return size; }
+    int accountCount() { return accountCount; }
+    int categoryCount() { return categoryIds.size(); }
+    int accountTypeCount() { return accountTypeIds.size(); }
+    int minDay() { return minDay; }
+    int maxDay() { return maxDay; }
+
+    byte typeAt(int row) { return type[row]; }
+    int fromAt(int row) { return from[row]; }
+    int toAt(int row) { return to[row]; }
+    long amountAt(int row) { return amount[row]; }
+    int dayAt(int row) { return day[row]; }
+    int categoryAt(int row) { return category[row]; }
+
+    String account(int id) { return accounts[id]; }
+    int accountTypeOf(int accountId) { return accountTypeOf[accountId]; }
+    String category(int id) { return categories[id]; }
+    String accountType(int id) { return accountTypes[id]; }
+}
@@ -0,0 +1,117 @@
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monthly RANGE partitioning of the transactions table (MySQL).
+ *
+ * Partitions are named pYYYYMM and hold rows with created_at inside that month; a trailing
+ * pmax partition catches anything beyond the newest month. created_at is a TIMESTAMP, which
+ * RANGE COLUMNS does not accept, so the partitioning expression is UNIX_TIMESTAMP(created_at)
+ * (the one function MySQL allows on a TIMESTAMP). MySQL requires the partitioning column in
+ * every unique key, so the primary key becomes (tx_id, created_at).
+ */
+public class LedgerPartitionManager {
+
+    private static final String MAX_PARTITION = "pmax";
+
+    private final DbConfig db;
+
+    public LedgerPartitionManager(DbConfig db) {
+        this.db = db;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    //  True once the table has been converted to RANGE partitioning
+    public boolean isPartitioned() {
+        return !listPartitions().isEmpty();
+    }
+
+    //  Partition names currently defined on transactions, oldest first
+    public List<String> listPartitions() {
+        List<String> names = new ArrayList<>();
+        String sql = "SELECT partition_name FROM information_schema.partitions " +
+                "WHERE table_schema = DATABASE() AND table_name = 'transactions' AND partition_name IS NOT NULL " +
+                "ORDER BY partition_ordinal_position";
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) names.add(rs.getString(1));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return names;
+    }
+
+    /**
+     * One-time conversion: one partition per month from the oldest row up to
+     * monthsAhead months past the current one, plus pmax. Rebuilds the table, so run it
+     * in a maintenance window.
+     */
+    public void partitionTable(int monthsAhead) throws SQLException {
+        if (isPartitioned()) return;
+
+        YearMonth first = YearMonth.now();
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(created_at) FROM transactions")) {
+            if (rs.next() && rs.getTimestamp(1) != null) {
+                first = YearMonth.from(rs.getTimestamp(1).toLocalDateTime());
+            }
+        }
+
+        StringBuilder sql = new StringBuilder(
+                "ALTER TABLE transactions DROP PRIMARY KEY, ADD PRIMARY KEY (tx_id, created_at) " +
+                "PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (");
+        for (YearMonth m = first; !m.isAfter(YearMonth.now().plusMonths(monthsAhead)); m = m.plusMonths(1)) {
+            sql.append(partitionClause(m)).append(", ");
+        }
+        sql.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute(sql.toString());
+        }
+    }
+
+    //  Split pmax so that every month up to monthsAhead has its own partition (run monthly)
+    public void ensureFuturePartitions(int monthsAhead) throws SQLException {
+        List<String> existing = listPartitions();
+        if (existing.isEmpty()) return; // not partitioned
+
+        for (YearMonth m = YearMonth.now(); !m.isAfter(YearMonth.now().plusMonths(monthsAhead)); m = m.plusMonths(1)) {
+            if (existing.contains(partitionName(m))) continue;
+            String sql = "ALTER TABLE transactions REORGANIZE PARTITION " + MAX_PARTITION + " INTO (" +
+                    partitionClause(m) + ", PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE))";
+            try (Connection conn = db.getConnection();
+                 Statement st = conn.createStatement()) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    //  Drop a month's partition (its rows must already be archived); false if it does not exist
+    public boolean dropPartition(YearMonth month) throws SQLException {
+        if (!listPartitions().contains(partitionName(month))) return false;
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement()) {
+            dropPartition(st, month);
+        }
+        return true;
+    }
+
+    //  Drop on the caller's connection, e.g. while it holds the table locked
+    static void dropPartition(Statement st, YearMonth month) throws SQLException {
+        st.execute("ALTER TABLE transactions DROP PARTITION " + partitionName(month));
+    }
+
+    private static String partitionClause(YearMonth month) {
+        LocalDate end = month.plusMonths(1).atDay(1);
+        return "PARTITION " + partitionName(month) + " VALUES LESS THAN (UNIX_TIMESTAMP('" + end + " 00:00:00'))";
+    }
+}
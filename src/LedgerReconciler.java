@@ -0,0 +1,363 @@
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks every account's balance against its ledger: accounts.balance (+ balance slots
+ * for hot accounts) must equal credits - debits over all of its transactions, archived
+ * months included (from ledger_archived_totals).
+ *
+ * The accounts are cut into contiguous account-number ranges that are checked in
+ * parallel. Within a range, five streams -- accounts, credit sums, debit sums, archived
+ * totals and slot sums, each in account-number order off its index -- are merge-joined,
+ * so memory use doesn't depend on the number of accounts. The streams are separate reads
+ * of a live database, so a difference is re-checked for that one account in a single
+ * snapshot before it is reported; differences that disappear were in-flight operations.
+ *
+ * Accounts opened before opening balances were logged show their whole opening balance as
+ * a difference; run the one-off backfill (TransactionDao.backfillOpeningBalances) first.
+ *
+ * Usage: java LedgerReconciler [threads] [maxListed]
+ *        java LedgerReconciler --backfill-openings <opened-before, e.g. 2025-10-01T00:00>
+ */
+public class LedgerReconciler {
+
+    private static final String ACCOUNTS_SQL =
+            "SELECT account_number, balance FROM accounts WHERE account_number >= ?%s ORDER BY account_number";
+    private static final String CREDITS_SQL =
+            "SELECT to_account, SUM(amount) FROM transactions WHERE to_account >= ?%s GROUP BY to_account ORDER BY to_account";
+    private static final String DEBITS_SQL =
+            "SELECT from_account, SUM(amount) FROM transactions WHERE from_account >= ?%s GROUP BY from_account ORDER BY from_account";
+    private static final String ARCHIVED_SQL =
+            "SELECT account_number, SUM(credits) - SUM(debits) FROM ledger_archived_totals " +
+            "WHERE account_number >= ?%s GROUP BY account_number ORDER BY account_number";
+    private static final String SLOTS_SQL =
+            "SELECT account_number, SUM(balance) FROM account_balance_slots " +
+            "WHERE account_number >= ?%s GROUP BY account_number ORDER BY account_number";
+
+    private final List<DbConfig> databases;
+    private final int maxListed;
+
+    public LedgerReconciler(DbConfig db, int maxListed) {
+        this(List.of(db), maxListed);
+    }
+
+    private LedgerReconciler(List<DbConfig> databases, int maxListed) {
+        this.databases = databases;
+        this.maxListed = maxListed;
+    }
+
+    //  Each shard holds its accounts together with their ledger, so shards are checked independently
+    public static LedgerReconciler forShards(ShardRouter router, int maxListed) {
+        List<DbConfig> list = new ArrayList<>();
+        for (int i = 0; i < router.shardCount(); i++) list.add(router.shard(i));
+        return new LedgerReconciler(list, maxListed);
+    }
+
+    //  Check every account with up to `threads` range scans running at once
+    public Report run(int threads) throws SQLException {
+        Report report = new Report(maxListed);
+        List<Runnable> tasks = new ArrayList<>();
+        int perDb = Math.max(1, threads / databases.size());
+        for (DbConfig db : databases) {
+            Schema.execute(db, LedgerArchiver.TOTALS_DDL, SplitBalanceDao.SLOTS_DDL); // both may be read before first use
+            List<String> bounds = rangeStarts(db, perDb);
+            for (int i = 0; i < bounds.size(); i++) {
+                String first = bounds.get(i);
+                String end = i + 1 < bounds.size() ? bounds.get(i + 1) : null;
+                tasks.add(() -> checkRange(db, first, end, report));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable task : tasks) futures.add(pool.submit(task));
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reconciliation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        report.finish();
+        return report;
+    }
+
+    //  First account number of each of up to n ranges of similar size (index-only lookups, no full list in memory)
+    static List<String> rangeStarts(DbConfig db, int n) throws SQLException {
+        List<String> starts = new ArrayList<>();
+        try (Connection conn = db.getConnection()) {
+            long count;
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM accounts")) {
+                rs.next();
+                count = rs.getLong(1);
+            }
+            if (count == 0) return starts;
+
+            long size = (count + n - 1) / n;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT account_number FROM accounts ORDER BY account_number LIMIT 1 OFFSET ?")) {
+                for (long offset = 0; offset < count; offset += size) {
+                    ps.setLong(1, offset);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) starts.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return starts;
+    }
+
+    // ------------------- ONE RANGE -------------------
+
+    //  Accounts in [first, end); end == null means no upper bound
+    private void checkRange(DbConfig db, String first, String end, Report report) {
+        List<Connection> conns = new ArrayList<>();
+        try {
+            Stream credits = open(conns, db, CREDITS_SQL, "to_account", first, end);
+            Stream debits = open(conns, db, DEBITS_SQL, "from_account", first, end);
+            Stream archived = open(conns, db, ARCHIVED_SQL, "account_number", first, end);
+            Stream slots = open(conns, db, SLOTS_SQL, "account_number", first, end);
+            Stream accounts = open(conns, db, ACCOUNTS_SQL, "account_number", first, end);
+
+            long checked = 0;
+            for (; accounts.acc != null; accounts.advance()) {
+                String acc = accounts.acc;
+                BigDecimal balance = accounts.value.add(slots.valueFor(acc));
+                BigDecimal ledger = credits.valueFor(acc).subtract(debits.valueFor(acc)).add(archived.valueFor(acc));
+                checked++;
+                if (balance.compareTo(ledger) == 0) continue;
+
+                Mismatch confirmed = recheck(db, acc);
+                if (confirmed != null) report.mismatch(confirmed);
+                else report.inFlight();
+            }
+            report.checked(checked);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            report.failedRange(first);
+        } finally {
+            for (Connection c : conns) {
+                try {
+                    c.close();
+                } catch (SQLException ignore) {
+                    // closing after a failure
+                }
+            }
+        }
+    }
+
+    //  A streaming result occupies its connection, so every stream gets its own
+    private static Stream open(List<Connection> conns, DbConfig db, String sql, String column,
+                               String first, String end) throws SQLException {
+        Connection conn = db.getConnection();
+        conns.add(conn);
+        conn.setReadOnly(true);
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        conn.setAutoCommit(false); // the scan itself sees one snapshot
+
+        PreparedStatement ps = conn.prepareStatement(
+                String.format(sql, end == null ? "" : " AND " + column + " < ?"),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+        ps.setString(1, first);
+        if (end != null) ps.setString(2, end);
+        return new Stream(ps.executeQuery());
+    }
+
+    //  Same comparison for one account inside one snapshot; null if it balances there
+    private static Mismatch recheck(DbConfig db, String acc) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try {
+                BigDecimal balance = single(conn, "SELECT balance FROM accounts WHERE account_number = ?", acc);
+                if (balance == null) return null; // deleted meanwhile
+                balance = balance.add(orZero(single(conn,
+                        "SELECT SUM(balance) FROM account_balance_slots WHERE account_number = ?", acc)));
+                BigDecimal ledger = orZero(single(conn,
+                        "SELECT SUM(amount) FROM transactions WHERE to_account = ?", acc))
+                        .subtract(orZero(single(conn,
+                                "SELECT SUM(amount) FROM transactions WHERE from_account = ?", acc)))
+                        .add(orZero(single(conn,
+                                "SELECT SUM(credits) - SUM(debits) FROM ledger_archived_totals WHERE account_number = ?", acc)));
+                return balance.compareTo(ledger) == 0 ? null : new Mismatch(acc, balance, ledger);
+            } finally {
+                conn.commit();
+            }
+        }
+    }
+
+    private static BigDecimal single(Connection conn, String sql, String acc) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, acc);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal(1) : null;
+            }
+        }
+    }
+
+    private static BigDecimal orZero(BigDecimal v) {
+        return v == null ? BigDecimal.ZERO : v;
+    }
+
+    //  Forward-only (account, amount) stream; account numbers compare as the DB orders them (digits)
+    private static final class Stream {
+        private final ResultSet rs;
+        String acc;
+        BigDecimal value;
+
+        Stream(ResultSet rs) throws SQLException {
+            this.rs = rs;
+            advance();
+        }
+
+        void advance() throws SQLException {
+            if (rs.next()) {
+                acc = rs.getString(1);
+                value = orZero(rs.getBigDecimal(2));
+            } else {
+                acc = null;
+                value = null;
+            }
+        }
+
+        //  Amount for accNum, 0 if the stream has none; skips accounts that no longer exist
+        BigDecimal valueFor(String accNum) throws SQLException {
+            while (acc != null && acc.compareTo(accNum) < 0) advance();
+            return acc != null && acc.equals(accNum) ? value : BigDecimal.ZERO;
+        }
+    }
+
+    // ------------------- RESULT -------------------
+
+    public static final class Mismatch {
+        private final String accountNumber;
+        private final BigDecimal balance;
+        private final BigDecimal ledger;
+
+        Mismatch(String accountNumber, BigDecimal balance, BigDecimal ledger) {
+            this.accountNumber = accountNumber;
+            this.balance = balance;
+            this.ledger = ledger;
+        }
+
+        public String getAccountNumber() { return accountNumber; }
+        public BigDecimal getBalance() { return balance; }
+        public BigDecimal getLedgerBalance() { return ledger; }
+
+        //  Positive: the account holds more than its ledger explains
+        public BigDecimal getDifference() { return balance.subtract(ledger); }
+
+        @Override
+        public String toString() {
+            return accountNumber + ": balance " + balance.toPlainString() + ", ledger " + ledger.toPlainString() +
+                    ", difference " + getDifference().toPlainString();
+        }
+    }
+
+    public static final class Report {
+        private final long startNanos = System.nanoTime();
+        private final int maxListed;
+        //  Largest differences only, smallest on top so it is the one evicted
+        private final PriorityQueue<Mismatch> largest =
+                new PriorityQueue<>(Comparator.comparing((Mismatch m) -> m.getDifference().abs()));
+        private final List<String> failedRanges = new ArrayList<>();
+        private long elapsedNanos;
+        private long checked;
+        private long mismatches;
+        private long inFlight;
+        private BigDecimal netDifference = BigDecimal.ZERO;
+        private BigDecimal absoluteDifference = BigDecimal.ZERO;
+
+        Report(int maxListed) {
+            this.maxListed = maxListed;
+        }
+
+        synchronized void checked(long n) {
+            checked += n;
+        }
+
+        synchronized void mismatch(Mismatch m) {
+            mismatches++;
+            netDifference = netDifference.add(m.getDifference());
+            absoluteDifference = absoluteDifference.add(m.getDifference().abs());
+            largest.add(m);
+            if (largest.size() > maxListed) largest.poll();
+        }
+
+        synchronized void inFlight() {
+            inFlight++;
+        }
+
+        synchronized void failedRange(String first) {
+            failedRanges.add(first);
+        }
+
+        void finish() {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        public long getChecked() { return checked; }
+        public long getMismatches() { return mismatches; }
+        public BigDecimal getNetDifference() { return netDifference; }
+        public BigDecimal getAbsoluteDifference() { return absoluteDifference; }
+        public boolean isComplete() { return failedRanges.isEmpty(); }
+
+        //  Listed mismatches, largest difference first
+        public List<Mismatch> getLargest() {
+            List<Mismatch> list = new ArrayList<>(largest);
+            list.sort(Comparator.comparing((Mismatch m) -> m.getDifference().abs()).reversed());
+            return list;
+        }
+
+        public void print() {
+            System.out.println("\n==== Reconciliation ====");
+            System.out.println("Accounts checked:   " + checked);
+            System.out.println("Mismatches:         " + mismatches);
+            System.out.println("In-flight (passed): " + inFlight);
+            System.out.println("Net difference:     " + netDifference.toPlainString());
+            System.out.println("Total |difference|: " + absoluteDifference.toPlainString());
+            System.out.printf("Elapsed:            %d ms%n", elapsedNanos / 1_000_000);
+            if (!failedRanges.isEmpty()) System.out.println("Ranges NOT checked (see log), starting at: " + failedRanges);
+            if (mismatches > 0) {
+                System.out.println("\nLargest mismatches:");
+                for (Mismatch m : getLargest()) System.out.println("  " + m);
+                if (mismatches > largest.size()) System.out.println("  ... and " + (mismatches - largest.size()) + " more");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length == 2 && args[0].equals("--backfill-openings")) {
+            TransactionDao txDao = ShardRouter.isConfigured()
+                    ? new ShardedTransactionDao(ShardRouter.fromSystemProperties())
+                    : new TransactionDao(DbConfig.defaults());
+            System.out.println("Opening balances fixed for "
+                    + txDao.backfillOpeningBalances(LocalDateTime.parse(args[1])) + " accounts");
+            return;
+        }
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int maxListed = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        LedgerReconciler reconciler = ShardRouter.isConfigured()
+                ? forShards(ShardRouter.fromSystemProperties(), maxListed)
+                : new LedgerReconciler(DbConfig.defaults(), maxListed);
+        Report report = reconciler.run(threads);
+        report.print();
+        if (report.getMismatches() > 0 || !report.isComplete()) System.exit(1);
+    }
+}
@@ -0,0 +1,512 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.*;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary snapshot of one database's accounts and transactions, for standing up test and
+ * benchmark databases without replaying millions of createAccount/saveTransaction calls.
+ *
+ * File layout (big-endian):
+ *   header  "BSNP", version, creation time (epoch millis)
+ *   frames  kind, rows, raw length, compressed length, CRC32 of the raw bytes, deflated rows
+ *           kind 1 = accounts, 2 = transactions, each in primary-key order
+ *   end     kind 0, then the total account and transaction counts
+ * The dump reads both tables in one transaction (a consistent snapshot) and is written to
+ * a temporary file renamed into place when complete.
+ *
+ * Restore needs empty tables. It drops the transactions' secondary indexes, inflates and
+ * inserts frames on several connections at once with multi-row INSERTs (one commit per
+ * frame), and builds the indexes once at the end. Derived tables (daily summaries,
+ * checkpoints, holds, accruals) are not part of the snapshot: pass --summaries to rebuild
+ * the summaries after the load.
+ */
+public class LedgerSnapshot {
+
+    private static final int MAGIC = 0x42534E50; // "BSNP"
+    private static final int VERSION = 1;
+    private static final byte END = 0, ACCOUNTS = 1, TRANSACTIONS = 2;
+    private static final int FRAME_ROWS = 8192;
+    private static final int INSERT_ROWS = 1024;  // rows per multi-row INSERT
+    private static final Duration LONG_RUNNING = Duration.ofHours(12); // scans and index builds (see DbGuard)
+
+    private static final String ACCOUNT_COLUMNS = "account_number, holder_name, email, balance, created_at, " +
+            "account_type, pin, last_activity, status, failed_attempts, is_locked";
+    private static final String TX_COLUMNS = "tx_id, tx_type, from_account, to_account, amount, category, created_at, is_mirror";
+
+    private static final String[] TX_INDEXES = {
+            "idx_tx_from ON transactions (from_account, created_at)",
+            "idx_tx_to ON transactions (to_account, created_at)"};
+
+    private final DbConfig db;
+
+    public LedgerSnapshot(DbConfig db) {
+        this.db = db;
+    }
+
+    // ------------------- DUMP -------------------
+
+    public Counts dump(Path file) throws IOException, SQLException {
+        long started = System.nanoTime();
+        Counts counts = new Counts();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Connection conn = db.getConnection();
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 20))) {
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ); // both tables as of one moment
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            FrameWriter frames = new FrameWriter(out);
+
+            try {
+                Deadline.runWithin("snapshot dump", LONG_RUNNING, () -> {
+                    counts.accounts = scan(conn, "SELECT " + ACCOUNT_COLUMNS + " FROM accounts ORDER BY account_number",
+                            ACCOUNTS, frames, LedgerSnapshot::writeAccount);
+                    counts.transactions = scan(conn, "SELECT " + TX_COLUMNS + " FROM transactions ORDER BY tx_id",
+                            TRANSACTIONS, frames, LedgerSnapshot::writeTransaction);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            conn.commit();
+
+            out.writeByte(END);
+            out.writeLong(counts.accounts);
+            out.writeLong(counts.transactions);
+            frames.close();
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        counts.bytes = Files.size(file);
+        counts.elapsedNanos = System.nanoTime() - started;
+        return counts;
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs, DataOutputStream out) throws SQLException, IOException;
+    }
+
+    //  Stream one table into frames; returns the row count
+    private long scan(Connection conn, String sql, byte kind, FrameWriter frames, RowWriter writer) throws SQLException {
+        long rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    writer.write(rs, frames.row(kind));
+                    rows++;
+                }
+            }
+            frames.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private static void writeAccount(ResultSet rs, DataOutputStream out) throws SQLException, IOException {
+        out.writeUTF(rs.getString(1));
+        out.writeUTF(rs.getString(2));
+        writeNullable(out, rs.getString(3));
+        out.writeLong(rs.getBigDecimal(4).movePointRight(2).longValueExact());
+        writeTime(out, rs.getTimestamp(5));
+        out.writeUTF(rs.getString(6));
+        writeNullable(out, rs.getString(7));
+        writeTime(out, rs.getTimestamp(8));
+        out.writeUTF(rs.getString(9));
+        out.writeInt(rs.getInt(10));
+        out.writeBoolean(rs.getBoolean(11));
+    }
+
+    private static void writeTransaction(ResultSet rs, DataOutputStream out) throws SQLException, IOException {
+        out.write(rs.getBytes(1)); // 16-byte TxId
+        out.writeUTF(rs.getString(2));
+        writeNullable(out, rs.getString(3));
+        writeNullable(out, rs.getString(4));
+        out.writeLong(rs.getBigDecimal(5).movePointRight(2).longValueExact());
+        writeNullable(out, rs.getString(6));
+        writeTime(out, rs.getTimestamp(7));
+        out.writeBoolean(rs.getBoolean(8));
+    }
+
+    //  Buffers rows of one kind and writes them as compressed, checksummed frames
+    private static final class FrameWriter {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream(1 << 20);
+        private final DataOutputStream rows = new DataOutputStream(raw);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] compressed = new byte[1 << 20];
+        private byte kind;
+        private int count;
+
+        FrameWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        DataOutputStream row(byte kind) throws IOException {
+            if (count == FRAME_ROWS || (count > 0 && kind != this.kind)) flush();
+            this.kind = kind;
+            count++;
+            return rows;
+        }
+
+        void flush() throws IOException {
+            if (count == 0) return;
+            byte[] bytes = raw.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            deflater.reset();
+            deflater.setInput(bytes);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) compressed = Arrays.copyOf(compressed, length * 2);
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            out.writeByte(kind);
+            out.writeInt(count);
+            out.writeInt(bytes.length);
+            out.writeInt(length);
+            out.writeInt((int) crc.getValue());
+            out.write(compressed, 0, length);
+            raw.reset();
+            count = 0;
+        }
+
+        void close() {
+            deflater.end();
+        }
+    }
+
+    // ------------------- RESTORE -------------------
+
+    public Counts restore(Path file, int loaders) throws IOException, SQLException {
+        long started = System.nanoTime();
+        Schema.createCoreTables(db);
+        Schema.addMirrorColumn(db);
+        requireEmpty("accounts");
+        requireEmpty("transactions");
+        dropIndexes();
+
+        Counts counts = new Counts();
+        int threads = Math.max(1, loaders);
+        BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(threads * 2);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) futures.add(pool.submit(() -> loadFrames(queue)));
+
+        boolean read = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 20))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a snapshot");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            in.readLong(); // created at
+
+            byte kind;
+            while ((kind = in.readByte()) != END) {
+                if (kind != ACCOUNTS && kind != TRANSACTIONS) throw new IOException("Corrupt snapshot: frame kind " + kind);
+                Frame f = new Frame(kind, in.readInt(), in.readInt(), in.readInt());
+                f.crc = in.readInt();
+                in.readFully(f.compressed);
+                put(queue, f, futures);
+            }
+            counts.accounts = in.readLong();
+            counts.transactions = in.readLong();
+            for (int i = 0; i < threads; i++) put(queue, Frame.POISON, futures);
+            read = true;
+        } finally {
+            if (read) pool.shutdown();
+            else pool.shutdownNow(); // unreadable file: stop the loaders (their open frame rolls back)
+        }
+
+        long accounts = 0, transactions = 0;
+        for (Future<long[]> f : futures) {
+            long[] loaded = await(f);
+            accounts += loaded[0];
+            transactions += loaded[1];
+        }
+        if (accounts != counts.accounts || transactions != counts.transactions)
+            throw new IOException("Snapshot truncated: loaded " + accounts + "/" + counts.accounts + " accounts, "
+                    + transactions + "/" + counts.transactions + " transactions");
+
+        Deadline.runWithin("snapshot index build", LONG_RUNNING, this::createIndexes);
+        counts.bytes = Files.size(file);
+        counts.elapsedNanos = System.nanoTime() - started;
+        return counts;
+    }
+
+    //  Hand a frame to the loaders; gives up as soon as one of them has failed
+    private static void put(BlockingQueue<Frame> queue, Frame f, List<Future<long[]>> loaders) throws IOException {
+        try {
+            while (!queue.offer(f, 100, TimeUnit.MILLISECONDS)) {
+                for (Future<long[]> l : loaders) if (l.isDone()) await(l); // rethrows its failure
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Restore interrupted");
+        }
+    }
+
+    private static long[] await(Future<long[]> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Restore interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IllegalStateException("Restore failed", e.getCause());
+        }
+    }
+
+    //  One loader: own connection, one transaction per frame; returns {accounts, transactions}
+    private long[] loadFrames(BlockingQueue<Frame> queue) throws Exception {
+        long[] loaded = new long[2];
+        Inflater inflater = new Inflater();
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            if (db.getUrl().startsWith("jdbc:mysql:")) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("SET unique_checks = 0, foreign_key_checks = 0"); // primary keys still enforced
+                }
+            }
+            Frame f;
+            while ((f = queue.take()) != Frame.POISON) {
+                DataInputStream rows = new DataInputStream(new ByteArrayInputStream(inflate(inflater, f)));
+                if (f.kind == ACCOUNTS) {
+                    insert(conn, "accounts", ACCOUNT_COLUMNS, 11, f.rows, rows, LedgerSnapshot::readAccount);
+                    loaded[0] += f.rows;
+                } else {
+                    insert(conn, "transactions", TX_COLUMNS, 8, f.rows, rows, LedgerSnapshot::readTransaction);
+                    loaded[1] += f.rows;
+                }
+                conn.commit();
+            }
+        } finally {
+            inflater.end();
+        }
+        return loaded;
+    }
+
+    private static byte[] inflate(Inflater inflater, Frame f) throws IOException {
+        byte[] raw = new byte[f.rawLength];
+        inflater.reset();
+        inflater.setInput(f.compressed);
+        try {
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int got = inflater.inflate(raw, n, raw.length - n);
+                if (got == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += got;
+            }
+            if (n != raw.length) throw new IOException("Corrupt snapshot: frame inflated to " + n + " of " + raw.length + " bytes");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt snapshot: " + e.getMessage(), e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        if ((int) crc.getValue() != f.crc) throw new IOException("Corrupt snapshot: frame checksum mismatch");
+        return raw;
+    }
+
+    private interface RowReader {
+        void read(DataInputStream in, PreparedStatement ps, int offset) throws IOException, SQLException;
+    }
+
+    //  Multi-row INSERTs of up to INSERT_ROWS rows each
+    private static void insert(Connection conn, String table, String columns, int width, int rows,
+                               DataInputStream in, RowReader reader) throws IOException, SQLException {
+        PreparedStatement full = null;
+        try {
+            for (int done = 0; done < rows; ) {
+                int n = Math.min(INSERT_ROWS, rows - done);
+                PreparedStatement ps = n == INSERT_ROWS && full != null ? full
+                        : conn.prepareStatement(insertSql(table, columns, width, n));
+                if (n == INSERT_ROWS) full = ps;
+                for (int r = 0; r < n; r++) reader.read(in, ps, r * width);
+                ps.executeUpdate();
+                if (ps != full) ps.close();
+                done += n;
+            }
+        } finally {
+            if (full != null) full.close();
+        }
+    }
+
+    private static String insertSql(String table, String columns, int width, int rows) {
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < width; i++) row.append(i == 0 ? "?" : ", ?");
+        row.append(')');
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (").append(columns).append(") VALUES ");
+        for (int r = 0; r < rows; r++) sql.append(r == 0 ? "" : ", ").append(row);
+        return sql.toString();
+    }
+
+    private static void readAccount(DataInputStream in, PreparedStatement ps, int o) throws IOException, SQLException {
+        ps.setString(o + 1, in.readUTF());
+        ps.setString(o + 2, in.readUTF());
+        ps.setString(o + 3, readNullable(in));
+        ps.setBigDecimal(o + 4, BigDecimal.valueOf(in.readLong(), 2));
+        ps.setTimestamp(o + 5, readTime(in));
+        ps.setString(o + 6, in.readUTF());
+        ps.setString(o + 7, readNullable(in));
+        ps.setTimestamp(o + 8, readTime(in));
+        ps.setString(o + 9, in.readUTF());
+        ps.setInt(o + 10, in.readInt());
+        ps.setBoolean(o + 11, in.readBoolean());
+    }
+
+    private static void readTransaction(DataInputStream in, PreparedStatement ps, int o) throws IOException, SQLException {
+        byte[] id = new byte[16];
+        in.readFully(id);
+        ps.setBytes(o + 1, id);
+        ps.setString(o + 2, in.readUTF());
+        ps.setString(o + 3, readNullable(in));
+        ps.setString(o + 4, readNullable(in));
+        ps.setBigDecimal(o + 5, BigDecimal.valueOf(in.readLong(), 2));
+        ps.setString(o + 6, readNullable(in));
+        ps.setTimestamp(o + 7, readTime(in));
+        ps.setBoolean(o + 8, in.readBoolean());
+    }
+
+    private void requireEmpty(String table) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+            if (rs.next()) throw new IllegalStateException("Restore needs an empty " + table + " table in " + db.getUrl());
+        }
+    }
+
+    //  Secondary indexes are built once after the load instead of row by row
+    private void dropIndexes() throws SQLException {
+        boolean mysql = db.getUrl().startsWith("jdbc:mysql:");
+        List<String> ddl = new ArrayList<>();
+        for (String index : TX_INDEXES) {
+            String name = index.substring(0, index.indexOf(' '));
+            ddl.add(mysql ? "ALTER TABLE transactions DROP INDEX " + name : "DROP INDEX IF EXISTS " + name);
+        }
+        Schema.execute(db, ddl.toArray(new String[0]));
+    }
+
+    private void createIndexes() throws SQLException {
+        List<String> ddl = new ArrayList<>();
+        for (String index : TX_INDEXES) ddl.add("CREATE INDEX " + index);
+        Schema.execute(db, ddl.toArray(new String[0]));
+    }
+
+    //  Compressed frame as read from the file
+    private static final class Frame {
+        static final Frame POISON = new Frame(END, 0, 0, 0);
+
+        final byte kind;
+        final int rows;
+        final int rawLength;
+        final byte[] compressed;
+        int crc;
+
+        Frame(byte kind, int rows, int rawLength, int compressedLength) {
+            this.kind = kind;
+            this.rows = rows;
+            this.rawLength = rawLength;
+            this.compressed = new byte[compressedLength];
+        }
+    }
+
+    // ------------------- ENCODING -------------------
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    //  Local date-time as epoch seconds (UTC) + nanos, like the ledger archive; Long.MIN_VALUE = null
+    private static void writeTime(DataOutputStream out, Timestamp ts) throws IOException {
+        if (ts == null) {
+            out.writeLong(Long.MIN_VALUE);
+            return;
+        }
+        LocalDateTime t = ts.toLocalDateTime();
+        out.writeLong(t.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(t.getNano());
+    }
+
+    private static Timestamp readTime(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        if (seconds == Long.MIN_VALUE) return null;
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC));
+    }
+
+    // ------------------- RESULT -------------------
+
+    public static class Counts {
+        private long accounts;
+        private long transactions;
+        private long bytes;
+        private long elapsedNanos;
+
+        public long getAccounts() { return accounts; }
+        public long getTransactions() { return transactions; }
+        public long getBytes() { return bytes; }
+
+        @Override
+        public String toString() {
+            return String.format("%,d accounts, %,d transactions, %,d bytes in %.1f s",
+                    accounts, transactions, bytes, elapsedNanos / 1e9);
+        }
+    }
+
+    //  java LedgerSnapshot dump <file> | restore <file> [loaders] [--summaries]
+    //  With banking.shards set, each shard has its own file: <file>.shard-<i>
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 2 || !(args[0].equals("dump") || args[0].equals("restore"))) {
+            System.err.println("Usage: java LedgerSnapshot dump <file> | restore <file> [loaders] [--summaries]");
+            System.exit(2);
+        }
+        List<DbConfig> dbs = new ArrayList<>();
+        if (ShardRouter.isConfigured()) {
+            ShardRouter router = ShardRouter.fromSystemProperties();
+            for (int i = 0; i < router.shardCount(); i++) dbs.add(router.shard(i));
+        } else {
+            dbs.add(DbConfig.defaults());
+        }
+        boolean summaries = List.of(args).contains("--summaries");
+        int loaders = args.length > 2 && !args[2].startsWith("--") ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < dbs.size(); i++) {
+            Path file = Paths.get(dbs.size() == 1 ? args[1] : args[1] + ".shard-" + i);
+            LedgerSnapshot snapshot = new LedgerSnapshot(dbs.get(i));
+            if (args[0].equals("dump")) {
+                System.out.println("Dumped " + file + ": " + snapshot.dump(file));
+            } else {
+                System.out.println("Restored " + file + ": " + snapshot.restore(file, loaders));
+                if (summaries) System.out.println("Daily summaries rebuilt for "
+                        + new TransactionDao(dbs.get(i)).rebuildDailySummaries() + " accounts");
+            }
+        }
+    }
+}
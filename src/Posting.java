@@ -0,0 +1,55 @@
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One leg of a ledger transaction on one account: a signed amount (credit > 0, debit < 0)
+ * and the account's balance right after it. An account's postings are numbered 1, 2, 3...
+ * in the order they were written; the transactions row they share is the header.
+ */
+public class Posting {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private final String accountNumber;
+    private final long seq;
+    private final TxId txId;
+    private final TransactionRecord.TxType txType;
+    private final BigDecimal amount;
+    private final BigDecimal balanceAfter;
+    private final String category;
+    private final LocalDateTime createdAt;
+
+    public Posting(String accountNumber, long seq, TxId txId, TransactionRecord.TxType txType, BigDecimal amount,
+                   BigDecimal balanceAfter, String category, LocalDateTime createdAt) {
+        this.accountNumber = accountNumber;
+        this.seq = seq;
+        this.txId = txId;
+        this.txType = txType;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.category = category;
+        this.createdAt = createdAt;
+    }
+
+    //  Getters
+    public String getAccountNumber() { return accountNumber; }
+    public long getSeq() { return seq; }
+    public TxId getTxId() { return txId; }
+    public TransactionRecord.TxType getTxType() { return txType; }
+    public BigDecimal getAmount() { return amount; }
+    public BigDecimal getBalanceAfter() { return balanceAfter; }
+    public String getCategory() { return category; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public boolean isCredit() {
+        return amount.signum() > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%-6d | %s | %-10s | %s₹%-10s | Balance: ₹%-10s | Category: %-10s | Date: %s",
+                seq, txId.toShortString(), txType, isCredit() ? "+" : "-", amount.abs(),
+                balanceAfter, category, createdAt.format(DATE_FORMAT));
+    }
+}
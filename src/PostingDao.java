@@ -0,0 +1,462 @@
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Double-entry postings (ledger_postings): every transactions row is the header of one
+ * posting per account it touches -- the debit side gets -amount, the credit side +amount --
+ * numbered per account and carrying the account's running balance. The key is
+ * (account_number, seq), so an account's history, its balance after any transaction and
+ * its current ledger balance are each one index range scan or probe, with no OR across
+ * from_account / to_account. Statements and mini statements (TransactionDao.fetchLastNForAccount,
+ * getTransactionsByAccount) find the account's headers through idx_post_time the same way.
+ *
+ * Postings are written inside the transaction that inserts the header (TransactionDao.insert)
+ * and are never updated: a header that is deleted again (aborted cross-shard transfer) gets
+ * reversing postings. Deposits and withdrawals have no account on their outer side, so a
+ * header's postings add up to its external flow: +amount with only a to_account, -amount
+ * with only a from_account, 0 for a transfer. findUnbalanced() checks exactly that.
+ *
+ * Appending a posting locks the account's last one. Hot accounts (balance slots) are credited
+ * without any account lock, so their legs are queued in ledger_postings_queue instead and
+ * numbered by sequence() -- before their postings are read, when the account stops being hot,
+ * or in one sweep with sequenceAll(). Checks count queued legs as if posted.
+ *
+ * An account's first posting opens at the net of its ledger rows from before postings existed
+ * (archived months included), not at its live balance, which may already contain operations
+ * still in flight. Accounts opened before opening balances were logged need
+ * TransactionDao.backfillOpeningBalances() first.
+ */
+public class PostingDao {
+
+    static final String POSTINGS_DDL =
+            "CREATE TABLE IF NOT EXISTS ledger_postings (" +
+            " account_number VARCHAR(20) NOT NULL," +
+            " seq BIGINT NOT NULL," +                 // 1, 2, 3... per account, in posting order
+            " tx_id BINARY(16) NOT NULL," +           // header (transactions row)
+            " tx_type VARCHAR(20) NOT NULL," +
+            " amount DECIMAL(15,2) NOT NULL," +       // credit > 0, debit < 0
+            " balance_after DECIMAL(15,2) NOT NULL," +
+            " category VARCHAR(50)," +
+            " created_at TIMESTAMP NOT NULL," +       // the header's
+            " PRIMARY KEY (account_number, seq)," +
+            " INDEX idx_post_tx (tx_id, account_number)," +
+            " INDEX idx_post_time (account_number, created_at))";
+
+    //  Legs of hot accounts waiting for sequence() to number them (leg: 0 debit side, 1 credit side)
+    static final String QUEUE_DDL =
+            "CREATE TABLE IF NOT EXISTS ledger_postings_queue (" +
+            " account_number VARCHAR(20) NOT NULL," +
+            " tx_id BINARY(16) NOT NULL," +
+            " leg TINYINT NOT NULL," +
+            " tx_type VARCHAR(20) NOT NULL," +
+            " amount DECIMAL(15,2) NOT NULL," +
+            " category VARCHAR(50)," +
+            " created_at TIMESTAMP NOT NULL," +
+            " PRIMARY KEY (account_number, tx_id, leg)," +
+            " INDEX idx_queue_tx (tx_id))";
+
+    //  Header of every transaction in a period with the sum of its postings and queued legs
+    private static final String SUMS_SQL =
+            "SELECT t.tx_id, t.from_account, t.to_account, t.amount, COALESCE(SUM(p.amount), 0) " +
+            " + (SELECT COALESCE(SUM(w.amount), 0) FROM ledger_postings_queue w WHERE w.tx_id = t.tx_id) " +
+            "FROM transactions t LEFT JOIN ledger_postings p ON p.tx_id = t.tx_id " +
+            "WHERE t.created_at >= ? AND t.created_at < ? " +
+            "GROUP BY t.tx_id, t.from_account, t.to_account, t.amount";
+
+    //  Accounts whose balance differs from their last posting plus queued legs; one statement, so one snapshot
+    private static final String MISMATCH_SQL =
+            "SELECT a.account_number FROM accounts a " +
+            "JOIN ledger_postings p ON p.account_number = a.account_number " +
+            "LEFT JOIN (SELECT account_number, SUM(balance) total FROM account_balance_slots GROUP BY account_number) s " +
+            " ON s.account_number = a.account_number " +
+            "LEFT JOIN (SELECT account_number, SUM(amount) total FROM ledger_postings_queue GROUP BY account_number) w " +
+            " ON w.account_number = a.account_number " +
+            "WHERE p.seq = (SELECT MAX(q.seq) FROM ledger_postings q WHERE q.account_number = a.account_number) " +
+            "AND a.balance + COALESCE(s.total, 0) <> p.balance_after + COALESCE(w.total, 0) " +
+            "ORDER BY a.account_number";
+
+    //  Net of an account's headers that have neither a posting nor a queued leg, except one
+    private static final String UNPOSTED_SQL =
+            "SELECT COALESCE(SUM(CASE WHEN t.to_account = ? THEN t.amount ELSE 0 END), 0) " +
+            " - COALESCE(SUM(CASE WHEN t.from_account = ? THEN t.amount ELSE 0 END), 0) " +
+            "FROM transactions t WHERE (t.to_account = ? OR t.from_account = ?) AND t.tx_id <> ? " +
+            "AND NOT EXISTS (SELECT 1 FROM ledger_postings p WHERE p.tx_id = t.tx_id AND p.account_number = ?) " +
+            "AND NOT EXISTS (SELECT 1 FROM ledger_postings_queue w WHERE w.tx_id = t.tx_id AND w.account_number = ?)";
+
+    private final DbConfig db;
+
+    public PostingDao(DbConfig db) {
+        this.db = db;
+    }
+
+    private Connection getConnection() throws SQLException {
+        return db.getConnection();
+    }
+
+    // ------------------- WRITE -------------------
+
+    //  Post a just-inserted header (caller owns the transaction)
+    static void post(Connection conn, TransactionRecord tx) throws SQLException {
+        postSigned(conn, tx, 1);
+    }
+
+    //  Reverse post() for a header that is being deleted; the original postings stay
+    static void reverse(Connection conn, TransactionRecord tx) throws SQLException {
+        postSigned(conn, tx, -1);
+    }
+
+    private static void postSigned(Connection conn, TransactionRecord tx, int sign) throws SQLException {
+        BigDecimal amount = sign > 0 ? tx.getAmount() : tx.getAmount().negate();
+        if (tx.getFromAccount() != null) postLeg(conn, tx, tx.getFromAccount(), amount.negate(), sign, 0);
+        if (tx.getToAccount() != null) postLeg(conn, tx, tx.getToAccount(), amount, sign, 1);
+    }
+
+    private static void postLeg(Connection conn, TransactionRecord tx, String accNum,
+                                BigDecimal amount, int sign, int leg) throws SQLException {
+        if (sign > 0 && isHot(conn, accNum)) {
+            queue(conn, tx, accNum, amount, leg);
+            return;
+        }
+        if (sign < 0 && (unqueue(conn, tx, accNum) || !isPosted(conn, tx, accNum)))
+            return; // never sequenced (or never posted here): nothing to reverse
+
+        Tail tail = lockTail(conn, accNum, tx.getId());
+        if (tail == null) return; // account does not live in this database (other shard)
+        insertPosting(conn, accNum, tail.seq + 1, tx.getId(), tx.getTxType().name(), amount,
+                tail.balance.add(amount), tx.getCategory(), Timestamp.valueOf(tx.getCreatedAt()));
+    }
+
+    /**
+     * Post an account's queued legs in (created_at, tx_id) order under its tail lock, as
+     * one step of the caller's transaction; returns how many were posted.
+     */
+    static int sequence(Connection conn, String accNum) throws SQLException {
+        if (!hasQueued(conn, accNum)) return 0;
+
+        Tail tail = lockTail(conn, accNum, null); // before the queue: same lock order as a hot debit
+        List<Object[]> queued = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT tx_id, tx_type, amount, category, created_at FROM ledger_postings_queue " +
+                "WHERE account_number = ? ORDER BY created_at, tx_id, leg FOR UPDATE")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    queued.add(new Object[]{rs.getBytes(1), rs.getString(2), rs.getBigDecimal(3),
+                            rs.getString(4), rs.getTimestamp(5)});
+                }
+            }
+        }
+        if (tail != null) {
+            long seq = tail.seq;
+            BigDecimal balance = tail.balance;
+            for (Object[] q : queued) {
+                BigDecimal amount = (BigDecimal) q[2];
+                balance = balance.add(amount);
+                insertPosting(conn, accNum, ++seq, TxId.fromBytes((byte[]) q[0]), (String) q[1], amount,
+                        balance, (String) q[3], (Timestamp) q[4]);
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM ledger_postings_queue WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            ps.executeUpdate();
+        }
+        return queued.size();
+    }
+
+    //  Hot accounts (balance slots) are credited without any lock on the account
+    private static boolean isHot(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM account_balance_slots WHERE account_number = ? LIMIT 1")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void queue(Connection conn, TransactionRecord tx, String accNum, BigDecimal amount, int leg)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO ledger_postings_queue (account_number, tx_id, leg, tx_type, amount, category, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, accNum);
+            ps.setBytes(2, tx.getId().toBytes());
+            ps.setInt(3, leg);
+            ps.setString(4, tx.getTxType().name());
+            ps.setBigDecimal(5, amount);
+            ps.setString(6, tx.getCategory());
+            ps.setTimestamp(7, Timestamp.valueOf(tx.getCreatedAt()));
+            ps.executeUpdate();
+        }
+    }
+
+    //  Drop the transaction's queued legs on the account; true if there were any
+    private static boolean unqueue(Connection conn, TransactionRecord tx, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM ledger_postings_queue WHERE account_number = ? AND tx_id = ?")) {
+            ps.setString(1, accNum);
+            ps.setBytes(2, tx.getId().toBytes());
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    private static boolean isPosted(Connection conn, TransactionRecord tx, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM ledger_postings WHERE tx_id = ? AND account_number = ? LIMIT 1")) {
+            ps.setBytes(1, tx.getId().toBytes());
+            ps.setString(2, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    //  Last posting of an account (seq 0 with the opening balance before its first one)
+    private static final class Tail {
+        final long seq;
+        final BigDecimal balance;
+
+        Tail(long seq, BigDecimal balance) {
+            this.seq = seq;
+            this.balance = balance;
+        }
+    }
+
+    /**
+     * Lock the account's last posting. With none yet, the accounts row is locked first (a
+     * concurrent first posting waits for it instead of also writing seq 1) and the tail
+     * re-read; still none, the account opens at its unposted history. Locks are taken in the
+     * order accounts row, then postings, like every writer that holds the row. Null if the
+     * account does not live in this database.
+     */
+    private static Tail lockTail(Connection conn, String accNum, TxId posting) throws SQLException {
+        Tail tail = readTail(conn, accNum, false);
+        if (tail != null) return readTail(conn, accNum, true);
+
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM accounts WHERE account_number = ? FOR UPDATE")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+            }
+        }
+        tail = readTail(conn, accNum, true);
+        return tail != null ? tail : new Tail(0, unpostedHistory(conn, accNum, posting));
+    }
+
+    private static Tail readTail(Connection conn, String accNum, boolean lock) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT seq, balance_after FROM ledger_postings WHERE account_number = ? " +
+                "ORDER BY seq DESC LIMIT 1" + (lock ? " FOR UPDATE" : ""))) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Tail(rs.getLong(1), rs.getBigDecimal(2)) : null;
+            }
+        }
+    }
+
+    /**
+     * Net of the account's ledger rows from before postings existed: every header touching it
+     * that has no posting and no queued leg (apart from the one being posted), plus archived
+     * months. Headers and postings commit together, so only that old history qualifies --
+     * never another operation in flight, as a live balance would.
+     */
+    private static BigDecimal unpostedHistory(Connection conn, String accNum, TxId posting) throws SQLException {
+        BigDecimal net;
+        try (PreparedStatement ps = conn.prepareStatement(UNPOSTED_SQL)) {
+            ps.setString(1, accNum);
+            ps.setString(2, accNum);
+            ps.setString(3, accNum);
+            ps.setString(4, accNum);
+            ps.setBytes(5, posting == null ? new byte[16] : posting.toBytes());
+            ps.setString(6, accNum);
+            ps.setString(7, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                net = rs.getBigDecimal(1);
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT COALESCE(SUM(credits - debits), 0) FROM ledger_archived_totals WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return net.add(rs.getBigDecimal(1));
+            }
+        }
+    }
+
+    private static void insertPosting(Connection conn, String accNum, long seq, TxId txId, String txType,
+                                      BigDecimal amount, BigDecimal balanceAfter, String category,
+                                      Timestamp createdAt) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO ledger_postings (account_number, seq, tx_id, tx_type, amount, balance_after, category, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, accNum);
+            ps.setLong(2, seq);
+            ps.setBytes(3, txId.toBytes());
+            ps.setString(4, txType);
+            ps.setBigDecimal(5, amount);
+            ps.setBigDecimal(6, balanceAfter);
+            ps.setString(7, category);
+            ps.setTimestamp(8, createdAt);
+            ps.executeUpdate();
+        }
+    }
+
+    private static boolean hasQueued(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM ledger_postings_queue WHERE account_number = ? LIMIT 1")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    //  Sequence every account with queued legs; returns how many legs were posted
+    public int sequenceAll() {
+        List<String> accounts = new ArrayList<>();
+        try (Connection conn = getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT DISTINCT account_number FROM ledger_postings_queue")) {
+            while (rs.next()) accounts.add(rs.getString(1));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        int posted = 0;
+        for (String accNum : accounts) posted += sequence(accNum);
+        return posted;
+    }
+
+    //  Post the account's queued legs now (reads of its postings do this first when there are any)
+    public int sequence(String accNum) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int n = sequence(conn, accNum);
+                conn.commit();
+                return n;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    // ------------------- READ -------------------
+
+    /**
+     * Postings of an account with from <= created_at < to (null = unbounded), newest first.
+     * Queued legs are sequenced first, in a transaction of their own -- only if there are any.
+     */
+    public List<Posting> getPostings(String accNum, LocalDateTime from, LocalDateTime to) {
+        List<Posting> list = new ArrayList<>();
+        String sql = "SELECT * FROM ledger_postings WHERE account_number = ?" +
+                (from != null ? " AND created_at >= ?" : "") +
+                (to != null ? " AND created_at < ?" : "") +
+                " ORDER BY created_at DESC, seq DESC";
+        try (Connection conn = getConnection()) {
+            if (hasQueued(conn, accNum)) sequence(accNum);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                ps.setString(i++, accNum);
+                if (from != null) ps.setTimestamp(i++, Timestamp.valueOf(from));
+                if (to != null) ps.setTimestamp(i, Timestamp.valueOf(to));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) list.add(readRow(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    //  The account's balance right after its (last) posting for a transaction; null if it has none
+    public BigDecimal balanceAfter(String accNum, TxId txId) {
+        String sql = "SELECT balance_after FROM ledger_postings WHERE tx_id = ? AND account_number = ? " +
+                "ORDER BY seq DESC LIMIT 1";
+        try (Connection conn = getConnection()) {
+            if (hasQueued(conn, accNum)) sequence(accNum);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setBytes(1, txId.toBytes());
+                ps.setString(2, accNum);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getBigDecimal(1) : null;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Per header created in [from, to): { expected external flow, sum of its postings here }.
+     * A cross-shard transfer has one leg on each shard, so callers add up the second values
+     * of all shards before comparing.
+     */
+    Map<TxId, BigDecimal[]> postingSums(LocalDateTime from, LocalDateTime to) throws SQLException {
+        Map<TxId, BigDecimal[]> sums = new LinkedHashMap<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(SUMS_SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(from));
+            ps.setTimestamp(2, Timestamp.valueOf(to));
+            ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    boolean hasFrom = rs.getString(2) != null;
+                    boolean hasTo = rs.getString(3) != null;
+                    BigDecimal amount = rs.getBigDecimal(4);
+                    BigDecimal expected = hasFrom == hasTo ? BigDecimal.ZERO : hasTo ? amount : amount.negate();
+                    sums.put(TxId.fromBytes(rs.getBytes(1)), new BigDecimal[]{expected, rs.getBigDecimal(5)});
+                }
+            }
+        }
+        return sums;
+    }
+
+    //  Headers created in [from, to) whose postings don't add up to their external flow
+    public List<TxId> findUnbalanced(LocalDateTime from, LocalDateTime to) {
+        List<TxId> unbalanced = new ArrayList<>();
+        try {
+            postingSums(from, to).forEach((id, s) -> {
+                if (s[0].compareTo(s[1]) != 0) unbalanced.add(id);
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return unbalanced;
+    }
+
+    //  Up to max accounts whose balance doesn't match the running balance of their last posting
+    public List<String> findBalanceMismatches(int max) {
+        List<String> accounts = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(MISMATCH_SQL)) {
+            ps.setMaxRows(max);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) accounts.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return accounts;
+    }
+
+    private static Posting readRow(ResultSet rs) throws SQLException {
+        return new Posting(rs.getString("account_number"), rs.getLong("seq"),
+                TxId.fromBytes(rs.getBytes("tx_id")),
+                TransactionRecord.TxType.valueOf(rs.getString("tx_type")),
+                rs.getBigDecimal("amount"), rs.getBigDecimal("balance_after"),
+                rs.getString("category"), rs.getTimestamp("created_at").toLocalDateTime());
+    }
+}
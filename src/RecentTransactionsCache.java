@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last few transactions of recently used accounts, for mini statements.
+ *
+ * Each cached account has a fixed-size ring of its newest TransactionRecords. A miss
+ * loads the ring with one LIMIT query; after that, committed transactions are pushed
+ * onto the rings of the accounts they touch (unless the load already saw them), and mini
+ * statements need no ledger query.
+ * Accounts are kept in LRU order and the least recently used one is evicted past
+ * maxAccounts. The cache is split into stripes (like AccountLocks) to keep lock hold
+ * times and contention small.
+ */
+public class RecentTransactionsCache {
+
+    //  Reads an account's newest n transactions, newest first
+    public interface Loader {
+        List<TransactionRecord> lastN(String accNo, int n);
+    }
+
+    private static final int STRIPES = 16;
+
+    private final int perAccount;
+    private final Loader loader;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public RecentTransactionsCache(int perAccount, int maxAccounts, Loader loader) {
+        if (perAccount < 1 || maxAccounts < 1)
+            throw new IllegalArgumentException("Cache sizes must be at least 1");
+        this.perAccount = perAccount;
+        this.loader = loader;
+        int perStripe = Math.max(1, maxAccounts / STRIPES);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(perStripe);
+    }
+
+    //  Newest first, at most n (n is capped at the ring size)
+    public List<TransactionRecord> recent(String accNo, int n) {
+        Stripe s = stripeOf(accNo);
+        long version;
+        synchronized (s) {
+            Ring ring = s.get(accNo);
+            if (ring != null) return ring.newest(Math.min(n, perAccount));
+            version = s.writes;
+        }
+
+        //  Miss: load outside the lock; cache it only if no transaction landed in this stripe meanwhile
+        List<TransactionRecord> loaded = loader.lastN(accNo, perAccount);
+        synchronized (s) {
+            if (s.writes == version && s.get(accNo) == null) {
+                Ring ring = new Ring(perAccount);
+                for (int i = loaded.size() - 1; i >= 0; i--) ring.push(loaded.get(i));
+                s.put(accNo, ring);
+            }
+        }
+        return loaded.size() <= n ? loaded : new ArrayList<>(loaded.subList(0, n));
+    }
+
+    //  A transaction committed: push it onto the rings of the (cached) accounts it touches
+    public void record(TransactionRecord tx) {
+        push(tx.getFromAccount(), tx);
+        if (tx.getToAccount() != null && !tx.getToAccount().equals(tx.getFromAccount())) push(tx.getToAccount(), tx);
+    }
+
+    //  Forget an account (deleted, or its ledger changed outside this process)
+    public void invalidate(String accNo) {
+        Stripe s = stripeOf(accNo);
+        synchronized (s) {
+            s.remove(accNo);
+            s.writes++;
+        }
+    }
+
+    public int size() {
+        int n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.size();
+            }
+        }
+        return n;
+    }
+
+    private void push(String accNo, TransactionRecord tx) {
+        if (accNo == null) return;
+        Stripe s = stripeOf(accNo);
+        synchronized (s) {
+            s.writes++;
+            Ring ring = s.get(accNo); // not cached: the next miss reads it from the ledger
+            if (ring != null && !ring.contains(tx.getId())) ring.push(tx); // already there if it committed before the load
+        }
+    }
+
+    private Stripe stripeOf(String accNo) {
+        int h = accNo.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    //  Access-ordered map that drops its eldest entry past its capacity
+    private static final class Stripe extends LinkedHashMap<String, Ring> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        long writes; // bumped on every push/invalidate, guards against caching a stale load
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Ring> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    //  Fixed-size ring; the oldest record is overwritten
+    private static final class Ring {
+        private final TransactionRecord[] items;
+        private int next;  // slot the next push goes to
+        private int count;
+
+        Ring(int size) {
+            items = new TransactionRecord[size];
+        }
+
+        void push(TransactionRecord tx) {
+            items[next] = tx;
+            next = (next + 1) % items.length;
+            if (count < items.length) count++;
+        }
+
+        //  A scan: the ring holds only a handful of records
+        boolean contains(TxId id) {
+            for (int i = 1; i <= count; i++) {
+                if (items[(next - i + items.length) % items.length].getId().equals(id)) return true;
+            }
+            return false;
+        }
+
+        List<TransactionRecord> newest(int n) {
+            int k = Math.min(n, count);
+            List<TransactionRecord> list = new ArrayList<>(k);
+            for (int i = 1; i <= k; i++) {
+                list.add(items[(next - i + items.length) % items.length]);
+            }
+            return list;
+        }
+    }
+}
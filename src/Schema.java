@@ -0,0 +1,94 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DDL for the core tables the DAOs expect.
+ * MySQL syntax; also accepted by H2 in MODE=MySQL, which is how the
+ * embedded test databases are set up.
+ */
+public final class Schema {
+
+    private Schema() {} // Prevent instantiation
+
+    public static final String ACCOUNTS =
+            "CREATE TABLE IF NOT EXISTS accounts (" +
+            " account_number VARCHAR(20) PRIMARY KEY," +
+            " holder_name VARCHAR(100) NOT NULL," +
+            " email VARCHAR(100)," +
+            " balance DECIMAL(15,2) NOT NULL DEFAULT 0," +
+            " created_at TIMESTAMP NOT NULL," +
+            " account_type VARCHAR(10) NOT NULL DEFAULT 'SAVINGS'," +
+            " pin VARCHAR(4)," +
+            " last_activity TIMESTAMP NULL," +
+            " status VARCHAR(10) NOT NULL DEFAULT 'ACTIVE'," +
+            " failed_attempts INT NOT NULL DEFAULT 0," +
+            " is_locked BOOLEAN NOT NULL DEFAULT FALSE)";
+
+    public static final String TRANSACTIONS =
+            "CREATE TABLE IF NOT EXISTS transactions (" +
+            " tx_id BINARY(16) PRIMARY KEY," + // TxId bytes, time-ordered
+            " tx_type VARCHAR(20) NOT NULL," +
+            " from_account VARCHAR(20)," +
+            " to_account VARCHAR(20)," +
+            " amount DECIMAL(15,2) NOT NULL," +
+            " category VARCHAR(50)," +
+            " created_at TIMESTAMP NOT NULL," +
+            " is_mirror BOOLEAN NOT NULL DEFAULT FALSE," + // target-shard copy of a cross-shard transfer
+            " INDEX idx_tx_from (from_account, created_at)," +
+            " INDEX idx_tx_to (to_account, created_at))";
+
+    //  Create accounts + transactions if they are missing (safe to call repeatedly)
+    public static void createCoreTables(DbConfig db) throws SQLException {
+        execute(db, ACCOUNTS, TRANSACTIONS);
+    }
+
+    /**
+     * One-time upgrade of databases created with text tx ids (VARCHAR(36)) to BINARY(16):
+     * the old random UUIDs are kept, just stored as bytes. Tables already migrated are skipped.
+     */
+    public static void migrateTxIdsToBinary(DbConfig db) throws SQLException {
+        for (String table : new String[]{"transactions", "transfer_intents", "transfer_applied"}) {
+            if (!"varchar".equalsIgnoreCase(columnType(db, table, "tx_id"))) continue;
+            execute(db,
+                    "ALTER TABLE " + table + " MODIFY tx_id VARBINARY(36) NOT NULL",
+                    "UPDATE " + table + " SET tx_id = UNHEX(REPLACE(tx_id, '-', ''))",
+                    "ALTER TABLE " + table + " MODIFY tx_id BINARY(16) NOT NULL");
+        }
+    }
+
+    /**
+     * One-time upgrade of transactions tables created before is_mirror existed. Rows already
+     * stored keep FALSE; ShardedTransactionDao.tagMirrorRows() marks the old copies.
+     */
+    public static void addMirrorColumn(DbConfig db) throws SQLException {
+        if (columnType(db, "transactions", "is_mirror") != null) return;
+        execute(db, "ALTER TABLE transactions ADD COLUMN is_mirror BOOLEAN NOT NULL DEFAULT FALSE");
+    }
+
+    //  DATA_TYPE of a column in the current schema, null if the table/column doesn't exist
+    private static String columnType(DbConfig db, String table, String column) throws SQLException {
+        String sql = "SELECT data_type FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    //  Run a list of DDL statements on one database
+    static void execute(DbConfig db, String... ddl) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement()) {
+            for (String sql : ddl) {
+                st.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Maps an account number to one of N databases by a hash of the account number,
+ * and runs scatter-gather queries across all shards in parallel.
+ *
+ * Configure with system properties:
+ *   banking.shards   = comma-separated JDBC URLs (one per shard)
+ *   banking.db.user  / banking.db.password (shared by all shards)
+ */
+public class ShardRouter {
+
+    private final List<DbConfig> shards;
+    private final ExecutorService scatterPool;
+
+    public ShardRouter(List<DbConfig> shards) {
+        if (shards == null || shards.isEmpty())
+            throw new IllegalArgumentException("At least one shard is required");
+        this.shards = List.copyOf(shards);
+        this.scatterPool = Executors.newFixedThreadPool(this.shards.size(), r -> {
+            Thread t = new Thread(r, "shard-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    //  True when banking.shards is set
+    public static boolean isConfigured() {
+        String urls = System.getProperty("banking.shards");
+        return urls != null && !urls.isBlank();
+    }
+
+    //  Build the router from banking.shards / banking.db.user / banking.db.password
+    public static ShardRouter fromSystemProperties() {
+        String user = System.getProperty("banking.db.user", DbConfig.DEFAULT_USER);
+        String pass = System.getProperty("banking.db.password", DbConfig.DEFAULT_PASS);
+        List<DbConfig> list = new ArrayList<>();
+        for (String url : System.getProperty("banking.shards", DbConfig.DEFAULT_URL).split(",")) {
+            if (!url.isBlank()) list.add(new DbConfig(url.trim(), user, pass));
+        }
+        return new ShardRouter(list);
+    }
+
+    public int shardCount() { return shards.size(); }
+
+    public DbConfig shard(int index) { return shards.get(index); }
+
+    /**
+     * Shard index for an account. 11-digit numbers are hashed as longs; anything else
+     * (legacy ids such as "A1001") falls back to String.hashCode. The value is passed
+     * through a 64-bit mixer so sequential account numbers still spread evenly.
+     */
+    public int shardOf(String accNum) {
+        if (accNum == null) throw new IllegalArgumentException("Account number required");
+        long key = ValidationUtils.isValidAccountNumber(accNum)
+                ? Long.parseLong(accNum.trim())
+                : accNum.hashCode();
+        return (int) Long.remainderUnsigned(mix(key), shards.size());
+    }
+
+    public boolean sameShard(String a, String b) {
+        return shardOf(a) == shardOf(b);
+    }
+
+    //  Run one query per shard in parallel and concatenate the results (shard order)
+    public <T> List<T> scatterGather(IntFunction<List<T>> perShard) {
+        if (shards.size() == 1) return perShard.apply(0);
+
+        List<Future<List<T>>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            final int shard = i;
+            futures.add(scatterPool.submit(() -> perShard.apply(shard)));
+        }
+
+        List<T> all = new ArrayList<>();
+        for (Future<List<T>> f : futures) {
+            try {
+                all.addAll(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.unmodifiableList(all);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Shard query failed", e.getCause());
+            }
+        }
+        return all;
+    }
+
+    //  MurmurHash3 fmix64 finalizer
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,124 @@
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AccountDao that routes every single-account call to the shard owning the account
+ * and runs listAllAccounts() as a parallel scatter-gather across all shards.
+ * Cross-shard transfers go through {@link CrossShardTransfer}.
+ */
+public class ShardedAccountDao extends AccountDao {
+
+    private final ShardRouter router;
+    private final AccountDao[] shards;
+    private final CrossShardTransfer crossShard;
+
+    public ShardedAccountDao(ShardRouter router) {
+        super(router.shard(0));
+        this.router = router;
+        this.shards = new AccountDao[router.shardCount()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new AccountDao(router.shard(i));
+        }
+        this.crossShard = new CrossShardTransfer(router);
+    }
+
+    public ShardRouter getRouter() { return router; }
+
+    private AccountDao shardFor(String accNum) {
+        return shards[router.shardOf(accNum)];
+    }
+
+    //  True when both accounts live in the same database (plain local transfer is enough)
+    public boolean isSameShard(String a, String b) {
+        return router.sameShard(a, b);
+    }
+
+    //  Two-phase debit/credit between shards (see CrossShardTransfer)
+    public void transferAcrossShards(TransactionRecord tx, BigDecimal minBalance) {
+        crossShard.transfer(tx, minBalance);
+    }
+
+    //  Finish transfers left PREPARED by a crash; returns how many were resolved
+    public int recoverInDoubtTransfers() {
+        return crossShard.recover();
+    }
+
+    @Override
+    DbConfig dbFor(String accNum) {
+        return router.shard(router.shardOf(accNum));
+    }
+
+    @Override
+    List<DbConfig> databases() {
+        List<DbConfig> all = new ArrayList<>();
+        for (int i = 0; i < router.shardCount(); i++) all.add(router.shard(i));
+        return all;
+    }
+
+    @Override
+    void setExistenceFilter(AccountFilter filter) {
+        super.setExistenceFilter(filter);
+        for (AccountDao shard : shards) shard.setExistenceFilter(filter);
+    }
+
+    // ------------------- ROUTED CALLS -------------------
+    @Override
+    public boolean createAccount(Account a) {
+        if (a == null) {
+            return super.createAccount(null); // reuse validation message
+        }
+        return shardFor(a.getAccountNumber()).createAccount(a);
+    }
+
+    @Override
+    public Account findByAccountNumber(String accNum) {
+        return shardFor(accNum).findByAccountNumber(accNum);
+    }
+
+    @Override
+    public List<Account> listAllAccounts() {
+        return router.scatterGather(i -> shards[i].listAllAccounts());
+    }
+
+    @Override
+    public void updateBalanceAndActivity(Account account) {
+        shardFor(account.getAccountNumber()).updateBalanceAndActivity(account);
+    }
+
+    @Override
+    public void updateAccountStatus(Account account) {
+        shardFor(account.getAccountNumber()).updateAccountStatus(account);
+    }
+
+    @Override
+    public boolean deleteAccount(String accNum) {
+        return shardFor(accNum).deleteAccount(accNum);
+    }
+
+    @Override
+    public int getFailedAttempts(String accNum) {
+        return shardFor(accNum).getFailedAttempts(accNum);
+    }
+
+    @Override
+    public void setFailedAttempts(String accNum, int attempts) {
+        shardFor(accNum).setFailedAttempts(accNum, attempts);
+    }
+
+    @Override
+    public void lockAccount(String accNum) {
+        shardFor(accNum).lockAccount(accNum);
+    }
+
+    @Override
+    public boolean isAccountLocked(String accNum) {
+        return shardFor(accNum).isAccountLocked(accNum);
+    }
+
+    @Override
+    public LocalDateTime getLastActivity(String accNum) {
+        return shardFor(accNum).getLastActivity(accNum);
+    }
+}
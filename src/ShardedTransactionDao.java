@@ -0,0 +1,202 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TransactionDao that keeps each account's history on that account's shard.
+ * A transfer between two shards is written to both, so per-account queries
+ * never have to leave the owning shard. The target shard's copy is tagged
+ * is_mirror, and bank-wide aggregates count only the source shard's row.
+ */
+public class ShardedTransactionDao extends TransactionDao {
+
+    private final ShardRouter router;
+    private final TransactionDao[] shards;
+
+    public ShardedTransactionDao(ShardRouter router) {
+        super(router.shard(0));
+        this.router = router;
+        this.shards = new TransactionDao[router.shardCount()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new TransactionDao(router.shard(i));
+        }
+    }
+
+    @Override
+    public boolean saveTransaction(TransactionRecord tx) {
+        String from = tx.getFromAccount();
+        String to = tx.getToAccount();
+        int fromShard = from == null ? -1 : router.shardOf(from);
+        int toShard = to == null ? -1 : router.shardOf(to);
+
+        boolean saved = true;
+        if (fromShard >= 0) saved = shards[fromShard].saveTransaction(tx);
+        if (toShard >= 0 && toShard != fromShard) saved &= shards[toShard].saveTransaction(tx, fromShard >= 0);
+        return saved;
+    }
+
+    @Override
+    public List<TransactionRecord> fetchLastNForAccount(String accNum, int n) {
+        return shards[router.shardOf(accNum)].fetchLastNForAccount(accNum, n);
+    }
+
+    @Override
+    public List<TransactionRecord> getTransactionsByAccount(String accNum) {
+        return shards[router.shardOf(accNum)].getTransactionsByAccount(accNum);
+    }
+
+    @Override
+    public List<TransactionRecord> getTransactionsByAccount(String accNum, LocalDateTime from, LocalDateTime to) {
+        return shards[router.shardOf(accNum)].getTransactionsByAccount(accNum, from, to);
+    }
+
+    @Override
+    public BigDecimal balanceAsOf(String accNum, LocalDateTime at) {
+        return shards[router.shardOf(accNum)].balanceAsOf(accNum, at);
+    }
+
+    //  Each shard archives its own ledger into shard-<i>/ under the given directory
+    @Override
+    public void setArchive(LedgerArchive archive) {
+        super.setArchive(archive);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].setArchive(archive == null ? null : archive.subArchive("shard-" + i));
+        }
+    }
+
+    //  Mirror rows are left out by each shard, so every transfer is reported once
+    @Override
+    public List<TransactionRecord> getOutgoingSince(LocalDateTime since) {
+        List<TransactionRecord> all = new ArrayList<>(router.scatterGather(i -> shards[i].getOutgoingSince(since)));
+        all.sort(Comparator.comparing(TransactionRecord::getCreatedAt));
+        return all;
+    }
+
+    @Override
+    public List<DailySummary> getDailySummaries(String accNum, LocalDate from, LocalDate to) {
+        return shards[router.shardOf(accNum)].getDailySummaries(accNum, from, to);
+    }
+
+    @Override
+    public BigDecimal averageDailyBalance(String accNum, YearMonth month) {
+        return shards[router.shardOf(accNum)].averageDailyBalance(accNum, month);
+    }
+
+    //  Each shard aggregates its own accounts; the per-shard totals are added up here
+    @Override
+    public DailySummary getDayTotals(LocalDate day) {
+        List<DailySummary> parts = router.scatterGather(i -> List.of(shards[i].getDayTotals(day)));
+        DailySummary total = new DailySummary("*", day, BigDecimal.ZERO, BigDecimal.ZERO);
+        for (DailySummary part : parts) {
+            total.setOpeningBalance(total.getOpeningBalance().add(part.getOpeningBalance()));
+            total.setClosingBalance(total.getClosingBalance().add(part.getClosingBalance()));
+            total.addCredits(part.getTotalCredits());
+            total.addDebits(part.getTotalDebits());
+            part.getTypeCounts().forEach(total::addTypeCount);
+        }
+        return total;
+    }
+
+    @Override
+    public List<Posting> getPostings(String accNum, LocalDateTime from, LocalDateTime to) {
+        return shards[router.shardOf(accNum)].getPostings(accNum, from, to);
+    }
+
+    @Override
+    public BigDecimal balanceAfter(String accNum, TxId txId) {
+        return shards[router.shardOf(accNum)].balanceAfter(accNum, txId);
+    }
+
+    //  A cross-shard transfer's header is on both shards with one leg each: legs are added up before comparing
+    @Override
+    public List<TxId> findUnbalanced(LocalDateTime from, LocalDateTime to) {
+        List<Map<TxId, BigDecimal[]>> parts = router.scatterGather(i -> {
+            try {
+                return List.of(shards[i].postingSums(from, to));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot read postings of shard " + i, e);
+            }
+        });
+        Map<TxId, BigDecimal[]> merged = new HashMap<>();
+        for (Map<TxId, BigDecimal[]> part : parts) {
+            part.forEach((id, s) -> merged.merge(id, s, (a, b) -> new BigDecimal[]{a[0], a[1].add(b[1])}));
+        }
+        List<TxId> unbalanced = new ArrayList<>();
+        merged.forEach((id, s) -> {
+            if (s[0].compareTo(s[1]) != 0) unbalanced.add(id);
+        });
+        unbalanced.sort(Comparator.naturalOrder());
+        return unbalanced;
+    }
+
+    @Override
+    public List<String> findBalanceMismatches(int max) {
+        List<String> all = new ArrayList<>(router.scatterGather(i -> shards[i].findBalanceMismatches(max)));
+        all.sort(Comparator.naturalOrder());
+        return all.size() <= max ? all : new ArrayList<>(all.subList(0, max));
+    }
+
+    @Override
+    public int sequencePostings() {
+        return router.scatterGather(i -> List.of(shards[i].sequencePostings()))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Backfill for ledgers written before is_mirror existed: tag every transfer row whose
+     * source account lives on another shard. Returns the number of rows tagged.
+     */
+    public int tagMirrorRows() {
+        return router.scatterGather(i -> {
+            DbConfig db = router.shard(i);
+            List<byte[]> ids = new ArrayList<>();
+            try {
+                Schema.addMirrorColumn(db);
+                try (Connection conn = db.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(
+                             "SELECT tx_id, from_account FROM transactions " +
+                             "WHERE from_account IS NOT NULL AND to_account IS NOT NULL AND is_mirror = FALSE")) {
+                    ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            if (router.shardOf(rs.getString(2)) != i) ids.add(rs.getBytes(1));
+                        }
+                    }
+                }
+                try (Connection conn = db.getConnection();
+                     PreparedStatement ps = conn.prepareStatement("UPDATE transactions SET is_mirror = TRUE WHERE tx_id = ?")) {
+                    for (byte[] id : ids) {
+                        ps.setBytes(1, id);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot tag mirror rows on shard " + i, e);
+            }
+            return List.of(ids.size());
+        }).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public int rebuildDailySummaries() {
+        return router.scatterGather(i -> List.of(shards[i].rebuildDailySummaries()))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public int backfillOpeningBalances(LocalDateTime openedBefore) {
+        return router.scatterGather(i -> List.of(shards[i].backfillOpeningBalances(openedBefore)))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+}
@@ -0,0 +1,304 @@
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Split balances for hot accounts (merchant / pool accounts that receive a large share
+ * of all credits).
+ *
+ * A hot account's balance = accounts.balance (the base) + the sum of its K rows in
+ * account_balance_slots. Credits add to one random slot with an atomic increment, so
+ * K concurrent credits lock K different rows instead of queueing on the accounts row.
+ * Debits lock the base row (debits stay serialized, which keeps the minimum-balance
+ * check exact), take what they can from the base and top it up from slots when short.
+ * Nothing ever writes an absolute balance for a hot account.
+ */
+public class SplitBalanceDao {
+
+    static final String SLOTS_DDL =
+            "CREATE TABLE IF NOT EXISTS account_balance_slots (" +
+            " account_number VARCHAR(20) NOT NULL," +
+            " slot INT NOT NULL," +
+            " balance DECIMAL(15,2) NOT NULL DEFAULT 0," +
+            " PRIMARY KEY (account_number, slot))";
+
+    private final DbConfig db;
+
+    public SplitBalanceDao(DbConfig db) {
+        this.db = db;
+    }
+
+    public void ensureSchema() {
+        try {
+            Schema.execute(db, SLOTS_DDL);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Hot accounts in this database and their slot counts
+    public Map<String, Integer> loadHotAccounts() {
+        Map<String, Integer> hot = new HashMap<>();
+        ensureSchema();
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT account_number, COUNT(*) FROM account_balance_slots GROUP BY account_number")) {
+            while (rs.next()) hot.put(rs.getString(1), rs.getInt(2));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return hot;
+    }
+
+    /**
+     * Give an account `slots` credit slots (adds missing ones, never removes). Also pins
+     * today's daily-summary row so summaries never derive a balance from accounts.balance
+     * alone for this account.
+     */
+    public void enable(String accNum, int slots) throws SQLException {
+        if (slots < 1) throw new IllegalArgumentException("A hot account needs at least one slot");
+        ensureSchema();
+        new DailySummaryDao(db).ensureSchema(); // DDL outside the transaction below
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                BigDecimal base = lockBase(conn, accNum);
+                if (base == null) throw new IllegalArgumentException("Account not found: " + accNum);
+                int existing = slotCount(conn, accNum);
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO account_balance_slots (account_number, slot, balance) VALUES (?, ?, 0)")) {
+                    for (int s = existing; s < slots; s++) {
+                        ps.setString(1, accNum);
+                        ps.setInt(2, s);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                pinSummary(conn, accNum, base.add(slotTotal(conn, accNum)));
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    //  Fold the slots back into the base and drop them (account becomes a normal account)
+    public void disable(String accNum) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                gather(conn, accNum);
+                PostingDao.sequence(conn, accNum); // from now on its legs are posted as they are written
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM account_balance_slots WHERE account_number = ?")) {
+                    ps.setString(1, accNum);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // ------------------- CREDIT / DEBIT -------------------
+
+    //  Add to one random slot; touches neither the accounts row nor the other slots
+    public void credit(String accNum, int slots, BigDecimal amount) {
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        String sql = "UPDATE account_balance_slots SET balance = balance + ? WHERE account_number = ? AND slot = ?";
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setBigDecimal(1, amount);
+            ps.setString(2, accNum);
+            ps.setInt(3, slot);
+            if (ps.executeUpdate() == 0)
+                throw new IllegalStateException("Hot account " + accNum + " has no slot " + slot);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Credit failed for hot account " + accNum, e);
+        }
+    }
+
+    /**
+     * Debit keeping at least minBalance in total. Draws from the base first, then moves
+     * funds from slots (random order) into the base until it covers the amount.
+     * Returns the new total, or null if the total was not enough.
+     */
+    public BigDecimal debit(String accNum, BigDecimal amount, BigDecimal minBalance) {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                BigDecimal base = lockBase(conn, accNum);
+                if (base == null) throw new IllegalArgumentException("Account not found: " + accNum);
+
+                //  Plain read: concurrent credits only add, so this total can only be an underestimate
+                BigDecimal total = base.add(slotTotal(conn, accNum));
+                if (total.subtract(amount).compareTo(minBalance) < 0) {
+                    conn.rollback();
+                    return null;
+                }
+
+                if (base.compareTo(amount) < 0) {
+                    base = base.add(drainSlots(conn, accNum, amount.subtract(base)));
+                }
+                setBase(conn, accNum, base.subtract(amount));
+                conn.commit();
+                return total.subtract(amount);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Debit failed for hot account " + accNum, e);
+        }
+    }
+
+    //  Current total (base + slots); null if the account does not exist
+    public BigDecimal totalBalance(String accNum) {
+        try (Connection conn = db.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT balance FROM accounts WHERE account_number = ?")) {
+                ps.setString(1, accNum);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    return rs.getBigDecimal(1).add(slotTotal(conn, accNum));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    //  Move every slot into the base (before a cross-shard debit, or to take the account out of hot mode)
+    public void gather(String accNum) {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                gather(conn, accNum);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ------------------- HELPERS -------------------
+
+    private void gather(Connection conn, String accNum) throws SQLException {
+        BigDecimal base = lockBase(conn, accNum);
+        if (base == null) return;
+        BigDecimal moved = drainSlots(conn, accNum, null);
+        setBase(conn, accNum, base.add(moved));
+    }
+
+    //  Take up to `need` (null = everything) out of the slots; returns the amount taken
+    private BigDecimal drainSlots(Connection conn, String accNum, BigDecimal need) throws SQLException {
+        List<Integer> order = new ArrayList<>();
+        for (int s = 0, n = slotCount(conn, accNum); s < n; s++) order.add(s);
+        if (need != null) Collections.shuffle(order, ThreadLocalRandom.current()); // spread contention with credits
+
+        BigDecimal taken = BigDecimal.ZERO;
+        for (int slot : order) {
+            if (need != null && taken.compareTo(need) >= 0) break;
+            BigDecimal available;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT balance FROM account_balance_slots WHERE account_number = ? AND slot = ? FOR UPDATE")) {
+                ps.setString(1, accNum);
+                ps.setInt(2, slot);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) continue;
+                    available = rs.getBigDecimal(1);
+                }
+            }
+            if (available.signum() <= 0) continue;
+            BigDecimal take = need == null ? available : available.min(need.subtract(taken));
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE account_balance_slots SET balance = balance - ? WHERE account_number = ? AND slot = ?")) {
+                ps.setBigDecimal(1, take);
+                ps.setString(2, accNum);
+                ps.setInt(3, slot);
+                ps.executeUpdate();
+            }
+            taken = taken.add(take);
+        }
+        return taken;
+    }
+
+    private static BigDecimal lockBase(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT balance FROM accounts WHERE account_number = ? FOR UPDATE")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBigDecimal(1) : null;
+            }
+        }
+    }
+
+    private static void setBase(Connection conn, String accNum, BigDecimal base) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE accounts SET balance = ?, last_activity = ? WHERE account_number = ?")) {
+            ps.setBigDecimal(1, base);
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setString(3, accNum);
+            ps.executeUpdate();
+        }
+    }
+
+    private static BigDecimal slotTotal(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT COALESCE(SUM(balance), 0) FROM account_balance_slots WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+
+    private static int slotCount(Connection conn, String accNum) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT COUNT(*) FROM account_balance_slots WHERE account_number = ?")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    //  Make sure a summary row exists for today so later rows chain from it, not from accounts.balance
+    private static void pinSummary(Connection conn, String accNum, BigDecimal total) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM account_daily_summary WHERE account_number = ? AND summary_date <= ? LIMIT 1")) {
+            ps.setString(1, accNum);
+            ps.setDate(2, Date.valueOf(LocalDate.now()));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return;
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO account_daily_summary (account_number, summary_date, opening_balance, closing_balance) " +
+                "VALUES (?, ?, ?, ?)")) {
+            ps.setString(1, accNum);
+            ps.setDate(2, Date.valueOf(LocalDate.now()));
+            ps.setBigDecimal(3, total);
+            ps.setBigDecimal(4, total);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A recurring transfer instruction. Occurrence n is due at firstRun + n periods (counted
+ * from firstRun, so a monthly order on the 31st comes back to the 31st after February).
+ */
+public class StandingOrder {
+
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY;
+
+        LocalDateTime occurrence(LocalDateTime first, int n) {
+            switch (this) {
+                case DAILY: return first.plusDays(n);
+                case WEEKLY: return first.plusWeeks(n);
+                default: return first.plusMonths(n);
+            }
+        }
+    }
+
+    private long orderId;
+    private final String fromAccount;
+    private final String toAccount;
+    private final BigDecimal amount;
+    private final Frequency frequency;
+    private final LocalDateTime firstRun;
+    private final LocalDate endDate;       // last day an occurrence may fall on, null = open-ended
+    private String status = "ACTIVE";      // ACTIVE, COMPLETED, SUSPENDED, CANCELLED
+    private int runCount;                  // occurrences settled (paid or given up)
+    private int attempts;                  // failed attempts at the current occurrence
+    private LocalDateTime retryAt;         // next attempt at the current occurrence, null = at its due time
+    private int maxRetries = 3;
+
+    public StandingOrder(String fromAccount, String toAccount, BigDecimal amount,
+                         Frequency frequency, LocalDateTime firstRun, LocalDate endDate) {
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.amount = amount;
+        this.frequency = frequency;
+        this.firstRun = firstRun;
+        this.endDate = endDate;
+    }
+
+    //  Getters
+    public long getOrderId() { return orderId; }
+    public String getFromAccount() { return fromAccount; }
+    public String getToAccount() { return toAccount; }
+    public BigDecimal getAmount() { return amount; }
+    public Frequency getFrequency() { return frequency; }
+    public LocalDateTime getFirstRun() { return firstRun; }
+    public LocalDate getEndDate() { return endDate; }
+    public String getStatus() { return status; }
+    public int getRunCount() { return runCount; }
+    public int getAttempts() { return attempts; }
+    public LocalDateTime getRetryAt() { return retryAt; }
+    public int getMaxRetries() { return maxRetries; }
+
+    public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+
+    //  Set when loading from the database
+    void setOrderId(long orderId) { this.orderId = orderId; }
+    void setStatus(String status) { this.status = status; }
+    void setRunCount(int runCount) { this.runCount = runCount; }
+    void setAttempts(int attempts) { this.attempts = attempts; }
+    void setRetryAt(LocalDateTime retryAt) { this.retryAt = retryAt; }
+
+    //  Due time of the occurrence currently owed
+    public LocalDateTime getNextRun() {
+        return frequency.occurrence(firstRun, runCount);
+    }
+
+    //  When the scheduler should next try it (a pending retry wins over the due time)
+    public LocalDateTime getNextAttempt() {
+        return retryAt != null ? retryAt : getNextRun();
+    }
+
+    //  Whether occurrence number runCount still falls within the end date
+    boolean hasOccurrenceLeft() {
+        return endDate == null || !getNextRun().toLocalDate().isAfter(endDate);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + orderId + " " + fromAccount + " -> " + toAccount + " ₹" + amount + " " + frequency +
+                " next " + getNextRun() + " [" + status + "]";
+    }
+}
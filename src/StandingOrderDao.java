@@ -0,0 +1,223 @@
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Standing orders and their execution log in one database (the source account's).
+ *
+ * standing_order_runs has one row per (order, occurrence due time): inserting it in the
+ * same transaction as the transfer is what makes an occurrence execute at most once,
+ * across restarts, catch-up runs and several scheduler instances.
+ */
+public class StandingOrderDao {
+
+    static final String ORDERS_DDL =
+            "CREATE TABLE IF NOT EXISTS standing_orders (" +
+            " order_id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+            " from_account VARCHAR(20) NOT NULL," +
+            " to_account VARCHAR(20) NOT NULL," +
+            " amount DECIMAL(15,2) NOT NULL," +
+            " frequency VARCHAR(10) NOT NULL," +
+            " first_run DATETIME NOT NULL," +
+            " end_date DATE NULL," +
+            " status VARCHAR(12) NOT NULL DEFAULT 'ACTIVE'," +
+            " run_count INT NOT NULL DEFAULT 0," +
+            " attempts INT NOT NULL DEFAULT 0," +
+            " retry_at DATETIME NULL," +
+            " max_retries INT NOT NULL DEFAULT 3," +
+            " created_at DATETIME NOT NULL," +
+            " INDEX idx_so_from (from_account)," +
+            " INDEX idx_so_status (status))";
+
+    static final String RUNS_DDL =
+            "CREATE TABLE IF NOT EXISTS standing_order_runs (" +
+            " order_id BIGINT NOT NULL," +
+            " due_at DATETIME NOT NULL," +
+            " status VARCHAR(10) NOT NULL," +      // DONE, FAILED, PENDING (cross-shard, in progress)
+            " executed_at DATETIME NOT NULL," +
+            " detail VARCHAR(255) NULL," +
+            " PRIMARY KEY (order_id, due_at))";
+
+    private final DbConfig db;
+
+    public StandingOrderDao(DbConfig db) {
+        this.db = db;
+    }
+
+    public void ensureSchema() {
+        try {
+            Schema.execute(db, ORDERS_DDL, RUNS_DDL);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ------------------- ORDERS -------------------
+
+    //  Insert and return the new order id
+    public long create(StandingOrder o) throws SQLException {
+        String sql = "INSERT INTO standing_orders (from_account, to_account, amount, frequency, first_run, end_date, " +
+                "max_retries, created_at) VALUES (?,?,?,?,?,?,?,?)";
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, o.getFromAccount());
+            ps.setString(2, o.getToAccount());
+            ps.setBigDecimal(3, o.getAmount());
+            ps.setString(4, o.getFrequency().name());
+            ps.setTimestamp(5, Timestamp.valueOf(o.getFirstRun()));
+            ps.setDate(6, o.getEndDate() == null ? null : Date.valueOf(o.getEndDate()));
+            ps.setInt(7, o.getMaxRetries());
+            ps.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                o.setOrderId(keys.getLong(1));
+                return o.getOrderId();
+            }
+        }
+    }
+
+    public StandingOrder find(long orderId) {
+        List<StandingOrder> list = findByIds(List.of(orderId));
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    //  Current rows for a batch of due orders (one round trip)
+    public List<StandingOrder> findByIds(Collection<Long> ids) {
+        List<StandingOrder> list = new ArrayList<>();
+        if (ids.isEmpty()) return list;
+        StringBuilder sql = new StringBuilder("SELECT * FROM standing_orders WHERE order_id IN (");
+        for (int i = 0; i < ids.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(") ORDER BY order_id");
+
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (long id : ids) ps.setLong(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(readRow(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    public List<StandingOrder> findByAccount(String accNum) {
+        List<StandingOrder> list = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT * FROM standing_orders WHERE from_account = ? ORDER BY order_id")) {
+            ps.setString(1, accNum);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(readRow(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    //  Stream every ACTIVE order (startup load; the result is not held in memory)
+    public void forEachActive(Consumer<StandingOrder> action) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT * FROM standing_orders WHERE status = 'ACTIVE'",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) action.accept(readRow(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Persist the progress fields (run count, retry state, status)
+    public void updateProgress(StandingOrder o) throws SQLException {
+        String sql = "UPDATE standing_orders SET run_count = ?, attempts = ?, retry_at = ?, status = ? WHERE order_id = ?";
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, o.getRunCount());
+            ps.setInt(2, o.getAttempts());
+            ps.setTimestamp(3, o.getRetryAt() == null ? null : Timestamp.valueOf(o.getRetryAt()));
+            ps.setString(4, o.getStatus());
+            ps.setLong(5, o.getOrderId());
+            ps.executeUpdate();
+        }
+    }
+
+    //  Stop an order; returns false if it was not active
+    public boolean cancel(long orderId) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE standing_orders SET status = 'CANCELLED' WHERE order_id = ? AND status IN ('ACTIVE', 'SUSPENDED')")) {
+            ps.setLong(1, orderId);
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // ------------------- RUNS -------------------
+
+    //  Record an occurrence; false if it already has a row (executed or being executed elsewhere)
+    public boolean claimRun(long orderId, LocalDateTime dueAt, String status, String detail) throws SQLException {
+        String sql = "INSERT INTO standing_order_runs (order_id, due_at, status, executed_at, detail) VALUES (?,?,?,?,?)";
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, orderId);
+            ps.setTimestamp(2, Timestamp.valueOf(dueAt));
+            ps.setString(3, status);
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setString(5, detail == null || detail.length() <= 255 ? detail : detail.substring(0, 255));
+            ps.executeUpdate();
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return false;
+        }
+    }
+
+    public void setRunStatus(long orderId, LocalDateTime dueAt, String status) throws SQLException {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE standing_order_runs SET status = ? WHERE order_id = ? AND due_at = ?")) {
+            ps.setString(1, status);
+            ps.setLong(2, orderId);
+            ps.setTimestamp(3, Timestamp.valueOf(dueAt));
+            ps.executeUpdate();
+        }
+    }
+
+    public void deleteRun(long orderId, LocalDateTime dueAt) throws SQLException {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "DELETE FROM standing_order_runs WHERE order_id = ? AND due_at = ?")) {
+            ps.setLong(1, orderId);
+            ps.setTimestamp(2, Timestamp.valueOf(dueAt));
+            ps.executeUpdate();
+        }
+    }
+
+    private static StandingOrder readRow(ResultSet rs) throws SQLException {
+        Date end = rs.getDate("end_date");
+        StandingOrder o = new StandingOrder(
+                rs.getString("from_account"),
+                rs.getString("to_account"),
+                rs.getBigDecimal("amount"),
+                StandingOrder.Frequency.valueOf(rs.getString("frequency")),
+                rs.getTimestamp("first_run").toLocalDateTime(),
+                end == null ? null : end.toLocalDate());
+        o.setOrderId(rs.getLong("order_id"));
+        o.setStatus(rs.getString("status"));
+        o.setRunCount(rs.getInt("run_count"));
+        o.setAttempts(rs.getInt("attempts"));
+        Timestamp retry = rs.getTimestamp("retry_at");
+        o.setRetryAt(retry == null ? null : retry.toLocalDateTime());
+        o.setMaxRetries(rs.getInt("max_retries"));
+        return o;
+    }
+}
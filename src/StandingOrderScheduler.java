@@ -0,0 +1,343 @@
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes standing orders (recurring transfers) when they fall due.
+ *
+ * Every active order sits in a {@link TimingWheel} as (database, order id) at its next
+ * attempt time, so a tick costs the same with a hundred or millions of orders. Orders that
+ * come due together are reloaded in one query per database and executed in groups: one
+ * GroupCommit per batch, each transfer committed together with its standing_order_runs
+ * row and the order's new progress. A transfer that fails is undone alone:
+ *   - insufficient funds / limits: retried after retryDelay, up to the order's maxRetries,
+ *     then the occurrence is logged FAILED and the order moves on to the next one;
+ *   - an account that no longer exists: the order is SUSPENDED.
+ * After downtime every missed occurrence is still owed and is paid one per tick; the run
+ * row for (order, due time) makes sure none is paid twice.
+ *
+ * Cross-shard orders can't join a group (the transfer commits in phases), so they run one
+ * at a time: the run row is claimed PENDING first and set DONE afterwards. Only a transfer
+ * rejected outright (IllegalArgumentException) releases the claim; a PENDING row left by a
+ * crash or by any other failure blocks that occurrence until someone checks it.
+ */
+public class StandingOrderScheduler implements AutoCloseable {
+
+    private final AccountManager manager;
+    private final List<DbConfig> databases;
+    private final List<StandingOrderDao> daos = new ArrayList<>();
+    private final TimingWheel<Due> wheel;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private ScheduledExecutorService timer;
+
+    //  Wheel entry: just enough to find the order again
+    private static final class Due {
+        final int db;
+        final long orderId;
+
+        Due(int db, long orderId) {
+            this.db = db;
+            this.orderId = orderId;
+        }
+    }
+
+    public StandingOrderScheduler(AccountManager manager) {
+        this(manager, 1_000, 100, Duration.ofHours(1));
+    }
+
+    public StandingOrderScheduler(AccountManager manager, long tickMillis, int batchSize, Duration retryDelay) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.manager = manager;
+        this.databases = manager.databases();
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+        for (DbConfig db : databases) {
+            StandingOrderDao dao = new StandingOrderDao(db);
+            dao.ensureSchema();
+            daos.add(dao);
+        }
+    }
+
+    //  Load every active order and start ticking on a background thread
+    public synchronized void start() {
+        if (timer != null) return;
+        int loaded = 0;
+        for (int d = 0; d < daos.size(); d++) {
+            int db = d;
+            int[] n = new int[1];
+            daos.get(d).forEachActive(o -> {
+                schedule(db, o);
+                n[0]++;
+            });
+            loaded += n[0];
+        }
+        System.out.println(" Standing orders scheduled: " + loaded);
+
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "standing-orders");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = wheel.getTickMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // keep the scheduler alive
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.shutdown();
+            timer = null;
+        }
+    }
+
+    // ------------------- ORDERS -------------------
+
+    //  Validate, store and schedule a new order; returns its id
+    public long createOrder(StandingOrder o) {
+        if (!ValidationUtils.isPositiveAmount(o.getAmount()))
+            throw new IllegalArgumentException("Invalid standing order amount");
+        if (o.getFromAccount().equals(o.getToAccount()))
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        if (manager.getAccount(o.getFromAccount()) == null)
+            throw new IllegalArgumentException("Account not found: " + o.getFromAccount());
+        if (manager.getAccount(o.getToAccount()) == null)
+            throw new IllegalArgumentException("Account not found: " + o.getToAccount());
+
+        int db = databases.indexOf(manager.dbFor(o.getFromAccount()));
+        try {
+            long id = daos.get(db).create(o);
+            synchronized (this) {
+                if (timer != null) schedule(db, o); // otherwise start() loads it with the rest
+            }
+            return id;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Could not save standing order", e);
+        }
+    }
+
+    //  Cancel an order of fromAccount; its wheel entry is dropped when it comes due
+    public boolean cancelOrder(String fromAccount, long orderId) {
+        StandingOrderDao dao = daos.get(databases.indexOf(manager.dbFor(fromAccount)));
+        StandingOrder o = dao.find(orderId);
+        if (o == null || !o.getFromAccount().equals(fromAccount)) return false;
+        return dao.cancel(orderId);
+    }
+
+    public List<StandingOrder> listOrders(String fromAccount) {
+        return daos.get(databases.indexOf(manager.dbFor(fromAccount))).findByAccount(fromAccount);
+    }
+
+    private void schedule(int db, StandingOrder o) {
+        long due = o.getNextAttempt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        synchronized (wheel) {
+            wheel.schedule(new Due(db, o.getOrderId()), due);
+        }
+    }
+
+    private void scheduleAt(int db, long orderId, LocalDateTime when) {
+        synchronized (wheel) {
+            wheel.schedule(new Due(db, orderId), when.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+    }
+
+    // ------------------- EXECUTION -------------------
+
+    //  Execute everything due up to nowMillis; returns the number of transfers made
+    int tick(long nowMillis) {
+        List<List<Long>> due = new ArrayList<>();
+        for (int d = 0; d < databases.size(); d++) due.add(new ArrayList<>());
+        synchronized (wheel) {
+            wheel.advance(nowMillis, e -> due.get(e.db).add(e.orderId));
+        }
+
+        int paid = 0;
+        for (int d = 0; d < due.size(); d++) {
+            List<Long> ids = due.get(d);
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                paid += runBatch(d, ids.subList(from, Math.min(from + batchSize, ids.size())));
+            }
+        }
+        return paid;
+    }
+
+    private int runBatch(int db, List<Long> ids) {
+        StandingOrderDao dao = daos.get(db);
+        LocalDateTime now = LocalDateTime.now();
+        List<StandingOrder> grouped = new ArrayList<>();
+        List<StandingOrder> solo = new ArrayList<>();
+
+        for (StandingOrder o : dao.findByIds(ids)) {
+            if (!o.getStatus().equals("ACTIVE")) continue; // cancelled or suspended: leaves the wheel
+            if (o.getNextAttempt().isAfter(now)) {
+                schedule(db, o); // moved meanwhile (e.g. by another scheduler)
+            } else if (manager.isCrossShard(o.getFromAccount(), o.getToAccount())) {
+                solo.add(o);
+            } else {
+                grouped.add(o);
+            }
+        }
+
+        int paid = runGroup(db, dao, grouped, now);
+        for (StandingOrder o : solo) {
+            if (runSolo(db, dao, o, now)) paid++;
+        }
+        return paid;
+    }
+
+    private int runGroup(int db, StandingOrderDao dao, List<StandingOrder> orders, LocalDateTime now) {
+        if (orders.isEmpty()) return 0;
+        int paid = 0;
+        try (GroupCommit tx = GroupCommit.begin()) {
+            for (StandingOrder o : orders) {
+                Progress before = new Progress(o);
+                LocalDateTime dueAt = o.getNextRun();
+                tx.mark();
+                try {
+                    boolean transferred = false;
+                    if (dao.claimRun(o.getOrderId(), dueAt, "DONE", null)) {
+                        manager.transfer(o.getFromAccount(), o.getToAccount(), o.getAmount());
+                        transferred = true;
+                    } // else: already paid by another scheduler, just catch up
+                    settle(o);
+                    dao.updateProgress(o);
+                    if (tx.rollbackRequested()) throw new IllegalStateException("database error (see log)");
+                    if (transferred) paid++;
+                } catch (RuntimeException e) {
+                    tx.undoCommand();
+                    before.restore(o);
+                    tx.mark();
+                    failed(dao, o, dueAt, e.getMessage(), now);
+                    if (tx.rollbackRequested()) {
+                        tx.undoCommand();
+                        before.restore(o);
+                    }
+                }
+            }
+            tx.commit();
+        } catch (SQLException e) {
+            //  Whole batch rolled back: try again in a minute
+            e.printStackTrace();
+            for (StandingOrder o : orders) scheduleAt(db, o.getOrderId(), now.plusMinutes(1));
+            return 0;
+        }
+        for (StandingOrder o : orders) {
+            if (o.getStatus().equals("ACTIVE")) schedule(db, o);
+        }
+        return paid;
+    }
+
+    private boolean runSolo(int db, StandingOrderDao dao, StandingOrder o, LocalDateTime now) {
+        LocalDateTime dueAt = o.getNextRun();
+        try {
+            if (!dao.claimRun(o.getOrderId(), dueAt, "PENDING", null)) {
+                System.out.println(" Standing order #" + o.getOrderId() + ": occurrence " + dueAt +
+                        " is already claimed; check standing_order_runs before it can continue.");
+                scheduleAt(db, o.getOrderId(), now.plus(retryDelay));
+                return false;
+            }
+            try {
+                manager.transfer(o.getFromAccount(), o.getToAccount(), o.getAmount());
+            } catch (IllegalArgumentException e) {
+                //  Rejected before any money moved (validation, funds, phase 1): free the occurrence again
+                dao.deleteRun(o.getOrderId(), dueAt);
+                failed(dao, o, dueAt, e.getMessage(), now);
+                if (o.getStatus().equals("ACTIVE")) schedule(db, o);
+                return false;
+            } catch (RuntimeException e) {
+                //  May have failed after the debit committed: keep the PENDING claim so it is never paid twice
+                System.out.println(" Standing order #" + o.getOrderId() + ": occurrence " + dueAt +
+                        " failed with an unknown outcome (" + e.getMessage() +
+                        "); check standing_order_runs before it can continue.");
+                scheduleAt(db, o.getOrderId(), now.plus(retryDelay));
+                return false;
+            }
+            try (GroupCommit tx = GroupCommit.begin()) { // run row and progress together
+                dao.setRunStatus(o.getOrderId(), dueAt, "DONE");
+                settle(o);
+                dao.updateProgress(o);
+                tx.commit();
+            }
+            if (o.getStatus().equals("ACTIVE")) schedule(db, o);
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            scheduleAt(db, o.getOrderId(), now.plus(retryDelay));
+            return false;
+        }
+    }
+
+    //  Occurrence settled: move to the next one (or finish the order)
+    private static void settle(StandingOrder o) {
+        o.setRunCount(o.getRunCount() + 1);
+        o.setAttempts(0);
+        o.setRetryAt(null);
+        if (!o.hasOccurrenceLeft()) o.setStatus("COMPLETED");
+    }
+
+    //  Apply the retry policy after a failed transfer
+    private void failed(StandingOrderDao dao, StandingOrder o, LocalDateTime dueAt, String reason,
+                        LocalDateTime now) {
+        try {
+            if (manager.getAccount(o.getFromAccount()) == null || manager.getAccount(o.getToAccount()) == null) {
+                o.setStatus("SUSPENDED");
+                dao.claimRun(o.getOrderId(), dueAt, "FAILED", reason);
+            } else if (o.getAttempts() + 1 > o.getMaxRetries()) {
+                dao.claimRun(o.getOrderId(), dueAt, "FAILED", reason); // give up on this occurrence only
+                settle(o);
+            } else {
+                o.setAttempts(o.getAttempts() + 1);
+                o.setRetryAt(now.plus(retryDelay));
+            }
+            dao.updateProgress(o);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //  Progress fields before an attempt, to undo in-memory changes along with the savepoint
+    private static final class Progress {
+        final String status;
+        final int runCount;
+        final int attempts;
+        final LocalDateTime retryAt;
+
+        Progress(StandingOrder o) {
+            status = o.getStatus();
+            runCount = o.getRunCount();
+            attempts = o.getAttempts();
+            retryAt = o.getRetryAt();
+        }
+
+        void restore(StandingOrder o) {
+            o.setStatus(status);
+            o.setRunCount(runCount);
+            o.setAttempts(attempts);
+            o.setRetryAt(retryAt);
+        }
+    }
+
+    //  Run as a service: java StandingOrderScheduler (Ctrl+C to stop)
+    public static void main(String[] args) throws InterruptedException {
+        AccountManager manager = ShardRouter.isConfigured()
+                ? AccountManager.sharded(ShardRouter.fromSystemProperties())
+                : new AccountManager();
+        StandingOrderScheduler scheduler = new StandingOrderScheduler(manager);
+        scheduler.start();
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,459 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Month-end statements for every account in one pass over the month's ledger.
+ *
+ * Accounts are split into contiguous account-number ranges, one task per range. Each
+ * task streams the month's outgoing rows (ordered by from_account, created_at) and
+ * incoming rows (ordered by to_account, created_at) -- both straight off the
+ * (account, created_at) indexes, no server-side sort -- and merges the two streams
+ * against the range's sorted account list. Opening balances come from the daily
+ * summaries in one query per range. Months moved to a LedgerArchive are read from it.
+ *
+ * A range that fails (database error) does not stop the others; once all have finished the
+ * run throws, naming the ranges whose statements are missing. A statement that was being
+ * written when its range failed is deleted rather than left truncated.
+ *
+ * Output: outDir/YYYY-MM/<account>.txt and <account>.csv
+ * Usage:  java StatementRun 2025-09 [outDir] [threads]
+ */
+public class StatementRun {
+
+    private static final String OUT_SQL =
+            "SELECT * FROM transactions WHERE from_account BETWEEN ? AND ? " +
+            "AND created_at >= ? AND created_at < ? ORDER BY from_account, created_at";
+
+    //  A self-transfer is only listed once, from the outgoing side
+    private static final String IN_SQL =
+            "SELECT * FROM transactions WHERE to_account BETWEEN ? AND ? " +
+            "AND (from_account IS NULL OR from_account <> to_account) " +
+            "AND created_at >= ? AND created_at < ? ORDER BY to_account, created_at";
+
+    //  Per account: last summary before the month (its closing) or else the first in the month (its opening)
+    private static final String OPENING_SQL =
+            "SELECT s.account_number, s.summary_date, s.opening_balance, s.closing_balance " +
+            "FROM account_daily_summary s JOIN (" +
+            " SELECT account_number, MAX(summary_date) d FROM account_daily_summary" +
+            "  WHERE summary_date < ? AND account_number BETWEEN ? AND ? GROUP BY account_number" +
+            " UNION ALL" +
+            " SELECT account_number, MIN(summary_date) d FROM account_daily_summary" +
+            "  WHERE summary_date >= ? AND summary_date < ? AND account_number BETWEEN ? AND ? GROUP BY account_number" +
+            ") k ON s.account_number = k.account_number AND s.summary_date = k.d " +
+            "ORDER BY s.account_number, s.summary_date";
+
+    private final List<DbConfig> databases;
+    private final Path outDir;
+    private final List<LedgerArchive> archives = new ArrayList<>(); // one per database, empty = no archive
+
+    public StatementRun(DbConfig db, Path outDir) {
+        this(List.of(db), outDir);
+    }
+
+    private StatementRun(List<DbConfig> databases, Path outDir) {
+        this.databases = databases;
+        this.outDir = outDir;
+    }
+
+    //  Every shard holds the full history of its own accounts, so each is processed on its own
+    public static StatementRun forShards(ShardRouter router, Path outDir) {
+        List<DbConfig> list = new ArrayList<>();
+        for (int i = 0; i < router.shardCount(); i++) list.add(router.shard(i));
+        return new StatementRun(list, outDir);
+    }
+
+    //  Read archived months from here (sharded runs use its shard-<i> sub-archives)
+    public void setArchive(LedgerArchive archive) {
+        archives.clear();
+        if (archive == null) return;
+        if (databases.size() == 1) {
+            archives.add(archive);
+        } else {
+            for (int i = 0; i < databases.size(); i++) archives.add(archive.subArchive("shard-" + i));
+        }
+    }
+
+    /**
+     * Write statements for every account for the month using up to `threads` parallel
+     * range scans; returns the number of accounts written.
+     */
+    public int run(YearMonth month, int threads) throws IOException {
+        Path dir = outDir.resolve(month.toString());
+        Files.createDirectories(dir);
+
+        List<Runnable> tasks = new ArrayList<>();
+        List<String> starts = new ArrayList<>();
+        int[] written = new int[1];
+        int perDb = Math.max(1, threads / databases.size());
+        for (int d = 0; d < databases.size(); d++) {
+            DbConfig db = databases.get(d);
+            LedgerArchive cold = archives.isEmpty() ? null : archives.get(d);
+            for (String[] range : accountRanges(db, perDb)) {
+                starts.add(range[0]);
+                tasks.add(() -> {
+                    int n = runRange(db, cold, month, range[0], range[1], dir);
+                    synchronized (written) {
+                        written[0] += n;
+                    }
+                });
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        List<String> failed = new ArrayList<>();
+        Throwable firstError = null;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable task : tasks) futures.add(pool.submit(task));
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    failed.add(starts.get(i));
+                    if (firstError == null) firstError = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Statement run interrupted", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        if (!failed.isEmpty()) {
+            String msg = "Statements for " + month + " NOT written for ranges starting at " + failed
+                    + " (" + written[0] + " accounts done)";
+            if (firstError instanceof UncheckedIOException io) throw new IOException(msg, io.getCause());
+            throw new IllegalStateException(msg, firstError);
+        }
+        return written[0];
+    }
+
+    //  Cut the sorted account numbers into up to n contiguous [first, last] ranges of similar size
+    private static List<String[]> accountRanges(DbConfig db, int n) {
+        List<String> numbers = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT account_number FROM accounts ORDER BY account_number")) {
+            while (rs.next()) numbers.add(rs.getString(1));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not list the accounts of " + db.getUrl(), e);
+        }
+
+        List<String[]> ranges = new ArrayList<>();
+        int size = (numbers.size() + n - 1) / Math.max(1, n);
+        for (int i = 0; i < numbers.size(); i += size) {
+            ranges.add(new String[]{numbers.get(i), numbers.get(Math.min(i + size, numbers.size()) - 1)});
+        }
+        return ranges;
+    }
+
+    // ------------------- ONE RANGE -------------------
+
+    private int runRange(DbConfig db, LedgerArchive cold, YearMonth month, String first, String last, Path dir) {
+        LocalDate start = month.atDay(1);
+        LocalDate end = month.plusMonths(1).atDay(1);
+        int count = 0;
+
+        try (StatementWriter writer = new StatementWriter(month);
+             Connection conn = db.getConnection()) {
+            List<Account> accounts = loadAccounts(conn, first, last);
+            Map<String, BigDecimal> openings = loadOpenings(conn, start, end, first, last);
+
+            if (cold != null && cold.isArchived(month)) {
+                for (Account a : accounts) {
+                    writer.begin(dir, a, openings.getOrDefault(a.getAccountNumber(), a.getBalance()));
+                    for (TransactionRecord tx : cold.read(a.getAccountNumber(), month)) writer.line(tx);
+                    writer.end();
+                    count++;
+                }
+                return count;
+            }
+
+            try (Connection inConn = db.getConnection(); // a streaming result needs its own connection
+                 PreparedStatement outPs = streaming(conn, db, OUT_SQL, first, last, start, end);
+                 PreparedStatement inPs = streaming(inConn, db, IN_SQL, first, last, start, end);
+                 ResultSet outRs = outPs.executeQuery();
+                 ResultSet inRs = inPs.executeQuery()) {
+
+                Cursor out = new Cursor(outRs, "from_account");
+                Cursor in = new Cursor(inRs, "to_account");
+                for (Account a : accounts) {
+                    String acc = a.getAccountNumber();
+                    writer.begin(dir, a, openings.getOrDefault(acc, a.getBalance()));
+                    while (true) {
+                        boolean hasOut = out.seek(acc), hasIn = in.seek(acc);
+                        if (!hasOut && !hasIn) break;
+                        Cursor next = !hasIn || (hasOut && !out.tx.getCreatedAt().isAfter(in.tx.getCreatedAt())) ? out : in;
+                        writer.line(next.tx);
+                        next.advance();
+                    }
+                    writer.end();
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Statements for accounts " + first + ".." + last + " failed", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    private static PreparedStatement streaming(Connection conn, DbConfig db, String sql, String first, String last,
+                                               LocalDate start, LocalDate end) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(db.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000);
+        ps.setString(1, first);
+        ps.setString(2, last);
+        ps.setTimestamp(3, Timestamp.valueOf(start.atStartOfDay()));
+        ps.setTimestamp(4, Timestamp.valueOf(end.atStartOfDay()));
+        return ps;
+    }
+
+    private static List<Account> loadAccounts(Connection conn, String first, String last) throws SQLException {
+        List<Account> list = new ArrayList<>();
+        String sql = "SELECT account_number, holder_name, email, balance, account_type FROM accounts " +
+                "WHERE account_number BETWEEN ? AND ? ORDER BY account_number";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, first);
+            ps.setString(2, last);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(new Account(rs.getString("account_number"), rs.getString("holder_name"),
+                            rs.getString("email"), rs.getBigDecimal("balance"), rs.getString("account_type"), null));
+                }
+            }
+        }
+        return list;
+    }
+
+    private static Map<String, BigDecimal> loadOpenings(Connection conn, LocalDate start, LocalDate end,
+                                                        String first, String last) throws SQLException {
+        Map<String, BigDecimal> map = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(OPENING_SQL)) {
+            ps.setDate(1, Date.valueOf(start));
+            ps.setString(2, first);
+            ps.setString(3, last);
+            ps.setDate(4, Date.valueOf(start));
+            ps.setDate(5, Date.valueOf(end));
+            ps.setString(6, first);
+            ps.setString(7, last);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String acc = rs.getString("account_number");
+                    if (map.containsKey(acc)) continue; // first row per account wins
+                    boolean before = rs.getDate("summary_date").toLocalDate().isBefore(start);
+                    map.put(acc, rs.getBigDecimal(before ? "closing_balance" : "opening_balance"));
+                }
+            }
+        } catch (SQLException e) {
+            // No summary tables yet: every account opens at its current balance
+            e.printStackTrace();
+        }
+        return map;
+    }
+
+    //  Forward-only position in one ordered ledger stream; account numbers compare as the DB orders them (digits)
+    private static final class Cursor {
+        private final ResultSet rs;
+        private final String accColumn;
+        String acc;
+        TransactionRecord tx;
+
+        Cursor(ResultSet rs, String accColumn) throws SQLException {
+            this.rs = rs;
+            this.accColumn = accColumn;
+            advance();
+        }
+
+        void advance() throws SQLException {
+            if (rs.next()) {
+                acc = rs.getString(accColumn);
+                tx = TransactionDao.readRow(rs);
+            } else {
+                acc = null;
+                tx = null;
+            }
+        }
+
+        //  Skip rows of accounts before accNum (e.g. deleted accounts); true if positioned on accNum
+        boolean seek(String accNum) throws SQLException {
+            while (acc != null && acc.compareTo(accNum) < 0) advance();
+            return acc != null && acc.equals(accNum);
+        }
+    }
+
+    // ------------------- OUTPUT -------------------
+
+    /**
+     * Writes one account's text and CSV statement while rows stream in. One instance
+     * per task: the line buffer and formatters are reused for every row. close() deletes
+     * a statement that was begun but never ended.
+     */
+    static final class StatementWriter implements Closeable {
+        private static final DateTimeFormatter DISPLAY = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+        private static final DateTimeFormatter ISO = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+        private final YearMonth month;
+        private final StringBuilder line = new StringBuilder(160);
+        private BufferedWriter text;
+        private BufferedWriter csv;
+        private Path dir;
+        private String acc;
+        private BigDecimal opening;
+        private BigDecimal balance;
+        private BigDecimal credits;
+        private BigDecimal debits;
+        private int rows;
+
+        StatementWriter(YearMonth month) {
+            this.month = month;
+        }
+
+        void begin(Path dir, Account a, BigDecimal openingBalance) throws IOException {
+            this.dir = dir;
+            acc = a.getAccountNumber();
+            opening = balance = openingBalance;
+            credits = debits = BigDecimal.ZERO;
+            rows = 0;
+            text = Files.newBufferedWriter(dir.resolve(acc + ".txt"));
+            csv = Files.newBufferedWriter(dir.resolve(acc + ".csv"));
+
+            line.setLength(0);
+            line.append("Statement for Account: ").append(acc).append(" (").append(month).append(")\n")
+                .append("Holder: ").append(a.getHolderName()).append('\n')
+                .append("Opening balance: ").append(opening.toPlainString()).append("\n\n");
+            pad(line, "Date", 19).append("  ");
+            pad(line, "Type", 14).append("  ");
+            pad(line, "Counterparty", 12).append("  ");
+            pad(line, "Category", 12).append("  ");
+            padLeft(line, "Debit", 12).append("  ");
+            padLeft(line, "Credit", 12).append("  ");
+            padLeft(line, "Balance", 14).append('\n');
+            text.append(line);
+            csv.write("date,tx_id,type,counterparty,category,debit,credit,balance\n");
+        }
+
+        void line(TransactionRecord tx) throws IOException {
+            boolean debit = acc.equals(tx.getFromAccount());
+            String counterparty = debit ? tx.getToAccount() : tx.getFromAccount();
+            String amount = tx.getAmount().toPlainString();
+            if (debit) {
+                balance = balance.subtract(tx.getAmount());
+                debits = debits.add(tx.getAmount());
+            } else {
+                balance = balance.add(tx.getAmount());
+                credits = credits.add(tx.getAmount());
+            }
+            String bal = balance.toPlainString();
+            rows++;
+
+            line.setLength(0);
+            DISPLAY.formatTo(tx.getCreatedAt(), line);
+            line.append("  ");
+            pad(line, tx.getTxType().name(), 14).append("  ");
+            pad(line, counterparty == null ? "-" : counterparty, 12).append("  ");
+            pad(line, tx.getCategory(), 12).append("  ");
+            padLeft(line, debit ? amount : "", 12).append("  ");
+            padLeft(line, debit ? "" : amount, 12).append("  ");
+            padLeft(line, bal, 14).append('\n');
+            text.append(line);
+
+            line.setLength(0);
+            ISO.formatTo(tx.getCreatedAt(), line);
+            line.append(',').append(tx.getTxId()).append(',').append(tx.getTxType().name()).append(',')
+                .append(counterparty == null ? "" : counterparty).append(',');
+            csvField(line, tx.getCategory()).append(',')
+                .append(debit ? amount : "").append(',')
+                .append(debit ? "" : amount).append(',')
+                .append(bal).append('\n');
+            csv.append(line);
+        }
+
+        void end() throws IOException {
+            line.setLength(0);
+            line.append('\n');
+            if (rows == 0) line.append("No transactions this month.\n");
+            line.append("Total credits: ").append(credits.toPlainString()).append('\n')
+                .append("Total debits: ").append(debits.toPlainString()).append('\n')
+                .append("Closing balance: ").append(balance.toPlainString()).append('\n');
+            text.append(line);
+            BufferedWriter t = text, c = csv;
+            text = csv = null;
+            try {
+                t.close();
+            } finally {
+                c.close();
+            }
+        }
+
+        //  Statement still open: close its files and delete them, it is incomplete
+        @Override
+        public void close() throws IOException {
+            if (text == null && csv == null) return;
+            try {
+                if (text != null) text.close();
+            } finally {
+                try {
+                    if (csv != null) csv.close();
+                } finally {
+                    text = csv = null;
+                    Files.deleteIfExists(dir.resolve(acc + ".txt"));
+                    Files.deleteIfExists(dir.resolve(acc + ".csv"));
+                }
+            }
+        }
+
+        private static StringBuilder pad(StringBuilder sb, String s, int width) {
+            sb.append(s);
+            for (int i = s.length(); i < width; i++) sb.append(' ');
+            return sb;
+        }
+
+        private static StringBuilder padLeft(StringBuilder sb, String s, int width) {
+            for (int i = s.length(); i < width; i++) sb.append(' ');
+            return sb.append(s);
+        }
+
+        private static StringBuilder csvField(StringBuilder sb, String s) {
+            if (s.indexOf(',') < 0 && s.indexOf('"') < 0) return sb.append(s);
+            return sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        YearMonth month = args.length > 0 ? YearMonth.parse(args[0]) : YearMonth.now().minusMonths(1);
+        Path out = Paths.get(args.length > 1 ? args[1] : "statements");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        StatementRun run = ShardRouter.isConfigured()
+                ? forShards(ShardRouter.fromSystemProperties(), out)
+                : new StatementRun(DbConfig.defaults(), out);
+        if (System.getProperty("banking.archive.dir") != null) run.setArchive(LedgerArchive.fromSystemProperties());
+
+        long t0 = System.nanoTime();
+        int n = run.run(month, threads);
+        System.out.printf(" Wrote %d statements for %s to %s in %d ms%n",
+                n, month, out.resolve(month.toString()), (System.nanoTime() - t0) / 1_000_000);
+    }
+}
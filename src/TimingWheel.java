@@ -0,0 +1,127 @@
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: schedule and expire cost O(1) per item no matter how many
+ * items are pending, and an idle tick is a few array reads.
+ *
+ * Level 0 has one slot per tick; each higher level has one slot per full turn of the
+ * level below. An item far in the future sits in a coarse slot and is moved down a
+ * level whenever the wheel below completes a turn, until it reaches level 0 and fires
+ * on its exact tick. Items due at or before the current tick fire on the next advance.
+ *
+ * Not thread-safe: the owner serializes schedule() and advance().
+ */
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 6; // 64^6 ticks: ~2000 years at one tick per second
+
+    private static final class Node<T> {
+        final T item;
+        final long dueTick;
+        Node<T> next;
+
+        Node(T item, long dueTick) {
+            this.item = item;
+            this.dueTick = dueTick;
+        }
+    }
+
+    private final long tickMillis;
+    @SuppressWarnings("unchecked")
+    private final Node<T>[][] slots = (Node<T>[][]) new Node<?>[LEVELS][SLOTS];
+    private final int[] perLevel = new int[LEVELS];
+    private long currentTick; // every item due at or before this tick has fired
+    private int size;
+
+    TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis < 1) throw new IllegalArgumentException("Tick must be at least 1 ms");
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    //  Fire item on the first tick at or after dueMillis
+    void schedule(T item, long dueMillis) {
+        long dueTick = Math.max(currentTick + 1, (dueMillis + tickMillis - 1) / tickMillis);
+        insert(new Node<>(item, dueTick));
+        size++;
+    }
+
+    /**
+     * Move the wheel up to nowMillis, handing every item that came due to sink in due
+     * order (tick by tick); returns the number fired.
+     */
+    int advance(long nowMillis, Consumer<? super T> sink) {
+        long target = nowMillis / tickMillis;
+        int fired = 0;
+        while (currentTick < target) {
+            if (size == 0) { // nothing pending: jump instead of walking empty ticks
+                currentTick = target;
+                break;
+            }
+            //  Lower levels empty: nothing can fire before the next slot boundary of the first busy level
+            int busy = 0;
+            while (perLevel[busy] == 0) busy++;
+            if (busy > 0) {
+                long span = 1L << (SLOT_BITS * busy);
+                currentTick = Math.min(target - 1, currentTick | (span - 1));
+            }
+            currentTick++;
+            if ((currentTick & MASK) == 0) cascade(1);
+
+            int idx = (int) (currentTick & MASK);
+            Node<T> n = slots[0][idx];
+            slots[0][idx] = null;
+            while (n != null) {
+                Node<T> next = n.next;
+                size--;
+                perLevel[0]--;
+                fired++;
+                sink.accept(n.item);
+                n = next;
+            }
+        }
+        return fired;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    // ------------------- INTERNALS -------------------
+
+    private void insert(Node<T> n) {
+        long delta = n.dueTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) level++;
+        //  Beyond the top level's range: park in its furthest slot, re-placed when it cascades
+        long tick = level == LEVELS - 1 ? Math.min(n.dueTick, currentTick + ((long) MASK << (SLOT_BITS * level))) : n.dueTick;
+        int idx = (int) ((tick >>> (SLOT_BITS * level)) & MASK);
+        n.next = slots[level][idx];
+        slots[level][idx] = n;
+        perLevel[level]++;
+    }
+
+    //  Level `level` moves one slot: spread that slot's items over the levels below
+    private void cascade(int level) {
+        if (level >= LEVELS) return;
+        long pos = currentTick >>> (SLOT_BITS * level);
+        if ((pos & MASK) == 0) cascade(level + 1); // this level wrapped too: refill it from above first
+
+        int idx = (int) (pos & MASK);
+        Node<T> n = slots[level][idx];
+        slots[level][idx] = null;
+        while (n != null) {
+            Node<T> next = n.next;
+            perLevel[level]--;
+            insert(n);
+            n = next;
+        }
+    }
+}
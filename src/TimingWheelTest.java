@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that TimingWheel fires every item exactly once, on its tick, across all levels,
+ * and times scheduling/ticking with many pending items. No database needed.
+ * Usage: java TimingWheelTest [items]
+ */
+public class TimingWheelTest {
+    public static void main(String[] args) {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long start = 1_000_000L;
+        TimingWheel<long[]> wheel = new TimingWheel<>(1, start);
+
+        //  Delays from 0 ticks to ~2 years of seconds, so every level gets items
+        Random rnd = new Random(7);
+        long maxDue = start;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < items; i++) {
+            long delay = (long) Math.pow(64, rnd.nextDouble() * 5.5);
+            long due = start + delay;
+            maxDue = Math.max(maxDue, due);
+            wheel.schedule(new long[]{due}, due);
+        }
+        long t1 = System.nanoTime();
+        System.out.println("Pending: " + wheel.size() + " (Expected " + items + ")");
+
+        //  Advance in uneven steps; each item must fire at its own tick, never early or late
+        long[] fired = new long[1];
+        long[] wrong = new long[1];
+        long now = start;
+        while (now < maxDue) {
+            long from = now;
+            now = Math.min(maxDue, now + 1 + rnd.nextInt(5_000));
+            long to = now;
+            wheel.advance(to, item -> {
+                fired[0]++;
+                if (item[0] > to || item[0] <= from) wrong[0]++;
+            });
+        }
+        long t2 = System.nanoTime();
+        System.out.println("Fired: " + fired[0] + " (Expected " + items + ")");
+        System.out.println("Fired outside their step: " + wrong[0] + " (Expected 0)");
+        System.out.println("Pending after: " + wheel.size() + " (Expected 0)");
+
+        //  Exact tick order for a few items, including one already overdue
+        TimingWheel<String> small = new TimingWheel<>(1000, 0);
+        small.schedule("c", 5_000_000);
+        small.schedule("a", 2_500);
+        small.schedule("overdue", -10_000);
+        small.schedule("b", 70_000);
+        List<String> order = new ArrayList<>();
+        small.advance(1_000, order::add);
+        small.advance(69_999, order::add);
+        small.advance(70_000, order::add);
+        small.advance(5_000_000, order::add);
+        System.out.println("Order: " + order + " (Expected [overdue, a, b, c])");
+
+        System.out.printf("schedule: %d ns/item, advance through %d ticks: %d ms%n",
+                (t1 - t0) / items, maxDue - start, (t2 - t1) / 1_000_000);
+    }
+}
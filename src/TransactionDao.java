@@ -1,103 +1,440 @@
 import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class TransactionDao {
 
-    private final String url = "jdbc:mysql://localhost:3306/banking_simulator";
-    private final String user = "root";
-    private final String pass = "system";
+    private static final String INSERT_SQL =
+            "INSERT INTO transactions (tx_id, tx_type, from_account, to_account, amount, category, created_at, is_mirror) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final DbConfig db;
+    private final DailySummaryDao summaries;
+    private final PostingDao postings;
+    private volatile boolean summariesReady;
+    private LedgerArchive archive; // null = everything is in the hot table
 
     public TransactionDao() {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("MySQL Driver not found", e);
-        }
+        this(DbConfig.defaults());
+    }
+
+    //  Point the DAO at a specific database (e.g. one shard)
+    public TransactionDao(DbConfig db) {
+        this.db = db;
+        this.summaries = new DailySummaryDao(db);
+        this.postings = new PostingDao(db);
     }
 
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url, user, pass);
+        return db.getConnection();
     }
 
-    // ✅ Save a new transaction
-    public void saveTransaction(TransactionRecord tx) {
-        String sql = "INSERT INTO transactions (tx_id, tx_type, from_account, to_account, amount, category, created_at) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    //  Months moved out by LedgerArchiver are read back from this archive
+    public void setArchive(LedgerArchive archive) {
+        this.archive = archive;
+    }
+
+    public LedgerArchive getArchive() {
+        return archive;
+    }
 
-            ps.setString(1, tx.getTxId());
+    // ✅ Save a new transaction (ledger row + daily summary in one DB transaction); false if it failed
+    public boolean saveTransaction(TransactionRecord tx) {
+        return saveTransaction(tx, false);
+    }
+
+    //  mirror: this database only holds the transfer's target account (ShardedTransactionDao)
+    boolean saveTransaction(TransactionRecord tx, boolean mirror) {
+        ensureSummaries();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                insert(conn, tx, mirror);
+                conn.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    //  Summary tables are created on first write, not in the constructor
+    private void ensureSummaries() {
+        if (summariesReady) return;
+        summaries.ensureSchema();
+        try {
+            Schema.addMirrorColumn(db);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        summariesReady = true;
+    }
+
+    /**
+     * Insert a ledger row, fold it into the daily summaries and write its postings on a
+     * caller-managed connection, so callers can include all of it in their own JDBC transaction.
+     */
+    static void insert(Connection conn, TransactionRecord tx) throws SQLException {
+        insert(conn, tx, false);
+    }
+
+    //  A mirror row is the target shard's copy of a cross-shard transfer; bank-wide aggregates skip it
+    static void insert(Connection conn, TransactionRecord tx, boolean mirror) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setBytes(1, tx.getId().toBytes());
             ps.setString(2, tx.getTxType().name());
             ps.setString(3, tx.getFromAccount());
             ps.setString(4, tx.getToAccount());
             ps.setBigDecimal(5, tx.getAmount());
             ps.setString(6, tx.getCategory());
             ps.setTimestamp(7, Timestamp.valueOf(tx.getCreatedAt()));
-
+            ps.setBoolean(8, mirror);
             ps.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+        DailySummaryDao.apply(conn, tx);
+        PostingDao.post(conn, tx);
     }
 
     //  Fetch last N transactions for an account
     public List<TransactionRecord> fetchLastNForAccount(String accNum, int n) {
-        List<TransactionRecord> list = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE from_account = ? OR to_account = ? ORDER BY created_at DESC LIMIT ?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        return readByAccount(accNum, null, null, n);
+    }
 
-            ps.setString(1, accNum);
-            ps.setString(2, accNum);
-            ps.setInt(3, n);
+    //  Added: get all transactions for an account (fixes AccountManager error)
+    public List<TransactionRecord> getTransactionsByAccount(String accNum) {
+        return getTransactionsByAccount(accNum, null, null);
+    }
 
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                TransactionRecord.TxType type = TransactionRecord.TxType.valueOf(rs.getString("tx_type"));
-                String from = rs.getString("from_account");
-                String to = rs.getString("to_account");
-                BigDecimal amount = rs.getBigDecimal("amount");
-                String category = rs.getString("category");
-                Timestamp ts = rs.getTimestamp("created_at");
-
-                TransactionRecord tr = new TransactionRecord(type, from, to, amount, category);
-                tr.setCreatedAt(ts.toLocalDateTime()); // ensure proper timestamp display
-                list.add(tr);
+    /**
+     * Transactions for an account with from <= created_at < to (null = unbounded), newest
+     * first. Rows in archived months come from the LedgerArchive; the rest from the table.
+     */
+    public List<TransactionRecord> getTransactionsByAccount(String accNum, LocalDateTime from, LocalDateTime to) {
+        List<TransactionRecord> list = readByAccount(accNum, from, to, 0);
+
+        if (archive != null) {
+            List<TransactionRecord> cold = archive.read(accNum, from, to);
+            if (!cold.isEmpty()) {
+                list.addAll(cold);
+                list.sort(Comparator.comparing(TransactionRecord::getCreatedAt).reversed());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * An account's ledger rows with from <= created_at < to, newest first, at most limit
+     * (0 = all). The headers are found through the account's postings (one idx_post_time
+     * range) and its queued legs. Only history from before its first posting has neither,
+     * so the OR across from_account / to_account is left for that part, and only when the
+     * range reaches back there and the postings did not already fill the limit.
+     */
+    private List<TransactionRecord> readByAccount(String accNum, LocalDateTime from, LocalDateTime to, int limit) {
+        ensureSummaries(); // creates the postings tables
+        List<TransactionRecord> list = new ArrayList<>();
+        String top = limit > 0 ? " LIMIT " + limit : "";
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT t.* FROM ledger_postings p JOIN transactions t ON t.tx_id = p.tx_id " +
+                    "WHERE p.account_number = ?" + range("p", from, to) +
+                    " ORDER BY p.created_at DESC, p.seq DESC" + top)) {
+                readInto(ps, list, accNum, from, to);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT t.* FROM ledger_postings_queue w JOIN transactions t ON t.tx_id = w.tx_id " +
+                    "WHERE w.account_number = ?" + range("w", from, to))) {
+                readInto(ps, list, accNum, from, to);
+            }
+
+            Timestamp first;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT MIN(created_at) FROM ledger_postings WHERE account_number = ?")) {
+                ps.setString(1, accNum);
+                try (ResultSet rs = ps.executeQuery()) {
+                    first = rs.next() ? rs.getTimestamp(1) : null;
+                }
+            }
+            boolean reachesBack = first == null || from == null || !from.isAfter(first.toLocalDateTime());
+            if (reachesBack && (limit == 0 || list.size() < limit)) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT t.* FROM transactions t WHERE (t.from_account = ? OR t.to_account = ?)" +
+                        range("t", from, to) + (first != null ? " AND t.created_at <= ?" : "") +
+                        " AND NOT EXISTS (SELECT 1 FROM ledger_postings p WHERE p.tx_id = t.tx_id AND p.account_number = ?)" +
+                        " AND NOT EXISTS (SELECT 1 FROM ledger_postings_queue w WHERE w.tx_id = t.tx_id AND w.account_number = ?)" +
+                        " ORDER BY t.created_at DESC" + top)) {
+                    int i = 1;
+                    ps.setString(i++, accNum);
+                    ps.setString(i++, accNum);
+                    if (from != null) ps.setTimestamp(i++, Timestamp.valueOf(from));
+                    if (to != null) ps.setTimestamp(i++, Timestamp.valueOf(to));
+                    if (first != null) ps.setTimestamp(i++, first);
+                    ps.setString(i++, accNum);
+                    ps.setString(i, accNum);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) list.add(readRow(rs));
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return list;
+
+        list.sort(Comparator.comparing(TransactionRecord::getCreatedAt).reversed());
+        return limit > 0 && list.size() > limit ? new ArrayList<>(list.subList(0, limit)) : list;
     }
 
-    //  Added: get all transactions for an account (fixes AccountManager error)
-    public List<TransactionRecord> getTransactionsByAccount(String accNum) {
+    private static String range(String alias, LocalDateTime from, LocalDateTime to) {
+        return (from != null ? " AND " + alias + ".created_at >= ?" : "") +
+                (to != null ? " AND " + alias + ".created_at < ?" : "");
+    }
+
+    //  Bind account_number = ? plus range() and add the rows
+    private static void readInto(PreparedStatement ps, List<TransactionRecord> list, String accNum,
+                                 LocalDateTime from, LocalDateTime to) throws SQLException {
+        int i = 1;
+        ps.setString(i++, accNum);
+        if (from != null) ps.setTimestamp(i++, Timestamp.valueOf(from));
+        if (to != null) ps.setTimestamp(i, Timestamp.valueOf(to));
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) list.add(readRow(rs));
+        }
+    }
+
+    /**
+     * Balance of an account right after its last ledger row at or before `at`. Starts from
+     * the nearest balance checkpoint or earlier day's closing balance and adds only the rows
+     * after it (see BalanceCheckpointDao), so the cost doesn't grow with the history.
+     * Null if the database can't be read.
+     */
+    public BigDecimal balanceAsOf(String accNum, LocalDateTime at) {
+        BalanceCheckpointDao.Start start;
+        BigDecimal balance;
+        Timestamp to = Timestamp.valueOf(at);
+        try (Connection conn = getConnection()) {
+            start = BalanceCheckpointDao.startingPoint(conn, accNum, at);
+            balance = start.balance.add(BalanceCheckpointDao.sumAfter(conn, accNum, start.from, to, start.afterId));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        //  Rows of archived months are no longer in the table
+        if (archive != null && (start.from == null || !start.from.after(to))) {
+            TxId after = start.afterId == null ? null : TxId.fromBytes(start.afterId);
+            for (TransactionRecord tx : archive.read(accNum, start.from == null ? null : start.from.toLocalDateTime(), at.plusNanos(1))) {
+                if (after != null && tx.getId().compareTo(after) <= 0) continue;
+                if (accNum.equals(tx.getToAccount())) balance = balance.add(tx.getAmount());
+                else balance = balance.subtract(tx.getAmount());
+            }
+        }
+        return balance;
+    }
+
+    //  Withdrawals and outgoing transfers since a point in time, oldest first (velocity limiter warm-up)
+    public List<TransactionRecord> getOutgoingSince(LocalDateTime since) {
         List<TransactionRecord> list = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE from_account = ? OR to_account = ? ORDER BY created_at DESC";
+        String sql = "SELECT * FROM transactions WHERE created_at >= ? AND from_account IS NOT NULL " +
+                "AND tx_type IN ('WITHDRAW', 'TRANSFER') AND is_mirror = FALSE ORDER BY created_at";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setString(1, accNum);
-            ps.setString(2, accNum);
-
+            ps.setTimestamp(1, Timestamp.valueOf(since));
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                TransactionRecord.TxType type = TransactionRecord.TxType.valueOf(rs.getString("tx_type"));
-                String from = rs.getString("from_account");
-                String to = rs.getString("to_account");
-                BigDecimal amount = rs.getBigDecimal("amount");
-                String category = rs.getString("category");
-                Timestamp ts = rs.getTimestamp("created_at");
-
-                TransactionRecord tr = new TransactionRecord(type, from, to, amount, category);
-                tr.setCreatedAt(ts.toLocalDateTime());
-                list.add(tr);
+                list.add(readRow(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return list;
     }
+
+    //  Map one transactions row, keeping its stored tx_id
+    static TransactionRecord readRow(ResultSet rs) throws SQLException {
+        return new TransactionRecord(TxId.fromBytes(rs.getBytes("tx_id")),
+                TransactionRecord.TxType.valueOf(rs.getString("tx_type")),
+                rs.getString("from_account"), rs.getString("to_account"),
+                rs.getBigDecimal("amount"), rs.getString("category"),
+                rs.getTimestamp("created_at").toLocalDateTime());
+    }
+
+    // ------------------- DAILY SUMMARIES -------------------
+
+    //  Daily summary rows for an account (oldest first)
+    public List<DailySummary> getDailySummaries(String accNum, LocalDate from, LocalDate to) {
+        return summaries.getDailySummaries(accNum, from, to);
+    }
+
+    //  Average end-of-day balance over a month; null if the account has no summary history
+    public BigDecimal averageDailyBalance(String accNum, YearMonth month) {
+        return summaries.averageDailyBalance(accNum, month);
+    }
+
+    //  Bank-wide totals for one day (dashboards)
+    public DailySummary getDayTotals(LocalDate day) {
+        return summaries.getDayTotals(day);
+    }
+
+    //  Backfill: recompute all summaries from the raw ledger; returns accounts processed
+    public int rebuildDailySummaries() {
+        ensureSummaries();
+        return summaries.rebuildAll();
+    }
+
+    //  An account's first row, a plain DEPOSIT within a minute of its creation: the opening balance logged before it had a category
+    private static final String UNTAGGED_OPENINGS_SQL =
+            "SELECT t.tx_id, t.to_account FROM transactions t JOIN accounts a ON a.account_number = t.to_account " +
+            "WHERE t.tx_type = 'DEPOSIT' AND t.from_account IS NULL AND t.category = 'General' " +
+            "AND t.created_at >= a.created_at AND t.created_at < a.created_at + INTERVAL 1 MINUTE " +
+            "AND NOT EXISTS (SELECT 1 FROM transactions e WHERE (e.to_account = a.account_number " +
+            " OR e.from_account = a.account_number) AND e.created_at < t.created_at)";
+
+    //  Accounts opened before ? without an opening row, with the part of their balance the ledger doesn't explain
+    private static final String MISSING_OPENINGS_SQL =
+            "SELECT a.account_number, a.created_at, a.balance" +
+            " + COALESCE((SELECT SUM(s.balance) FROM account_balance_slots s WHERE s.account_number = a.account_number), 0)" +
+            " - COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.to_account = a.account_number), 0)" +
+            " + COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.from_account = a.account_number), 0)" +
+            " - COALESCE((SELECT SUM(z.credits - z.debits) FROM ledger_archived_totals z WHERE z.account_number = a.account_number), 0) " +
+            "FROM accounts a WHERE a.created_at < ? AND NOT EXISTS (SELECT 1 FROM transactions o " +
+            " WHERE o.to_account = a.account_number AND o.category = '" + TransactionRecord.OPENING_BALANCE + "')";
+
+    /**
+     * One-off backfill for opening balances, which used to be logged as plain deposits:
+     * re-tags those rows (and their postings) as "Opening balance". Accounts opened before
+     * openedBefore, when opening balances were not logged at all, get an opening row for the
+     * part of their balance the ledger doesn't explain, dated at the account's creation (or
+     * added to ledger_archived_totals when that month is archived). Pass the time the logging
+     * was deployed, so later drift is still reported by LedgerReconciler rather than hidden.
+     * Touched accounts get their daily summaries rebuilt. Returns the number of accounts fixed.
+     */
+    public int backfillOpeningBalances(LocalDateTime openedBefore) {
+        ensureSummaries();
+        Set<String> fixed = new TreeSet<>();
+        try {
+            Schema.execute(db, LedgerArchiver.TOTALS_DDL);
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    List<byte[]> ids = new ArrayList<>();
+                    try (Statement st = conn.createStatement();
+                         ResultSet rs = st.executeQuery(UNTAGGED_OPENINGS_SQL)) {
+                        while (rs.next()) {
+                            ids.add(rs.getBytes(1));
+                            fixed.add(rs.getString(2));
+                        }
+                    }
+                    for (String table : new String[]{"transactions", "ledger_postings", "ledger_postings_queue"}) {
+                        try (PreparedStatement ps = conn.prepareStatement(
+                                "UPDATE " + table + " SET category = ? WHERE tx_id = ?")) {
+                            for (byte[] id : ids) {
+                                ps.setString(1, TransactionRecord.OPENING_BALANCE);
+                                ps.setBytes(2, id);
+                                ps.addBatch();
+                            }
+                            ps.executeBatch();
+                        }
+                    }
+
+                    try (PreparedStatement ps = conn.prepareStatement(MISSING_OPENINGS_SQL)) {
+                        ps.setTimestamp(1, Timestamp.valueOf(openedBefore));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                BigDecimal missing = rs.getBigDecimal(3);
+                                if (missing.signum() <= 0) continue;
+                                String accNum = rs.getString(1);
+                                logOpening(conn, accNum, missing, rs.getTimestamp(2).toLocalDateTime());
+                                fixed.add(accNum);
+                            }
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Opening balance backfill failed on " + db.getUrl(), e);
+        }
+        for (String accNum : fixed) summaries.rebuild(accNum);
+        return fixed.size();
+    }
+
+    //  Header only: the account's postings already start from its opening balance
+    private static void logOpening(Connection conn, String accNum, BigDecimal amount, LocalDateTime openedAt)
+            throws SQLException {
+        String month = YearMonth.from(openedAt).toString();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM ledger_archived_totals WHERE month = ? LIMIT 1")) {
+            ps.setString(1, month);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    //  Month already archived: its totals are the ledger now
+                    try (PreparedStatement up = conn.prepareStatement(
+                            "INSERT INTO ledger_archived_totals (account_number, month, credits, debits) VALUES (?, ?, ?, 0) " +
+                            "ON DUPLICATE KEY UPDATE credits = credits + VALUES(credits)")) {
+                        up.setString(1, accNum);
+                        up.setString(2, month);
+                        up.setBigDecimal(3, amount);
+                        up.executeUpdate();
+                    }
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setBytes(1, TxIdGenerator.getDefault().next().toBytes());
+            ps.setString(2, TransactionRecord.TxType.DEPOSIT.name());
+            ps.setString(3, null);
+            ps.setString(4, accNum);
+            ps.setBigDecimal(5, amount);
+            ps.setString(6, TransactionRecord.OPENING_BALANCE);
+            ps.setTimestamp(7, Timestamp.valueOf(openedAt));
+            ps.setBoolean(8, false);
+            ps.executeUpdate();
+        }
+    }
+
+    // ------------------- POSTINGS -------------------
+
+    //  An account's postings with from <= created_at < to (null = unbounded), newest first, with running balances
+    public List<Posting> getPostings(String accNum, LocalDateTime from, LocalDateTime to) {
+        return postings.getPostings(accNum, from, to);
+    }
+
+    //  Balance of the account right after a transaction; null if the transaction has no posting on it
+    public BigDecimal balanceAfter(String accNum, TxId txId) {
+        return postings.balanceAfter(accNum, txId);
+    }
+
+    //  Transactions created in [from, to) whose postings don't balance
+    public List<TxId> findUnbalanced(LocalDateTime from, LocalDateTime to) {
+        return postings.findUnbalanced(from, to);
+    }
+
+    Map<TxId, BigDecimal[]> postingSums(LocalDateTime from, LocalDateTime to) throws SQLException {
+        return postings.postingSums(from, to);
+    }
+
+    //  Up to max accounts whose balance differs from their last posting's running balance
+    public List<String> findBalanceMismatches(int max) {
+        return postings.findBalanceMismatches(max);
+    }
+
+    //  Number the queued legs of hot accounts (PostingDao.sequence); returns how many were posted
+    public int sequencePostings() {
+        return postings.sequenceAll();
+    }
 }
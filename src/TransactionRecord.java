@@ -2,17 +2,21 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
-import java.util.UUID;
 
 public class TransactionRecord {
 
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
     //  Enum for limited transaction types
     public enum TxType {
         DEPOSIT, WITHDRAW, TRANSFER, ACCOUNT_CLOSED
     }
 
+    //  Category of the DEPOSIT that records an account's initial balance (not a customer deposit)
+    public static final String OPENING_BALANCE = "Opening balance";
+
     //  Fields
-    private final String txId;
+    private final TxId txId;
     private final TxType txType;
     private final String fromAccount;
     private final String toAccount;
@@ -27,7 +31,7 @@ public class TransactionRecord {
 
     //  Full constructor (with category)
     public TransactionRecord(TxType txType, String fromAccount, String toAccount, BigDecimal amount, String category) {
-        this.txId = UUID.randomUUID().toString();
+        this.txId = TxIdGenerator.getDefault().next();
         this.txType = Objects.requireNonNull(txType, "Transaction type cannot be null");
         this.fromAccount = fromAccount;
         this.toAccount = toAccount;
@@ -36,6 +40,18 @@ public class TransactionRecord {
         this.createdAt = LocalDateTime.now();
     }
 
+    //  Rebuild a stored record with its original id and timestamp (DAO/recovery use)
+    TransactionRecord(TxId txId, TxType txType, String fromAccount, String toAccount,
+                      BigDecimal amount, String category, LocalDateTime createdAt) {
+        this.txId = Objects.requireNonNull(txId, "Transaction id cannot be null");
+        this.txType = Objects.requireNonNull(txType, "Transaction type cannot be null");
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.amount = validateAmount(amount);
+        this.category = (category == null || category.trim().isEmpty()) ? "General" : category.trim();
+        this.createdAt = createdAt;
+    }
+
     // Validate transaction amount
     private BigDecimal validateAmount(BigDecimal amt) {
         if (amt == null || amt.compareTo(BigDecimal.ZERO) < 0)
@@ -44,7 +60,8 @@ public class TransactionRecord {
     }
 
     //  Getters
-    public String getTxId() { return txId; }
+    public TxId getId() { return txId; }
+    public String getTxId() { return txId.toString(); } // display form
     public TxType getTxType() { return txType; }
     public String getFromAccount() { return fromAccount; }
     public String getToAccount() { return toAccount; }
@@ -59,8 +76,7 @@ public class TransactionRecord {
 
     //  Date formatting helper
     public String getFormattedDate() {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-        return createdAt.format(fmt);
+        return createdAt.format(DATE_FORMAT); // formatters are immutable, one is shared
     }
 
     //  ToString for display/logging
@@ -68,7 +84,7 @@ public class TransactionRecord {
     public String toString() {
         return String.format(
                 "%s | %-10s | ₹%-10s | From: %-8s | To: %-8s | Category: %-10s | Date: %s",
-                txId.substring(0, 8),
+                txId.toShortString(),
                 txType,
                 amount,
                 fromAccount == null ? "-" : fromAccount,
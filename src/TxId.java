@@ -0,0 +1,93 @@
+import java.util.UUID;
+
+/**
+ * 128-bit transaction id in UUIDv7 layout:
+ *
+ *   48 bits  unix time in milliseconds
+ *    4 bits  version (7)
+ *   12 bits  sequence within the millisecond
+ *    2 bits  variant (10)
+ *   10 bits  node id
+ *   52 bits  random
+ *
+ * Ids from one generator are strictly increasing and ids from all nodes sort by creation
+ * time, so inserts append to the end of the tx_id index. Stored as BINARY(16); the
+ * canonical 36-char text form is only produced for display.
+ */
+public final class TxId implements Comparable<TxId> {
+
+    private final long msb;
+    private final long lsb;
+
+    TxId(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
+    }
+
+    //  Parse the canonical text form (also accepts the random UUIDs of older records)
+    public static TxId parse(String text) {
+        UUID u = UUID.fromString(text);
+        return new TxId(u.getMostSignificantBits(), u.getLeastSignificantBits());
+    }
+
+    public static TxId fromBytes(byte[] b) {
+        if (b == null || b.length != 16)
+            throw new IllegalArgumentException("Transaction id must be 16 bytes");
+        long hi = 0, lo = 0;
+        for (int i = 0; i < 8; i++) hi = (hi << 8) | (b[i] & 0xFF);
+        for (int i = 8; i < 16; i++) lo = (lo << 8) | (b[i] & 0xFF);
+        return new TxId(hi, lo);
+    }
+
+    //  Big-endian, so byte order in the index matches time order
+    public byte[] toBytes() {
+        byte[] b = new byte[16];
+        for (int i = 0; i < 8; i++) b[i] = (byte) (msb >>> (56 - 8 * i));
+        for (int i = 0; i < 8; i++) b[8 + i] = (byte) (lsb >>> (56 - 8 * i));
+        return b;
+    }
+
+    long getMostSignificantBits() { return msb; }
+    long getLeastSignificantBits() { return lsb; }
+
+    //  Creation time in epoch milliseconds (only meaningful for version 7 ids)
+    public long timestampMillis() {
+        return msb >>> 16;
+    }
+
+    public int version() {
+        return (int) ((msb >>> 12) & 0xF);
+    }
+
+    public int nodeId() {
+        return (int) ((lsb >>> 52) & 0x3FF);
+    }
+
+    //  Last 8 hex digits: the random tail, which differs even between ids of the same millisecond
+    public String toShortString() {
+        String s = toString();
+        return s.substring(s.length() - 8);
+    }
+
+    @Override
+    public String toString() {
+        return new UUID(msb, lsb).toString();
+    }
+
+    //  Unsigned comparison = byte order = creation order
+    @Override
+    public int compareTo(TxId o) {
+        int c = Long.compareUnsigned(msb, o.msb);
+        return c != 0 ? c : Long.compareUnsigned(lsb, o.lsb);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TxId t && t.msb == msb && t.lsb == lsb;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(msb ^ lsb);
+    }
+}
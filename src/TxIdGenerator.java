@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free generator of monotonic {@link TxId}s.
+ *
+ * Keeps (millisecond << 12 | sequence) in one AtomicLong. Each id takes the current
+ * millisecond or, if that is not ahead of the last id (same millisecond, or the clock
+ * stepped back), the last value plus one; 4096 ids in one millisecond simply borrow
+ * from the next. The random tail comes from ThreadLocalRandom, not SecureRandom.
+ *
+ * The node id (0-1023) is read from -Dbanking.node.id. Without it, one is hashed from the
+ * host name, the network hardware addresses and the process id. Instances on different
+ * hosts then rarely share a node id, and the random tail keeps their ids apart even when
+ * they do. Give each instance an explicit id when the node must identify the writer.
+ */
+public class TxIdGenerator {
+
+    private static final TxIdGenerator DEFAULT = new TxIdGenerator(defaultNodeId());
+
+    private final long nodeBits;
+    private final AtomicLong last = new AtomicLong();
+
+    public TxIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > 1023)
+            throw new IllegalArgumentException("Node id must be between 0 and 1023");
+        this.nodeBits = (long) nodeId << 52;
+    }
+
+    //  Shared generator used by TransactionRecord
+    public static TxIdGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    public TxId next() {
+        long now = System.currentTimeMillis() << 12;
+        long prev, state;
+        do {
+            prev = last.get();
+            state = Math.max(now, prev + 1);
+        } while (!last.compareAndSet(prev, state));
+
+        long millis = state >>> 12;
+        long seq = state & 0xFFF;
+        long msb = (millis << 16) | (0x7L << 12) | seq;
+        long lsb = (0x2L << 62) | nodeBits | (ThreadLocalRandom.current().nextLong() & 0xF_FFFF_FFFF_FFFFL);
+        return new TxId(msb, lsb);
+    }
+
+    private static int defaultNodeId() {
+        String configured = System.getProperty("banking.node.id");
+        if (configured != null) return Integer.parseInt(configured.trim());
+
+        long h = ProcessHandle.current().pid();
+        try {
+            h = h * 31 + InetAddress.getLocalHost().getHostName().hashCode();
+            for (NetworkInterface nic : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                byte[] mac = nic.getHardwareAddress();
+                if (mac != null) h = h * 31 + Arrays.hashCode(mac);
+            }
+        } catch (IOException e) {
+            // no host identity available: the pid alone
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL; // spread every input bit into the low 10
+        h ^= h >>> 33;
+        return (int) (h & 0x3FF);
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Thrown when a withdrawal or transfer would exceed the account's velocity limits.
+ * Extends IllegalArgumentException so existing callers (e.g. BankingConsole) report it like other rejections.
+ */
+public class VelocityLimitExceededException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,222 @@
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory velocity limiter for outgoing money, one set of bucketed sliding windows per account:
+ *   minute = 60 x 1s buckets, hour = 60 x 1min buckets, day = 24 x 1h buckets.
+ *
+ * Each window keeps running totals, so check() and record() are O(1): advancing clears at
+ * most one window's worth of buckets. Accounts idle for longer than a day hold no live
+ * buckets and are evicted by a background sweep, which bounds memory to recently active
+ * accounts. All limiters share one sweeper thread; a limiter's sweep stops when it is
+ * closed or garbage collected.
+ */
+public class VelocityLimiter implements AutoCloseable {
+
+    private static final long[] BUCKET_MILLIS = {1_000L, 60_000L, 3_600_000L};
+    private static final int[] BUCKETS = {60, 60, 24};
+    private static final long IDLE_MILLIS = BUCKET_MILLIS[VelocityPolicy.DAY] * BUCKETS[VelocityPolicy.DAY];
+
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "velocity-idle-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, AccountWindows> accounts = new ConcurrentHashMap<>();
+    private final Map<String, VelocityPolicy> policies = new ConcurrentHashMap<>();
+    private final Function<String, VelocityPolicy> policyLoader;
+    private final LongSupplier clock;
+    private volatile ScheduledFuture<?> sweep;
+
+    public VelocityLimiter() {
+        this(VelocityPolicy::forAccountType, System::currentTimeMillis);
+    }
+
+    public VelocityLimiter(Function<String, VelocityPolicy> policyLoader, LongSupplier clock) {
+        this.policyLoader = policyLoader;
+        this.clock = clock;
+    }
+
+    //  Limiter pre-loaded with the last day of outgoing ledger rows, with an idle sweep every minute
+    public static VelocityLimiter rebuildFrom(TransactionDao txDao) {
+        VelocityLimiter limiter = new VelocityLimiter();
+        long since = limiter.clock.getAsLong() - IDLE_MILLIS;
+        for (TransactionRecord tx : txDao.getOutgoingSince(
+                Instant.ofEpochMilli(since).atZone(ZoneId.systemDefault()).toLocalDateTime())) {
+            limiter.record(tx.getFromAccount(), VelocityPolicy.toPaise(tx.getAmount()),
+                    tx.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        limiter.startIdleSweep();
+        return limiter;
+    }
+
+    /**
+     * Reject (VelocityLimitExceededException) an outgoing amount that would break a limit.
+     * Call before any DB write; the amount only counts once record() is called after commit,
+     * so operations that are rejected later or roll back use up nothing.
+     */
+    public void check(String accNo, String accountType, BigDecimal amount) {
+        VelocityPolicy policy = policies.computeIfAbsent(
+                accountType == null ? "SAVINGS" : accountType.trim().toUpperCase(), policyLoader);
+        long paise = VelocityPolicy.toPaise(amount);
+        long now = clock.getAsLong();
+
+        AccountWindows w = windowsFor(accNo);
+        synchronized (w) {
+            if (w.evicted) {   // lost a race with the idle sweep; retry on a fresh entry
+                check(accNo, accountType, amount);
+                return;
+            }
+            w.advance(now);
+            for (int i = 0; i < 3; i++) {
+                if (w.count[i] + 1 > policy.maxCount(i))
+                    throw new VelocityLimitExceededException("Too many withdrawals/transfers this "
+                            + VelocityPolicy.WINDOW_NAMES[i] + " (limit " + policy.maxCount(i) + ")");
+                if (w.sum[i] + paise > policy.maxPaise(i))
+                    throw new VelocityLimitExceededException("Amount exceeds the per-" + VelocityPolicy.WINDOW_NAMES[i]
+                            + " limit of ₹" + BigDecimal.valueOf(policy.maxPaise(i), 2).toPlainString());
+            }
+        }
+    }
+
+    //  Count a committed outgoing amount against the account's windows
+    public void record(String accNo, BigDecimal amount) {
+        record(accNo, VelocityPolicy.toPaise(amount), clock.getAsLong());
+    }
+
+    //  Record at a given time (also the startup rebuild from the ledger)
+    void record(String accNo, long paise, long atMillis) {
+        AccountWindows w = windowsFor(accNo);
+        synchronized (w) {
+            if (w.evicted) {
+                record(accNo, paise, atMillis);
+                return;
+            }
+            w.advance(Math.max(atMillis, w.lastMillis));
+            w.add(atMillis, paise);
+        }
+    }
+
+    //  Drop accounts with no activity inside the day window; returns how many were evicted
+    public int evictIdle() {
+        long cutoff = clock.getAsLong() - IDLE_MILLIS;
+        int evicted = 0;
+        for (Iterator<AccountWindows> it = accounts.values().iterator(); it.hasNext(); ) {
+            AccountWindows w = it.next();
+            synchronized (w) {
+                if (w.lastMillis < cutoff) {
+                    w.evicted = true;
+                    it.remove();
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    private AccountWindows windowsFor(String accNo) {
+        return accounts.computeIfAbsent(accNo, k -> new AccountWindows());
+    }
+
+    public int trackedAccounts() {
+        return accounts.size();
+    }
+
+    //  The shared sweeper only holds the limiter weakly, so a forgotten limiter is still collected
+    private void startIdleSweep() {
+        IdleSweep task = new IdleSweep(this);
+        sweep = SWEEPER.scheduleAtFixedRate(task, 1, 1, TimeUnit.MINUTES);
+        task.future = sweep;
+    }
+
+    //  Stop the idle sweep (the limiter itself keeps working)
+    @Override
+    public void close() {
+        ScheduledFuture<?> s = sweep;
+        if (s != null) s.cancel(false);
+    }
+
+    private static final class IdleSweep implements Runnable {
+        private final WeakReference<VelocityLimiter> limiter;
+        volatile ScheduledFuture<?> future;
+
+        IdleSweep(VelocityLimiter limiter) {
+            this.limiter = new WeakReference<>(limiter);
+        }
+
+        @Override
+        public void run() {
+            VelocityLimiter l = limiter.get();
+            if (l != null) l.evictIdle();
+            else if (future != null) future.cancel(false);
+        }
+    }
+
+    //  Three bucketed sliding windows for one account (guarded by its own monitor)
+    private static final class AccountWindows {
+        final long[][] bucketSum = new long[3][];
+        final int[][] bucketCount = new int[3][];
+        final long[] headEpoch = new long[3];   // bucket epoch of the newest bucket
+        final long[] sum = new long[3];         // running totals over live buckets
+        final int[] count = new int[3];
+        long lastMillis;
+        boolean evicted;
+
+        AccountWindows() {
+            for (int i = 0; i < 3; i++) {
+                bucketSum[i] = new long[BUCKETS[i]];
+                bucketCount[i] = new int[BUCKETS[i]];
+                headEpoch[i] = Long.MIN_VALUE;
+            }
+        }
+
+        //  Expire buckets that fell out of each window
+        void advance(long now) {
+            for (int i = 0; i < 3; i++) {
+                long epoch = now / BUCKET_MILLIS[i];
+                if (headEpoch[i] == Long.MIN_VALUE || epoch - headEpoch[i] >= BUCKETS[i]) {
+                    Arrays.fill(bucketSum[i], 0L);
+                    Arrays.fill(bucketCount[i], 0);
+                    sum[i] = 0;
+                    count[i] = 0;
+                } else {
+                    for (long e = headEpoch[i] + 1; e <= epoch; e++) {
+                        int slot = (int) (e % BUCKETS[i]);
+                        sum[i] -= bucketSum[i][slot];
+                        count[i] -= bucketCount[i][slot];
+                        bucketSum[i][slot] = 0;
+                        bucketCount[i][slot] = 0;
+                    }
+                }
+                if (epoch > headEpoch[i]) headEpoch[i] = epoch;
+            }
+            if (now > lastMillis) lastMillis = now;
+        }
+
+        //  Add to the bucket covering 'at' (ignored if it is already outside the window)
+        void add(long at, long paise) {
+            for (int i = 0; i < 3; i++) {
+                long epoch = at / BUCKET_MILLIS[i];
+                if (headEpoch[i] - epoch >= BUCKETS[i]) continue;
+                int slot = (int) (epoch % BUCKETS[i]);
+                bucketSum[i][slot] += paise;
+                bucketCount[i][slot]++;
+                sum[i] += paise;
+                count[i]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Per-account-type velocity limits for outgoing money (withdrawals and transfers):
+ * max amount and max number of operations per minute, hour and day.
+ *
+ * Defaults can be overridden with system properties, e.g.
+ *   banking.velocity.SAVINGS.day.amount=200000
+ *   banking.velocity.SAVINGS.minute.count=3
+ */
+public class VelocityPolicy {
+
+    //  Window indexes shared with VelocityLimiter
+    static final int MINUTE = 0;
+    static final int HOUR = 1;
+    static final int DAY = 2;
+    static final String[] WINDOW_NAMES = {"minute", "hour", "day"};
+
+    private final long[] maxPaise = new long[3];
+    private final int[] maxCount = new int[3];
+
+    public VelocityPolicy(BigDecimal perMinute, int countPerMinute,
+                          BigDecimal perHour, int countPerHour,
+                          BigDecimal perDay, int countPerDay) {
+        set(MINUTE, perMinute, countPerMinute);
+        set(HOUR, perHour, countPerHour);
+        set(DAY, perDay, countPerDay);
+    }
+
+    //  Built-in limits, adjusted by any banking.velocity.* system properties
+    public static VelocityPolicy forAccountType(String accountType) {
+        String type = accountType == null ? "SAVINGS" : accountType.trim().toUpperCase();
+        VelocityPolicy p;
+        switch (type) {
+            case "CURRENT":
+                p = new VelocityPolicy(new BigDecimal("200000"), 20, new BigDecimal("1000000"), 200,
+                        new BigDecimal("5000000"), 1000);
+                break;
+            case "STUDENT":
+                p = new VelocityPolicy(new BigDecimal("10000"), 3, new BigDecimal("25000"), 10,
+                        new BigDecimal("50000"), 20);
+                break;
+            default: // SAVINGS
+                p = new VelocityPolicy(new BigDecimal("50000"), 5, new BigDecimal("200000"), 20,
+                        new BigDecimal("500000"), 50);
+        }
+        for (int w = 0; w < 3; w++) {
+            String prefix = "banking.velocity." + type + "." + WINDOW_NAMES[w];
+            String amount = System.getProperty(prefix + ".amount");
+            String count = System.getProperty(prefix + ".count");
+            if (amount != null) p.maxPaise[w] = toPaise(new BigDecimal(amount.trim()));
+            if (count != null) p.maxCount[w] = Integer.parseInt(count.trim());
+        }
+        return p;
+    }
+
+    private void set(int window, BigDecimal amount, int count) {
+        maxPaise[window] = toPaise(amount);
+        maxCount[window] = count;
+    }
+
+    long maxPaise(int window) { return maxPaise[window]; }
+    int maxCount(int window) { return maxCount[window]; }
+
+    static long toPaise(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_EVEN).movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,263 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Keeps batch work (interest runs, inactivity sweeps, ClusterJobs, BatchRunner) from taking
+ * the database away from interactive operations.
+ *
+ * Work runs in the calling thread's workload, INTERACTIVE unless started with batch().
+ * Every connection DbConfig opens counts against that workload's budget for the database:
+ * up to `banking.workload.interactive` (default 64) threads at once for interactive work,
+ * up to the batch limit for batch work. A thread counts once per database however many
+ * connections it has open there, so a task reading several streams can't block itself.
+ * Interactive threads only ever wait for other interactive threads.
+ *
+ * The batch limit adapts to interactive latency. Every `banking.workload.adjust.ms` the
+ * p99 of the interactive operations that finished in that window (AccountManager records
+ * them) is compared with `banking.workload.p99.ms`: above it the limit halves (down to 1),
+ * well below it, or with no interactive traffic, the limit grows by one up to
+ * `banking.workload.batch` (default 8). Batch threads over the limit wait for a slot.
+ */
+final class Workload {
+
+    enum Kind { INTERACTIVE, BATCH }
+
+    private static final int INTERACTIVE_MAX = Integer.getInteger("banking.workload.interactive", 64);
+    private static final int BATCH_MAX = Math.max(1, Integer.getInteger("banking.workload.batch", 8));
+    private static final long TARGET_P99_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("banking.workload.p99.ms", 250L));
+    private static final long ADJUST_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("banking.workload.adjust.ms", 1_000L));
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("banking.workload.wait.ms", 5_000L));
+
+    private static final ThreadLocal<Kind> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Map<DbConfig, Holder>> HELD = ThreadLocal.withInitial(HashMap::new);
+    private static final Map<DbConfig, Budget[]> BUDGETS = new ConcurrentHashMap<>();
+
+    private static volatile int batchLimit = BATCH_MAX;
+    private static volatile LatencyWindow window = new LatencyWindow();
+    private static final AtomicLong nextAdjust = new AtomicLong(System.nanoTime() + ADJUST_NANOS);
+
+    private Workload() {}
+
+    //  Workload of the calling thread
+    static Kind current() {
+        Kind kind = CURRENT.get();
+        return kind != null ? kind : Kind.INTERACTIVE;
+    }
+
+    //  Run body as batch work on this thread
+    static <T> T batch(Supplier<T> body) {
+        Kind previous = CURRENT.get();
+        CURRENT.set(Kind.BATCH);
+        try {
+            return body.get();
+        } finally {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+        }
+    }
+
+    static void runBatch(Runnable body) {
+        batch(() -> {
+            body.run();
+            return null;
+        });
+    }
+
+    //  Current number of batch threads allowed per database
+    static int batchLimit() {
+        return batchLimit;
+    }
+
+    // ------------------- CONNECTIONS -------------------
+
+    //  Open a connection through opener once the thread's workload has room on this database
+    static Connection open(DbConfig db, DbTracing.ConnectionOpener opener) throws SQLException {
+        Kind kind = current();
+        Map<DbConfig, Holder> held = HELD.get();
+        Holder holder = held.get(db);
+        if (holder == null || holder.budget.kind != kind || !holder.retain()) {
+            Budget budget = BUDGETS.computeIfAbsent(db, d -> new Budget[]{
+                    new Budget(Kind.INTERACTIVE), new Budget(Kind.BATCH)})[kind.ordinal()];
+            budget.acquire(db);
+            holder = new Holder(budget);
+            held.put(db, holder);
+        }
+        try {
+            return track(opener.open(), holder);
+        } catch (SQLException | RuntimeException e) {
+            holder.release();
+            throw e;
+        }
+    }
+
+    //  The slot is given back when the thread's last connection to the database is closed
+    private static Connection track(Connection conn, Holder holder) {
+        AtomicBoolean closed = new AtomicBoolean();
+        InvocationHandler handler = (p, method, args) -> {
+            if (!method.getName().equals("close") || !closed.compareAndSet(false, true)) return invoke(conn, method, args);
+            try {
+                return invoke(conn, method, args);
+            } finally {
+                holder.release();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    //  One thread's open connections to one database (closed from any thread)
+    private static final class Holder {
+        final Budget budget;
+        private int open = 1;
+
+        Holder(Budget budget) {
+            this.budget = budget;
+        }
+
+        //  Another connection under the same slot; false once the slot has been given back
+        synchronized boolean retain() {
+            if (open == 0) return false;
+            open++;
+            return true;
+        }
+
+        synchronized void release() {
+            if (--open == 0) budget.release();
+        }
+    }
+
+    //  Threads of one workload holding connections to one database
+    private static final class Budget {
+        final Kind kind;
+        private int inUse;
+
+        Budget(Kind kind) {
+            this.kind = kind;
+        }
+
+        private int limit() {
+            return kind == Kind.INTERACTIVE ? INTERACTIVE_MAX : batchLimit;
+        }
+
+        //  Batch waits as long as it takes (that is the throttle); interactive at most its deadline or wait.ms
+        synchronized void acquire(DbConfig db) {
+            Deadline deadline = Deadline.current();
+            long budget = deadline != null ? deadline.remainingNanos()
+                    : kind == Kind.BATCH ? Long.MAX_VALUE / 2 : WAIT_NANOS;
+            long end = System.nanoTime() + budget;
+            while (true) {
+                if (kind == Kind.BATCH) adjust();
+                if (inUse < limit()) break;
+                long left = end - System.nanoTime();
+                if (left <= 0) {
+                    if (deadline != null) throw deadline.expired(null);
+                    throw new DatabaseUnavailableException("No " + kind.name().toLowerCase()
+                            + " connection to " + db.getUrl() + " free", null);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.min(left, ADJUST_NANOS)); // wakes to see a raised limit
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DeadlineExceededException("Interrupted while waiting for a connection", e);
+                }
+            }
+            inUse++;
+        }
+
+        synchronized void release() {
+            inUse--;
+            notifyAll();
+        }
+    }
+
+    // ------------------- ADAPTIVE BATCH LIMIT -------------------
+
+    //  Latency of one finished interactive operation
+    static void recordInteractive(long nanos) {
+        window.record(nanos);
+        adjust();
+    }
+
+    //  At most once per period: halve the batch limit if interactive p99 is over target, else raise it by one
+    private static void adjust() {
+        long now = System.nanoTime();
+        long due = nextAdjust.get();
+        if (now - due < 0 || !nextAdjust.compareAndSet(due, now + ADJUST_NANOS)) return;
+
+        LatencyWindow finished = window;
+        window = new LatencyWindow();
+        long p99 = finished.percentile(0.99); // -1: no interactive operations in the window
+        int limit = batchLimit;
+        if (p99 > TARGET_P99_NANOS) {
+            int lower = Math.max(1, limit / 2);
+            if (lower != limit) {
+                System.err.println("[workload] interactive p99 " + TimeUnit.NANOSECONDS.toMillis(p99)
+                        + " ms, batch limit " + limit + " -> " + lower);
+            }
+            batchLimit = lower;
+        } else if (p99 < TARGET_P99_NANOS * 4 / 5 && limit < BATCH_MAX) {
+            batchLimit = limit + 1;
+        }
+    }
+
+    /**
+     * Latency histogram for one adjustment period: four buckets per power of two of the
+     * latency in microseconds (within 25%), counted without locks.
+     */
+    static final class LatencyWindow {
+        private static final int BUCKETS = 4 + 4 * 62;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+        }
+
+        //  Upper bound of the q-quantile in nanoseconds, -1 if nothing was recorded
+        long percentile(double q) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+            if (total == 0) return -1;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) return upperMicros(i) * 1000;
+            }
+            return upperMicros(BUCKETS - 1) * 1000;
+        }
+
+        static int bucket(long micros) {
+            if (micros < 4) return (int) micros;
+            int exp = 63 - Long.numberOfLeadingZeros(micros); // >= 2
+            return 4 + (exp - 2) * 4 + (int) ((micros >>> (exp - 2)) & 3);
+        }
+
+        static long upperMicros(int bucket) {
+            if (bucket < 4) return bucket + 1;
+            int exp = (bucket - 4) / 4 + 2;
+            long sub = (bucket - 4) % 4;
+            return (4 + sub + 1) << (exp - 2);
+        }
+    }
+}